@@ -78,6 +78,8 @@ public class InstallerDb {
     public static final float POSTGRES_MAX_VERSION_PLUS_ONE = 9.9f;
 
     private static final int s_fetch_size = 1024;
+
+    private static final int EVENT_PARTITION_MIGRATE_BATCH = 10000;
     
     private static Comparator<Constraint> constraintComparator = new Comparator<Constraint>() {
 
@@ -2997,4 +2999,42 @@ public class InstallerDb {
             m_out.println("OK");
         }
     }
+
+    /**
+     * Move the rows of a partitioned events table out of the parent table and
+     * into the time partitions that cover them, one eventid range at a time so
+     * that an existing install does not need one huge transaction.
+     *
+     * @throws java.sql.SQLException if any.
+     */
+    public void migrateEventsToPartitions() throws SQLException {
+        final Statement st = getConnection().createStatement();
+        try {
+            m_out.print("- moving existing events into their partitions... ");
+            long minId;
+            long maxId;
+            final ResultSet rs = st.executeQuery("SELECT min(eventid), max(eventid) FROM ONLY events");
+            try {
+                rs.next();
+                minId = rs.getLong(1);
+                maxId = rs.getLong(2);
+            } finally {
+                rs.close();
+            }
+
+            long moved = 0;
+            for (long fromId = minId; fromId <= maxId; fromId += EVENT_PARTITION_MIGRATE_BATCH) {
+                final ResultSet batch = st.executeQuery("SELECT events_partition_migrate(" + fromId + ", " + (fromId + EVENT_PARTITION_MIGRATE_BATCH - 1) + ")");
+                try {
+                    batch.next();
+                    moved += batch.getInt(1);
+                } finally {
+                    batch.close();
+                }
+            }
+            m_out.println("OK (" + moved + " events)");
+        } finally {
+            st.close();
+        }
+    }
 }
@@ -28,6 +28,7 @@
 
 package org.opennms.core.utils;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -43,6 +44,7 @@ import javax.sql.DataSource;
  */
 public class Querier extends JDBCTemplate implements RowProcessor {
     private int m_count;
+    private int m_fetchSize = 0;
     private RowProcessor m_rowProcessor;
     /**
      * <p>Constructor for Querier.</p>
@@ -78,12 +80,29 @@ public class Querier extends JDBCTemplate implements RowProcessor {
     public int getCount() {
         return m_count;
     }
+
+    /**
+     * Sets the number of rows to fetch from the database at a time.  When this
+     * is set, the statement is run in a transaction so that PostgreSQL streams
+     * the rows through a cursor instead of reading the whole result into memory.
+     *
+     * @param fetchSize the number of rows per fetch, 0 to read all rows at once
+     */
+    public void setFetchSize(int fetchSize) {
+        m_fetchSize = fetchSize;
+    }
      
     /** {@inheritDoc} */
     @Override
     protected void executeStmt(PreparedStatement stmt) throws SQLException {
         final DBUtils d = new DBUtils(getClass());
+        final Connection conn = stmt.getConnection();
+        final boolean autoCommit = conn.getAutoCommit();
         try {
+            if (m_fetchSize > 0) {
+                conn.setAutoCommit(false);
+                stmt.setFetchSize(m_fetchSize);
+            }
             ResultSet rs = stmt.executeQuery();
             d.watch(rs);
             m_count = 0;
@@ -93,6 +112,10 @@ public class Querier extends JDBCTemplate implements RowProcessor {
             }
         } finally {
             d.cleanUp();
+            if (m_fetchSize > 0 && autoCommit) {
+                // ends the read-only transaction the cursor was opened in
+                conn.setAutoCommit(true);
+            }
         }
     }
 
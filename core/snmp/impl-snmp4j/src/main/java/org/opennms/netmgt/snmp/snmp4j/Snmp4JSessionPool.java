@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.Snmp;
+
+/**
+ * Long-lived SNMP4J sessions shared by all requests, so that gets and walks
+ * no longer open a UDP socket each. SNMP4J matches responses to outstanding
+ * requests by request ID, so many requests can be in flight on one session.
+ *
+ * SNMPv1 and SNMPv2c requests are spread over a small number of sessions,
+ * each new request going to the session with the fewest requests in
+ * flight. SNMPv3 requests get a session per set of user credentials, whose
+ * USM and message processing model keep the engine IDs, engine times and
+ * localized keys of the agents they talked to, so engine discovery is only
+ * done once per agent instead of once per request.
+ *
+ * The number of SNMPv1/v2c sessions is set with the
+ * <code>org.opennms.snmp.snmp4j.sessions</code> system property.
+ */
+public class Snmp4JSessionPool {
+	
+	private static final transient Logger LOG = LoggerFactory.getLogger(Snmp4JSessionPool.class);
+
+    private static final int DEFAULT_SESSIONS = 2;
+
+    private static final Snmp4JSessionPool s_instance = new Snmp4JSessionPool(Integer.getInteger("org.opennms.snmp.snmp4j.sessions", DEFAULT_SESSIONS));
+
+    private final int m_maxSessions;
+
+    private final List<PooledSession> m_communitySessions = new ArrayList<PooledSession>();
+
+    private final Map<List<Object>, PooledSession> m_userSessions = new HashMap<List<Object>, PooledSession>();
+
+    private volatile PooledSession[] m_allSessions = new PooledSession[0];
+
+    /**
+     * A shared session and the number of requests outstanding on it.
+     */
+    public static class PooledSession {
+        private final Snmp m_snmp;
+        private final AtomicInteger m_inFlight = new AtomicInteger();
+
+        private PooledSession(final Snmp snmp) {
+            m_snmp = snmp;
+        }
+
+        public Snmp getSnmp() {
+            return m_snmp;
+        }
+
+        /**
+         * Must be called before each request sent on the session.
+         */
+        public void requestStarted() {
+            m_inFlight.incrementAndGet();
+        }
+
+        /**
+         * Must be called once for each request that was answered, timed out
+         * or was cancelled.
+         */
+        public void requestFinished() {
+            m_inFlight.decrementAndGet();
+        }
+
+        public int getInFlightRequests() {
+            return m_inFlight.get();
+        }
+    }
+
+    Snmp4JSessionPool(final int maxSessions) {
+        m_maxSessions = Math.max(1, maxSessions);
+    }
+
+    public static Snmp4JSessionPool getInstance() {
+        return s_instance;
+    }
+
+    /**
+     * Returns a listening session suitable for the agent. The session must
+     * not be closed by the caller.
+     *
+     * @param agentConfig the agent the requests are sent to
+     * @return a shared session
+     * @throws IOException if a new session could not be opened
+     */
+    public PooledSession getSession(final Snmp4JAgentConfig agentConfig) throws IOException {
+        if (agentConfig.isSnmpV3()) {
+            return getUserSession(agentConfig);
+        } else {
+            return getCommunitySession(agentConfig);
+        }
+    }
+
+    private synchronized PooledSession getCommunitySession(final Snmp4JAgentConfig agentConfig) throws IOException {
+        PooledSession leastLoaded = null;
+        for (final PooledSession session : m_communitySessions) {
+            if (leastLoaded == null || session.getInFlightRequests() < leastLoaded.getInFlightRequests()) {
+                leastLoaded = session;
+            }
+        }
+
+        if (leastLoaded == null || (leastLoaded.getInFlightRequests() > 0 && m_communitySessions.size() < m_maxSessions)) {
+            leastLoaded = openSession(agentConfig);
+            m_communitySessions.add(leastLoaded);
+        }
+        return leastLoaded;
+    }
+
+    private synchronized PooledSession getUserSession(final Snmp4JAgentConfig agentConfig) throws IOException {
+        final List<Object> key = Arrays.<Object>asList(
+            agentConfig.getSecurityName(),
+            agentConfig.getAuthProtocol(),
+            agentConfig.getAuthPassPhrase(),
+            agentConfig.getPrivProtocol(),
+            agentConfig.getPrivPassPhrase()
+        );
+
+        PooledSession session = m_userSessions.get(key);
+        if (session == null) {
+            session = openSession(agentConfig);
+            m_userSessions.put(key, session);
+        }
+        return session;
+    }
+
+    private PooledSession openSession(final Snmp4JAgentConfig agentConfig) throws IOException {
+        final Snmp snmp = agentConfig.createSnmpSession();
+        try {
+            snmp.listen();
+        } catch (final IOException e) {
+            snmp.close();
+            throw e;
+        }
+
+        final PooledSession session = new PooledSession(snmp);
+        final PooledSession[] sessions = Arrays.copyOf(m_allSessions, m_allSessions.length + 1);
+        sessions[sessions.length - 1] = session;
+        m_allSessions = sessions;
+
+        LOG.debug("Opened shared {} session number {}", agentConfig.getVersionString(), sessions.length);
+        return session;
+    }
+
+    /**
+     * <p>getSessionCount</p>
+     *
+     * @return the number of sessions, and so UDP sockets, opened by the pool
+     */
+    public int getSessionCount() {
+        return m_allSessions.length;
+    }
+
+    /**
+     * <p>getInFlightRequests</p>
+     *
+     * @return the number of requests waiting for a response on all sessions
+     */
+    public int getInFlightRequests() {
+        int count = 0;
+        for (final PooledSession session : m_allSessions) {
+            count += session.getInFlightRequests();
+        }
+        return count;
+    }
+
+    /**
+     * Closes all sessions. Requests still outstanding are cancelled.
+     */
+    public synchronized void close() {
+        for (final PooledSession session : m_allSessions) {
+            try {
+                session.getSnmp().close();
+            } catch (final IOException e) {
+                LOG.error("error closing SNMP connection: " + e, e);
+            }
+        }
+        m_communitySessions.clear();
+        m_userSessions.clear();
+        m_allSessions = new PooledSession[0];
+    }
+}
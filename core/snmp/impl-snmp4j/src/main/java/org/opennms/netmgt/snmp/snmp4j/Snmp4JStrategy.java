@@ -246,42 +246,32 @@ public class Snmp4JStrategy implements SnmpStrategy {
      * @return
      */
     protected SnmpValue[] send(Snmp4JAgentConfig agentConfig, PDU pdu, boolean expectResponse) {
-        Snmp session;
+        final Snmp4JSessionPool.PooledSession session;
 
         try {
-            session = agentConfig.createSnmpSession();
+            session = Snmp4JSessionPool.getInstance().getSession(agentConfig);
         } catch (IOException e) {
             LOG.error("send: Could not create SNMP session for agent {} : {}", agentConfig, e, e);
             return new SnmpValue[] { null };
         }
 
+        session.requestStarted();
         try {
-            if (expectResponse) {
-                try {
-                    session.listen();
-                } catch (IOException e) {
-                    LOG.error("send: error setting up listener for SNMP responses: {}", e, e);
-                    return new SnmpValue[] { null };
-                }
-            }
-    
-            try {
-                ResponseEvent responseEvent = session.send(pdu, agentConfig.getTarget());
+            ResponseEvent responseEvent = session.getSnmp().send(pdu, agentConfig.getTarget());
 
-                if (expectResponse) {
-                    return processResponse(agentConfig, responseEvent);
-                } else {
-                    return null;
-                }
-            } catch (IOException e) {
-                LOG.error("send: error during SNMP operation: " + e, e);
-                return new SnmpValue[] { null };
-            } catch (Throwable e) {
-                LOG.error("send: unexpected error during SNMP operation: " + e, e);
-                return new SnmpValue[] { null };
+            if (expectResponse) {
+                return processResponse(agentConfig, responseEvent);
+            } else {
+                return null;
             }
+        } catch (IOException e) {
+            LOG.error("send: error during SNMP operation: " + e, e);
+            return new SnmpValue[] { null };
+        } catch (Throwable e) {
+            LOG.error("send: unexpected error during SNMP operation: " + e, e);
+            return new SnmpValue[] { null };
         } finally {
-            closeQuietly(session);
+            session.requestFinished();
         }
     }
     
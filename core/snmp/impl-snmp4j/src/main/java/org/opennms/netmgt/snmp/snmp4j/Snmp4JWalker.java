@@ -37,7 +37,6 @@ import org.opennms.netmgt.snmp.SnmpWalker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snmp4j.PDU;
-import org.snmp4j.Snmp;
 import org.snmp4j.Target;
 import org.snmp4j.event.ResponseEvent;
 import org.snmp4j.event.ResponseListener;
@@ -160,7 +159,13 @@ public class Snmp4JWalker extends SnmpWalker {
         @Override
         public void onResponse(ResponseEvent responseEvent) {
             // need to cancel the request here otherwise SNMP4J Keeps it around forever... go figure
-            m_session.cancel(responseEvent.getRequest(), this);
+            final Snmp4JSessionPool.PooledSession session = m_session;
+            if (session == null) {
+                // the walker was closed and the request already cancelled
+                return;
+            }
+            session.getSnmp().cancel(responseEvent.getRequest(), this);
+            requestFinished(session);
 
             // Check to see if we got an interrupted exception
             if (responseEvent.getError() instanceof InterruptedException) {
@@ -183,7 +188,8 @@ public class Snmp4JWalker extends SnmpWalker {
         
     }
     
-    private Snmp m_session;
+    private volatile Snmp4JSessionPool.PooledSession m_session;
+    private PDU m_pendingPdu;
     private final Target m_tgt;
     private final ResponseListener m_listener;
     private final Snmp4JAgentConfig m_agentConfig;
@@ -218,14 +224,37 @@ public class Snmp4JWalker extends SnmpWalker {
     protected void sendNextPdu(WalkerPduBuilder pduBuilder) throws IOException {
         Snmp4JPduBuilder snmp4JPduBuilder = (Snmp4JPduBuilder)pduBuilder;
         if (m_session == null) {
-            m_session = m_agentConfig.createSnmpSession();
-            m_session.listen();
+            m_session = Snmp4JSessionPool.getInstance().getSession(m_agentConfig);
         }
         
         if (LOG.isDebugEnabled()) {
             LOG.debug("Sending tracker pdu of size "+snmp4JPduBuilder.getPdu().size());
         }
-        m_session.send(snmp4JPduBuilder.getPdu(), m_tgt, null, m_listener);
+        final PDU pdu = snmp4JPduBuilder.getPdu();
+        synchronized (this) {
+            m_pendingPdu = pdu;
+        }
+        m_session.requestStarted();
+        try {
+            m_session.getSnmp().send(pdu, m_tgt, null, m_listener);
+        } catch (IOException e) {
+            requestFinished(m_session);
+            throw e;
+        }
+    }
+
+    /**
+     * Marks the outstanding request of this walker as finished on the shared
+     * session, unless that has already been done.
+     */
+    private void requestFinished(Snmp4JSessionPool.PooledSession session) {
+        synchronized (this) {
+            if (m_pendingPdu == null) {
+                return;
+            }
+            m_pendingPdu = null;
+        }
+        session.requestFinished();
     }
     
     protected int getVersion() {
@@ -234,8 +263,17 @@ public class Snmp4JWalker extends SnmpWalker {
 
         @Override
     protected void close() throws IOException {
-        if (m_session != null) {
-            m_session.close();
+        // the session is shared, so only the request of this walker is cancelled
+        final Snmp4JSessionPool.PooledSession session = m_session;
+        if (session != null) {
+            final PDU pending;
+            synchronized (this) {
+                pending = m_pendingPdu;
+            }
+            if (pending != null) {
+                session.getSnmp().cancel(pending, m_listener);
+                requestFinished(session);
+            }
             m_session = null;
         }
     }
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.opennms.netmgt.snmp.SnmpAgentConfig;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.SnmpValue;
+
+public class Snmp4JSessionPoolTest extends MockSnmpAgentTestCase {
+
+    private static final int REQUESTS = 10000;
+    private static final int THREADS = 8;
+
+	@Override
+	protected boolean usingMockStrategy() {
+		return false;
+	}
+
+	private final Snmp4JStrategy m_strategy = new Snmp4JStrategy();
+
+    @Test
+    public void testSocketCountStaysConstant() throws Exception {
+        final Snmp4JSessionPool pool = Snmp4JSessionPool.getInstance();
+        final SnmpAgentConfig agentConfig = getAgentConfig();
+        agentConfig.setVersion(SnmpAgentConfig.VERSION2C);
+        final SnmpObjId oid = SnmpObjId.get(".1.3.5.1.1.3.0");
+
+        assertNotNull(m_strategy.get(agentConfig, oid));
+        final int sessionsBefore = pool.getSessionCount();
+        assertTrue("at least one shared session should be open", sessionsBefore > 0);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int answered = 0;
+                        for (int j = 0; j < REQUESTS / THREADS; j++) {
+                            final SnmpValue value = m_strategy.get(agentConfig, oid);
+                            if (value != null && value.toInt() == 42) {
+                                answered++;
+                            }
+                        }
+                        return answered;
+                    }
+                }));
+            }
+
+            int answered = 0;
+            for (final Future<Integer> result : results) {
+                answered += result.get();
+            }
+            assertEquals("answered requests", REQUESTS, answered);
+        } finally {
+            executor.shutdown();
+        }
+
+        // concurrent requests may open the remaining pooled sessions, but no more
+        assertTrue("sessions opened: " + pool.getSessionCount(), pool.getSessionCount() <= Math.max(sessionsBefore, Integer.getInteger("org.opennms.snmp.snmp4j.sessions", 2)));
+        assertEquals("requests in flight", 0, pool.getInFlightRequests());
+    }
+
+    @Test
+    public void testV3SessionIsReused() throws Exception {
+        final Snmp4JSessionPool pool = new Snmp4JSessionPool(2);
+        try {
+            final SnmpAgentConfig config = getAgentConfig();
+            config.setVersion(SnmpAgentConfig.VERSION3);
+            config.setSecurityName("opennmsUser");
+            config.setAuthProtocol("MD5");
+            config.setAuthPassPhrase("0p3nNMSv3");
+
+            final SnmpAgentConfig other = getAgentConfig();
+            other.setVersion(SnmpAgentConfig.VERSION3);
+            other.setSecurityName("otherUser");
+
+            final Snmp4JSessionPool.PooledSession session = pool.getSession(new Snmp4JAgentConfig(config));
+            assertTrue(session == pool.getSession(new Snmp4JAgentConfig(config)));
+            assertTrue(session != pool.getSession(new Snmp4JAgentConfig(other)));
+            assertEquals(2, pool.getSessionCount());
+        } finally {
+            pool.close();
+        }
+    }
+}
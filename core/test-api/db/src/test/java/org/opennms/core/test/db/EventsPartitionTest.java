@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.test.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opennms.core.db.install.InstallerDb;
+import org.opennms.core.schema.Migration;
+import org.opennms.core.schema.Migrator;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
+import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+
+/**
+ * Runs the "partitioned-events" change sets against a database that already
+ * has events, then checks the routing of new events, the migration of the
+ * existing ones and the maintenance that drops an expired partition.
+ */
+@RunWith(OpenNMSJUnit4ClassRunner.class)
+@ContextConfiguration(locations={
+        "classpath:/migratorTest.xml"
+})
+@JUnitTemporaryDatabase(createSchema=false)
+public class EventsPartitionTest {
+    private static final String CONTEXTS_PROPERTY = "opennms.contexts";
+
+    @Autowired
+    DataSource m_dataSource;
+
+    private Migration m_migration;
+    private Migrator m_migrator;
+    private JdbcTemplate m_jdbcTemplate;
+    private String m_contexts;
+
+    @Before
+    public void setUp() throws Exception {
+        MockLogAppender.setupLogging();
+
+        m_migration = new Migration();
+        m_migration.setAdminUser(System.getProperty(TemporaryDatabase.ADMIN_USER_PROPERTY, TemporaryDatabase.DEFAULT_ADMIN_USER));
+        m_migration.setAdminPassword(System.getProperty(TemporaryDatabase.ADMIN_PASSWORD_PROPERTY, TemporaryDatabase.DEFAULT_ADMIN_PASSWORD));
+        m_migration.setDatabaseUser(System.getProperty(TemporaryDatabase.ADMIN_USER_PROPERTY, TemporaryDatabase.DEFAULT_ADMIN_USER));
+        m_migration.setDatabasePassword(System.getProperty(TemporaryDatabase.ADMIN_PASSWORD_PROPERTY, TemporaryDatabase.DEFAULT_ADMIN_PASSWORD));
+        m_migration.setChangeLog("changelog.xml");
+
+        m_migrator = new Migrator();
+        m_migrator.setDataSource(m_dataSource);
+        m_migrator.setAdminDataSource(m_dataSource);
+        m_migrator.setValidateDatabaseVersion(false);
+        m_migrator.setCreateUser(false);
+        m_migrator.setCreateDatabase(false);
+
+        m_jdbcTemplate = new JdbcTemplate(m_dataSource);
+        m_contexts = System.getProperty(CONTEXTS_PROPERTY);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (m_contexts == null) {
+            System.clearProperty(CONTEXTS_PROPERTY);
+        } else {
+            System.setProperty(CONTEXTS_PROPERTY, m_contexts);
+        }
+    }
+
+    @Test
+    public void testPartitionEvents() throws Exception {
+        System.setProperty(CONTEXTS_PROPERTY, "production");
+        m_migrator.prepareDatabase(m_migration);
+        m_migrator.migrate(m_migration);
+
+        // events from before the conversion: one in the partitioned history,
+        // two past the retention, of which one is kept for an alarm
+        insertEvent(1, "10 days");
+        insertEvent(2, "60 days");
+        insertEvent(3, "60 days");
+        insertAlarm(1, 3);
+
+        System.setProperty(CONTEXTS_PROPERTY, "production,partitioned-events");
+        m_migrator.migrate(m_migration);
+
+        final InstallerDb installerDb = new InstallerDb();
+        installerDb.setOutputStream(new PrintStream(new ByteArrayOutputStream()));
+        installerDb.setDataSource(m_dataSource);
+        try {
+            installerDb.migrateEventsToPartitions();
+        } finally {
+            installerDb.closeConnection();
+        }
+
+        final String partition = getTableOfEvent(1);
+        assertFalse("event 1 should have moved to a partition", "events".equals(partition));
+        assertEquals("the expired event should be gone", 0, m_jdbcTemplate.queryForInt("SELECT count(*) FROM events WHERE eventid = 2"));
+        assertEquals("events", getTableOfEvent(3));
+
+        // new events are routed to the partition that covers them
+        insertEvent(4, "0 days");
+        assertFalse("event 4 should be in a partition", "events".equals(getTableOfEvent(4)));
+        assertEquals(3, m_jdbcTemplate.queryForInt("SELECT count(*) FROM events"));
+
+        // expire the partition of event 1 while an alarm still refers to it
+        insertAlarm(2, 1);
+        m_jdbcTemplate.update("UPDATE events_partitions SET starttime = starttime - interval '1 year', endtime = endtime - interval '1 year' WHERE tablename = ?", partition);
+        assertEquals(1, m_jdbcTemplate.queryForInt("SELECT events_partition_maintain(7, 4, interval '6 weeks')"));
+
+        assertEquals(0, m_jdbcTemplate.queryForInt("SELECT count(*) FROM pg_class WHERE relname = ?", partition));
+        assertEquals("events", getTableOfEvent(1));
+        assertEquals(2, m_jdbcTemplate.queryForInt("SELECT count(*) FROM alarms"));
+
+        // deleting an event still deletes its alarms, from a partition and
+        // from the parent
+        insertAlarm(3, 4);
+        m_jdbcTemplate.update("DELETE FROM events WHERE eventid IN (1, 4)");
+        assertEquals(0, m_jdbcTemplate.queryForInt("SELECT count(*) FROM alarms WHERE alarmid IN (2, 3)"));
+        assertEquals(1, m_jdbcTemplate.queryForInt("SELECT count(*) FROM alarms WHERE alarmid = 1"));
+    }
+
+    private void insertEvent(final int eventId, final String age) {
+        m_jdbcTemplate.update("INSERT INTO events (eventid, eventuei, eventtime, eventsource, eventdpname, eventcreatetime, eventseverity, eventlog, eventdisplay) "
+                + "VALUES (?, 'uei.opennms.org/test', now() - CAST(? AS interval), 'test', 'localhost', now(), 1, 'Y', 'Y')", eventId, age);
+    }
+
+    private void insertAlarm(final int alarmId, final int eventId) {
+        m_jdbcTemplate.update("INSERT INTO alarms (alarmid, eventuei, dpname, counter, severity, lasteventid) VALUES (?, 'uei.opennms.org/test', 'localhost', 1, 1, ?)", alarmId, eventId);
+    }
+
+    private String getTableOfEvent(final int eventId) {
+        return m_jdbcTemplate.queryForObject("SELECT c.relname FROM events e JOIN pg_class c ON c.oid = e.tableoid WHERE e.eventid = ?", String.class, eventId);
+    }
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * A {@link ServiceMonitor} that is able to perform its poll without holding
+ * on to the calling thread for the duration of the network conversation.
+ * </p>
+ *
+ * <p>
+ * The poller checks for this interface when a service is due and, when it is
+ * implemented, starts the poll with {@link #pollAsync(MonitoredService, Map)}
+ * and returns the scheduler thread to the pool immediately. The result is
+ * handed back to the scheduler once the returned {@link PollFuture} is
+ * complete. Implementations must still provide a blocking
+ * {@link ServiceMonitor#poll(MonitoredService, Map)}, normally by waiting on
+ * the future, for callers that need a synchronous answer.
+ * </p>
+ *
+ * <p>
+ * <STRONG>NOTE: </STRONG> Listeners registered on the returned future are
+ * invoked from the I/O threads of the monitor, they must not block.
+ * </p>
+ */
+public interface AsyncServiceMonitor extends ServiceMonitor {
+
+    /**
+     * Starts a poll of the given service and returns without waiting for it
+     * to complete.
+     *
+     * @param svc the service to poll
+     * @param parameters
+     *            The package parameters (timeout, retry, etc...) to be used for
+     *            this poll.
+     * @return a future that is completed with the availability of the
+     *         service. The future is never completed exceptionally, failures
+     *         are reported as an unavailable or down status.
+     */
+    public PollFuture pollAsync(MonitoredService svc, Map<String, Object> parameters);
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.opennms.core.utils.LogUtils;
+import org.opennms.netmgt.model.PollStatus;
+
+/**
+ * <p>
+ * Basic {@link PollFuture} implementation that is completed by calling
+ * {@link #setStatus(PollStatus)}. Only the first status is kept; any later
+ * calls are ignored so that racing timeout and I/O callbacks can both try to
+ * complete the poll.
+ * </p>
+ *
+ * <p>
+ * Polls can not be cancelled once started, they always run until the
+ * monitor's own timeout expires.
+ * </p>
+ */
+public class DefaultPollFuture implements PollFuture {
+
+    private final CountDownLatch m_done = new CountDownLatch(1);
+    private final List<PollFutureListener> m_listeners = new ArrayList<PollFutureListener>(1);
+    private PollStatus m_status;
+
+    /**
+     * <p>Completes the poll with the given status and notifies the listeners.</p>
+     *
+     * @param status the result of the poll
+     * @return true if this call completed the future, false if it had already
+     *         been completed
+     */
+    public boolean setStatus(PollStatus status) {
+        List<PollFutureListener> listeners;
+        synchronized (this) {
+            if (m_status != null) {
+                return false;
+            }
+            m_status = status;
+            listeners = new ArrayList<PollFutureListener>(m_listeners);
+            m_listeners.clear();
+        }
+        m_done.countDown();
+        for (PollFutureListener listener : listeners) {
+            notifyListener(listener);
+        }
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addListener(PollFutureListener listener) {
+        synchronized (this) {
+            if (m_status == null) {
+                m_listeners.add(listener);
+                return;
+            }
+        }
+        notifyListener(listener);
+    }
+
+    private void notifyListener(PollFutureListener listener) {
+        try {
+            listener.pollComplete(this);
+        } catch (Throwable t) {
+            LogUtils.warnf(this, t, "Poll completion listener %s threw an exception", listener);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized boolean isDone() {
+        return m_status != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PollStatus get() throws InterruptedException {
+        m_done.await();
+        return getStatus();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PollStatus get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (!m_done.await(timeout, unit)) {
+            throw new TimeoutException("Poll did not complete within " + unit.toMillis(timeout) + "ms");
+        }
+        return getStatus();
+    }
+
+    private synchronized PollStatus getStatus() {
+        return m_status;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "DefaultPollFuture[" + (isDone() ? getStatus() : "pending") + "]";
+    }
+}
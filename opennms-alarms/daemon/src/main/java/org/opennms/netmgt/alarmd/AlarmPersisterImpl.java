@@ -28,65 +28,287 @@
 
 package org.opennms.netmgt.alarmd;
 
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.ThreadCategory;
+import org.opennms.netmgt.EventConstants;
+import org.opennms.netmgt.alarmd.api.NorthboundAlarm;
+import org.opennms.netmgt.alarmd.api.Northbounder;
 import org.opennms.netmgt.dao.AlarmDao;
+import org.opennms.netmgt.dao.DistPollerDao;
 import org.opennms.netmgt.dao.EventDao;
+import org.opennms.netmgt.dao.NodeDao;
+import org.opennms.netmgt.dao.ServiceTypeDao;
 import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.OnmsEvent;
 import org.opennms.netmgt.model.OnmsSeverity;
+import org.opennms.netmgt.model.events.Constants;
+import org.opennms.netmgt.model.events.Parameter;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xml.event.UpdateField;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 
 /**
  * Singleton to persist OnmsAlarms.
  *
+ * The IDs of existing alarms are kept in an index by reduction key, primed
+ * from the database at startup, and the alarm fields are taken from the
+ * broadcast event rather than from the event row Eventd just wrote.
+ *
+ * When a reduction window is set, events that reduce to an alarm already
+ * in the index are queued and all reductions of the same alarm within the
+ * window are written with a single alarm update. The alarms reduced that
+ * way are passed to the northbound interfaces when they are written.
+ * Queued reductions whose alarm disappeared are added as new alarms by the
+ * flusher, so while a window is set every alarm write runs in its own
+ * transaction under a common lock, and two threads can not both miss a
+ * reduction key and create duplicate alarms.
+ *
  * @author <a href="mailto:david@opennms.org">David Hustace</a>
  * @version $Id: $
  */
-public class AlarmPersisterImpl implements AlarmPersister {
+public class AlarmPersisterImpl implements AlarmPersister, InitializingBean, DisposableBean {
+
+    private static final int UEI_FIELD_SIZE = 256;
+    private static final int DPNAME_FIELD_SIZE = 12;
+    private static final int OPERINSTRUCT_FIELD_SIZE = 1024;
+    private static final int MOUSEOVERTEXT_FIELD_SIZE = 64;
 
     private AlarmDao m_alarmDao;
     private EventDao m_eventDao;
+    private NodeDao m_nodeDao;
+    private DistPollerDao m_distPollerDao;
+    private ServiceTypeDao m_serviceTypeDao;
+    private TransactionTemplate m_transactionTemplate;
+    private List<Northbounder> m_northboundInterfaces;
+    private long m_reductionWindow = 0;
+
+    /**
+     * Reduction key to ID of the alarms known to exist.
+     */
+    private final ConcurrentMap<String, Integer> m_alarmIdsByReductionKey = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Events waiting to be reduced, by alarm ID, guarded by m_pendingLock.
+     */
+    private Map<Integer, List<Event>> m_pendingReductions = new LinkedHashMap<Integer, List<Event>>();
+    private final Object m_pendingLock = new Object();
+
+    /**
+     * Serializes the alarm writes of the event listener and the flusher,
+     * held until the write is committed.
+     */
+    private final Object m_writeLock = new Object();
+
+    private ScheduledExecutorService m_flusher;
+
+    /**
+     * Primes the reduction key index and starts writing queued reductions
+     * if a reduction window is set.
+     *
+     * @throws java.lang.Exception if any.
+     */
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.state(m_alarmDao != null, "alarmDao property must be set");
+        Assert.state(m_eventDao != null, "eventDao property must be set");
+        Assert.state(m_reductionWindow <= 0 || m_transactionTemplate != null, "transactionManager property must be set when a reduction window is set");
+
+        try {
+            m_alarmIdsByReductionKey.putAll(m_alarmDao.getAlarmIdsByReductionKey());
+            log().debug("afterPropertiesSet: indexed " + m_alarmIdsByReductionKey.size() + " alarms by reduction key");
+        } catch (final DataAccessException e) {
+            log().warn("afterPropertiesSet: unable to load alarm reduction keys, the index will be filled as alarms are reduced", e);
+        }
+
+        if (m_reductionWindow > 0) {
+            m_flusher = Executors.newSingleThreadScheduledExecutor(new LogPreservingThreadFactory(getClass().getSimpleName(), 1, true));
+            m_flusher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, m_reductionWindow, m_reductionWindow, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the queued reductions and stops the flusher.
+     *
+     * @throws java.lang.Exception if any.
+     */
+    @Override
+    public void destroy() throws Exception {
+        if (m_flusher != null) {
+            m_flusher.shutdown();
+            m_flusher.awaitTermination(m_reductionWindow * 2, TimeUnit.MILLISECONDS);
+            m_flusher = null;
+            flush();
+        }
+    }
 
     /** {@inheritDoc} 
      * @return */
     @Override
-    public OnmsAlarm persist(Event event) {
+    public OnmsAlarm persist(final Event event) {
         if (!checkEventSanityAndDoWeProcess(event)) {
             return null;
         }
         log().debug("process: " + event.getUei() + " nodeid: " + event.getNodeid() + " ipaddr: " + event.getInterface() + " serviceid: " + event.getService());
 
+        if (m_reductionWindow > 0 && event.hasDbid() && event.getDbid() > 0) {
+            final Integer alarmId = m_alarmIdsByReductionKey.get(event.getAlarmData().getReductionKey());
+            if (alarmId != null) {
+                synchronized (m_pendingLock) {
+                    List<Event> events = m_pendingReductions.get(alarmId);
+                    if (events == null) {
+                        events = new ArrayList<Event>();
+                        m_pendingReductions.put(alarmId, events);
+                    }
+                    events.add(event);
+                }
+                return null;
+            }
+        }
+
+        if (m_reductionWindow > 0) {
+            synchronized (m_writeLock) {
+                return m_transactionTemplate.execute(new TransactionCallback<OnmsAlarm>() {
+                    @Override
+                    public OnmsAlarm doInTransaction(final TransactionStatus status) {
+                        return addOrReduceEventAsAlarm(event);
+                    }
+                });
+            }
+        }
+
         return addOrReduceEventAsAlarm(event);
     }
 
+    /**
+     * Writes all queued reductions, one transaction per alarm.
+     */
+    public void flush() {
+        final Map<Integer, List<Event>> pending;
+        synchronized (m_pendingLock) {
+            if (m_pendingReductions.isEmpty()) {
+                return;
+            }
+            pending = m_pendingReductions;
+            m_pendingReductions = new LinkedHashMap<Integer, List<Event>>();
+        }
+
+        for (final Map.Entry<Integer, List<Event>> entry : pending.entrySet()) {
+            try {
+                final OnmsAlarm alarm;
+                synchronized (m_writeLock) {
+                    alarm = m_transactionTemplate.execute(new TransactionCallback<OnmsAlarm>() {
+                        @Override
+                        public OnmsAlarm doInTransaction(final TransactionStatus status) {
+                            return reduceEvents(entry.getKey(), entry.getValue());
+                        }
+                    });
+                }
+                sendToNorthbounders(alarm);
+            } catch (final RuntimeException e) {
+                log().error("flush: unable to reduce " + entry.getValue().size() + " events to alarm " + entry.getKey(), e);
+            }
+        }
+    }
+
+    private OnmsAlarm reduceEvents(final Integer alarmId, final List<Event> events) {
+        final String reductionKey = events.get(0).getAlarmData().getReductionKey();
+        final OnmsAlarm alarm = m_alarmDao.get(alarmId);
+
+        if (alarm == null || !reductionKey.equals(alarm.getReductionKey())) {
+            // the alarm was deleted or its reduction key changed since it was indexed
+            m_alarmIdsByReductionKey.remove(reductionKey, alarmId);
+            OnmsAlarm last = null;
+            for (final Event event : events) {
+                last = addOrReduceEventAsAlarm(event);
+            }
+            return last;
+        }
+
+        log().debug("reduceEvents: reducing " + events.size() + " events to alarm " + alarmId + " with reductionKey:" + reductionKey);
+        for (final Event event : events) {
+            final OnmsEvent e = m_eventDao.load(event.getDbid());
+            reduceEvent(e, alarm, event);
+            if (event.getAlarmData().isAutoClean()) {
+                // the alarm must point at the new event before the old ones are removed
+                m_alarmDao.update(alarm);
+                m_alarmDao.flush();
+                m_eventDao.updateAlarmForEvent(event.getDbid(), alarm);
+                m_eventDao.deletePreviousEventsForAlarm(alarm.getId(), e);
+            }
+        }
+        m_alarmDao.update(alarm);
+        m_alarmDao.flush();
+
+        for (final Event event : events) {
+            if (!event.getAlarmData().isAutoClean()) {
+                m_eventDao.updateAlarmForEvent(event.getDbid(), alarm);
+            }
+        }
+        return alarm;
+    }
+
+    private void sendToNorthbounders(final OnmsAlarm alarm) {
+        if (alarm == null || m_northboundInterfaces == null) {
+            return;
+        }
+        final NorthboundAlarm a = new NorthboundAlarm(alarm);
+        for (final Northbounder nbi : m_northboundInterfaces) {
+            nbi.onAlarm(a);
+        }
+    }
+
     private OnmsAlarm addOrReduceEventAsAlarm(Event event) {
         //TODO: Understand why we use Assert
         Assert.notNull(event, "Incoming event was null, aborting"); 
         Assert.isTrue(event.getDbid() > 0, "Incoming event has an illegal dbid (" + event.getDbid() + "), aborting");
         
-        
-        //for some reason when we get here the event from the DB doesn't have the LogMsg (in my tests anyway)
-        OnmsEvent e = m_eventDao.get(event.getDbid());
-        Assert.notNull(e, "Event was deleted before we could retrieve it and create an alarm.");
+        // The event row is only referenced, the alarm fields come from the broadcast event
+        OnmsEvent e = m_eventDao.load(event.getDbid());
     
         String reductionKey = event.getAlarmData().getReductionKey();
         log().debug("addOrReduceEventAsAlarm: looking for existing reduction key: "+reductionKey);
-        OnmsAlarm alarm = m_alarmDao.findByReductionKey(reductionKey);
+        OnmsAlarm alarm = findAlarm(reductionKey);
     
         if (alarm == null) {
             log().debug("addOrReduceEventAsAlarm: reductionKey:"+reductionKey+" not found, instantiating new alarm");
             alarm = createNewAlarm(e, event);
             
-            //FIXME: this should be a cascaded save
             m_alarmDao.save(alarm);
-            m_eventDao.saveOrUpdate(e);
+            m_alarmDao.flush();
+            m_eventDao.updateAlarmForEvent(event.getDbid(), alarm);
+            m_alarmIdsByReductionKey.put(reductionKey, alarm.getId());
         } else {
             log().debug("addOrReduceEventAsAlarm: reductionKey:"+reductionKey+" found, reducing event to existing alarm: "+alarm.getIpAddr());
             reduceEvent(e, alarm, event);
             m_alarmDao.update(alarm);
-            m_eventDao.update(e);
+            m_alarmDao.flush();
+            m_eventDao.updateAlarmForEvent(event.getDbid(), alarm);
     
             if (event.getAlarmData().isAutoClean()) {
                 m_eventDao.deletePreviousEventsForAlarm(alarm.getId(), e);
@@ -96,18 +318,36 @@ public class AlarmPersisterImpl implements AlarmPersister {
         return alarm;
     }
 
-    private static void reduceEvent(OnmsEvent e, OnmsAlarm alarm, Event event) {
+    private OnmsAlarm findAlarm(final String reductionKey) {
+        final Integer alarmId = m_alarmIdsByReductionKey.get(reductionKey);
+        if (alarmId != null) {
+            final OnmsAlarm alarm = m_alarmDao.get(alarmId);
+            if (alarm != null && reductionKey.equals(alarm.getReductionKey())) {
+                return alarm;
+            }
+            // stale entry, the alarm was deleted or its reduction key changed
+            m_alarmIdsByReductionKey.remove(reductionKey, alarmId);
+        }
+
+        final OnmsAlarm alarm = m_alarmDao.findByReductionKey(reductionKey);
+        if (alarm != null) {
+            m_alarmIdsByReductionKey.put(reductionKey, alarm.getId());
+        }
+        return alarm;
+    }
+
+    private void reduceEvent(OnmsEvent e, OnmsAlarm alarm, Event event) {
         
         //Always set these
         alarm.setLastEvent(e);
-        alarm.setLastEventTime(e.getEventTime());
+        alarm.setLastEventTime(getEventTime(event));
         alarm.setCounter(alarm.getCounter() + 1);
         
         if (!event.getAlarmData().hasUpdateFields()) {
             
             //We always set these even if there are not update fields specified
-            alarm.setLogMsg(e.getEventLogMsg());
-            alarm.setEventParms(e.getEventParms());
+            alarm.setLogMsg(getLogMsg(event));
+            alarm.setEventParms(Parameter.format(event));
         } else {
             
             for (UpdateField field : event.getAlarmData().getUpdateFieldList()) {
@@ -116,13 +356,13 @@ public class AlarmPersisterImpl implements AlarmPersister {
                 if (field.getFieldName().equalsIgnoreCase("LogMsg") && field.isUpdateOnReduction() == false) {
                     continue;
                 } else {
-                    alarm.setLogMsg(e.getEventLogMsg());
+                    alarm.setLogMsg(getLogMsg(event));
                 }
                 
                 if (field.getFieldName().equalsIgnoreCase("Parms") && field.isUpdateOnReduction() == false) {
                     continue;
                 } else {
-                    alarm.setEventParms(e.getEventParms());
+                    alarm.setEventParms(Parameter.format(event));
                 }
                 
 
@@ -130,18 +370,18 @@ public class AlarmPersisterImpl implements AlarmPersister {
                 if (field.isUpdateOnReduction()) {
                     
                     if (field.getFieldName().toLowerCase().startsWith("distpoller")) {
-                        alarm.setDistPoller(e.getDistPoller());
+                        alarm.setDistPoller(m_distPollerDao.load(getDistPollerName(event)));
                     } else if (field.getFieldName().toLowerCase().startsWith("ipaddr")) {
-                        alarm.setIpAddr(e.getIpAddr());
+                        alarm.setIpAddr(getIpAddr(event));
                     } else if (field.getFieldName().toLowerCase().startsWith("mouseover")) {
-                        alarm.setMouseOverText(e.getEventMouseOverText());
+                        alarm.setMouseOverText(Constants.format(event.getMouseovertext(), MOUSEOVERTEXT_FIELD_SIZE));
                     } else if (field.getFieldName().toLowerCase().startsWith("operinstruct")) {
-                        alarm.setOperInstruct(e.getEventOperInstruct());
+                        alarm.setOperInstruct(Constants.format(event.getOperinstruct(), OPERINSTRUCT_FIELD_SIZE));
                     } else if (field.getFieldName().equalsIgnoreCase("severity")) {
-                        alarm.setSeverity(OnmsSeverity.valueOf(e.getSeverityLabel()));
+                        alarm.setSeverity(OnmsSeverity.get(event.getSeverity()));
                     } else if (field.getFieldName().toLowerCase().contains("descr")) {
-                        alarm.setDescription(e.getEventDescr());
-                        alarm.setSeverity(OnmsSeverity.valueOf(e.getSeverityLabel()));
+                        alarm.setDescription(Constants.format(event.getDescr(), 0));
+                        alarm.setSeverity(OnmsSeverity.get(event.getSeverity()));
                     } else {
                         log().warn("reduceEvent: The specified field: "+field.getFieldName()+", is not supported.");
                     }
@@ -162,39 +402,64 @@ public class AlarmPersisterImpl implements AlarmPersister {
             }
             
         }
-        
-        e.setAlarm(alarm);
     }
 
-    private static OnmsAlarm createNewAlarm(OnmsEvent e, Event event) {
+    private OnmsAlarm createNewAlarm(OnmsEvent e, Event event) {
+        final Date eventTime = getEventTime(event);
         OnmsAlarm alarm;
         alarm = new OnmsAlarm();
         alarm.setAlarmType(event.getAlarmData().getAlarmType());
         alarm.setClearKey(event.getAlarmData().getClearKey());
         alarm.setCounter(1);
-        alarm.setDescription(e.getEventDescr());
-        alarm.setDistPoller(e.getDistPoller());
-        alarm.setEventParms(e.getEventParms());
-        alarm.setFirstEventTime(e.getEventTime());
-        alarm.setIfIndex(e.getIfIndex());
-        alarm.setIpAddr(e.getIpAddr());
-        alarm.setLastEventTime(e.getEventTime());
+        alarm.setDescription(Constants.format(event.getDescr(), 0));
+        alarm.setDistPoller(m_distPollerDao.load(getDistPollerName(event)));
+        alarm.setEventParms(Parameter.format(event));
+        alarm.setFirstEventTime(eventTime);
+        alarm.setIfIndex(event.hasIfIndex() ? event.getIfIndex() : null);
+        alarm.setIpAddr(getIpAddr(event));
+        alarm.setLastEventTime(eventTime);
         alarm.setLastEvent(e);
-        alarm.setLogMsg(e.getEventLogMsg());
-        alarm.setMouseOverText(e.getEventMouseOverText());
-        alarm.setNode(e.getNode());
-        alarm.setOperInstruct(e.getEventOperInstruct());
+        alarm.setLogMsg(getLogMsg(event));
+        alarm.setMouseOverText(Constants.format(event.getMouseovertext(), MOUSEOVERTEXT_FIELD_SIZE));
+        alarm.setNode(event.hasNodeid() && event.getNodeid() > 0 ? m_nodeDao.load(event.getNodeid().intValue()) : null);
+        alarm.setOperInstruct(Constants.format(event.getOperinstruct(), OPERINSTRUCT_FIELD_SIZE));
         alarm.setReductionKey(event.getAlarmData().getReductionKey());
-        alarm.setServiceType(e.getServiceType());
-        alarm.setSeverity(OnmsSeverity.get(e.getEventSeverity())); //TODO: what to do?
-        alarm.setSuppressedUntil(e.getEventTime()); //TODO: fix UI to not require this be set
-        alarm.setSuppressedTime(e.getEventTime()); //TODO: Fix UI to not require this be set
+        alarm.setServiceType(event.getService() == null ? null : m_serviceTypeDao.findByName(event.getService()));
+        alarm.setSeverity(OnmsSeverity.get(event.getSeverity())); //TODO: what to do?
+        alarm.setSuppressedUntil(eventTime); //TODO: fix UI to not require this be set
+        alarm.setSuppressedTime(eventTime); //TODO: Fix UI to not require this be set
         //alarm.setTTicketId(e.getEventTTicket());
         //alarm.setTTicketState(TroubleTicketState.CANCEL_FAILED);  //FIXME
-        alarm.setUei(e.getEventUei());
-        e.setAlarm(alarm);
+        alarm.setUei(Constants.format(event.getUei(), UEI_FIELD_SIZE));
         return alarm;
     }
+
+    private static Date getEventTime(final Event event) {
+        try {
+            return EventConstants.parseToDate(event.getTime());
+        } catch (final ParseException e) {
+            log().warn("getEventTime: unable to parse event time " + event.getTime() + ", using the current time");
+        } catch (final NullPointerException e) {
+            log().warn("getEventTime: event has no time, using the current time");
+        }
+        return new Date();
+    }
+
+    private static String getLogMsg(final Event event) {
+        return event.getLogmsg() == null ? null : Constants.format(event.getLogmsg().getContent(), 0);
+    }
+
+    /**
+     * JdbcEventWriter stores the header's dpName in the event when it
+     * prefers it over the event's, so this matches the event row.
+     */
+    private static String getDistPollerName(final Event event) {
+        return event.getDistPoller() == null ? "localhost" : Constants.format(event.getDistPoller(), DPNAME_FIELD_SIZE);
+    }
+
+    private static java.net.InetAddress getIpAddr(final Event event) {
+        return event.getInterface() == null ? null : InetAddressUtils.addr(event.getInterface());
+    }
     
     private static boolean checkEventSanityAndDoWeProcess(final Event event) {
         Assert.notNull(event, "event argument must not be null");
@@ -254,4 +519,51 @@ public class AlarmPersisterImpl implements AlarmPersister {
         return m_eventDao;
     }
 
+    public void setNodeDao(NodeDao nodeDao) {
+        m_nodeDao = nodeDao;
+    }
+
+    public void setDistPollerDao(DistPollerDao distPollerDao) {
+        m_distPollerDao = distPollerDao;
+    }
+
+    public void setServiceTypeDao(ServiceTypeDao serviceTypeDao) {
+        m_serviceTypeDao = serviceTypeDao;
+    }
+
+    /**
+     * <p>setTransactionManager</p>
+     *
+     * @param transactionManager used to write queued reductions
+     */
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        m_transactionTemplate = new TransactionTemplate(transactionManager);
+        // writes must be committed before m_writeLock is released, even
+        // when persist() is called within a transaction
+        m_transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * <p>setNorthboundInterfaces</p>
+     *
+     * @param northboundInterfaces the interfaces receiving the alarms of queued reductions
+     */
+    public void setNorthboundInterfaces(List<Northbounder> northboundInterfaces) {
+        m_northboundInterfaces = northboundInterfaces;
+    }
+
+    /**
+     * <p>setReductionWindow</p>
+     *
+     * @param reductionWindow the time in milliseconds reductions of the same
+     * alarm are collected before they are written, 0 to write them right away
+     */
+    public void setReductionWindow(long reductionWindow) {
+        m_reductionWindow = reductionWindow;
+    }
+
+    public long getReductionWindow() {
+        return m_reductionWindow;
+    }
+
 }
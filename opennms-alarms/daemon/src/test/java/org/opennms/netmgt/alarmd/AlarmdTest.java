@@ -29,6 +29,7 @@
 package org.opennms.netmgt.alarmd;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -52,11 +53,16 @@ import org.opennms.core.utils.BeanUtils;
 import org.opennms.netmgt.alarmd.api.NorthboundAlarm;
 import org.opennms.netmgt.alarmd.api.Northbounder;
 import org.opennms.netmgt.alarmd.api.NorthbounderException;
+import org.opennms.netmgt.dao.AlarmDao;
+import org.opennms.netmgt.dao.DistPollerDao;
+import org.opennms.netmgt.dao.EventDao;
 import org.opennms.netmgt.dao.NodeDao;
+import org.opennms.netmgt.dao.ServiceTypeDao;
 import org.opennms.netmgt.eventd.mock.MockEventIpcManager;
 import org.opennms.netmgt.mock.MockEventUtil;
 import org.opennms.netmgt.mock.MockNetwork;
 import org.opennms.netmgt.mock.MockNode;
+import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.model.OnmsSeverity;
 import org.opennms.netmgt.model.events.EventBuilder;
@@ -73,6 +79,10 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 
@@ -131,6 +141,21 @@ public class AlarmdTest implements TemporaryDatabaseAware<MockDatabase>, Initial
     @Autowired
     private NodeDao m_nodeDao;
 
+    @Autowired
+    private AlarmDao m_alarmDao;
+
+    @Autowired
+    private EventDao m_eventDao;
+
+    @Autowired
+    private DistPollerDao m_distPollerDao;
+
+    @Autowired
+    private ServiceTypeDao m_serviceTypeDao;
+
+    @Autowired
+    private PlatformTransactionManager m_transactionManager;
+
     @Autowired
     private JdbcTemplate m_jdbcTemplate;
 
@@ -212,6 +237,118 @@ public class AlarmdTest implements TemporaryDatabaseAware<MockDatabase>, Initial
     }
     
 
+    @Test
+    @JUnitTemporaryDatabase(tempDbClass=MockDatabase.class)
+    public void testReductionWindow() throws Exception {
+        final MockNode node = m_mockNetwork.getNode(1);
+
+        sendNodeDownEvent("%nodeid%", node);
+        Thread.sleep(1000);
+        assertEquals(1, m_jdbcTemplate.queryForInt("select count(*) from alarms"));
+
+        // the existing alarm is picked up from the reduction key index at startup
+        final MockNorthbounder northbounder = new MockNorthbounder();
+        final AlarmPersisterImpl persister = new AlarmPersisterImpl();
+        persister.setAlarmDao(m_alarmDao);
+        persister.setEventDao(m_eventDao);
+        persister.setNodeDao(m_nodeDao);
+        persister.setDistPollerDao(m_distPollerDao);
+        persister.setServiceTypeDao(m_serviceTypeDao);
+        persister.setTransactionManager(m_transactionManager);
+        persister.setNorthboundInterfaces(Collections.<Northbounder>singletonList(northbounder));
+        persister.setReductionWindow(60000);
+        persister.afterPropertiesSet();
+
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(m_transactionManager);
+        try {
+            for (int i = 0; i < 4; i++) {
+                final EventBuilder builder = MockEventUtil.createNodeDownEventBuilder("Test", node);
+                final AlarmData data = new AlarmData();
+                data.setAlarmType(1);
+                data.setReductionKey("%nodeid%");
+                builder.setAlarmData(data);
+                builder.setLogDest("logndisplay");
+                builder.setLogMessage("testing " + i);
+
+                final Event event = builder.getEvent();
+                m_database.writeEvent(event);
+
+                final OnmsAlarm alarm = transactionTemplate.execute(new TransactionCallback<OnmsAlarm>() {
+                    @Override
+                    public OnmsAlarm doInTransaction(final TransactionStatus status) {
+                        return persister.persist(event);
+                    }
+                });
+                assertNull("the reduction should be queued", alarm);
+            }
+
+            // nothing is written until the window is flushed
+            assertEquals(1, m_jdbcTemplate.queryForInt("select counter from alarms"));
+            assertEquals(0, northbounder.getAlarms().size());
+
+            persister.flush();
+
+            assertEquals(1, m_jdbcTemplate.queryForInt("select count(*) from alarms"));
+            assertEquals(5, m_jdbcTemplate.queryForInt("select counter from alarms"));
+            assertEquals("testing 3", m_jdbcTemplate.queryForObject("select logmsg from alarms", String.class));
+            assertEquals(5, m_jdbcTemplate.queryForInt("select count(*) from events where alarmid = (select alarmid from alarms)"));
+            assertEquals(1, northbounder.getAlarms().size());
+        } finally {
+            persister.destroy();
+        }
+    }
+
+    @Test
+    @JUnitTemporaryDatabase(tempDbClass=MockDatabase.class)
+    public void testReductionWindowDeletedAlarm() throws Exception {
+        final MockNode node = m_mockNetwork.getNode(1);
+
+        sendNodeDownEvent("%nodeid%", node);
+        Thread.sleep(1000);
+        assertEquals(1, m_jdbcTemplate.queryForInt("select count(*) from alarms"));
+
+        final AlarmPersisterImpl persister = new AlarmPersisterImpl();
+        persister.setAlarmDao(m_alarmDao);
+        persister.setEventDao(m_eventDao);
+        persister.setNodeDao(m_nodeDao);
+        persister.setDistPollerDao(m_distPollerDao);
+        persister.setServiceTypeDao(m_serviceTypeDao);
+        persister.setTransactionManager(m_transactionManager);
+        persister.setReductionWindow(60000);
+        persister.afterPropertiesSet();
+
+        try {
+            assertNull("the reduction should be queued", persister.persist(writeNodeDownEvent(node, "%nodeid%")));
+
+            // the queued reduction has to recreate the alarm
+            m_jdbcTemplate.update("delete from alarms");
+            persister.flush();
+            assertEquals(1, m_jdbcTemplate.queryForInt("select count(*) from alarms"));
+
+            // and later events are reduced to the recreated alarm
+            assertNull("the reduction should be queued", persister.persist(writeNodeDownEvent(node, "%nodeid%")));
+            persister.flush();
+            assertEquals(1, m_jdbcTemplate.queryForInt("select count(*) from alarms"));
+            assertEquals(2, m_jdbcTemplate.queryForInt("select counter from alarms"));
+        } finally {
+            persister.destroy();
+        }
+    }
+
+    private Event writeNodeDownEvent(final MockNode node, final String reductionKey) {
+        final EventBuilder builder = MockEventUtil.createNodeDownEventBuilder("Test", node);
+        final AlarmData data = new AlarmData();
+        data.setAlarmType(1);
+        data.setReductionKey(reductionKey);
+        builder.setAlarmData(data);
+        builder.setLogDest("logndisplay");
+        builder.setLogMessage("testing");
+
+        final Event event = builder.getEvent();
+        m_database.writeEvent(event);
+        return event;
+    }
+
     @Test
     @JUnitTemporaryDatabase(tempDbClass=MockDatabase.class)
     public void testPersistManyAlarmsAtOnce() throws InterruptedException {
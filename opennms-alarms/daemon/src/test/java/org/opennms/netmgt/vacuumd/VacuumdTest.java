@@ -265,7 +265,7 @@ public class VacuumdTest implements TemporaryDatabaseAware<MockDatabase>, Initia
      */
     @Test
     public final void testGetAutomations() {
-        assertEquals(19, VacuumdConfigFactory.getInstance().getAutomations().size());
+        assertEquals(20, VacuumdConfigFactory.getInstance().getAutomations().size());
     }
     
     @Test
@@ -288,7 +288,7 @@ public class VacuumdTest implements TemporaryDatabaseAware<MockDatabase>, Initia
     public final void testGetActions() {
         AutomationProcessor ap = new AutomationProcessor(VacuumdConfigFactory.getInstance().getAutomation("cosmicClear"));
         
-        assertEquals(18,VacuumdConfigFactory.getInstance().getActions().size());
+        assertEquals(19,VacuumdConfigFactory.getInstance().getActions().size());
         assertEquals(2, ap.getAction().getTokenCount(VacuumdConfigFactory.getInstance().getAction("delete").getStatement().getContent()));
     }
     
@@ -391,6 +391,16 @@ public class VacuumdTest implements TemporaryDatabaseAware<MockDatabase>, Initia
         Thread.sleep(1000);
         assertTrue(ap.runAutomation());        
     }
+
+    /**
+     * An action may be a query, e.g. a SELECT of a stored procedure such as
+     * events_partition_maintain().
+     */
+    @Test
+    public final void testRunAutomationWithSelectAction() throws SQLException {
+        AutomationProcessor ap = new AutomationProcessor(VacuumdConfigFactory.getInstance().getAutomation("testSelectAction"));
+        assertTrue(ap.runAutomation());
+    }
     
     /**
      * This tests the capabilities of the cosmicClear automation as shipped in the standard build.
@@ -32,7 +32,6 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map.Entry;
 
 import org.opennms.core.utils.ThreadCategory;
 
@@ -52,6 +51,10 @@ import org.opennms.core.utils.ThreadCategory;
  *  - if there is still no match at this point, all keys in the eventconf are iterated through to
  *    find a match
  *
+ *  Lookups are done against an immutable {@link EventConfMatcher} compiled
+ *  from the keys, so they do not lock and do not recompile regular
+ *  expressions.  The matcher is rebuilt, and swapped in atomically, the
+ *  first time it is needed after the keys change.
  * </pre>
  *
  * @author <A HREF="mailto:sowmya@opennms.org">Sowmya Nataraj </A>
@@ -74,31 +77,10 @@ public class EventConfData extends Object {
     private LinkedHashMap<String, List<EventKey>> m_ueiToKeyListMap;
 
     /**
-     * Check whether the event matches the passed key
-     * 
-     * @return true if the event matches the passed key
+     * The compiled form of m_eventMap used for lookups, or null if it needs
+     * to be rebuilt
      */
-    private boolean eventMatchesKey(EventKey eventKey, org.opennms.netmgt.xml.event.Event event) {
-        // go through the key elements and see if this event will match
-        boolean maskMatch = true;
-
-        Iterator<String> keysetIter = eventKey.keySet().iterator();
-        while (keysetIter.hasNext() && maskMatch) {
-            String key = keysetIter.next();
-
-            @SuppressWarnings("unchecked")
-            List<String> maskValues = (List<String>) eventKey.get(key);
-
-            // get the event value for this key
-            String eventvalue = EventKey.getMaskElementValue(event, key);
-            maskMatch = eventValuePassesMaskValue(eventvalue, maskValues);
-            if (!maskMatch) {
-                return maskMatch;
-            }
-        }
-
-        return maskMatch;
-    }
+    private volatile EventConfMatcher m_matcher;
 
     /**
      * Check whether the eventvalue passes any of the mask values Mask values
@@ -171,6 +153,7 @@ public class EventConfData extends Object {
      *            the org.opennms.netmgt.xml.eventconf.Event
      */
     public synchronized void put(org.opennms.netmgt.xml.eventconf.Event event) {
+        m_matcher = null;
 
         // the event key
         EventKey eventKey = new EventKey(event);
@@ -206,6 +189,7 @@ public class EventConfData extends Object {
      *            the org.opennms.netmgt.xml.eventconf.Event
      */
     public synchronized void put(EventKey key, org.opennms.netmgt.xml.eventconf.Event event) {
+        m_matcher = null;
         m_eventMap.put(key, event);
 
         // add to the uei to key list map
@@ -231,66 +215,8 @@ public class EventConfData extends Object {
      *            the event which is to be looked up
      * @return a {@link org.opennms.netmgt.xml.eventconf.Event} object.
      */
-    public synchronized org.opennms.netmgt.xml.eventconf.Event getEvent(org.opennms.netmgt.xml.event.Event event) {
-        org.opennms.netmgt.xml.eventconf.Event matchedEvent = null;
-
-        //
-        // use the eventkey and see if there is a match
-        //
-	/*
-        EventKey key = new EventKey(event);
-        matchedEvent = m_eventMap.get(key);
-        if (matchedEvent != null) {
-            if (log().isDebugEnabled()) {
-                log().debug("Match found using key: " + key.toString());
-            }
-
-            return matchedEvent;
-        }
-        */
-
-        //
-        // get the UEI and see if the UEI keys get a match - this step is here
-        // to make the matching process faster in case of usual internal events
-        // of OpenNMS, using the UEI shortens the search as against going
-        // through
-        // the entire eventconf for each event
-        //
-	/*
-        String uei = event.getUei();
-        if (uei != null) {
-            // Go through the uei to keylist map
-            List<EventKey> keylist = m_ueiToKeyListMap.get(uei);
-            if (keylist != null) {
-                // check the event keys known for this uei
-                matchedEvent = getMatchInKeyList(keylist, event);
-            }
-        }
-        */
-
-        //
-        // if still no match, no option but to go through all known keys
-        //
-        if (matchedEvent == null) {
-            Iterator<Entry<EventKey, org.opennms.netmgt.xml.eventconf.Event>> entryIterator = m_eventMap.entrySet().iterator();
-            while (entryIterator.hasNext() && (matchedEvent == null)) {
-                Entry<EventKey, org.opennms.netmgt.xml.eventconf.Event> entry = entryIterator.next();
-                EventKey iterKey = entry.getKey();
-
-                boolean keyMatchFound = eventMatchesKey(iterKey, event);
-
-                // if a match was found, return the config
-                if (keyMatchFound) {
-                    if (log().isDebugEnabled()) {
-                        log().debug("Match found using key: " + iterKey.toString());
-                    }
-
-                    matchedEvent = entry.getValue();
-                }
-            }
-        }
-
-        return matchedEvent;
+    public org.opennms.netmgt.xml.eventconf.Event getEvent(org.opennms.netmgt.xml.event.Event event) {
+        return getMatcher().match(event);
     }
 
     /**
@@ -300,21 +226,46 @@ public class EventConfData extends Object {
      *            the uei
      * @return a {@link org.opennms.netmgt.xml.eventconf.Event} object.
      */
-    public synchronized org.opennms.netmgt.xml.eventconf.Event getEventByUEI(String uei) {
-        EventKey key = new EventKey();
-        key.put(EventKey.TAG_UEI, new EventMaskValueList(uei));
-
-        return m_eventMap.get(key);
+    public org.opennms.netmgt.xml.eventconf.Event getEventByUEI(String uei) {
+        return getMatcher().getByUei(uei);
     }
 
     /**
      * Clear out the data
      */
     public synchronized void clear() {
+        m_matcher = null;
         m_eventMap.clear();
         m_ueiToKeyListMap.clear();
     }
 
+    /**
+     * Compile the current keys for lookups.  This happens on demand, but
+     * calling it once all events have been added keeps the cost off the
+     * first lookup.
+     */
+    public void compile() {
+        getMatcher();
+    }
+
+    private EventConfMatcher getMatcher() {
+        EventConfMatcher matcher = m_matcher;
+        if (matcher == null) {
+            synchronized (this) {
+                matcher = m_matcher;
+                if (matcher == null) {
+                    final long start = System.currentTimeMillis();
+                    matcher = new EventConfMatcher(m_eventMap.entrySet());
+                    m_matcher = matcher;
+                    if (log().isDebugEnabled()) {
+                        log().debug("Compiled " + matcher.getKeyCount() + " event keys (" + matcher.getUnindexedKeyCount() + " not indexed by UEI or enterprise ID) in " + (System.currentTimeMillis() - start) + "ms");
+                    }
+                }
+            }
+        }
+        return matcher;
+    }
+
     private ThreadCategory log() {
         return ThreadCategory.getInstance(getClass());
     }
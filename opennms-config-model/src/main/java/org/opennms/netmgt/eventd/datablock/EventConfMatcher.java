@@ -0,0 +1,380 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd.datablock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.opennms.core.utils.ThreadCategory;
+import org.opennms.netmgt.xml.event.Parm;
+
+/**
+ * <pre>
+ * An immutable, precompiled form of the keys held by {@link EventConfData}.
+ *
+ *  Every mask element of every key is compiled once: exact values go into a
+ *  hash set, '%' values become prefixes and '~' values become precompiled
+ *  {@link Pattern}s.  Keys that require an exact UEI or an exact SNMP
+ *  enterprise ID are indexed by that value, so a lookup only evaluates the
+ *  keys indexed under the event's UEI and enterprise ID plus the keys that
+ *  cannot be indexed.  These candidates are evaluated in the order the keys
+ *  were added, so the first matching key wins, just as with a linear scan.
+ *
+ *  Instances are never modified after construction and can be shared by any
+ *  number of threads without locking.
+ * </pre>
+ */
+final class EventConfMatcher {
+    private static final int UEI = 0;
+    private static final int SOURCE = 1;
+    private static final int NODEID = 2;
+    private static final int HOST = 3;
+    private static final int INTERFACE = 4;
+    private static final int SNMPHOST = 5;
+    private static final int SERVICE = 6;
+    private static final int SNMP_EID = 7;
+    private static final int SNMP_SPECIFIC = 8;
+    private static final int SNMP_GENERIC = 9;
+    private static final int SNMP_COMMUNITY = 10;
+    private static final int VARBIND = 11;
+    private static final int UNKNOWN = 12;
+
+    private static final CompiledKey[] NO_KEYS = new CompiledKey[0];
+
+    /**
+     * A single compiled mask element.  An event value passes if it equals
+     * any of the values, starts with any of the prefixes or matches any of
+     * the patterns.
+     */
+    private static final class MaskTest {
+        private final int m_element;
+        private final int m_varbind;
+        private final Set<String> m_exact;
+        private final String[] m_prefixes;
+        private final Pattern[] m_patterns;
+
+        MaskTest(final String name, final List<?> maskValues) {
+            m_element = elementFor(name);
+            m_varbind = m_element == VARBIND ? Integer.parseInt(name) : 0;
+
+            final Set<String> exact = new HashSet<String>();
+            final List<String> prefixes = new ArrayList<String>();
+            final List<Pattern> patterns = new ArrayList<Pattern>();
+            for (final Object o : maskValues) {
+                if (o == null) continue;
+                final String value = o.toString();
+                exact.add(value);
+                if (value.length() == 0) {
+                    continue;
+                } else if (value.charAt(0) == '~') {
+                    try {
+                        patterns.add(Pattern.compile(value.substring(1)));
+                    } catch (final PatternSyntaxException e) {
+                        log().warn("Invalid regular expression in event mask element " + name + ": " + value, e);
+                    }
+                } else if (value.charAt(value.length() - 1) == '%') {
+                    prefixes.add(value.substring(0, value.length() - 1));
+                }
+            }
+
+            m_exact = exact;
+            m_prefixes = prefixes.toArray(new String[prefixes.size()]);
+            m_patterns = patterns.toArray(new Pattern[patterns.size()]);
+        }
+
+        boolean isExactOnly() {
+            return m_prefixes.length == 0 && m_patterns.length == 0;
+        }
+
+        boolean matches(final org.opennms.netmgt.xml.event.Event event) {
+            final String value = getValue(event);
+            if (value == null) {
+                return false;
+            }
+            if (m_exact.contains(value)) {
+                return true;
+            }
+            for (final String prefix : m_prefixes) {
+                if (value.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            for (final Pattern pattern : m_patterns) {
+                if (pattern.matcher(value).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Equivalent to {@link EventKey#getMaskElementValue} without building
+         * a list of all parameter values for varbind elements.
+         */
+        private String getValue(final org.opennms.netmgt.xml.event.Event event) {
+            switch (m_element) {
+            case UEI: return event.getUei();
+            case SOURCE: return event.getSource();
+            case NODEID: return event.hasNodeid() ? Long.toString(event.getNodeid()) : null;
+            case HOST: return event.getHost();
+            case INTERFACE: return event.getInterface();
+            case SNMPHOST: return event.getSnmphost();
+            case SERVICE: return event.getService();
+            case SNMP_EID: return event.getSnmp() == null ? null : event.getSnmp().getId();
+            case SNMP_SPECIFIC: return event.getSnmp() == null || !event.getSnmp().hasSpecific() ? null : Integer.toString(event.getSnmp().getSpecific());
+            case SNMP_GENERIC: return event.getSnmp() == null || !event.getSnmp().hasGeneric() ? null : Integer.toString(event.getSnmp().getGeneric());
+            case SNMP_COMMUNITY: return event.getSnmp() == null ? null : event.getSnmp().getCommunity();
+            case VARBIND:
+                final List<Parm> parms = event.getParmCollection();
+                if (m_varbind > 0 && m_varbind <= parms.size()) {
+                    return EventUtil.getValueAsString(parms.get(m_varbind - 1).getValue());
+                }
+                return null;
+            default: return null;
+            }
+        }
+    }
+
+    /**
+     * A compiled {@link EventKey} along with the configuration it maps to and
+     * its position among all keys.
+     */
+    private static final class CompiledKey {
+        private final int m_order;
+        private final EventKey m_key;
+        private final org.opennms.netmgt.xml.eventconf.Event m_event;
+        private final MaskTest[] m_tests;
+
+        CompiledKey(final int order, final EventKey key, final org.opennms.netmgt.xml.eventconf.Event event) {
+            m_order = order;
+            m_key = key;
+            m_event = event;
+
+            final List<MaskTest> tests = new ArrayList<MaskTest>(key.size());
+            for (final Entry<String, Object> e : key.entrySet()) {
+                tests.add(new MaskTest(e.getKey(), (List<?>) e.getValue()));
+            }
+            m_tests = tests.toArray(new MaskTest[tests.size()]);
+        }
+
+        boolean matches(final org.opennms.netmgt.xml.event.Event event) {
+            for (final MaskTest test : m_tests) {
+                if (!test.matches(event)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the exact-only test on the given element, or null
+         */
+        MaskTest getExactTest(final int element) {
+            for (final MaskTest test : m_tests) {
+                if (test.m_element == element && test.isExactOnly()) {
+                    return test;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Map<String, CompiledKey[]> m_byUei;
+    private final Map<String, CompiledKey[]> m_byEnterpriseId;
+    private final CompiledKey[] m_unindexed;
+    private final Map<String, org.opennms.netmgt.xml.eventconf.Event> m_byUeiOnlyKey;
+    private final int m_keyCount;
+
+    /**
+     * Compile the given keys, which must be passed in lookup order.
+     *
+     * @param entries the keys and the event configuration each maps to
+     */
+    EventConfMatcher(final Collection<Entry<EventKey, org.opennms.netmgt.xml.eventconf.Event>> entries) {
+        final Map<String, List<CompiledKey>> byUei = new HashMap<String, List<CompiledKey>>();
+        final Map<String, List<CompiledKey>> byEnterpriseId = new HashMap<String, List<CompiledKey>>();
+        final List<CompiledKey> unindexed = new ArrayList<CompiledKey>();
+        final Map<String, org.opennms.netmgt.xml.eventconf.Event> byUeiOnlyKey = new HashMap<String, org.opennms.netmgt.xml.eventconf.Event>();
+
+        int order = 0;
+        for (final Entry<EventKey, org.opennms.netmgt.xml.eventconf.Event> entry : entries) {
+            final CompiledKey key = new CompiledKey(order++, entry.getKey(), entry.getValue());
+
+            MaskTest test;
+            if ((test = key.getExactTest(UEI)) != null) {
+                addToIndex(byUei, test.m_exact, key);
+            } else if ((test = key.getExactTest(SNMP_EID)) != null) {
+                addToIndex(byEnterpriseId, test.m_exact, key);
+            } else {
+                unindexed.add(key);
+            }
+
+            if (entry.getKey().size() == 1) {
+                final Object ueis = entry.getKey().get(EventKey.TAG_UEI);
+                if (ueis instanceof List<?> && ((List<?>)ueis).size() == 1 && ((List<?>)ueis).get(0) != null) {
+                    byUeiOnlyKey.put(((List<?>)ueis).get(0).toString(), entry.getValue());
+                }
+            }
+        }
+
+        m_byUei = toArrays(byUei);
+        m_byEnterpriseId = toArrays(byEnterpriseId);
+        m_unindexed = unindexed.toArray(new CompiledKey[unindexed.size()]);
+        m_byUeiOnlyKey = byUeiOnlyKey;
+        m_keyCount = order;
+    }
+
+    private static void addToIndex(final Map<String, List<CompiledKey>> index, final Set<String> values, final CompiledKey key) {
+        for (final String value : values) {
+            List<CompiledKey> keys = index.get(value);
+            if (keys == null) {
+                keys = new ArrayList<CompiledKey>(1);
+                index.put(value, keys);
+            }
+            keys.add(key);
+        }
+    }
+
+    private static Map<String, CompiledKey[]> toArrays(final Map<String, List<CompiledKey>> index) {
+        final Map<String, CompiledKey[]> arrays = new HashMap<String, CompiledKey[]>(index.size() * 2);
+        for (final Entry<String, List<CompiledKey>> e : index.entrySet()) {
+            arrays.put(e.getKey(), e.getValue().toArray(new CompiledKey[e.getValue().size()]));
+        }
+        return arrays;
+    }
+
+    private static int elementFor(final String name) {
+        if (EventKey.TAG_UEI.equals(name)) return UEI;
+        if (EventKey.TAG_SOURCE.equals(name)) return SOURCE;
+        if (EventKey.TAG_NODEID.equals(name)) return NODEID;
+        if (EventKey.TAG_HOST.equals(name)) return HOST;
+        if (EventKey.TAG_INTERFACE.equals(name)) return INTERFACE;
+        if (EventKey.TAG_SNMPHOST.equals(name)) return SNMPHOST;
+        if (EventKey.TAG_SERVICE.equals(name)) return SERVICE;
+        if (EventKey.TAG_SNMP_EID.equals(name)) return SNMP_EID;
+        if (EventKey.TAG_SNMP_SPECIFIC.equals(name)) return SNMP_SPECIFIC;
+        if (EventKey.TAG_SNMP_GENERIC.equals(name)) return SNMP_GENERIC;
+        if (EventKey.TAG_SNMP_COMMUNITY.equals(name)) return SNMP_COMMUNITY;
+        try {
+            Integer.parseInt(name);
+            return VARBIND;
+        } catch (final NumberFormatException e) {
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Find the configuration of the first key the event matches.
+     *
+     * @param event the event to look up
+     * @return the matching configuration, or null
+     */
+    org.opennms.netmgt.xml.eventconf.Event match(final org.opennms.netmgt.xml.event.Event event) {
+        final CompiledKey[] byUei = candidates(m_byUei, event.getUei());
+        final CompiledKey[] byEnterpriseId = candidates(m_byEnterpriseId, event.getSnmp() == null ? null : event.getSnmp().getId());
+        final CompiledKey[] unindexed = m_unindexed;
+
+        // merge the three candidate lists, which are each sorted by key order
+        int i = 0, j = 0, k = 0;
+        while (true) {
+            CompiledKey next = null;
+            int which = 0;
+            if (i < byUei.length) {
+                next = byUei[i];
+                which = 1;
+            }
+            if (j < byEnterpriseId.length && (next == null || byEnterpriseId[j].m_order < next.m_order)) {
+                next = byEnterpriseId[j];
+                which = 2;
+            }
+            if (k < unindexed.length && (next == null || unindexed[k].m_order < next.m_order)) {
+                next = unindexed[k];
+                which = 3;
+            }
+
+            switch (which) {
+            case 1: i++; break;
+            case 2: j++; break;
+            case 3: k++; break;
+            default: return null;
+            }
+
+            if (next.matches(event)) {
+                if (log().isDebugEnabled()) {
+                    log().debug("Match found using key: " + next.m_key.toString());
+                }
+                return next.m_event;
+            }
+        }
+    }
+
+    private static CompiledKey[] candidates(final Map<String, CompiledKey[]> index, final String value) {
+        if (value == null) {
+            return NO_KEYS;
+        }
+        final CompiledKey[] keys = index.get(value);
+        return keys == null ? NO_KEYS : keys;
+    }
+
+    /**
+     * Find the configuration whose key is just the given UEI.
+     *
+     * @param uei the UEI
+     * @return the configuration, or null
+     */
+    org.opennms.netmgt.xml.eventconf.Event getByUei(final String uei) {
+        return m_byUeiOnlyKey.get(uei);
+    }
+
+    /**
+     * @return the number of compiled keys
+     */
+    int getKeyCount() {
+        return m_keyCount;
+    }
+
+    /**
+     * @return the number of keys that have to be evaluated for every event
+     */
+    int getUnindexedKeyCount() {
+        return m_unindexed.length;
+    }
+
+    private static ThreadCategory log() {
+        return ThreadCategory.getInstance(EventConfMatcher.class);
+    }
+}
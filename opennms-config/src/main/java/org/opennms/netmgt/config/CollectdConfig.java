@@ -97,6 +97,15 @@ public class CollectdConfig {
         return m_config.getThreads();
     }
 
+    /**
+     * <p>getScheduler</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getScheduler() {
+        return m_config.getScheduler();
+    }
+
     /**
      * This method is used to establish package agaist iplist mapping, with
      * which, the iplist is selected per package via the configured filter rules
@@ -29,7 +29,6 @@
 package org.opennms.netmgt.config;
 
 import static org.opennms.core.utils.InetAddressUtils.addr;
-import static org.opennms.core.utils.InetAddressUtils.isInetAddressInRange;
 import static org.opennms.core.utils.InetAddressUtils.toIpAddrBytes;
 
 import java.net.InetAddress;
@@ -38,7 +37,6 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
-import org.opennms.core.utils.ByteArrayComparator;
 import org.opennms.core.utils.LogUtils;
 import org.opennms.core.utils.ThreadCategory;
 import org.opennms.netmgt.config.collectd.ExcludeRange;
@@ -49,6 +47,7 @@ import org.opennms.netmgt.filter.FilterDaoFactory;
 public class CollectdPackage {
 	private Package m_pkg;
 	private List<InetAddress> m_ipList;
+	private volatile PackageIpIndex m_ipIndex;
 	private List<IncludeURL> m_includeURLs;
 	
 	
@@ -114,12 +113,7 @@ public class CollectdPackage {
 	}
 
 	protected boolean hasSpecific(byte[] addr) {
-	    for (String espec : getPackage().getSpecific()) {
-	        if (new ByteArrayComparator().compare(toIpAddrBytes(espec), addr) == 0) {
-	            return true;
-	        }
-	    }
-	    return false;
+	    return getIpIndex().hasSpecific(addr);
 	}
 
 	/**
@@ -129,17 +123,7 @@ public class CollectdPackage {
 	 * @return a boolean.
 	 */
 	protected boolean hasIncludeRange(String addr) {
-		Package pkg = getPackage();
-		if (pkg.getIncludeRangeCount() == 0 && pkg.getSpecificCount() == 0) {
-		    return true;
-		}
-
-		for (IncludeRange rng : pkg.getIncludeRange()) {
-		    if (isInetAddressInRange(addr, rng.getBegin(), rng.getEnd())) {
-		        return true;
-		    }
-		}
-		return false;
+		return getIpIndex().hasIncludeRange(toIpAddrBytes(addr));
 	}
 
 	/**
@@ -152,12 +136,7 @@ public class CollectdPackage {
 	}
 
 	protected boolean hasExcludeRange(String addr, boolean has_specific) {
-	    for (ExcludeRange rng : getPackage().getExcludeRange()) {
-	        if (isInetAddressInRange(addr, rng.getBegin(), rng.getEnd())) {
-	            return true;
-	        }
-	    }
-	    return false;
+	    return getIpIndex().hasExcludeRange(toIpAddrBytes(addr));
 	}
 
 	/**
@@ -167,6 +146,36 @@ public class CollectdPackage {
 	 */
 	public void putIpList(List<InetAddress> ipList) {
 		m_ipList = ipList;
+		m_ipIndex = createIpIndex(ipList);
+	}
+
+	private PackageIpIndex createIpIndex(List<InetAddress> ipList) {
+		Package pkg = getPackage();
+		PackageIpIndex.Builder builder = new PackageIpIndex.Builder(ipList);
+		for (String spec : pkg.getSpecific()) {
+			builder.addSpecific(spec);
+		}
+		for (IncludeRange rng : pkg.getIncludeRange()) {
+			builder.addIncludeRange(rng.getBegin(), rng.getEnd());
+		}
+		for (ExcludeRange rng : pkg.getExcludeRange()) {
+			builder.addExcludeRange(rng.getBegin(), rng.getEnd());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns the index of the filter IPs and the ranges of the package,
+	 * built when the IP list is put.
+	 */
+	private PackageIpIndex getIpIndex() {
+		PackageIpIndex index = m_ipIndex;
+		if (index == null) {
+			// the filter failed, only the ranges and specifics apply
+			index = createIpIndex(null);
+			m_ipIndex = index;
+		}
+		return index;
 	}
 
 	/**
@@ -187,7 +196,7 @@ public class CollectdPackage {
 		// get list of IPs in this package
 		List<InetAddress> ipList = getIpList();
 		if (ipList != null && ipList.size() > 0) {
-			filterPassed = ipList.contains(ifaceAddress);
+			filterPassed = getIpIndex().isInFilter(ifaceAddress);
 		} else {
 			log().debug("interfaceInFilter: ipList contains no data");
 		}
@@ -246,12 +255,13 @@ public class CollectdPackage {
 		//
 	
 		byte[] addr = toIpAddrBytes(iface);
+		PackageIpIndex index = getIpIndex();
 	
-		boolean has_range_include = hasIncludeRange(iface);
-		boolean has_specific = hasSpecific(addr);
+		boolean has_range_include = index.hasIncludeRange(addr);
+		boolean has_specific = index.hasSpecific(addr);
 	
 		has_specific = hasSpecificUrl(iface, has_specific);
-		boolean has_range_exclude = hasExcludeRange(iface, has_specific);
+		boolean has_range_exclude = index.hasExcludeRange(addr);
 	
 		boolean packagePassed = has_specific
 				|| (has_range_include && !has_range_exclude);
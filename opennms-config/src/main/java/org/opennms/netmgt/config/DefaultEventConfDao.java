@@ -143,7 +143,10 @@ public class DefaultEventConfDao extends AbstractJaxbConfigDao<Events, EventConf
         for (final String eventFilePath : events.getEventFileCollection()) {
             loadAndProcessEvents(m_resourceLoader.getResource(eventFilePath), eventConfiguration, "included", true);
         }
-        
+
+        // compile the lookup structure before the new configuration replaces the old one
+        eventConfiguration.getEventConfData().compile();
+
         return eventConfiguration;
     }
 
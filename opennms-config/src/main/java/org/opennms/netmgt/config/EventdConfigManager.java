@@ -182,6 +182,34 @@ public class EventdConfigManager {
         }
     }
 
+    /**
+     * Return the maximum number of broadcast events queued for each listener.
+     *
+     * @return the maximum number of broadcast events queued for each listener
+     */
+    public int getListenerQueueLength() {
+        getReadLock().lock();
+        try {
+            return m_config.hasListenerQueueLength() ? m_config.getListenerQueueLength() : getQueueLength();
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Return what happens to a broadcast event when a listener's queue is full.
+     *
+     * @return one of "block", "drop-oldest" or "drop-newest"
+     */
+    public String getListenerOverflowPolicy() {
+        getReadLock().lock();
+        try {
+            return m_config.getListenerOverflowPolicy();
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
     /**
      * Return string indicating if timeout is to be set on the socket.
      *
@@ -237,4 +265,46 @@ public class EventdConfigManager {
             getReadLock().unlock();
         }
     }
+
+    /**
+     * Return the SQL statement to preallocate a block of event IDs.
+     *
+     * @return the SQL statement to preallocate a block of event IDs
+     */
+    public String getGetNextEventIDBlock() {
+        getReadLock().lock();
+        try {
+            return m_config.getGetNextEventIDBlock();
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Return the maximum number of events written to the database in one batch.
+     *
+     * @return the maximum number of events written to the database in one batch
+     */
+    public int getWriterBatchSize() {
+        getReadLock().lock();
+        try {
+            return m_config.getWriterBatchSize();
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
+    /**
+     * Return the maximum time, in milliseconds, to wait for a batch of events to fill.
+     *
+     * @return the maximum time, in milliseconds, to wait for a batch of events to fill
+     */
+    public long getWriterBatchDelay() {
+        getReadLock().lock();
+        try {
+            return m_config.getWriterBatchDelay();
+        } finally {
+            getReadLock().unlock();
+        }
+    }
 }
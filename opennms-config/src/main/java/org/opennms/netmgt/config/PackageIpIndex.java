@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+import static org.opennms.core.utils.InetAddressUtils.toIpAddrBytes;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.opennms.core.utils.ByteArrayComparator;
+
+/**
+ * Precomputed address membership of a poller, collectd or threshd package.
+ *
+ * The addresses selected by the package filter are kept in a hash set and
+ * the include and exclude ranges are merged into sorted, non-overlapping
+ * intervals that are searched with a binary search. Addresses are ordered
+ * the same way as {@link ByteArrayComparator} orders them, so IPv4 and IPv6
+ * ranges can be mixed in one package.
+ *
+ * An index is immutable once built; it is rebuilt with the rest of the
+ * package data when the configuration is reloaded.
+ */
+public final class PackageIpIndex {
+    private static final ByteArrayComparator COMPARATOR = new ByteArrayComparator();
+
+    private final Set<InetAddress> m_filterAddresses;
+    private final Set<ByteArrayKey> m_specifics;
+    private final byte[][] m_includeRanges;
+    private final byte[][] m_excludeRanges;
+    private final boolean m_includeAll;
+
+    private PackageIpIndex(final Builder builder) {
+        m_filterAddresses = builder.m_filterAddresses;
+        m_specifics = builder.m_specifics;
+        m_includeRanges = merge(builder.m_includeRanges);
+        m_excludeRanges = merge(builder.m_excludeRanges);
+        // no include ranges and no specifics means every address is included
+        m_includeAll = builder.m_includeRanges.isEmpty() && builder.m_specifics.isEmpty();
+    }
+
+    /**
+     * Returns true if the address was selected by the package filter.
+     *
+     * @param addr the address to look up
+     * @return a boolean.
+     */
+    public boolean isInFilter(final InetAddress addr) {
+        return addr != null && m_filterAddresses.contains(addr);
+    }
+
+    /**
+     * <p>getFilterAddressCount</p>
+     *
+     * @return the number of addresses selected by the package filter
+     */
+    public int getFilterAddressCount() {
+        return m_filterAddresses.size();
+    }
+
+    /**
+     * Returns true if the address is listed as a specific in the package.
+     *
+     * @param addr the address bytes to look up
+     * @return a boolean.
+     */
+    public boolean hasSpecific(final byte[] addr) {
+        return m_specifics.contains(new ByteArrayKey(addr));
+    }
+
+    /**
+     * Returns true if the address is in an include range, or if the package
+     * has neither include ranges nor specifics.
+     *
+     * @param addr the address bytes to look up
+     * @return a boolean.
+     */
+    public boolean hasIncludeRange(final byte[] addr) {
+        return m_includeAll || inRanges(m_includeRanges, addr);
+    }
+
+    /**
+     * Returns true if the address is in an exclude range.
+     *
+     * @param addr the address bytes to look up
+     * @return a boolean.
+     */
+    public boolean hasExcludeRange(final byte[] addr) {
+        return inRanges(m_excludeRanges, addr);
+    }
+
+    /**
+     * Sorts the ranges by their first address and merges the ones that
+     * overlap into a flat array of begin, end pairs.
+     */
+    private static byte[][] merge(final List<byte[][]> ranges) {
+        if (ranges.isEmpty()) {
+            return new byte[0][];
+        }
+        final List<byte[][]> sorted = new ArrayList<byte[][]>(ranges);
+        Collections.sort(sorted, new Comparator<byte[][]>() {
+            @Override
+            public int compare(final byte[][] a, final byte[][] b) {
+                return COMPARATOR.compare(a[0], b[0]);
+            }
+        });
+
+        final List<byte[]> merged = new ArrayList<byte[]>(sorted.size() * 2);
+        byte[] begin = sorted.get(0)[0];
+        byte[] end = sorted.get(0)[1];
+        for (int i = 1; i < sorted.size(); i++) {
+            final byte[][] range = sorted.get(i);
+            if (COMPARATOR.compare(range[0], end) <= 0) {
+                if (COMPARATOR.compare(range[1], end) > 0) {
+                    end = range[1];
+                }
+            } else {
+                merged.add(begin);
+                merged.add(end);
+                begin = range[0];
+                end = range[1];
+            }
+        }
+        merged.add(begin);
+        merged.add(end);
+        return merged.toArray(new byte[merged.size()][]);
+    }
+
+    private static boolean inRanges(final byte[][] ranges, final byte[] addr) {
+        // find the last range that begins at or before the address
+        int low = 0;
+        int high = ranges.length / 2 - 1;
+        int found = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (COMPARATOR.compare(ranges[mid * 2], addr) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found >= 0 && COMPARATOR.compare(addr, ranges[found * 2 + 1]) <= 0;
+    }
+
+    /**
+     * Builds a {@link PackageIpIndex} from the package definition.
+     */
+    public static final class Builder {
+        private final Set<InetAddress> m_filterAddresses;
+        private final Set<ByteArrayKey> m_specifics = new HashSet<ByteArrayKey>();
+        private final List<byte[][]> m_includeRanges = new ArrayList<byte[][]>();
+        private final List<byte[][]> m_excludeRanges = new ArrayList<byte[][]>();
+
+        /**
+         * <p>Constructor for Builder.</p>
+         *
+         * @param filterAddresses the addresses selected by the package filter, may be null
+         */
+        public Builder(final Collection<InetAddress> filterAddresses) {
+            m_filterAddresses = filterAddresses == null ? Collections.<InetAddress>emptySet() : new HashSet<InetAddress>(filterAddresses);
+        }
+
+        public Builder addSpecific(final String specific) {
+            m_specifics.add(new ByteArrayKey(toIpAddrBytes(specific)));
+            return this;
+        }
+
+        public Builder addIncludeRange(final String begin, final String end) {
+            m_includeRanges.add(toRange(begin, end));
+            return this;
+        }
+
+        public Builder addExcludeRange(final String begin, final String end) {
+            m_excludeRanges.add(toRange(begin, end));
+            return this;
+        }
+
+        public PackageIpIndex build() {
+            return new PackageIpIndex(this);
+        }
+
+        private static byte[][] toRange(final String begin, final String end) {
+            final byte[] b = toIpAddrBytes(begin);
+            final byte[] e = toIpAddrBytes(end);
+            if (COMPARATOR.compare(b, e) > 0) {
+                // an inverted range only matches its first address
+                return new byte[][] { b, b };
+            }
+            return new byte[][] { b, e };
+        }
+    }
+
+    /**
+     * Wraps address bytes so they can be used as a hash key.
+     */
+    private static final class ByteArrayKey {
+        private final byte[] m_bytes;
+        private final int m_hashCode;
+
+        ByteArrayKey(final byte[] bytes) {
+            m_bytes = bytes;
+            m_hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return m_hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof ByteArrayKey && Arrays.equals(m_bytes, ((ByteArrayKey)obj).m_bytes);
+        }
+    }
+}
@@ -349,6 +349,20 @@ public interface PollerConfig {
      */
     public int getThreads();
 
+    /**
+     * <p>getStartupThreads</p>
+     *
+     * @return the number of threads used to schedule the existing services at startup
+     */
+    public int getStartupThreads();
+
+    /**
+     * <p>getSchedulerType</p>
+     *
+     * @return the type of scheduler to create, "legacy" or "timing-wheel"
+     */
+    public String getSchedulerType();
+
     /**
      * <p>getServiceMonitors</p>
      *
@@ -29,7 +29,6 @@
 package org.opennms.netmgt.config;
 
 import static org.opennms.core.utils.InetAddressUtils.addr;
-import static org.opennms.core.utils.InetAddressUtils.toIpAddrBytes;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -54,7 +53,6 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.Marshaller;
 import org.exolab.castor.xml.ValidationException;
-import org.opennms.core.utils.ByteArrayComparator;
 import org.opennms.core.utils.IpListFromUrl;
 import org.opennms.core.utils.LogUtils;
 import org.opennms.core.xml.CastorUtils;
@@ -148,10 +146,10 @@ abstract public class PollerConfigManager implements PollerConfig {
      */
     private Map<String, List<String>> m_urlIPMap;
     /**
-     * A mapping of the configured package to a list of IPs selected via filter
-     * rules, so as to avoid repetitive database access.
+     * A mapping of the configured package names to the IPs selected via filter
+     * rules and the package ranges, so as to avoid repetitive database access.
      */
-    private AtomicReference<Map<Package, List<InetAddress>>> m_pkgIpMap = new AtomicReference<Map<Package, List<InetAddress>>>();;
+    private AtomicReference<Map<String, PackageIpIndex>> m_pkgIpMap = new AtomicReference<Map<String, PackageIpIndex>>(new HashMap<String, PackageIpIndex>());
     /**
      * A mapp of service names to service monitors. Constructed based on data in
      * the configuration file.
@@ -438,7 +436,7 @@ abstract public class PollerConfigManager implements PollerConfig {
         getReadLock().lock();
         
         try {
-            Map<Package, List<InetAddress>> pkgIpMap = new HashMap<Package, List<InetAddress>>();
+            Map<String, PackageIpIndex> pkgIpMap = new HashMap<String, PackageIpIndex>();
             
             for(final Package pkg : packages()) {
         
@@ -450,7 +448,7 @@ abstract public class PollerConfigManager implements PollerConfig {
                     LogUtils.debugf(this, "createPackageIpMap: package %s: ipList size = %d", pkg.getName(), ipList.size());
         
                     if (ipList.size() > 0) {
-                        pkgIpMap.put(pkg, ipList);
+                        pkgIpMap.put(pkg.getName(), createPackageIpIndex(pkg, ipList));
                     }
                     
                 } catch (final Throwable t) {
@@ -466,6 +464,20 @@ abstract public class PollerConfigManager implements PollerConfig {
         }
     }
 
+    private static PackageIpIndex createPackageIpIndex(final Package pkg, final List<InetAddress> ipList) {
+        final PackageIpIndex.Builder builder = new PackageIpIndex.Builder(ipList);
+        for (final String spec : pkg.getSpecificCollection()) {
+            builder.addSpecific(spec);
+        }
+        for (final IncludeRange rng : pkg.getIncludeRangeCollection()) {
+            builder.addIncludeRange(rng.getBegin(), rng.getEnd());
+        }
+        for (final ExcludeRange rng : pkg.getExcludeRangeCollection()) {
+            builder.addExcludeRange(rng.getBegin(), rng.getEnd());
+        }
+        return builder.build();
+    }
+
     /** {@inheritDoc} */
     @Override
     public List<InetAddress> getIpList(final Package pkg) {
@@ -511,14 +523,11 @@ abstract public class PollerConfigManager implements PollerConfig {
      */
     @Override
     public boolean isInterfaceInPackage(final String iface, final Package pkg) {
-        boolean filterPassed = false;
         final InetAddress ifaceAddr = addr(iface);
     
-        // get list of IPs in this package
-        final List<InetAddress> ipList = m_pkgIpMap.get().get(pkg);
-        if (ipList != null && ipList.size() > 0) {
-			filterPassed = ipList.contains(ifaceAddr);
-        }
+        // get the IPs and ranges of this package
+        final PackageIpIndex index = m_pkgIpMap.get().get(pkg.getName());
+        final boolean filterPassed = index != null && index.isInFilter(ifaceAddr);
 
         LogUtils.debugf(this, "interfaceInPackage: Interface %s passed filter for package %s?: %s", iface, pkg.getName(), Boolean.valueOf(filterPassed));
     
@@ -528,60 +537,25 @@ abstract public class PollerConfigManager implements PollerConfig {
         // Ensure that the interface is in the specific list or
         // that it is in the include range and is not excluded
         //
-        boolean has_specific = false;
-        boolean has_range_include = false;
-        boolean has_range_exclude = false;
- 
+        final byte[] addr = ifaceAddr.getAddress();
+
         // if there are NO include ranges then treat act as if the user include
         // the range of all valid addresses (0.0.0.0 - 255.255.255.255, ::1 - ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff)
-        has_range_include = pkg.getIncludeRangeCount() == 0 && pkg.getSpecificCount() == 0;
-        
-        final byte[] addr = toIpAddrBytes(iface);
-
-        for (final IncludeRange rng : pkg.getIncludeRangeCollection()) {
-            int comparison = new ByteArrayComparator().compare(addr, toIpAddrBytes(rng.getBegin()));
-            if (comparison > 0) {
-                int endComparison = new ByteArrayComparator().compare(addr, toIpAddrBytes(rng.getEnd()));
-                if (endComparison <= 0) {
-                    has_range_include = true;
-                    break;
-                }
-            } else if (comparison == 0) {
-                has_range_include = true;
-                break;
-            }
-        }
+        final boolean has_range_include = index.hasIncludeRange(addr);
 
-        for (final String spec : pkg.getSpecificCollection()) {
-            if (new ByteArrayComparator().compare(addr, toIpAddrBytes(spec)) == 0) {
-                has_specific = true;
-                break;
-            }
-        }
+        boolean has_specific = index.hasSpecific(addr);
     
-        for (final String includeUrl : pkg.getIncludeUrlCollection()) {
-            if (interfaceInUrl(iface, includeUrl)) {
-                has_specific = true;
-                break;
-            }
-        }
-
         if (!has_specific) {
-            for (final ExcludeRange rng : pkg.getExcludeRangeCollection()) {
-                int comparison = new ByteArrayComparator().compare(addr, toIpAddrBytes(rng.getBegin()));
-                if (comparison > 0) {
-                    int endComparison = new ByteArrayComparator().compare(addr, toIpAddrBytes(rng.getEnd()));
-                    if (endComparison <= 0) {
-                        has_range_exclude = true;
-                        break;
-                    }
-                } else if (comparison == 0) {
-                    has_range_exclude = true;
+            for (final String includeUrl : pkg.getIncludeUrlCollection()) {
+                if (interfaceInUrl(iface, includeUrl)) {
+                    has_specific = true;
                     break;
                 }
             }
         }
 
+        final boolean has_range_exclude = !has_specific && index.hasExcludeRange(addr);
+
         return has_specific || (has_range_include && !has_range_exclude);
     }
 
@@ -963,6 +937,36 @@ abstract public class PollerConfigManager implements PollerConfig {
         }
     }
 
+    /**
+     * <p>getStartupThreads</p>
+     *
+     * @return a int.
+     */
+    @Override
+    public int getStartupThreads() {
+        getReadLock().lock();
+        try {
+            return getConfiguration().getStartupThreads();
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
+    /**
+     * <p>getSchedulerType</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    @Override
+    public String getSchedulerType() {
+        getReadLock().lock();
+        try {
+            return getConfiguration().getScheduler();
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
     /**
      * @param poller
      * @return
@@ -108,5 +108,77 @@ public interface SyslogdConfig {
      * @return a {@link java.lang.String} object.
      */
     public abstract String getDiscardUei();
-}
 
+    /**
+     * <p>getReceiverMode</p>
+     *
+     * @return "socket" or "nio"
+     */
+    public abstract String getReceiverMode();
+
+    /**
+     * <p>getReceiverThreads</p>
+     *
+     * @return the number of threads receiving datagrams in "nio" mode
+     */
+    public abstract int getReceiverThreads();
+
+    /**
+     * <p>getReceiverBatchSize</p>
+     *
+     * @return the maximum number of datagrams handed to the parser threads at once
+     */
+    public abstract int getReceiverBatchSize();
+
+    /**
+     * <p>getParserThreads</p>
+     *
+     * @return the number of threads converting messages to events in "nio" mode
+     */
+    public abstract int getParserThreads();
+
+    /**
+     * <p>getParserQueueSize</p>
+     *
+     * @return the maximum number of batches waiting for a parser thread
+     */
+    public abstract int getParserQueueSize();
+
+    /**
+     * <p>getTcpPort</p>
+     *
+     * @return the TCP port syslog messages are accepted on, or 0 when Syslogd
+     * does not listen on TCP
+     */
+    public abstract int getTcpPort();
+
+    /**
+     * <p>getTcpThreads</p>
+     *
+     * @return the number of threads converting messages received over TCP to events
+     */
+    public abstract int getTcpThreads();
+
+    /**
+     * <p>getTcpMaxPendingBytes</p>
+     *
+     * @return the number of bytes waiting to be processed per TCP connection
+     * before reading from the connection is suspended
+     */
+    public abstract int getTcpMaxPendingBytes();
+
+    /**
+     * <p>getTlsKeystore</p>
+     *
+     * @return the keystore used for TLS on the TCP listener, or null when TLS
+     * is not enabled
+     */
+    public abstract String getTlsKeystore();
+
+    /**
+     * <p>getTlsKeystorePassword</p>
+     *
+     * @return the password of the TLS keystore
+     */
+    public abstract String getTlsKeystorePassword();
+}
@@ -72,6 +72,13 @@ public final class SyslogdConfigFactory implements SyslogdConfig {
      */
     private static boolean m_loaded = false;
 
+    /**
+     * Incremented every time a configuration is loaded or set, so that
+     * users caching data derived from the configuration can tell when it
+     * needs to be rebuilt.
+     */
+    private static volatile long m_generation = 0;
+
     /**
      * Private constructor
      *
@@ -120,6 +127,7 @@ public final class SyslogdConfigFactory implements SyslogdConfig {
         m_singleton = new SyslogdConfigFactory(cfgFile.getPath());
 
         m_loaded = true;
+        m_generation++;
     }
 
     /**
@@ -163,6 +171,18 @@ public final class SyslogdConfigFactory implements SyslogdConfig {
     public static synchronized void setInstance(SyslogdConfig config) {
         m_singleton = config;
         m_loaded = true;
+        m_generation++;
+    }
+
+    /**
+     * Return the generation of the current configuration. The generation
+     * changes whenever the configuration is reloaded or replaced. This does
+     * not lock, so it is cheap enough to check for every message.
+     *
+     * @return the generation of the current configuration
+     */
+    public static long getGeneration() {
+        return m_generation;
     }
 
     /**
@@ -269,6 +289,118 @@ public final class SyslogdConfigFactory implements SyslogdConfig {
         return m_config.getConfiguration().getDiscardUei();
     }
 
+    /**
+     * <p>getReceiverMode</p>
+     *
+     * @return "socket" or "nio"
+     */
+    @Override
+    public synchronized String getReceiverMode() {
+        return m_config.getConfiguration().getReceiverMode();
+    }
+
+    /**
+     * <p>getReceiverThreads</p>
+     *
+     * @return the number of threads receiving datagrams in "nio" mode
+     */
+    @Override
+    public synchronized int getReceiverThreads() {
+        return m_config.getConfiguration().getReceiverThreads();
+    }
+
+    /**
+     * <p>getReceiverBatchSize</p>
+     *
+     * @return the maximum number of datagrams handed to the parser threads at once
+     */
+    @Override
+    public synchronized int getReceiverBatchSize() {
+        return m_config.getConfiguration().getReceiverBatchSize();
+    }
+
+    /**
+     * <p>getParserThreads</p>
+     *
+     * @return the number of threads converting messages to events in "nio" mode
+     */
+    @Override
+    public synchronized int getParserThreads() {
+        if (m_config.getConfiguration().hasParserThreads()) {
+            return m_config.getConfiguration().getParserThreads();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * <p>getParserQueueSize</p>
+     *
+     * @return the maximum number of batches waiting for a parser thread
+     */
+    @Override
+    public synchronized int getParserQueueSize() {
+        return m_config.getConfiguration().getParserQueueSize();
+    }
+
+    /**
+     * <p>getTcpPort</p>
+     *
+     * @return the TCP port syslog messages are accepted on, or 0 when Syslogd
+     * does not listen on TCP
+     */
+    @Override
+    public synchronized int getTcpPort() {
+        if (m_config.getConfiguration().hasTcpPort()) {
+            return m_config.getConfiguration().getTcpPort();
+        }
+        return 0;
+    }
+
+    /**
+     * <p>getTcpThreads</p>
+     *
+     * @return the number of threads converting messages received over TCP to events
+     */
+    @Override
+    public synchronized int getTcpThreads() {
+        if (m_config.getConfiguration().hasTcpThreads()) {
+            return m_config.getConfiguration().getTcpThreads();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * <p>getTcpMaxPendingBytes</p>
+     *
+     * @return the number of bytes waiting to be processed per TCP connection
+     * before reading from the connection is suspended
+     */
+    @Override
+    public synchronized int getTcpMaxPendingBytes() {
+        return m_config.getConfiguration().getTcpMaxPendingBytes();
+    }
+
+    /**
+     * <p>getTlsKeystore</p>
+     *
+     * @return the keystore used for TLS on the TCP listener, or null when TLS
+     * is not enabled
+     */
+    @Override
+    public synchronized String getTlsKeystore() {
+        return m_config.getConfiguration().getTlsKeystore();
+    }
+
+    /**
+     * <p>getTlsKeystorePassword</p>
+     *
+     * @return the password of the TLS keystore
+     */
+    @Override
+    public synchronized String getTlsKeystorePassword() {
+        return m_config.getConfiguration().getTlsKeystorePassword();
+    }
+
     /**
      * Parse import-file tags and add all uei-matchs and hide-messages.
      * 
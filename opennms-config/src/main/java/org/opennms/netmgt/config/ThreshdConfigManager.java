@@ -32,8 +32,6 @@
 package org.opennms.netmgt.config;
 
 import static org.opennms.core.utils.InetAddressUtils.addr;
-import static org.opennms.core.utils.InetAddressUtils.isInetAddressInRange;
-import static org.opennms.core.utils.InetAddressUtils.toIpAddrBytes;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -47,7 +45,6 @@ import java.util.Map;
 import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.Marshaller;
 import org.exolab.castor.xml.ValidationException;
-import org.opennms.core.utils.ByteArrayComparator;
 import org.opennms.core.utils.IpListFromUrl;
 import org.opennms.core.utils.LogUtils;
 import org.opennms.core.utils.ThreadCategory;
@@ -77,10 +74,10 @@ public abstract class ThreshdConfigManager {
      */
     private Map<String, List<String>> m_urlIPMap;
     /**
-     * A mapping of the configured package to a list of IPs selected via filter
-     * rules, so as to avoid repetitive database access.
+     * A mapping of the configured package names to the IPs selected via filter
+     * rules and the package ranges, so as to avoid repetitive database access.
      */
-    private Map<Package, List<InetAddress>> m_pkgIpMap;
+    private Map<String, PackageIpIndex> m_pkgIpMap;
     /**
      * A boolean flag to indicate If a filter rule against the local OpenNMS
      * server has to be used.
@@ -139,7 +136,7 @@ public abstract class ThreshdConfigManager {
     protected void createPackageIpListMap() {
         ThreadCategory log = ThreadCategory.getInstance(this.getClass());
     
-        m_pkgIpMap = new HashMap<Package, List<InetAddress>>();
+        final Map<String, PackageIpIndex> pkgIpMap = new HashMap<String, PackageIpIndex>();
     
         Enumeration<org.opennms.netmgt.config.threshd.Package> pkgEnum = m_config.enumeratePackage();
         while (pkgEnum.hasMoreElements()) {
@@ -165,12 +162,28 @@ public abstract class ThreshdConfigManager {
     
                 List<InetAddress> ipList = FilterDaoFactory.getInstance().getActiveIPAddressList(filterRules.toString());
                 if (ipList.size() > 0) {
-                    m_pkgIpMap.put(pkg, ipList);
+                    pkgIpMap.put(pkg.getName(), createPackageIpIndex(pkg, ipList));
                 }
             } catch (Throwable t) {
                 LogUtils.errorf(this, t, "createPackageIpMap: failed to map package: %s to an IP List with filter \"%s\"", pkg.getName(), pkg.getFilter().getContent());
             }
         }
+
+        m_pkgIpMap = pkgIpMap;
+    }
+
+    private static PackageIpIndex createPackageIpIndex(Package pkg, List<InetAddress> ipList) {
+        PackageIpIndex.Builder builder = new PackageIpIndex.Builder(ipList);
+        for (String spec : pkg.getSpecificCollection()) {
+            builder.addSpecific(spec);
+        }
+        for (IncludeRange rng : pkg.getIncludeRangeCollection()) {
+            builder.addIncludeRange(rng.getBegin(), rng.getEnd());
+        }
+        for (ExcludeRange rng : pkg.getExcludeRangeCollection()) {
+            builder.addExcludeRange(rng.getBegin(), rng.getEnd());
+        }
+        return builder.build();
     }
 
     /**
@@ -306,13 +319,10 @@ public abstract class ThreshdConfigManager {
         ThreadCategory log = ThreadCategory.getInstance(this.getClass());
     
         final InetAddress ifaceAddr = addr(iface);
-        boolean filterPassed = false;
     
-        // get list of IPs in this package
-        java.util.List<InetAddress> ipList = m_pkgIpMap.get(pkg);
-        if (ipList != null && ipList.size() > 0) {
-			filterPassed = ipList.contains(ifaceAddr);
-        }
+        // get the IPs and ranges of this package
+        PackageIpIndex index = m_pkgIpMap.get(pkg.getName());
+        boolean filterPassed = index != null && index.isInFilter(ifaceAddr);
     
         if (log.isDebugEnabled())
             log.debug("interfaceInPackage: Interface " + iface + " passed filter for package " + pkg.getName() + "?: " + filterPassed);
@@ -324,40 +334,17 @@ public abstract class ThreshdConfigManager {
         // Ensure that the interface is in the specific list or
         // that it is in the include range and is not excluded
         //
-        boolean has_specific = false;
-        boolean has_range_include = false;
-        boolean has_range_exclude = false;
-        
-        has_range_include = pkg.getIncludeRangeCount() == 0 && pkg.getSpecificCount() == 0;
-    
-        for (IncludeRange rng : pkg.getIncludeRangeCollection()) {
-            if (isInetAddressInRange(iface, rng.getBegin(), rng.getEnd())) {
-                has_range_include = true;
-                break;
-            }
-        }
+        byte[] addr = ifaceAddr.getAddress();
 
-        byte[] addr = toIpAddrBytes(iface);
-
-        for (String spec : pkg.getSpecificCollection()) {
-            byte[] speca = toIpAddrBytes(spec);
-            if (new ByteArrayComparator().compare(speca, addr) == 0) {
-                has_specific = true;
-                break;
-            }
-        }
+        boolean has_range_include = index.hasIncludeRange(addr);
+        boolean has_specific = index.hasSpecific(addr);
 
         Enumeration<String> eurl = pkg.enumerateIncludeUrl();
         while (!has_specific && eurl.hasMoreElements()) {
             has_specific = interfaceInUrl(iface, eurl.nextElement());
         }
     
-        for (ExcludeRange rng : pkg.getExcludeRangeCollection()) {
-            if (isInetAddressInRange(iface, rng.getBegin(), rng.getEnd())) {
-                has_range_exclude = true;
-                break;
-            }
-        }
+        boolean has_range_exclude = index.hasExcludeRange(addr);
     
         return has_specific || (has_range_include && !has_range_exclude);
     }
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config;
+
+import static org.opennms.core.utils.InetAddressUtils.addr;
+import static org.opennms.core.utils.InetAddressUtils.toIpAddrBytes;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import junit.framework.TestCase;
+
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.config.PollerConfigFactoryTest.TestPollerConfigManager;
+import org.opennms.netmgt.config.poller.Package;
+import org.opennms.netmgt.filter.FilterDao;
+import org.opennms.netmgt.filter.FilterDaoFactory;
+import org.opennms.netmgt.filter.FilterParseException;
+
+public class PackageIpIndexTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        MockLogAppender.setupLogging();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FilterDaoFactory.setInstance(null);
+        super.tearDown();
+        MockLogAppender.assertNoWarningsOrGreater();
+    }
+
+    public void testFilter() {
+        final PackageIpIndex index = new PackageIpIndex.Builder(Arrays.asList(addr("192.168.1.1"), addr("fe80::1"))).build();
+
+        assertTrue(index.isInFilter(addr("192.168.1.1")));
+        assertTrue(index.isInFilter(addr("fe80:0:0:0:0:0:0:1")));
+        assertFalse(index.isInFilter(addr("192.168.1.2")));
+        assertFalse(index.isInFilter(null));
+        assertEquals(2, index.getFilterAddressCount());
+    }
+
+    public void testIncludeAllWithoutRangesOrSpecifics() {
+        final PackageIpIndex index = new PackageIpIndex.Builder(null).addExcludeRange("10.0.0.0", "10.255.255.255").build();
+
+        assertTrue(index.hasIncludeRange(toIpAddrBytes("192.168.1.1")));
+        assertTrue(index.hasIncludeRange(toIpAddrBytes("2001:db8::1")));
+        assertTrue(index.hasExcludeRange(toIpAddrBytes("10.1.2.3")));
+        assertFalse(index.hasExcludeRange(toIpAddrBytes("11.0.0.0")));
+    }
+
+    public void testSpecificsOnly() {
+        final PackageIpIndex index = new PackageIpIndex.Builder(null).addSpecific("123.12.123.121").addSpecific("2001:db8::5").build();
+
+        assertTrue(index.hasSpecific(toIpAddrBytes("123.12.123.121")));
+        assertTrue(index.hasSpecific(toIpAddrBytes("2001:0db8:0:0:0:0:0:5")));
+        assertFalse(index.hasSpecific(toIpAddrBytes("123.12.123.122")));
+        // specifics without include ranges do not include everything else
+        assertFalse(index.hasIncludeRange(toIpAddrBytes("192.168.1.1")));
+    }
+
+    public void testOverlappingRanges() {
+        final PackageIpIndex index = new PackageIpIndex.Builder(null)
+            .addIncludeRange("192.168.1.100", "192.168.2.10")
+            .addIncludeRange("192.168.1.0", "192.168.1.200")
+            .addIncludeRange("192.168.2.5", "192.168.2.5")
+            .addIncludeRange("10.0.0.1", "10.0.0.1")
+            .addIncludeRange("172.16.0.0", "172.16.0.255")
+            .build();
+
+        assertTrue(index.hasIncludeRange(toIpAddrBytes("192.168.1.0")));
+        assertTrue(index.hasIncludeRange(toIpAddrBytes("192.168.1.250")));
+        assertTrue(index.hasIncludeRange(toIpAddrBytes("192.168.2.10")));
+        assertFalse(index.hasIncludeRange(toIpAddrBytes("192.168.2.11")));
+        assertFalse(index.hasIncludeRange(toIpAddrBytes("192.167.255.255")));
+        assertTrue(index.hasIncludeRange(toIpAddrBytes("10.0.0.1")));
+        assertFalse(index.hasIncludeRange(toIpAddrBytes("10.0.0.2")));
+        assertTrue(index.hasIncludeRange(toIpAddrBytes("172.16.0.128")));
+        assertFalse(index.hasIncludeRange(toIpAddrBytes("172.16.1.0")));
+        assertFalse(index.hasIncludeRange(toIpAddrBytes("1.1.1.1")));
+        assertFalse(index.hasIncludeRange(toIpAddrBytes("255.255.255.255")));
+    }
+
+    public void testMixedAddressFamilies() {
+        final PackageIpIndex index = new PackageIpIndex.Builder(null)
+            .addIncludeRange("2001:db8::", "2001:db8::ffff")
+            .addIncludeRange("192.168.0.0", "192.168.255.255")
+            .build();
+
+        assertTrue(index.hasIncludeRange(toIpAddrBytes("2001:db8::1234")));
+        assertFalse(index.hasIncludeRange(toIpAddrBytes("2001:db8::1:0")));
+        assertTrue(index.hasIncludeRange(toIpAddrBytes("192.168.10.1")));
+        // the IPv4 range must not match the IPv4-looking tail of an IPv6 address
+        assertFalse(index.hasIncludeRange(toIpAddrBytes("::c0a8:a01")));
+    }
+
+    public void testInvertedRange() {
+        final PackageIpIndex index = new PackageIpIndex.Builder(null).addIncludeRange("192.168.1.10", "192.168.1.1").build();
+
+        // matches the same addresses as InetAddressUtils.isInetAddressInRange()
+        for (int i = 0; i < 20; i++) {
+            final String a = "192.168.1." + i;
+            assertEquals(a, InetAddressUtils.isInetAddressInRange(a, "192.168.1.10", "192.168.1.1"), index.hasIncludeRange(toIpAddrBytes(a)));
+        }
+    }
+
+    public void testPollerPackageMembership() throws Exception {
+        FilterDaoFactory.setInstance(new StaticFilterDao(Arrays.asList(addr("192.168.1.1"), addr("192.168.1.5"), addr("10.1.1.1"), addr("123.12.123.121"))));
+
+        final TestPollerConfigManager factory = new TestPollerConfigManager(getPollerConfig(), "localhost", false);
+        final Package pkg = factory.getPackage("bench");
+
+        assertTrue(factory.isInterfaceInPackage("192.168.1.1", pkg));
+        assertFalse("excluded", factory.isInterfaceInPackage("192.168.1.5", pkg));
+        assertFalse("not in the include range", factory.isInterfaceInPackage("10.1.1.1", pkg));
+        assertTrue("specific", factory.isInterfaceInPackage("123.12.123.121", pkg));
+        assertFalse("not in the filter", factory.isInterfaceInPackage("192.168.1.2", pkg));
+    }
+
+    /**
+     * Times isInterfaceInPackage() with 100k addresses selected by the filter.
+     * Rename to testIsInterfaceInPackageBenchmark to run it.
+     */
+    public void xtestIsInterfaceInPackageBenchmark() throws Exception {
+        final int count = 100000;
+        final List<InetAddress> addresses = new ArrayList<InetAddress>(count);
+        final List<String> ifaces = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            final String address = (i < 65536 ? "192.168." : "10.0.") + (i >> 8 & 0xff) + "." + (i & 0xff);
+            addresses.add(addr(address));
+            ifaces.add(address);
+        }
+        FilterDaoFactory.setInstance(new StaticFilterDao(addresses));
+
+        final TestPollerConfigManager factory = new TestPollerConfigManager(getPollerConfig(), "localhost", false);
+        final Package pkg = factory.getPackage("bench");
+
+        for (int round = 0; round < 5; round++) {
+            int matched = 0;
+            final long start = System.nanoTime();
+            for (final String iface : ifaces) {
+                if (factory.isInterfaceInPackage(iface, pkg)) {
+                    matched++;
+                }
+            }
+            final long elapsed = System.nanoTime() - start;
+            System.err.println(String.format("round %d: %d of %d interfaces in package, %.1f us/call", round, matched, count, elapsed / 1000.0 / count));
+        }
+    }
+
+    private static String getPollerConfig() {
+        return "<poller-configuration threads=\"10\" nextOutageId=\"SELECT nextval('outageNxtId')\" serviceUnresponsiveEnabled=\"false\">\n" +
+            "   <node-outage status=\"on\" pollAllIfNoCriticalServiceDefined=\"true\"></node-outage>\n" +
+            "   <package name=\"bench\">\n" +
+            "       <filter>IPADDR != '0.0.0.0'</filter>\n" +
+            "       <specific>123.12.123.121</specific>\n" +
+            "       <include-range begin=\"192.168.0.0\" end=\"192.168.255.255\"/>\n" +
+            "       <include-range begin=\"172.16.0.0\" end=\"172.31.255.255\"/>\n" +
+            "       <exclude-range begin=\"192.168.1.5\" end=\"192.168.1.9\"/>\n" +
+            "       <exclude-range begin=\"192.168.200.0\" end=\"192.168.200.255\"/>\n" +
+            "       <rrd step=\"300\"><rra>RRA:AVERAGE:0.5:1:2016</rra></rrd>\n" +
+            "       <service name=\"ICMP\" interval=\"300000\"/>\n" +
+            "       <downtime begin=\"0\" end=\"30000\"/>\n" +
+            "   </package>\n" +
+            "   <monitor service=\"ICMP\" class-name=\"org.opennms.netmgt.mock.MockMonitor\"/>\n" +
+            "</poller-configuration>\n";
+    }
+
+    private static class StaticFilterDao implements FilterDao {
+        private final List<InetAddress> m_addresses;
+
+        public StaticFilterDao(final List<InetAddress> addresses) {
+            m_addresses = addresses;
+        }
+
+        @Override
+        public SortedMap<Integer, String> getNodeMap(final String rule) throws FilterParseException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<InetAddress, Set<String>> getIPAddressServiceMap(final String rule) throws FilterParseException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<InetAddress> getActiveIPAddressList(final String rule) throws FilterParseException {
+            return m_addresses;
+        }
+
+        @Override
+        public List<InetAddress> getIPAddressList(final String rule) throws FilterParseException {
+            return m_addresses;
+        }
+
+        @Override
+        public boolean isValid(final String addr, final String rule) throws FilterParseException {
+            return true;
+        }
+
+        @Override
+        public boolean isRuleMatching(final String rule) throws FilterParseException {
+            return true;
+        }
+
+        @Override
+        public void validateRule(final String rule) throws FilterParseException {
+        }
+    }
+}
@@ -29,7 +29,9 @@
 package org.opennms.netmgt.dao;
 
 import java.util.List;
+import java.util.Map;
 
+import org.opennms.core.criteria.Criteria;
 import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.alarm.AlarmSummary;
 
@@ -54,5 +56,30 @@ public interface AlarmDao extends OnmsDao<OnmsAlarm, Integer> {
      * @return A list of alarm summaries.
      */
     List<AlarmSummary> getNodeAlarmSummaries();
-    
+
+    /**
+     * <p>Get the IDs of all alarms that have a reduction key.</p>
+     *
+     * @return a map of reduction keys to alarm IDs
+     */
+    Map<String, Integer> getAlarmIdsByReductionKey();
+
+    /**
+     * Runs the query and hands each entity to the handler as it is read
+     * from the database cursor instead of building a list.
+     *
+     * @param criteria the query
+     * @param fetchSize the number of rows to fetch from the cursor at a time
+     * @param handler receives each entity
+     */
+    void scrollMatching(Criteria criteria, int fetchSize, ResultHandler<OnmsAlarm> handler);
+
+    /**
+     * <p>Estimate the number of alarms from the planner statistics instead of
+     * counting them.</p>
+     *
+     * @return the estimated number of alarms
+     */
+    int estimateCountAll();
+
 }
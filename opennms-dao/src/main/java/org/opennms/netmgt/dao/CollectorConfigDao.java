@@ -45,6 +45,13 @@ public interface CollectorConfigDao {
      */
     int getSchedulerThreads();
 
+    /**
+     * <p>getSchedulerType</p>
+     *
+     * @return the type of scheduler to create, "legacy" or "timing-wheel"
+     */
+    String getSchedulerType();
+
     /**
      * <p>getCollectors</p>
      *
@@ -28,6 +28,8 @@
 
 package org.opennms.netmgt.dao;
 
+import org.opennms.core.criteria.Criteria;
+import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.OnmsEvent;
 
 /**
@@ -43,4 +45,31 @@ public interface EventDao extends OnmsDao<OnmsEvent, Integer> {
      * @return a int.
      */
     int deletePreviousEventsForAlarm(final Integer id, final OnmsEvent e);
+
+    /**
+     * <p>Set the alarm of an event without loading the event.</p>
+     *
+     * @param eventId the ID of the event
+     * @param alarm the alarm the event was reduced to
+     * @return the number of events updated
+     */
+    int updateAlarmForEvent(final Integer eventId, final OnmsAlarm alarm);
+
+    /**
+     * Runs the query and hands each entity to the handler as it is read
+     * from the database cursor instead of building a list.
+     *
+     * @param criteria the query
+     * @param fetchSize the number of rows to fetch from the cursor at a time
+     * @param handler receives each entity
+     */
+    void scrollMatching(Criteria criteria, int fetchSize, ResultHandler<OnmsEvent> handler);
+
+    /**
+     * <p>Estimate the number of events from the planner statistics instead of
+     * counting them.</p>
+     *
+     * @return the estimated number of events
+     */
+    int estimateCountAll();
 }
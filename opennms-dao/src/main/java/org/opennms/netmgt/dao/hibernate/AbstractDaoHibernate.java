@@ -40,11 +40,14 @@ import org.hibernate.EntityMode;
 import org.hibernate.HibernateException;
 import org.hibernate.LockMode;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.criterion.Projections;
 import org.hibernate.metadata.ClassMetadata;
 import org.opennms.core.utils.LogUtils;
 import org.opennms.netmgt.dao.OnmsDao;
+import org.opennms.netmgt.dao.ResultHandler;
 import org.opennms.netmgt.model.OnmsCriteria;
 import org.springframework.dao.DataAccessException;
 import org.springframework.orm.hibernate3.HibernateCallback;
@@ -60,6 +63,7 @@ public abstract class AbstractDaoHibernate<T, K extends Serializable> extends Hi
     
     Class<T> m_entityClass;
     private String m_lockName;
+    private String m_tableName;
     private final HibernateCriteriaConverter m_criteriaConverter = new HibernateCriteriaConverter();
     
     /**
@@ -73,7 +77,8 @@ public abstract class AbstractDaoHibernate<T, K extends Serializable> extends Hi
         super();
         m_entityClass = entityClass;
         Table table = m_entityClass.getAnnotation(Table.class);
-        m_lockName = (table == null || "".equals(table.name()) ? m_entityClass.getSimpleName() : table.name()).toUpperCase() + "_ACCESS";
+        m_tableName = (table == null || "".equals(table.name()) ? m_entityClass.getSimpleName() : table.name());
+        m_lockName = m_tableName.toUpperCase() + "_ACCESS";
         
         
     }
@@ -356,6 +361,70 @@ public abstract class AbstractDaoHibernate<T, K extends Serializable> extends Hi
         return getHibernateTemplate().executeFind(callback);
     }
     
+    /**
+     * Runs the query and hands each entity to the handler as it is read from
+     * a forward-only database cursor, evicting it from the session
+     * afterwards, so that memory use does not grow with the size of the
+     * result. The JDBC driver only keeps a server-side cursor open when this
+     * is called inside a transaction.
+     *
+     * @param criteria the query
+     * @param fetchSize the number of rows to fetch from the cursor at a time
+     * @param handler receives each entity
+     */
+    @SuppressWarnings("unchecked")
+    public void scrollMatching(final org.opennms.core.criteria.Criteria criteria, final int fetchSize, final ResultHandler<T> handler) {
+        final HibernateCallback<Object> callback = new HibernateCallback<Object>() {
+            @Override
+            public Object doInHibernate(final Session session) throws HibernateException, SQLException {
+                LogUtils.debugf(this, "criteria = %s", criteria);
+                final Criteria hibernateCriteria = m_criteriaConverter.convert(criteria, session);
+                hibernateCriteria.setFetchSize(fetchSize);
+                final ScrollableResults results = hibernateCriteria.scroll(ScrollMode.FORWARD_ONLY);
+                try {
+                    while (results.next()) {
+                        final T result = (T)results.get(0);
+                        handler.handleResult(result);
+                        session.evict(result);
+                    }
+                } finally {
+                    results.close();
+                }
+                return null;
+            }
+        };
+        getHibernateTemplate().execute(callback);
+    }
+
+    /**
+     * Returns the planner's estimate of the number of rows in this entity's
+     * table, as of the last VACUUM or ANALYZE. This is a single catalog
+     * lookup, unlike {@link #countAll()} which has to scan the table. The
+     * rows of tables inheriting from it, such as partitions, are included.
+     * Falls back to {@link #countAll()} when the tables have never been
+     * analyzed.
+     *
+     * @return the estimated number of rows
+     */
+    public int estimateCountAll() {
+        final HibernateCallback<Number> callback = new HibernateCallback<Number>() {
+            @Override
+            public Number doInHibernate(final Session session) throws HibernateException, SQLException {
+                return (Number)session.createSQLQuery(
+                    "SELECT CAST(c.reltuples AS float8) + COALESCE((" +
+                    "  SELECT SUM(CAST(child.reltuples AS float8)) FROM pg_inherits i JOIN pg_class child ON child.oid = i.inhrelid WHERE i.inhparent = c.oid" +
+                    "), 0) FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace" +
+                    " WHERE c.relname = ? AND n.nspname = current_schema()"
+                ).setString(0, m_tableName.toLowerCase()).uniqueResult();
+            }
+        };
+        final Number estimate = getHibernateTemplate().execute(callback);
+        if (estimate == null || estimate.floatValue() <= 0) {
+            return countAll();
+        }
+        return Math.round(estimate.floatValue());
+    }
+
     /** {@inheritDoc} */
     @Override
     public int countMatching(final org.opennms.core.criteria.Criteria criteria) throws DataAccessException {
@@ -28,7 +28,9 @@
 
 package org.opennms.netmgt.dao.hibernate;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.opennms.netmgt.dao.AlarmDao;
 import org.opennms.netmgt.model.OnmsAlarm;
@@ -69,4 +71,13 @@ public class AlarmDaoHibernate extends AbstractDaoHibernate<OnmsAlarm, Integer>
         );
     }
 
+        @Override
+    public Map<String, Integer> getAlarmIdsByReductionKey() {
+        final Map<String, Integer> ids = new HashMap<String, Integer>();
+        for (final Object[] row : findObjects(Object[].class, "SELECT alarm.reductionKey, alarm.id FROM OnmsAlarm AS alarm WHERE alarm.reductionKey IS NOT NULL")) {
+            ids.put((String)row[0], (Integer)row[1]);
+        }
+        return ids;
+    }
+
 }
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.dao.hibernate;
 
 import org.opennms.netmgt.dao.EventDao;
+import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.OnmsEvent;
 import org.springframework.dao.DataAccessException;
 
@@ -50,4 +51,12 @@ public class EventDaoHibernate extends AbstractDaoHibernate<OnmsEvent, Integer>
         return bulkDelete(hql, values);
     }
 
+    /** {@inheritDoc} */
+        @Override
+    public int updateAlarmForEvent(Integer eventId, OnmsAlarm alarm) throws DataAccessException {
+        String hql = "update OnmsEvent set alarm = ? where id = ?";
+        Object[] values = {alarm, eventId};
+        return getHibernateTemplate().bulkUpdate(hql, values);
+    }
+
 }
@@ -28,7 +28,9 @@
 
 package org.opennms.netmgt.dao.support;
 
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.PriorityQueue;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -41,13 +43,17 @@ import org.springframework.util.Assert;
 /**
  * <p>BottomNAttributeStatisticVisitor class.</p>
  *
+ * Only the best <code>count</code> statistics are kept while visiting, in a
+ * heap with the worst of them on top, so memory use does not grow with the
+ * number of attributes visited. Visiting is thread-safe.
+ *
  * @author <a href="mailto:dj@opennms.org">DJ Gregor</a>
  * @version $Id: $
  */
 public class BottomNAttributeStatisticVisitor implements AttributeStatisticVisitorWithResults, InitializingBean {
 
     private Integer m_count;
-    private SortedSet<AttributeStatistic> m_results = new TreeSet<AttributeStatistic>(new AttributeStatisticComparator());
+    private final PriorityQueue<AttributeStatistic> m_results = new PriorityQueue<AttributeStatistic>(11, Collections.reverseOrder(new AttributeStatisticComparator()));
     protected Comparator<Double> m_comparator = new DoubleComparator();
 
     /**
@@ -62,7 +68,16 @@ public class BottomNAttributeStatisticVisitor implements AttributeStatisticVisit
     public void visit(OnmsAttribute attribute, double statistic) {
         Assert.notNull(attribute, "attribute argument must not be null");
         
-        m_results.add(new AttributeStatistic(attribute, statistic));
+        AttributeStatistic stat = new AttributeStatistic(attribute, statistic);
+        synchronized (m_results) {
+            if (m_count == null || m_results.size() < m_count) {
+                m_results.add(stat);
+            } else if (m_results.comparator().compare(stat, m_results.peek()) > 0) {
+                // better than the worst statistic we have kept so far
+                m_results.poll();
+                m_results.add(stat);
+            }
+        }
     }
 
     /**
@@ -100,12 +115,8 @@ public class BottomNAttributeStatisticVisitor implements AttributeStatisticVisit
     public SortedSet<AttributeStatistic> getResults() {
         SortedSet<AttributeStatistic> top = new TreeSet<AttributeStatistic>(new AttributeStatisticComparator());
         
-        for (AttributeStatistic stat : m_results) {
-            top.add(stat);
-            
-            if (top.size() >= m_count) {
-                break;
-            }
+        synchronized (m_results) {
+            top.addAll(m_results);
         }
         
         return top;
@@ -62,6 +62,8 @@ import org.opennms.netmgt.model.OnmsLocationMonitor;
 import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.model.OnmsResource;
 import org.opennms.netmgt.model.OnmsResourceType;
+import org.opennms.netmgt.rrd.RrdFileIndex;
+import org.opennms.netmgt.rrd.RrdUtils;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.util.Assert;
@@ -235,6 +237,11 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
         }
 
         initResourceTypes();
+
+        final RrdFileIndex fileIndex = RrdUtils.getFileIndex();
+        if (fileIndex != null) {
+            fileIndex.start(m_rrdDirectory);
+        }
     }
     
 
@@ -572,7 +579,7 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
 
         // Get all of the non-numeric directory names in the RRD directory; these
         // are the names of the domains that have performance data
-        File[] domainDirs = snmp.listFiles(RrdFileConstants.DOMAIN_DIRECTORY_FILTER);
+        File[] domainDirs = ResourceTypeUtils.listFiles(snmp, RrdFileConstants.DOMAIN_DIRECTORY_FILTER);
 
         if (domainDirs != null && domainDirs.length > 0) {
             for (File domainDir : domainDirs) {
@@ -616,7 +623,7 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
     protected OnmsResource getForeignSourceNodeEntityResource(String resource) {
         
         File idDir = new File(getRrdDirectory(), SNMP_DIRECTORY + File.separator + ResourceTypeUtils.getRelativeNodeSourceDirectory(resource).toString());
-        if (idDir.isDirectory() && RrdFileConstants.NODESOURCE_DIRECTORY_FILTER.accept(idDir)) {
+        if (ResourceTypeUtils.isDirectory(idDir) && RrdFileConstants.NODESOURCE_DIRECTORY_FILTER.accept(idDir)) {
             return m_nodeSourceResourceType.createChildResource(resource);
         } else {
            log().debug("resource " + resource + " not found by foreign source/foreignId. Trying as a node resource instead...");
@@ -642,7 +649,7 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
         
         File directory = new File(getRrdDirectory(), SNMP_DIRECTORY);
         File domainDir = new File(directory, domain);
-        if (!domainDir.isDirectory()) {
+        if (!ResourceTypeUtils.isDirectory(domainDir)) {
             throw new ObjectRetrievalFailureException(OnmsResource.class, domain, "Domain not found due to domain RRD directory not existing or not a directory: " + domainDir.getAbsolutePath(), null);
         }
         
@@ -657,7 +664,7 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
         IntSet nodes = new IntSet();
         
         File directory = new File(getRrdDirectory(), SNMP_DIRECTORY);
-        File[] nodeDirs = directory.listFiles(RrdFileConstants.NODE_DIRECTORY_FILTER);
+        File[] nodeDirs = ResourceTypeUtils.listFiles(directory, RrdFileConstants.NODE_DIRECTORY_FILTER);
 
         if (nodeDirs == null || nodeDirs.length == 0) {
             return nodes;
@@ -684,10 +691,10 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
        Set<String> nodeSourceDirectories = new HashSet<String>();
        File snmpDir = new File(getRrdDirectory(), SNMP_DIRECTORY);
        File forSrcDir = new File(snmpDir, FOREIGN_SOURCE_DIRECTORY);
-       File[] sourceDirs = forSrcDir.listFiles(RrdFileConstants.SOURCE_DIRECTORY_FILTER);
+       File[] sourceDirs = ResourceTypeUtils.listFiles(forSrcDir, RrdFileConstants.SOURCE_DIRECTORY_FILTER);
        if (sourceDirs != null) {
            for (File sourceDir : sourceDirs) {
-               File [] ids = sourceDir.listFiles(RrdFileConstants.NODESOURCE_DIRECTORY_FILTER);
+               File [] ids = ResourceTypeUtils.listFiles(sourceDir, RrdFileConstants.NODESOURCE_DIRECTORY_FILTER);
                for (File id : ids) {
                    nodeSourceDirectories.add(sourceDir.getName() + ":" + id.getName());
                }
@@ -701,7 +708,7 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
     private static Set<String> findChildrenMatchingFilter(File directory, FileFilter filter) {
         Set<String> children = new HashSet<String>();
         
-        File[] nodeDirs = directory.listFiles(filter);
+        File[] nodeDirs = ResourceTypeUtils.listFiles(directory, filter);
 
         if (nodeDirs == null || nodeDirs.length == 0) {
             return children;
@@ -725,13 +732,13 @@ public class DefaultResourceDao implements ResourceDao, InitializingBean {
     private static Set<String> findChildrenChildrenMatchingFilter(File directory, FileFilter filter) {
         Set<String> children = new HashSet<String>();
         
-        File[] locationMonitorDirs = directory.listFiles();
+        File[] locationMonitorDirs = ResourceTypeUtils.listFiles(directory);
         if (locationMonitorDirs == null) {
             return children;
         }
         
         for (File locationMonitorDir : locationMonitorDirs) {
-            File[] intfDirs = locationMonitorDir.listFiles(filter);
+            File[] intfDirs = ResourceTypeUtils.listFiles(locationMonitorDir, filter);
 
             if (intfDirs == null || intfDirs.length == 0) {
                 continue;
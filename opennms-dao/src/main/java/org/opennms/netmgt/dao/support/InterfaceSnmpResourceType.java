@@ -104,18 +104,18 @@ public class InterfaceSnmpResourceType implements OnmsResourceType {
     
     private boolean isResourceTypeOnParentResource(String parentResource) {
         File parent = getParentResourceDirectory(parentResource, false);
-        if (!parent.isDirectory()) {
+        if (!ResourceTypeUtils.isDirectory(parent)) {
             return false;
         }
         
-        return parent.listFiles(RrdFileConstants.INTERFACE_DIRECTORY_FILTER).length > 0; 
+        return ResourceTypeUtils.listFiles(parent, RrdFileConstants.INTERFACE_DIRECTORY_FILTER).length > 0; 
     }
     
     private File getParentResourceDirectory(String parentResource, boolean verify) {
         File snmp = new File(m_resourceDao.getRrdDirectory(verify), DefaultResourceDao.SNMP_DIRECTORY);
         
         File parent = new File(snmp, parentResource);
-        if (verify && !parent.isDirectory()) {
+        if (verify && !ResourceTypeUtils.isDirectory(parent)) {
             throw new ObjectRetrievalFailureException(File.class, "No parent resource directory exists for " + parentResource + ": " + parent);
         }
         
@@ -139,7 +139,7 @@ public class InterfaceSnmpResourceType implements OnmsResourceType {
             
         ArrayList<OnmsResource> resources = new ArrayList<OnmsResource>();
 
-        File[] intfDirs = parent.listFiles(RrdFileConstants.INTERFACE_DIRECTORY_FILTER);
+        File[] intfDirs = ResourceTypeUtils.listFiles(parent, RrdFileConstants.INTERFACE_DIRECTORY_FILTER);
 
         Set<OnmsSnmpInterface> snmpInterfaces = node.getSnmpInterfaces();
         Map<String, OnmsSnmpInterface> intfMap = new HashMap<String, OnmsSnmpInterface>();
@@ -359,11 +359,11 @@ public class InterfaceSnmpResourceType implements OnmsResourceType {
         File snmp = new File(m_resourceDao.getRrdDirectory(), DefaultResourceDao.SNMP_DIRECTORY);
         File domainDir = new File(snmp, domain);
 
-        if (!domainDir.exists() || !domainDir.isDirectory()) {
+        if (!ResourceTypeUtils.isDirectory(domainDir)) {
             throw new IllegalArgumentException("No such directory: " + domainDir);
         }
 
-        File[] intfDirs = domainDir.listFiles(RrdFileConstants.DOMAIN_INTERFACE_DIRECTORY_FILTER);
+        File[] intfDirs = ResourceTypeUtils.listFiles(domainDir, RrdFileConstants.DOMAIN_INTERFACE_DIRECTORY_FILTER);
 
         if (intfDirs != null && intfDirs.length > 0) {
             intfs.ensureCapacity(intfDirs.length);
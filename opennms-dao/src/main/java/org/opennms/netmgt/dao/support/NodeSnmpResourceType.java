@@ -77,7 +77,7 @@ public class NodeSnmpResourceType implements OnmsResourceType {
     /** {@inheritDoc} */
     @Override
     public boolean isResourceTypeOnNode(int nodeId) {
-        return getResourceDirectory(nodeId, false).isDirectory();
+        return ResourceTypeUtils.isDirectory(getResourceDirectory(nodeId, false));
     }
     
     /**
@@ -91,7 +91,7 @@ public class NodeSnmpResourceType implements OnmsResourceType {
         File snmp = new File(m_resourceDao.getRrdDirectory(verify), DefaultResourceDao.SNMP_DIRECTORY);
         
         File node = new File(snmp, Integer.toString(nodeId));
-        if (verify && !node.isDirectory()) {
+        if (verify && !ResourceTypeUtils.isDirectory(node)) {
             throw new ObjectRetrievalFailureException(File.class, "No node directory exists for node " + nodeId + ": " + node);
         }
         
@@ -143,10 +143,10 @@ public class NodeSnmpResourceType implements OnmsResourceType {
     public boolean isResourceTypeOnNodeSource(String nodeSource, int nodeId) {
         File nodeSnmpDir = new File(m_resourceDao.getRrdDirectory(), DefaultResourceDao.SNMP_DIRECTORY + File.separator
                        + ResourceTypeUtils.getRelativeNodeSourceDirectory(nodeSource).toString());
-        if (!nodeSnmpDir.isDirectory()) {
+        if (!ResourceTypeUtils.isDirectory(nodeSnmpDir)) {
             throw new ObjectRetrievalFailureException(File.class, "No directory exists for nodeSource " + nodeSource);
         }
-        return nodeSnmpDir.listFiles(RrdFileConstants.RRD_FILENAME_FILTER).length > 0; 
+        return ResourceTypeUtils.listFiles(nodeSnmpDir, RrdFileConstants.RRD_FILENAME_FILTER).length > 0; 
     }
     
     /** {@inheritDoc} */
@@ -111,6 +111,10 @@ public class NullRrdStrategy implements RrdStrategy<Object,Object> {
 			throws Exception {
 	}
 
+    @Override
+    public void updateFile(Object rrd, String owner, long timestamp, double[] values) throws Exception {
+    }
+
     @Override
     public int getGraphLeftOffset() {
         return 0;
@@ -29,9 +29,13 @@
 package org.opennms.netmgt.dao.support;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -43,6 +47,7 @@ import org.opennms.core.utils.ThreadCategory;
 import org.opennms.netmgt.model.OnmsAttribute;
 import org.opennms.netmgt.model.RrdGraphAttribute;
 import org.opennms.netmgt.model.StringPropertyAttribute;
+import org.opennms.netmgt.rrd.RrdFileIndex;
 import org.opennms.netmgt.rrd.RrdUtils;
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.util.Assert;
@@ -88,7 +93,7 @@ public abstract class ResourceTypeUtils {
     private static void loadRrdAttributes(File rrdDirectory, String relativePath, Set<OnmsAttribute> attributes) {
         int suffixLength = RrdFileConstants.getRrdSuffix().length();
         File resourceDir = new File(rrdDirectory, relativePath);
-        File[] files = resourceDir.listFiles(RrdFileConstants.RRD_FILENAME_FILTER);
+        File[] files = listFiles(resourceDir, RrdFileConstants.RRD_FILENAME_FILTER);
         
         if (files == null) {
             return;
@@ -112,6 +117,105 @@ public abstract class ResourceTypeUtils {
         }
     }
     
+    /**
+     * Returns true if the given file is a directory. Below an indexed RRD
+     * directory this is answered from the {@link RrdFileIndex} and is only
+     * true for directories that contain RRD files.
+     *
+     * @param file a {@link java.io.File} object.
+     * @return a boolean.
+     */
+    public static boolean isDirectory(File file) {
+        final RrdFileIndex index = getFileIndex(file);
+        return index == null ? file.isDirectory() : index.isDirectory(file);
+    }
+
+    /**
+     * Lists the given directory, from the {@link RrdFileIndex} if it covers
+     * the directory.
+     *
+     * @param directory a {@link java.io.File} object.
+     * @return the entries of the directory, or null if it is not a directory
+     */
+    public static File[] listFiles(File directory) {
+        return listFiles(directory, (FileFilter) null);
+    }
+
+    /**
+     * Lists the entries of the given directory accepted by the filter, from
+     * the {@link RrdFileIndex} if it covers the directory.
+     *
+     * @param directory a {@link java.io.File} object.
+     * @param filter a {@link java.io.FileFilter} object, or null to list everything.
+     * @return the matching entries, or null if it is not a directory
+     */
+    public static File[] listFiles(File directory, FileFilter filter) {
+        final RrdFileIndex index = getFileIndex(directory);
+        if (index == null) {
+            return directory.listFiles(filter);
+        }
+
+        final String[] directories = index.getDirectoryNames(directory);
+        final String[] files = index.getFileNames(directory);
+        if (directories == null || files == null) {
+            return null;
+        }
+
+        final List<File> matches = new ArrayList<File>(directories.length + files.length);
+        for (final String name : directories) {
+            final File file = new File(directory, name);
+            if (filter == null || filter.accept(file)) {
+                matches.add(file);
+            }
+        }
+        for (final String name : files) {
+            final File file = new File(directory, name);
+            if (filter == null || filter.accept(file)) {
+                matches.add(file);
+            }
+        }
+        return matches.toArray(new File[matches.size()]);
+    }
+
+    /**
+     * Lists the entries of the given directory accepted by the filter, from
+     * the {@link RrdFileIndex} if it covers the directory.
+     *
+     * @param directory a {@link java.io.File} object.
+     * @param filter a {@link java.io.FilenameFilter} object.
+     * @return the matching entries, or null if it is not a directory
+     */
+    public static File[] listFiles(File directory, FilenameFilter filter) {
+        final RrdFileIndex index = getFileIndex(directory);
+        if (index == null) {
+            return directory.listFiles(filter);
+        }
+
+        final String[] directories = index.getDirectoryNames(directory);
+        final String[] files = index.getFileNames(directory);
+        if (directories == null || files == null) {
+            return null;
+        }
+
+        final List<File> matches = new ArrayList<File>(directories.length + files.length);
+        for (final String name : directories) {
+            if (filter.accept(directory, name)) {
+                matches.add(new File(directory, name));
+            }
+        }
+        for (final String name : files) {
+            if (filter.accept(directory, name)) {
+                matches.add(new File(directory, name));
+            }
+        }
+        return matches.toArray(new File[matches.size()]);
+    }
+
+    private static RrdFileIndex getFileIndex(File file) {
+        final RrdFileIndex index = RrdUtils.getFileIndex();
+        return index != null && index.isIndexed(file) ? index : null;
+    }
+
     /**
      * <p>getDsProperties</p>
      *
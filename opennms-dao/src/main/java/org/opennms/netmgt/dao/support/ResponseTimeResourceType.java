@@ -106,7 +106,7 @@ public class ResponseTimeResourceType implements OnmsResourceType {
 
             final File iface = getInterfaceDirectory(ipAddr, false);
             
-            if (iface.isDirectory()) {
+            if (ResourceTypeUtils.isDirectory(iface)) {
                 resources.add(createResource(i));
             }
         }
@@ -118,7 +118,7 @@ public class ResponseTimeResourceType implements OnmsResourceType {
     	final File response = new File(m_resourceDao.getRrdDirectory(verify), DefaultResourceDao.RESPONSE_DIRECTORY);
         
     	final File intfDir = new File(response, ipAddr);
-        if (verify && !intfDir.isDirectory()) {
+        if (verify && !ResourceTypeUtils.isDirectory(intfDir)) {
             throw new ObjectRetrievalFailureException(File.class, "No interface directory exists for " + ipAddr + ": " + intfDir);
         }
 
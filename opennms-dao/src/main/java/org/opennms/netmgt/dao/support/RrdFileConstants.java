@@ -99,7 +99,7 @@ public class RrdFileConstants extends Object {
      * @return a boolean.
      */
     public static final boolean isValidRRDNodeDir(final File file) {
-        if (!file.isDirectory()) {
+        if (!ResourceTypeUtils.isDirectory(file)) {
             return false;
         }
 
@@ -111,14 +111,14 @@ public class RrdFileConstants extends Object {
         }
 
         // if the node dir contains RRDs, then it is queryable
-        final File[] nodeRRDs = file.listFiles(RRD_FILENAME_FILTER);
+        final File[] nodeRRDs = ResourceTypeUtils.listFiles(file, RRD_FILENAME_FILTER);
         if (nodeRRDs != null && nodeRRDs.length > 0) {
             return true;
         }
 
         // if the node dir contains queryable interface directories, then
         // it is queryable
-        final File[] intfDirs = file.listFiles(INTERFACE_DIRECTORY_FILTER);
+        final File[] intfDirs = ResourceTypeUtils.listFiles(file, INTERFACE_DIRECTORY_FILTER);
         if (intfDirs != null && intfDirs.length > 0) {
             return true;
         }
@@ -144,19 +144,19 @@ public class RrdFileConstants extends Object {
      * @return a boolean.
      */
      public static final boolean isValidRRDNodeSourceDir(final File file) {
-        if (!file.isDirectory()) {
+        if (!ResourceTypeUtils.isDirectory(file)) {
             return false;
         }
     
         // if the nodeSource dir contains RRDs, then it is queryable
-        final File[] nodeRRDs = file.listFiles(RRD_FILENAME_FILTER);
+        final File[] nodeRRDs = ResourceTypeUtils.listFiles(file, RRD_FILENAME_FILTER);
         if (nodeRRDs != null && nodeRRDs.length > 0) {
             return true;
         }
 
         // if the nodeSource dir contains queryable interface directories, then
         // it is queryable
-        final File[] intfDirs = file.listFiles(INTERFACE_DIRECTORY_FILTER);
+        final File[] intfDirs = ResourceTypeUtils.listFiles(file, INTERFACE_DIRECTORY_FILTER);
         if (intfDirs != null && intfDirs.length > 0) {
 
             return true;
@@ -184,7 +184,7 @@ public class RrdFileConstants extends Object {
     };
 
     public static final boolean isValidRRDSourceDir(final File file) {
-        if (!file.isDirectory()) {
+        if (!ResourceTypeUtils.isDirectory(file)) {
             return false;
         }
 
@@ -195,7 +195,7 @@ public class RrdFileConstants extends Object {
            
             // if the source dir contains integer-named directories, then
             // it is queryable
-            final File[] idDirs = file.listFiles(NODE_DIRECTORY_FILTER);
+            final File[] idDirs = ResourceTypeUtils.listFiles(file, NODE_DIRECTORY_FILTER);
             if (idDirs != null && idDirs.length > 0) {
                 return true;
             }
@@ -211,7 +211,7 @@ public class RrdFileConstants extends Object {
      * @return a boolean.
      */
     public static final boolean isValidRRDDomainDir(final File file) {
-        if (!file.isDirectory()) {
+        if (!ResourceTypeUtils.isDirectory(file)) {
             return false;
         }
 
@@ -222,7 +222,7 @@ public class RrdFileConstants extends Object {
         
             // if the domain dir contains queryable interface directories, then
             // it is queryable
-            final File[] intfDirs = file.listFiles(INTERFACE_DIRECTORY_FILTER);
+            final File[] intfDirs = ResourceTypeUtils.listFiles(file, INTERFACE_DIRECTORY_FILTER);
             if (intfDirs != null && intfDirs.length > 0) {
                 for (File intfDir : intfDirs) {
                     try {
@@ -246,11 +246,11 @@ public class RrdFileConstants extends Object {
      * @return a boolean.
      */
     public static final boolean isValidRRDInterfaceDir(final File file) {
-        if (!file.isDirectory()) {
+        if (!ResourceTypeUtils.isDirectory(file)) {
             return false;
         }
 
-        final File[] intfRRDs = file.listFiles(RRD_FILENAME_FILTER);
+        final File[] intfRRDs = ResourceTypeUtils.listFiles(file, RRD_FILENAME_FILTER);
 
         if (intfRRDs != null && intfRRDs.length > 0) {
             return true;
@@ -260,7 +260,7 @@ public class RrdFileConstants extends Object {
     }
 
     public static final boolean isValidRRDDomainInterfaceDir(final File file) {
-        if (!file.isDirectory()) {
+        if (!ResourceTypeUtils.isDirectory(file)) {
             return false;
         }
 
@@ -268,7 +268,7 @@ public class RrdFileConstants extends Object {
             // if the interface directory name is an integer (Long) its not part of a domain
             Long.valueOf(file.getName());
         } catch (final Throwable ee) {
-            final File[] intfRRDs = file.listFiles(RRD_FILENAME_FILTER);
+            final File[] intfRRDs = ResourceTypeUtils.listFiles(file, RRD_FILENAME_FILTER);
 
             if (intfRRDs != null && intfRRDs.length > 0) {
                 return true;
@@ -286,12 +286,12 @@ public class RrdFileConstants extends Object {
      * @return a boolean.
      */
     public static final boolean isValidRRDLatencyDir(final File file) {
-        if (!file.isDirectory()) {
+        if (!ResourceTypeUtils.isDirectory(file)) {
             return false;
         }
 
         // if the directory contains RRDs, then it is queryable
-        final File[] nodeRRDs = file.listFiles(RRD_FILENAME_FILTER);
+        final File[] nodeRRDs = ResourceTypeUtils.listFiles(file, RRD_FILENAME_FILTER);
         if (nodeRRDs != null && nodeRRDs.length > 0) {
             return true;
         }
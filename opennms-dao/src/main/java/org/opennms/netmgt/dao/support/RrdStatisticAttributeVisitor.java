@@ -28,6 +28,9 @@
 
 package org.opennms.netmgt.dao.support;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.opennms.netmgt.dao.RrdDao;
 import org.opennms.netmgt.model.AttributeStatisticVisitor;
 import org.opennms.netmgt.model.AttributeVisitor;
@@ -39,6 +42,12 @@ import org.springframework.util.Assert;
 /**
  * <p>RrdStatisticAttributeVisitor class.</p>
  *
+ * If an executor is set, the RRD fetches are run on it and results are handed
+ * to the statistic visitor from the executor's threads; call
+ * {@link #await()} after the walk to wait for the outstanding fetches. The
+ * resource tree itself is still walked by the calling thread, which keeps
+ * any lazy loading of resources on the thread that owns the session.
+ *
  * @author <a href="mailto:dj@opennms.org">DJ Gregor</a>
  * @version $Id: $
  */
@@ -48,16 +57,84 @@ public class RrdStatisticAttributeVisitor implements AttributeVisitor, Initializ
     private Long m_startTime;
     private Long m_endTime;
     private AttributeStatisticVisitor m_statisticVisitor;
+    private Executor m_executor;
+
+    private final AtomicLong m_fetches = new AtomicLong();
+    private final Object m_pendingLock = new Object();
+    private int m_pending = 0;
+    private RuntimeException m_failure;
     
     /** {@inheritDoc} */
     @Override
-    public void visit(OnmsAttribute attribute) {
+    public void visit(final OnmsAttribute attribute) {
         if (!RrdGraphAttribute.class.isAssignableFrom(attribute.getClass())) {
             // Nothing to do if we can't cast to an RrdGraphAttribute
             return;
         }
         
+        if (m_executor == null) {
+            fetch(attribute);
+            return;
+        }
+
+        synchronized (m_pendingLock) {
+            if (m_failure != null) {
+                throw m_failure;
+            }
+            m_pending++;
+        }
+        try {
+            m_executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    RuntimeException failure = null;
+                    try {
+                        fetch(attribute);
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    } finally {
+                        fetched(failure);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            fetched(null);
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the fetches that have been handed to the executor to
+     * complete. If any of them failed, the first failure is rethrown.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void await() throws InterruptedException {
+        synchronized (m_pendingLock) {
+            while (m_pending > 0) {
+                m_pendingLock.wait();
+            }
+            if (m_failure != null) {
+                RuntimeException failure = m_failure;
+                m_failure = null;
+                throw failure;
+            }
+        }
+    }
+
+    private void fetched(RuntimeException failure) {
+        synchronized (m_pendingLock) {
+            m_pending--;
+            if (failure != null && m_failure == null) {
+                m_failure = failure;
+            }
+            m_pendingLock.notifyAll();
+        }
+    }
+
+    private void fetch(OnmsAttribute attribute) {
         double statistic = m_rrdDao.getPrintValue(attribute, m_consolidationFunction, m_startTime, m_endTime);
+        m_fetches.incrementAndGet();
         
         /*
          * We don't want to do anything with NaN data, since
@@ -124,6 +201,45 @@ public class RrdStatisticAttributeVisitor implements AttributeVisitor, Initializ
         m_statisticVisitor = statisticVisitor;
     }
 
+    /**
+     * <p>getExecutor</p>
+     *
+     * @return a {@link java.util.concurrent.Executor} object.
+     */
+    public Executor getExecutor() {
+        return m_executor;
+    }
+
+    /**
+     * <p>setExecutor</p>
+     *
+     * @param executor the executor to run RRD fetches on, or null to fetch
+     * on the calling thread
+     */
+    public void setExecutor(Executor executor) {
+        m_executor = executor;
+    }
+
+    /**
+     * <p>getFetchCount</p>
+     *
+     * @return the number of RRD fetches completed
+     */
+    public long getFetchCount() {
+        return m_fetches.get();
+    }
+
+    /**
+     * <p>getPendingFetchCount</p>
+     *
+     * @return the number of RRD fetches handed to the executor that have not completed
+     */
+    public int getPendingFetchCount() {
+        synchronized (m_pendingLock) {
+            return m_pending;
+        }
+    }
+
     /**
      * <p>getConsolidationFunction</p>
      *
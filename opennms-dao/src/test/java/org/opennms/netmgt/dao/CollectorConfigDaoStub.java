@@ -49,6 +49,11 @@ public class CollectorConfigDaoStub implements CollectorConfigDao {
         return 0;
     }
 
+    @Override
+    public String getSchedulerType() {
+        return null;
+    }
+
     /*
     public Collection getSpecificationsForInterface(OnmsIpInterface iface, String svcName) {
         // TODO Auto-generated method stub
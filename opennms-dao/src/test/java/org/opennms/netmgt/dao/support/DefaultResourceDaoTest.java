@@ -29,6 +29,8 @@
 package org.opennms.netmgt.dao.support;
 
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.isA;
 
 import java.io.File;
 import java.io.IOException;
@@ -41,10 +43,12 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import junit.framework.TestCase;
 
+import org.easymock.IAnswer;
 import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.ValidationException;
 import org.opennms.core.test.ConfigurationTestUtils;
@@ -61,6 +65,7 @@ import org.opennms.netmgt.model.OnmsIpInterface;
 import org.opennms.netmgt.model.OnmsLocationMonitor;
 import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.model.OnmsResource;
+import org.opennms.netmgt.rrd.RrdFileIndex;
 import org.opennms.netmgt.rrd.RrdUtils;
 import org.opennms.netmgt.rrd.jrobin.JRobinRrdStrategy;
 import org.opennms.test.FileAnticipator;
@@ -119,6 +124,7 @@ public class DefaultResourceDaoTest extends TestCase {
     
     @Override
     protected void tearDown() {
+        RrdUtils.setFileIndex(null);
         m_fileAnticipator.tearDown();
     }
     
@@ -602,6 +608,98 @@ public class DefaultResourceDaoTest extends TestCase {
         assertNotNull("Resource should exist", resource);
     }
 
+    public void testFindNodeResourcesWithFileIndex() throws Exception {
+        OnmsNode node = createNode();
+        List<Integer> nodeIds = new ArrayList<Integer>();
+        nodeIds.add(node.getId());
+
+        expect(m_nodeDao.getNodeIds()).andReturn(nodeIds).times(2);
+        expect(m_nodeDao.get(1)).andReturn(node).times(2);
+
+        File snmp = m_fileAnticipator.tempDir("snmp");
+        File nodeDir = m_fileAnticipator.tempDir(snmp, "1");
+        File intfDir = m_fileAnticipator.tempDir(nodeDir, "eth0");
+        File rrd = m_fileAnticipator.tempFile(intfDir, "foo" + RrdUtils.getExtension());
+
+        RrdFileIndex index = createFileIndex();
+        index.reconcile(m_fileAnticipator.getTempDir());
+        RrdUtils.setFileIndex(index);
+
+        m_easyMockUtils.replayAll();
+        assertEquals("resource list size", 1, m_resourceDao.findNodeResources().size());
+
+        // lookups are answered from the index, not the directory tree
+        assertTrue("rrd file should be deleted", rrd.delete());
+        assertEquals("resource list size from index", 1, m_resourceDao.findNodeResources().size());
+        m_easyMockUtils.verifyAll();
+    }
+
+    /**
+     * Compares resource lookups against the directory tree and against the
+     * RRD file index. Set org.opennms.resourceDao.benchmarkNodes to change the
+     * size of the tree; each node has 20 interfaces with 5 RRD files each, so
+     * the default of 10000 nodes gives one million files.
+     */
+    public void xtestResourceLookupBenchmark() throws Exception {
+        final int nodes = Integer.getInteger("org.opennms.resourceDao.benchmarkNodes", 10000);
+        final int lookups = 1000;
+
+        expect(m_nodeDao.get(isA(Integer.class))).andAnswer(new IAnswer<OnmsNode>() {
+            @Override
+            public OnmsNode answer() {
+                Integer id = (Integer) getCurrentArguments()[0];
+                return createNode(id, "Node " + id);
+            }
+        }).anyTimes();
+        expect(m_locationMonitorDao.findStatusChangesForNodeForUniqueMonitorAndInterface(isA(Integer.class))).andReturn(new HashSet<LocationMonitorIpInterface>()).anyTimes();
+
+        File snmp = new File(m_fileAnticipator.getTempDir(), "snmp");
+        long start = System.currentTimeMillis();
+        for (int node = 1; node <= nodes; node++) {
+            for (int intf = 0; intf < 20; intf++) {
+                File intfDir = new File(new File(snmp, Integer.toString(node)), "eth" + intf + "-");
+                intfDir.mkdirs();
+                for (int ds = 0; ds < 5; ds++) {
+                    new File(intfDir, "ds" + ds + RrdUtils.getExtension()).createNewFile();
+                }
+            }
+        }
+        System.err.println("created " + (nodes * 100) + " files in " + (System.currentTimeMillis() - start) + "ms");
+
+        m_easyMockUtils.replayAll();
+        long directoryTree = lookupResources(nodes, lookups);
+
+        RrdFileIndex index = createFileIndex();
+        start = System.currentTimeMillis();
+        index.reconcile(m_fileAnticipator.getTempDir());
+        System.err.println("indexed " + index.getFileCount() + " files in " + (System.currentTimeMillis() - start) + "ms");
+        RrdUtils.setFileIndex(index);
+
+        long indexed = lookupResources(nodes, lookups);
+        m_easyMockUtils.verifyAll();
+
+        System.err.println(lookups + " lookups: " + directoryTree + "ms from the directory tree, " + indexed + "ms from the index");
+    }
+
+    private long lookupResources(int nodes, int lookups) {
+        Random random = new Random(0);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < lookups; i++) {
+            int node = random.nextInt(nodes) + 1;
+            OnmsResource resource = m_resourceDao.getResourceById("node[" + node + "].interfaceSnmp[eth" + random.nextInt(20) + "-]");
+            assertNotNull("resource should not be null", resource);
+            assertEquals("attributes", 5, resource.getAttributes().size());
+            assertEquals("child resources", 20, m_resourceDao.getResourceForNode(createNode(node, "Node " + node)).getChildResources().size());
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private RrdFileIndex createFileIndex() {
+        RrdFileIndex index = new RrdFileIndex();
+        index.setJournal(m_fileAnticipator.expecting("resource-index.txt").getAbsolutePath());
+        return index;
+    }
+
     private OnmsNode createNode() {
         return createNode(1, "Node One");
     }
@@ -31,6 +31,8 @@ package org.opennms.netmgt.dao.support;
 import static org.easymock.EasyMock.expect;
 
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.TestCase;
 
@@ -224,4 +226,70 @@ public class RrdStatisticAttributeVisitorTest extends TestCase {
         attributeVisitor.visit(attribute);
         m_mocks.verifyAll();
     }
+
+    public void testVisitWithExecutor() throws Exception {
+        RrdStatisticAttributeVisitor attributeVisitor = new RrdStatisticAttributeVisitor();
+        attributeVisitor.setRrdDao(m_rrdDao);
+        attributeVisitor.setConsolidationFunction("AVERAGE");
+        attributeVisitor.setStartTime(m_startTime);
+        attributeVisitor.setEndTime(m_endTime);
+        attributeVisitor.setStatisticVisitor(m_statisticVisitor);
+        attributeVisitor.afterPropertiesSet();
+
+        MockResourceType resourceType = new MockResourceType();
+        resourceType.setName("interfaceSnmp");
+        OnmsAttribute attribute = new RrdGraphAttribute("ifInOctets", "something", "something else");
+        new OnmsResource("1", "Node One", resourceType, Collections.singleton(attribute));
+        expect(m_rrdDao.getPrintValue(attribute, attributeVisitor.getConsolidationFunction(), attributeVisitor.getStartTime(), attributeVisitor.getEndTime())).andReturn(1.0);
+        m_statisticVisitor.visit(attribute, 1.0);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        attributeVisitor.setExecutor(executor);
+
+        m_mocks.replayAll();
+        try {
+            attributeVisitor.visit(attribute);
+            attributeVisitor.await();
+        } finally {
+            executor.shutdownNow();
+        }
+        m_mocks.verifyAll();
+
+        assertEquals("fetch count", 1, attributeVisitor.getFetchCount());
+        assertEquals("pending fetch count", 0, attributeVisitor.getPendingFetchCount());
+    }
+
+    public void testVisitWithExecutorFailure() throws Exception {
+        RrdStatisticAttributeVisitor attributeVisitor = new RrdStatisticAttributeVisitor();
+        attributeVisitor.setRrdDao(m_rrdDao);
+        attributeVisitor.setConsolidationFunction("AVERAGE");
+        attributeVisitor.setStartTime(m_startTime);
+        attributeVisitor.setEndTime(m_endTime);
+        attributeVisitor.setStatisticVisitor(m_statisticVisitor);
+        attributeVisitor.afterPropertiesSet();
+
+        MockResourceType resourceType = new MockResourceType();
+        resourceType.setName("interfaceSnmp");
+        OnmsAttribute attribute = new RrdGraphAttribute("ifInOctets", "something", "something else");
+        new OnmsResource("1", "Node One", resourceType, Collections.singleton(attribute));
+        expect(m_rrdDao.getPrintValue(attribute, attributeVisitor.getConsolidationFunction(), attributeVisitor.getStartTime(), attributeVisitor.getEndTime())).andThrow(new IllegalStateException("fetch failed"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        attributeVisitor.setExecutor(executor);
+
+        ThrowableAnticipator ta = new ThrowableAnticipator();
+        ta.anticipate(new IllegalStateException("fetch failed"));
+
+        m_mocks.replayAll();
+        try {
+            attributeVisitor.visit(attribute);
+            attributeVisitor.await();
+        } catch (Throwable t) {
+            ta.throwableReceived(t);
+        } finally {
+            executor.shutdownNow();
+        }
+        ta.verifyAnticipated();
+        m_mocks.verifyAll();
+    }
 }
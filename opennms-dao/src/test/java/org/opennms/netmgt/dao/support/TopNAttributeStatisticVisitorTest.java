@@ -28,7 +28,9 @@
 
 package org.opennms.netmgt.dao.support;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.Map.Entry;
@@ -199,7 +201,45 @@ public class TopNAttributeStatisticVisitorTest extends TestCase {
             i++;
         }
     }
-    
+
+    public void testVisitConcurrently() throws Exception {
+        final BottomNAttributeStatisticVisitor visitor = new TopNAttributeStatisticVisitor();
+        visitor.setCount(20);
+        visitor.afterPropertiesSet();
+
+        final Map<OnmsAttribute, Double> attributes = new HashMap<OnmsAttribute, Double>();
+        for (int i = 0; i < 1000; i++) {
+            attributes.put(new MockAttribute("foo"), 0.0 + i);
+        }
+        new OnmsResource("1", "Node One", new MockResourceType(), attributes.keySet());
+
+        final List<Entry<OnmsAttribute, Double>> entries = new ArrayList<Entry<OnmsAttribute, Double>>(attributes.entrySet());
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = offset; i < entries.size(); i += 4) {
+                        visitor.visit(entries.get(i).getKey(), entries.get(i).getValue());
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        SortedSet<AttributeStatistic> top = visitor.getResults();
+        assertEquals("topN list size", 20, top.size());
+
+        int i = 0;
+        for (AttributeStatistic stat : top) { 
+            assertEquals("topN[" + i + "] value", 999.0 - i, stat.getStatistic());
+            i++;
+        }
+    }
     
     public class MockAttribute implements OnmsAttribute {
         private String m_name;
@@ -106,6 +106,7 @@ public class Installer {
     boolean m_ignore_database_version = false;
     boolean m_do_not_revert = false;
     boolean m_remove_database = false;
+    boolean m_partition_events = false;
 
     String m_etc_dir = "";
     String m_tomcat_conf = null;
@@ -254,6 +255,10 @@ public class Installer {
                 m_migration.setAccessor(new ExistingResourceAccessor(resource));
                 m_migrator.migrate(m_migration);
             }
+
+            if (m_partition_events) {
+                m_installerDb.migrateEventsToPartitions();
+            }
         }
 
         if (m_update_unicode) {
@@ -492,6 +497,8 @@ public class Installer {
                           "drop rows that match the constraint specified in -C, instead of fixing them");
         options.addOption("e", "extended-repairs", false,
                           "enable extended repairs of old schemas");
+        options.addOption("E", "partition-events", false,
+                          "partition the events table by time (see vacuumd-configuration.xml)");
         // tomcat-related options
         options.addOption("y", "do-webapp", false,
                           "install web application (see '-w')");
@@ -551,6 +558,10 @@ public class Installer {
         if (m_commandLine.hasOption("e")) {
         	System.setProperty("opennms.contexts", "production,repair");
         }
+        m_partition_events = m_commandLine.hasOption("E");
+        if (m_partition_events) {
+            System.setProperty("opennms.contexts", System.getProperty("opennms.contexts", "production") + ",partitioned-events");
+        }
         m_update_database = m_commandLine.hasOption("d");
         m_remove_database = m_commandLine.hasOption("Z");
         m_do_full_vacuum = m_commandLine.hasOption("f");
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the most recent value written to each RRD datasource so that
+ * thresholding does not have to read back from disk what collection has just
+ * written.
+ *
+ * Values are recorded as they are handed to the RRD strategy and are converted
+ * the same way the RRD would store them: GAUGE values are kept as-is, COUNTER
+ * values are turned into a per-second rate against the previous sample
+ * (including 32 and 64 bit wrap handling), and anything outside the
+ * datasource's heartbeat or min/max bounds becomes NaN. The first sample of a
+ * COUNTER only provides the base for the next rate; its rate depends on the
+ * previous value stored in the RRD file, so lookups fall back to the file
+ * until a second sample has been seen. Other datasource types are not cached
+ * and always fall back to the RRD file.
+ *
+ * Every lookup is counted as a hit or a miss so the effectiveness of the cache
+ * can be monitored.
+ */
+public class LastValueCache {
+
+    private static final double COUNTER_32_WRAP = 4294967296.0;
+    private static final double COUNTER_64_WRAP = 18446744073709551616.0;
+
+    private static class Sample {
+        private final long m_timestamp;
+        private final double m_raw;
+        private final double m_value;
+        private final boolean m_valueKnown;
+
+        public Sample(long timestamp, double raw, double value) {
+            this(timestamp, raw, value, true);
+        }
+
+        public Sample(long timestamp, double raw, double value, boolean valueKnown) {
+            m_timestamp = timestamp;
+            m_raw = raw;
+            m_value = value;
+            m_valueKnown = valueKnown;
+        }
+    }
+
+    private final ConcurrentMap<String, Sample> m_samples = new ConcurrentHashMap<String, Sample>();
+    private final AtomicLong m_hits = new AtomicLong();
+    private final AtomicLong m_misses = new AtomicLong();
+
+    private static String key(String rrdFile, String ds) {
+        return rrdFile + '#' + ds;
+    }
+
+    /**
+     * Records the values of an update that was successfully written to an RRD file.
+     *
+     * @param rrdFile the absolute path of the RRD file
+     * @param dataSources the datasources of the file, in update order
+     * @param timestamp the update time in milliseconds
+     * @param values a colon separated list of values, one per datasource
+     */
+    public void update(String rrdFile, List<RrdDataSource> dataSources, long timestamp, String values) {
+        String[] tokens = values.split(":");
+        double[] parsed = new double[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            parsed[i] = parse(tokens[i]);
+        }
+        update(rrdFile, dataSources, timestamp, parsed);
+    }
+
+    /**
+     * Records the values of an update that was successfully written to an RRD file.
+     *
+     * @param rrdFile the absolute path of the RRD file
+     * @param dataSources the datasources of the file, in update order
+     * @param timestamp the update time in milliseconds
+     * @param values one value per datasource, NaN for unknown
+     */
+    public void update(String rrdFile, List<RrdDataSource> dataSources, long timestamp, double[] values) {
+        for (int i = 0; i < dataSources.size(); i++) {
+            RrdDataSource dataSource = dataSources.get(i);
+            String key = key(rrdFile, dataSource.getName());
+            if (i >= values.length) {
+                m_samples.remove(key);
+                continue;
+            }
+            double raw = values[i];
+            String type = dataSource.getType();
+            if ("GAUGE".equalsIgnoreCase(type)) {
+                m_samples.put(key, new Sample(timestamp, raw, bound(raw, dataSource)));
+            } else if ("COUNTER".equalsIgnoreCase(type)) {
+                Sample previous = m_samples.get(key);
+                double rate = Double.NaN;
+                if (previous != null && !Double.isNaN(raw) && !Double.isNaN(previous.m_raw)) {
+                    long elapsed = timestamp - previous.m_timestamp;
+                    if (elapsed > 0 && elapsed <= dataSource.getHeartBeat() * 1000L) {
+                        rate = bound(counterDelta(previous.m_raw, raw) / (elapsed / 1000.0), dataSource);
+                    }
+                }
+                // without a previous sample the rate is only known to the RRD file
+                m_samples.put(key, new Sample(timestamp, raw, rate, previous != null));
+            } else {
+                m_samples.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns the cached value for a datasource if it was recorded no earlier
+     * than <code>oldest</code>.
+     *
+     * @param rrdFile the absolute path of the RRD file
+     * @param ds the datasource name
+     * @param oldest the oldest acceptable update time in milliseconds
+     * @param allowNaN whether a cached NaN may be returned
+     * @return the cached value, or null if the caller has to read the RRD file
+     */
+    public Double get(String rrdFile, String ds, long oldest, boolean allowNaN) {
+        Sample sample = m_samples.get(key(rrdFile, ds));
+        if (sample == null || !sample.m_valueKnown || sample.m_timestamp < oldest || (!allowNaN && Double.isNaN(sample.m_value))) {
+            m_misses.incrementAndGet();
+            return null;
+        }
+        m_hits.incrementAndGet();
+        return Double.valueOf(sample.m_value);
+    }
+
+    /**
+     * Drops every cached value for an RRD file, e.g. when it is deleted or recreated.
+     *
+     * @param rrdFile the absolute path of the RRD file
+     * @param dataSources the datasources of the file
+     */
+    public void invalidate(String rrdFile, List<RrdDataSource> dataSources) {
+        for (RrdDataSource dataSource : dataSources) {
+            m_samples.remove(key(rrdFile, dataSource.getName()));
+        }
+    }
+
+    /**
+     * Drops every cached value.
+     */
+    public void clear() {
+        m_samples.clear();
+    }
+
+    public int size() {
+        return m_samples.size();
+    }
+
+    public long getHits() {
+        return m_hits.get();
+    }
+
+    public long getMisses() {
+        return m_misses.get();
+    }
+
+    /**
+     * @return the fraction of lookups answered from the cache, or 0 if there
+     * have been no lookups yet
+     */
+    public double getHitRatio() {
+        long hits = m_hits.get();
+        long total = hits + m_misses.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    private static double parse(String value) {
+        if (value == null || "U".equals(value)) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static double counterDelta(double previous, double current) {
+        double delta = current - previous;
+        if (delta < 0) {
+            delta += COUNTER_32_WRAP;
+            if (delta < 0) {
+                delta += COUNTER_64_WRAP - COUNTER_32_WRAP;
+            }
+        }
+        return delta;
+    }
+
+    private static double bound(double value, RrdDataSource dataSource) {
+        if (Double.isNaN(value)) {
+            return value;
+        }
+        double min = parse(dataSource.getMin());
+        double max = parse(dataSource.getMax());
+        if ((!Double.isNaN(min) && value < min) || (!Double.isNaN(max) && value > max)) {
+            return Double.NaN;
+        }
+        return value;
+    }
+}
@@ -535,6 +535,49 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 
     }
 
+    /**
+     * Represents an update given as a timestamp and an array of values, which
+     * is passed to the delegate as-is.
+     */
+    public class ValuesUpdateOperation extends UpdateOperation {
+
+        private final long m_timestamp;
+
+        ValuesUpdateOperation(String fileName, long timestamp, double[] values) {
+            super(fileName, null, true);
+            m_timestamp = timestamp;
+            data = values;
+        }
+
+        @Override
+        Object process(Object rrd) throws Exception {
+            // open the file if we need to
+            if (rrd == null) rrd = m_delegate.openFile(getFileName());
+
+            final double[] values = (double[]) getData();
+
+            try {
+                // process the update
+                m_delegate.updateFile(rrd, "", m_timestamp, values);
+            } catch (final Throwable e) {
+                final String error = String.format("Error processing update for file %s: %s", getFileName(), RrdSample.format(m_timestamp, values));
+                if (log().isDebugEnabled()) {
+                    log().debug(error, e);
+                }
+                throw new Exception(error, e);
+            }
+
+            // keep stats
+            setUpdatesCompleted(getUpdatesCompleted() + 1);
+            if (getUpdatesCompleted() % m_modulus == 0) {
+                logStats();
+            }
+            // return the open rrd for further processing
+            return rrd;
+        }
+
+    }
+
     /**
      * Represents an update whose value is 0. These operations can be merged
      * together and take up less memory
@@ -561,12 +604,11 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
                 if (rrd == null)
                     rrd = m_delegate.openFile(getFileName());
 
-                String update = ts + ":0";
                 try {
                     // process the update
-                    m_delegate.updateFile(rrd, "", update);
+                    m_delegate.updateFile(rrd, "", ts, new double[] { 0.0 });
                 } catch (Throwable e) {
-                    throw new Exception("Error processing update " + i + " for file " + getFileName() + ": " + update, e);
+                    throw new Exception("Error processing update " + i + " for file " + getFileName() + ": " + ts + ":0", e);
                 }
                 ts += getInterval();
 
@@ -678,6 +720,25 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         return new UpdateOperation(fileName, update);
     }
 
+    /**
+     * <p>makeUpdateOperation</p>
+     *
+     * @param fileName a {@link java.lang.String} object.
+     * @param owner a {@link java.lang.String} object.
+     * @param timestamp the time of the update in seconds
+     * @param values the values of the update
+     * @return a {@link org.opennms.netmgt.rrd.QueuingRrdStrategy.Operation} object.
+     */
+    public Operation makeUpdateOperation(String fileName, String owner, long timestamp, double[] values) {
+        if (values.length == 1 && values[0] == 0.0) {
+            if (timestamp == 0)
+                log().debug("ZERO ERROR: created a zero update with ts=0 for file: " + fileName);
+
+            return new ZeroUpdateOperation(fileName, timestamp);
+        }
+        return new ValuesUpdateOperation(fileName, timestamp, values);
+    }
+
     // 
     // Queue management functions.
     //
@@ -1053,6 +1114,12 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         addOperation(makeUpdateOperation((String) rrdFile, owner, data));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void updateFile(String rrdFile, String owner, long timestamp, double[] values) throws Exception {
+        addOperation(makeUpdateOperation(rrdFile, owner, timestamp, values));
+    }
+
     /** {@inheritDoc} */
     @Override
     public Double fetchLastValue(String rrdFile, String ds, int interval) throws NumberFormatException, RrdException {
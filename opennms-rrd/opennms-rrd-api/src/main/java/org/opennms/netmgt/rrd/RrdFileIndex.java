@@ -0,0 +1,625 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.opennms.core.utils.ThreadCategory;
+
+/**
+ * Keeps an index of the RRD files below the RRD directory and the directories
+ * that contain them, so that resource lookups do not have to list the
+ * directory tree on every request.
+ *
+ * The index is kept in memory and persisted to a journal file. Files created
+ * through {@link RrdUtils#createRRD} are added as they are created and appended
+ * to the journal; a background scan of the tree periodically reconciles the
+ * index with what is actually on disk and rewrites the journal as a compact
+ * snapshot. Processes that only read the index pick up entries appended by
+ * another process by tailing the journal. Every snapshot starts with a new
+ * generation line, which tells readers that the journal has been rewritten
+ * even when the new snapshot is longer than what they have read.
+ *
+ * Until the first scan of a root directory has completed (or a snapshot for it
+ * has been loaded from the journal) the index does not claim to know anything
+ * about that directory and {@link #isIndexed(File)} returns false, so callers
+ * fall back to the filesystem.
+ *
+ * The index is disabled unless a journal file is configured.
+ */
+public class RrdFileIndex {
+
+    private static final char GENERATION = 'G';
+    private static final char ROOT = '#';
+    private static final char DIRECTORY = 'D';
+    private static final char FILE = 'F';
+    private static final char CREATED = '+';
+
+    private static class DirectoryEntry {
+        private final Set<String> m_directories = new HashSet<String>();
+        private final Set<String> m_files = new HashSet<String>();
+    }
+
+    private File m_journal;
+    private String m_extension;
+    private long m_scanInterval = 3600000L;
+    private long m_refreshInterval = 10000L;
+
+    private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
+    private Map<String, DirectoryEntry> m_directoryEntries = new HashMap<String, DirectoryEntry>();
+    private Map<String, String> m_names = new HashMap<String, String>();
+    private int m_fileCount = 0;
+    private volatile String m_root;
+
+    private final Object m_journalLock = new Object();
+    private long m_journalPosition = 0;
+    private String m_journalHeader;
+    private List<File> m_createdDuringScan;
+
+    private Timer m_timer;
+
+    /**
+     * <p>setJournal</p>
+     *
+     * @param journal the file the index is persisted to; blank disables the index
+     */
+    public void setJournal(String journal) {
+        m_journal = (journal == null || "".equals(journal.trim())) ? null : new File(journal.trim());
+    }
+
+    /**
+     * <p>getJournal</p>
+     *
+     * @return a {@link java.io.File} object, or null if the index is disabled.
+     */
+    public File getJournal() {
+        return m_journal;
+    }
+
+    /**
+     * Sets the extension of the files the background scan picks up. When not
+     * set, {@link RrdUtils#getExtension()} is used.
+     *
+     * @param extension a {@link java.lang.String} object.
+     */
+    public void setExtension(String extension) {
+        m_extension = extension;
+    }
+
+    /**
+     * <p>setScanInterval</p>
+     *
+     * @param scanInterval milliseconds between scans of the RRD directory
+     */
+    public void setScanInterval(long scanInterval) {
+        m_scanInterval = scanInterval;
+    }
+
+    /**
+     * <p>setRefreshInterval</p>
+     *
+     * @param refreshInterval milliseconds between checks of the journal for
+     * entries appended by other processes
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        m_refreshInterval = refreshInterval;
+    }
+
+    /**
+     * <p>isEnabled</p>
+     *
+     * @return true if a journal file has been configured
+     */
+    public boolean isEnabled() {
+        return m_journal != null;
+    }
+
+    /**
+     * Loads the journal and starts the background scan and journal refresh
+     * for the given RRD directory. The first scan runs right away, since
+     * files may have been created or removed while no process was updating
+     * the journal; until then lookups are answered from the journal's
+     * snapshot if it covers the directory. Calling this again for the same
+     * directory has no effect.
+     *
+     * @param rrdDirectory the root of the RRD tree
+     */
+    public synchronized void start(final File rrdDirectory) {
+        if (!isEnabled() || m_timer != null) {
+            return;
+        }
+
+        final String root = rrdDirectory.getAbsolutePath();
+        refresh();
+        if (!root.equals(m_root)) {
+            // the journal does not hold a snapshot of this tree; forget whatever it
+            // had until the first scan completes
+            m_root = null;
+        }
+
+        m_timer = new Timer("RrdFileIndex", true);
+        m_timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    reconcile(rrdDirectory);
+                } catch (Throwable e) {
+                    log().warn("Failed to scan " + root + " for the RRD file index: " + e, e);
+                }
+            }
+        }, 0, m_scanInterval);
+
+        if (m_refreshInterval > 0) {
+            m_timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            }, m_refreshInterval, m_refreshInterval);
+        }
+    }
+
+    /**
+     * Stops the background scan and journal refresh.
+     */
+    public synchronized void stop() {
+        if (m_timer != null) {
+            m_timer.cancel();
+            m_timer = null;
+        }
+    }
+
+    /**
+     * Returns true if the index is authoritative for the given file, that is
+     * the file lies below a directory that has been scanned.
+     *
+     * @param file a {@link java.io.File} object.
+     * @return a boolean.
+     */
+    public boolean isIndexed(File file) {
+        final String root = m_root;
+        if (root == null) {
+            return false;
+        }
+        final String path = file.getAbsolutePath();
+        return path.startsWith(root) && (path.length() == root.length() || path.charAt(root.length()) == File.separatorChar);
+    }
+
+    /**
+     * Returns true if the given directory contains RRD files, directly or in
+     * one of its subdirectories.
+     *
+     * @param directory a {@link java.io.File} object.
+     * @return a boolean.
+     */
+    public boolean isDirectory(File directory) {
+        m_lock.readLock().lock();
+        try {
+            return m_directoryEntries.containsKey(directory.getAbsolutePath());
+        } finally {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the names of the subdirectories of the given directory that
+     * contain RRD files.
+     *
+     * @param directory a {@link java.io.File} object.
+     * @return the names of the directories, or null if the directory is not
+     * known to the index
+     */
+    public String[] getDirectoryNames(File directory) {
+        m_lock.readLock().lock();
+        try {
+            final DirectoryEntry entry = m_directoryEntries.get(directory.getAbsolutePath());
+            return entry == null ? null : entry.m_directories.toArray(new String[entry.m_directories.size()]);
+        } finally {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the names of the RRD files in the given directory.
+     *
+     * @param directory a {@link java.io.File} object.
+     * @return the names of the files, or null if the directory is not known to
+     * the index
+     */
+    public String[] getFileNames(File directory) {
+        m_lock.readLock().lock();
+        try {
+            final DirectoryEntry entry = m_directoryEntries.get(directory.getAbsolutePath());
+            return entry == null ? null : entry.m_files.toArray(new String[entry.m_files.size()]);
+        } finally {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * <p>getDirectoryCount</p>
+     *
+     * @return the number of directories in the index
+     */
+    public int getDirectoryCount() {
+        m_lock.readLock().lock();
+        try {
+            return m_directoryEntries.size();
+        } finally {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * <p>getFileCount</p>
+     *
+     * @return the number of RRD files in the index
+     */
+    public int getFileCount() {
+        m_lock.readLock().lock();
+        try {
+            return m_fileCount;
+        } finally {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records that an RRD file has been created and appends it to the journal.
+     * Files that are already in the index are ignored, so this is cheap to call
+     * for every update.
+     *
+     * @param file the RRD file
+     */
+    public void fileCreated(File file) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        final File absolute = file.getAbsoluteFile();
+        m_lock.readLock().lock();
+        try {
+            final DirectoryEntry entry = m_directoryEntries.get(absolute.getParent());
+            if (entry != null && entry.m_files.contains(absolute.getName())) {
+                return;
+            }
+        } finally {
+            m_lock.readLock().unlock();
+        }
+
+        synchronized (m_journalLock) {
+            if (!add(absolute)) {
+                return;
+            }
+            if (m_createdDuringScan != null) {
+                m_createdDuringScan.add(absolute);
+            }
+            append(absolute);
+        }
+    }
+
+    /**
+     * Scans the given directory tree, replaces the index with what was found
+     * and rewrites the journal as a snapshot of it.
+     *
+     * @param rrdDirectory the root of the RRD tree
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void reconcile(File rrdDirectory) throws IOException {
+        final String root = rrdDirectory.getAbsolutePath();
+        final String extension = m_extension == null ? RrdUtils.getExtension() : m_extension;
+        final long start = System.currentTimeMillis();
+
+        synchronized (m_journalLock) {
+            m_createdDuringScan = new ArrayList<File>();
+        }
+
+        final Map<String, DirectoryEntry> directoryEntries = new HashMap<String, DirectoryEntry>();
+        final Map<String, String> names = new HashMap<String, String>();
+        final int fileCount;
+        try {
+            fileCount = scan(rrdDirectory.getAbsoluteFile(), extension, directoryEntries, names);
+        } catch (RuntimeException e) {
+            synchronized (m_journalLock) {
+                m_createdDuringScan = null;
+            }
+            throw e;
+        }
+
+        synchronized (m_journalLock) {
+            final List<File> created = m_createdDuringScan;
+            m_createdDuringScan = null;
+
+            m_lock.writeLock().lock();
+            try {
+                m_directoryEntries = directoryEntries;
+                m_names = names;
+                m_fileCount = fileCount;
+                for (File file : created) {
+                    add(file);
+                }
+                m_root = root;
+            } finally {
+                m_lock.writeLock().unlock();
+            }
+
+            writeSnapshot(root);
+        }
+
+        if (log().isInfoEnabled()) {
+            log().info("reconcile: indexed " + getFileCount() + " RRD files in " + getDirectoryCount() + " directories below " + root + " in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * Reads entries appended to the journal since it was last read. If the
+     * journal has been rewritten by another process, which shows as a
+     * different first line, it is read again from the start.
+     */
+    public void refresh() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        synchronized (m_journalLock) {
+            try {
+                final long length = m_journal.length();
+                if (m_journalPosition > 0 && (length < m_journalPosition || !m_journalHeader.equals(readHeader()))) {
+                    m_lock.writeLock().lock();
+                    try {
+                        m_directoryEntries = new HashMap<String, DirectoryEntry>();
+                        m_names = new HashMap<String, String>();
+                        m_fileCount = 0;
+                    } finally {
+                        m_lock.writeLock().unlock();
+                    }
+                    m_journalPosition = 0;
+                    m_journalHeader = null;
+                } else if (length == m_journalPosition) {
+                    return;
+                }
+
+                read();
+            } catch (IOException e) {
+                log().warn("Unable to read RRD file index journal " + m_journal + ": " + e, e);
+            }
+        }
+    }
+
+    private String readHeader() throws IOException {
+        final InputStream in = new BufferedInputStream(new FileInputStream(m_journal), 512);
+        try {
+            final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            return readLine(in, line) ? line.toString("UTF-8") : null;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void read() throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(m_journal, "r");
+        try {
+            file.seek(m_journalPosition);
+            final InputStream in = new BufferedInputStream(new FileInputStream(file.getFD()));
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            String directory = null;
+            long position = m_journalPosition;
+            // a line without its newline is still being appended; leave it for the next refresh
+            while (readLine(in, bytes)) {
+                final String line = bytes.toString("UTF-8");
+                if (position == 0) {
+                    m_journalHeader = line;
+                }
+                position += bytes.size() + 1;
+                if (line.length() < 2) {
+                    continue;
+                }
+                final String value = line.substring(1);
+                switch (line.charAt(0)) {
+                case ROOT:
+                    m_root = value;
+                    break;
+                case DIRECTORY:
+                    directory = value;
+                    break;
+                case FILE:
+                    if (directory != null) {
+                        add(new File(directory, value));
+                    }
+                    break;
+                case CREATED:
+                    add(new File(value));
+                    break;
+                default:
+                    break;
+                }
+            }
+            m_journalPosition = position;
+        } finally {
+            file.close();
+        }
+    }
+
+    private static boolean readLine(InputStream in, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                return true;
+            }
+            line.write(b);
+        }
+        return false;
+    }
+
+    private void append(File file) {
+        try {
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(m_journal, true), "UTF-8");
+            try {
+                writer.write(CREATED + file.getPath() + "\n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            log().warn("Unable to append " + file + " to RRD file index journal " + m_journal + ": " + e, e);
+        }
+    }
+
+    private void writeSnapshot(String root) throws IOException {
+        final File tmp = new File(m_journal.getPath() + ".tmp");
+        final String header = GENERATION + UUID.randomUUID().toString();
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+        try {
+            writer.write(header + "\n");
+            writer.write(ROOT + root + "\n");
+            m_lock.readLock().lock();
+            try {
+                for (Map.Entry<String, DirectoryEntry> entry : m_directoryEntries.entrySet()) {
+                    if (entry.getValue().m_files.isEmpty()) {
+                        continue;
+                    }
+                    writer.write(DIRECTORY + entry.getKey() + "\n");
+                    for (String name : entry.getValue().m_files) {
+                        writer.write(FILE + name + "\n");
+                    }
+                }
+            } finally {
+                m_lock.readLock().unlock();
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (!tmp.renameTo(m_journal)) {
+            m_journal.delete();
+            if (!tmp.renameTo(m_journal)) {
+                throw new IOException("Unable to replace RRD file index journal " + m_journal + " with " + tmp);
+            }
+        }
+        m_journalPosition = m_journal.length();
+        m_journalHeader = header;
+    }
+
+    private boolean add(File file) {
+        m_lock.writeLock().lock();
+        try {
+            if (!add(m_directoryEntries, m_names, file.getParentFile(), file.getName())) {
+                return false;
+            }
+            m_fileCount++;
+            return true;
+        } finally {
+            m_lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean add(Map<String, DirectoryEntry> directoryEntries, Map<String, String> names, File directory, String name) {
+        DirectoryEntry entry = directoryEntries.get(directory.getPath());
+        if (entry == null) {
+            entry = new DirectoryEntry();
+            directoryEntries.put(directory.getPath(), entry);
+            addDirectory(directoryEntries, names, directory);
+        }
+        return entry.m_files.add(name(names, name));
+    }
+
+    private static void addDirectory(Map<String, DirectoryEntry> directoryEntries, Map<String, String> names, File directory) {
+        File child = directory;
+        File parent = child.getParentFile();
+        while (parent != null) {
+            DirectoryEntry entry = directoryEntries.get(parent.getPath());
+            final boolean known = entry != null;
+            if (!known) {
+                entry = new DirectoryEntry();
+                directoryEntries.put(parent.getPath(), entry);
+            }
+            entry.m_directories.add(name(names, child.getName()));
+            if (known) {
+                return;
+            }
+            child = parent;
+            parent = child.getParentFile();
+        }
+    }
+
+    private static String name(Map<String, String> names, String name) {
+        // the same file and directory names repeat on every node, so share them
+        final String existing = names.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        names.put(name, name);
+        return name;
+    }
+
+    private static int scan(File directory, String extension, Map<String, DirectoryEntry> directoryEntries, Map<String, String> names) {
+        final File[] children = directory.listFiles();
+        if (children == null) {
+            return 0;
+        }
+
+        int count = 0;
+        for (final File child : children) {
+            final String name = child.getName();
+            if (name.endsWith(extension)) {
+                if (child.isFile() && add(directoryEntries, names, directory, name)) {
+                    count++;
+                }
+            } else if (child.isDirectory()) {
+                count += scan(child, extension, directoryEntries, names);
+            }
+        }
+        return count;
+    }
+
+    private static ThreadCategory log() {
+        return ThreadCategory.getInstance(RrdFileIndex.class);
+    }
+}
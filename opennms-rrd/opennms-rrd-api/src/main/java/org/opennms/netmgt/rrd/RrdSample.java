@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import java.math.BigDecimal;
+
+/**
+ * Converts typed updates to the <code>timestamp:value:value</code> form used
+ * by the string based {@link RrdStrategy#updateFile(Object, String, String)}.
+ */
+public abstract class RrdSample {
+
+    /**
+     * Formats an update as <code>timestamp:value:value...</code>.
+     *
+     * @param timestamp the time of the update in seconds
+     * @param values the values, NaN for unknown
+     * @return the update string
+     */
+    public static String format(long timestamp, double[] values) {
+        StringBuffer buf = new StringBuffer(16 + values.length * 12);
+        append(buf, timestamp, values);
+        return buf.toString();
+    }
+
+    /**
+     * Appends an update as <code>timestamp:value:value...</code>.
+     *
+     * @param buf the buffer to append to
+     * @param timestamp the time of the update in seconds
+     * @param values the values, NaN for unknown
+     */
+    public static void append(StringBuffer buf, long timestamp, double[] values) {
+        buf.append(timestamp);
+        for (double value : values) {
+            buf.append(':');
+            appendValue(buf, value);
+        }
+    }
+
+    /**
+     * Appends a single value. Unknown values are written as <code>U</code>
+     * and whole numbers without a fraction or exponent, since rrdtool only
+     * accepts plain integers for COUNTER datasources.
+     *
+     * @param buf the buffer to append to
+     * @param value the value
+     */
+    public static void appendValue(StringBuffer buf, double value) {
+        if (Double.isNaN(value)) {
+            buf.append('U');
+        } else if (Double.isInfinite(value) || value != Math.rint(value)) {
+            buf.append(value);
+        } else if (Math.abs(value) < 1e18) {
+            buf.append((long) value);
+        } else {
+            buf.append(new BigDecimal(value).toPlainString());
+        }
+    }
+
+    /**
+     * Parses a value as written by collectors, <code>U</code> (or null) for unknown.
+     *
+     * @param value the value
+     * @return the parsed value, NaN when unknown
+     * @throws NumberFormatException if the value is not a number
+     */
+    public static double parseValue(String value) throws NumberFormatException {
+        if (value == null || "U".equals(value)) {
+            return Double.NaN;
+        }
+        return Double.parseDouble(value);
+    }
+}
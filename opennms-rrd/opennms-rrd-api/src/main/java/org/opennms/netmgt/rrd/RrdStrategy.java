@@ -130,6 +130,26 @@ public interface RrdStrategy<D extends Object,F extends Object> {
      */
     public void updateFile(F rrd, String owner, String data) throws Exception;
 
+    /**
+     * Updates the supplied round robin database with one value per datasource
+     * at the given time. This avoids formatting the values into a string only
+     * for the strategy to parse them again.
+     *
+     * @param rrd
+     *            an rrd object created using openFile
+     * @param owner
+     *            the owner of the rrd
+     * @param timestamp
+     *            the time of the update in seconds since the epoch
+     * @param values
+     *            the values in datasource order, NaN for unknown; the
+     *            strategy may keep a reference, so callers must not modify
+     *            the array afterwards
+     * @throws java.lang.Exception
+     *             if an error occurs updating the file
+     */
+    public void updateFile(F rrd, String owner, long timestamp, double[] values) throws Exception;
+
     /**
      * This closes the supplied round robin database
      *
@@ -67,6 +67,10 @@ public abstract class RrdUtils {
 
     private static RrdStrategy<?, ?> m_rrdStrategy = null;
 
+    private static final LastValueCache m_lastValueCache = new LastValueCache();
+
+    private static RrdFileIndex m_fileIndex = null;
+
     private static BeanFactory m_context = new ClassPathXmlApplicationContext(new String[]{
                 // Default RRD configuration context
                 "org/opennms/netmgt/rrd/rrd-configuration.xml"
@@ -261,6 +265,11 @@ public abstract class RrdUtils {
             // def can be null if the rrd-db exists already, but doesn't have to be (see MultiOutput/QueuingRrdStrategy
             getStrategy().createFile(def, attributeMappings);
 
+            final RrdFileIndex fileIndex = getFileIndex();
+            if (fileIndex != null) {
+                fileIndex.fileCreated(new File(directory, rrdName + getExtension()));
+            }
+
             return true;
         } catch (Throwable e) {
             String path = directory + File.separator + rrdName + getStrategy().getDefaultFileExtension();
@@ -332,10 +341,83 @@ public abstract class RrdUtils {
         }
     }
 
+    /**
+     * Add datapoints to a round robin database and remember them in the
+     * {@link LastValueCache} so that {@link #fetchLastValue(String, String, int)}
+     * and {@link #fetchLastValueInRange(String, String, int, int)} can answer
+     * without reading the file back.
+     *
+     * @param owner the owner of the file. This is used in log messages
+     * @param repositoryDir the directory the file resides in
+     * @param rrdName the name for the rrd file.
+     * @param timestamp the timestamp in millis to use for the rrd update (this
+     * gets rounded to the nearest second)
+     * @param val a colon separated list of values representing the updates for
+     * datasources for this rrd
+     * @param dataSources the datasources of the rrd, in the same order as the values
+     * @throws org.opennms.netmgt.rrd.RrdException if any.
+     */
+    public static void updateRRD(String owner, String repositoryDir, String rrdName, long timestamp, String val, List<RrdDataSource> dataSources) throws RrdException {
+        updateRRD(owner, repositoryDir, rrdName, timestamp, val);
+        m_lastValueCache.update(new File(repositoryDir + File.separator + rrdName + getExtension()).getAbsolutePath(), dataSources, timestamp, val);
+    }
+
+    /**
+     * Add datapoints to a round robin database, passing the values to the
+     * strategy as numbers rather than as a formatted string, and remember them
+     * in the {@link LastValueCache}.
+     *
+     * @param owner the owner of the file. This is used in log messages
+     * @param repositoryDir the directory the file resides in
+     * @param rrdName the name for the rrd file.
+     * @param timestamp the timestamp in millis to use for the rrd update (this
+     * gets rounded to the nearest second)
+     * @param values one value per datasource, NaN for unknown
+     * @param dataSources the datasources of the rrd, in the same order as the values
+     * @throws org.opennms.netmgt.rrd.RrdException if any.
+     */
+    public static void updateRRD(String owner, String repositoryDir, String rrdName, long timestamp, double[] values, List<RrdDataSource> dataSources) throws RrdException {
+        String rrdFile = repositoryDir + File.separator + rrdName + getExtension();
+        long time = (timestamp + 500L) / 1000L;
+
+        if (log().isInfoEnabled()) {
+            log().info("updateRRD: updating RRD file " + rrdFile + " with values '" + RrdSample.format(time, values) + "'");
+        }
+
+        updateFile(getStrategy(), owner, rrdFile, time, values);
+        m_lastValueCache.update(new File(rrdFile).getAbsolutePath(), dataSources, timestamp, values);
+
+        if (log().isDebugEnabled()) {
+            log().debug("updateRRD: RRD update command completed.");
+        }
+    }
+
+    private static <D, F> void updateFile(RrdStrategy<D, F> strategy, String owner, String rrdFile, long time, double[] values) throws RrdException {
+        F rrd = null;
+        try {
+            rrd = strategy.openFile(rrdFile);
+            strategy.updateFile(rrd, owner, time, values);
+        } catch (Throwable e) {
+            String updateVal = RrdSample.format(time, values);
+            log().error("updateRRD: Error updating RRD file " + rrdFile + " with values '" + updateVal + "': " + e, e);
+            throw new org.opennms.netmgt.rrd.RrdException("Error updating RRD file " + rrdFile + " with values '" + updateVal + "': " + e, e);
+        } finally {
+            try {
+                if (rrd != null) {
+                    strategy.closeFile(rrd);
+                }
+            } catch (Throwable e) {
+                log().error("updateRRD: Exception closing RRD file " + rrdFile + ": " + e, e);
+                throw new org.opennms.netmgt.rrd.RrdException("Exception closing RRD file " + rrdFile + ": " + e, e);
+            }
+        }
+    }
+
     /**
      * This method issues an round robin fetch command to retrieve the last
      * value of the datasource stored in the specified RRD file. The retrieved
-     * value returned to the caller.
+     * value returned to the caller. A value written within the last interval
+     * is returned from the {@link LastValueCache} without reading the file.
      *
      * NOTE: This method assumes that each RRD file contains a single
      * datasource.
@@ -349,6 +431,10 @@ public abstract class RrdUtils {
      * @throws org.opennms.netmgt.rrd.RrdException if any.
      */
     public static Double fetchLastValue(String rrdFile, String ds, int interval) throws NumberFormatException, RrdException {
+        final Double cached = m_lastValueCache.get(rrdFile, ds, System.currentTimeMillis() - interval, true);
+        if (cached != null) {
+            return cached;
+        }
         return getStrategy().fetchLastValue(rrdFile, ds, interval);
     }
 
@@ -357,7 +443,9 @@ public abstract class RrdUtils {
      * value of the datasource stored in the specified RRD file within given
      * tolerance (which should be a multiple of the RRD interval). This is
      * useful If you are not entirely sure when an RRD might have been updated,
-     * but you want to retrieve the last value which is not NaN NOTE: This
+     * but you want to retrieve the last value which is not NaN. A non-NaN value
+     * written within the range is returned from the {@link LastValueCache}
+     * without reading the file. NOTE: This
      * method assumes that each RRD file contains a single datasource.
      *
      * @param rrdFile RRD file from which to fetch the data.
@@ -370,6 +458,10 @@ public abstract class RrdUtils {
      * @throws org.opennms.netmgt.rrd.RrdException if any.
      */
     public static Double fetchLastValueInRange(String rrdFile, String ds, int interval, int range) throws NumberFormatException, RrdException {
+        final Double cached = m_lastValueCache.get(rrdFile, ds, System.currentTimeMillis() - interval - range, false);
+        if (cached != null) {
+            return cached;
+        }
         return getStrategy().fetchLastValueInRange(rrdFile, ds, interval, range);
     }
 
@@ -389,6 +481,39 @@ public abstract class RrdUtils {
         return getStrategy().createGraph(command, workDir);
     }
 
+    /**
+     * Returns the cache of values most recently written through
+     * {@link #updateRRD(String, String, String, long, String, List)}.
+     *
+     * @return a {@link org.opennms.netmgt.rrd.LastValueCache} object.
+     */
+    public static LastValueCache getLastValueCache() {
+        return m_lastValueCache;
+    }
+
+    /**
+     * Returns the index of RRD files that have been created, or null if no
+     * index journal has been configured with
+     * <code>org.opennms.rrd.resourceIndex.file</code>.
+     *
+     * @return a {@link org.opennms.netmgt.rrd.RrdFileIndex} object.
+     */
+    public static RrdFileIndex getFileIndex() {
+        if (m_fileIndex == null) {
+            m_fileIndex = (RrdFileIndex) m_context.getBean("rrdFileIndex");
+        }
+        return m_fileIndex.isEnabled() ? m_fileIndex : null;
+    }
+
+    /**
+     * <p>setFileIndex</p>
+     *
+     * @param fileIndex a {@link org.opennms.netmgt.rrd.RrdFileIndex} object.
+     */
+    public static void setFileIndex(RrdFileIndex fileIndex) {
+        m_fileIndex = fileIndex;
+    }
+
     /**
      * <p>getExtension</p>
      *
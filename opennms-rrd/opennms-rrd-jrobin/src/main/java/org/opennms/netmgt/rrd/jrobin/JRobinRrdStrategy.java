@@ -42,6 +42,7 @@ import java.util.Map;
 import java.util.Properties;
 
 import org.jrobin.core.FetchData;
+import org.jrobin.core.RrdBackendFactory;
 import org.jrobin.core.RrdDb;
 import org.jrobin.core.RrdDef;
 import org.jrobin.core.RrdException;
@@ -59,8 +60,9 @@ import org.opennms.netmgt.rrd.RrdUtils;
 
 /**
  * Provides a JRobin based implementation of RrdStrategy. It uses JRobin 1.4 in
- * FILE mode (NIO is too memory consuming for the large number of files that we
- * open)
+ * FILE mode by default (NIO is too memory consuming for the large number of
+ * files that we open). The MMAP backend ({@link MappedRrdBackendFactory}) only
+ * maps the parts of each file that are touched and caps the total mapped size.
  *
  * @author ranger
  * @version $Id: $
@@ -68,6 +70,11 @@ import org.opennms.netmgt.rrd.RrdUtils;
 public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     private static final String BACKEND_FACTORY_PROPERTY = "org.jrobin.core.RrdBackendFactory";
     private static final String DEFAULT_BACKEND_FACTORY = "FILE";
+    private static final String MAX_OPEN_FILES_PROPERTY = "org.opennms.rrd.jrobin.maxOpenFiles";
+    private static final String IDLE_TIMEOUT_PROPERTY = "org.opennms.rrd.jrobin.idleTimeout";
+    private static final long DEFAULT_IDLE_TIMEOUT = 300000L;
+    private static final String MAX_MAPPED_BYTES_PROPERTY = "org.opennms.rrd.jrobin.mmap.maxMappedBytes";
+    private static final String WINDOW_SIZE_PROPERTY = "org.opennms.rrd.jrobin.mmap.windowSize";
 
     /*
      * Ensure that we only initialize certain things *once* per
@@ -76,6 +83,12 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     private static boolean s_initialized = false;
 
     private Properties m_configurationProperties;
+
+    /**
+     * Pool of open files shared by updates and fetches, null when
+     * every operation opens and closes its own RrdDb.
+     */
+    private RrdDbHandlePool m_handlePool;
     
     /**
      * An extremely simple Plottable for holding static datasources that
@@ -127,23 +140,70 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
                 factory = (String)m_configurationProperties.get(BACKEND_FACTORY_PROPERTY);
             }
             try {
+                if (MappedRrdBackendFactory.NAME.equals(factory)) {
+                    registerMappedBackendFactory();
+                }
                 RrdDb.setDefaultFactory(factory);
                 s_initialized=true;
             } catch (RrdException e) {
                 log().error("Could not set default JRobin RRD factory: " + e.getMessage(), e);
             }
         }
+
+        if (m_handlePool != null) {
+            m_handlePool.close();
+            m_handlePool = null;
+        }
+        if (m_configurationProperties != null) {
+            int maxOpenFiles = Integer.parseInt(m_configurationProperties.getProperty(MAX_OPEN_FILES_PROPERTY, "0"));
+            long idleTimeout = Long.parseLong(m_configurationProperties.getProperty(IDLE_TIMEOUT_PROPERTY, Long.toString(DEFAULT_IDLE_TIMEOUT)));
+            if (maxOpenFiles > 0) {
+                log().info("Keeping up to " + maxOpenFiles + " JRobin files open, closing them after " + idleTimeout + "ms of inactivity");
+                m_handlePool = new RrdDbHandlePool(maxOpenFiles, idleTimeout);
+            }
+        }
+    }
+
+    private void registerMappedBackendFactory() throws RrdException {
+        try {
+            RrdBackendFactory.getFactory(MappedRrdBackendFactory.NAME);
+        } catch (RrdException e) {
+            long maxMappedBytes = Long.parseLong(m_configurationProperties.getProperty(MAX_MAPPED_BYTES_PROPERTY, Long.toString(MappedRrdBackendFactory.DEFAULT_MAX_MAPPED_BYTES)));
+            int windowSize = Integer.parseInt(m_configurationProperties.getProperty(WINDOW_SIZE_PROPERTY, Integer.toString(MappedRrdBackendFactory.DEFAULT_WINDOW_SIZE)));
+            log().info("Mapping at most " + maxMappedBytes + " bytes of JRobin files in windows of " + windowSize + " bytes");
+            RrdBackendFactory.registerFactory(new MappedRrdBackendFactory(maxMappedBytes, windowSize));
+        }
+    }
+
+    private RrdDb openForRead(final String fileName) throws IOException, RrdException {
+        return m_handlePool == null ? new RrdDb(fileName, true) : m_handlePool.acquire(fileName);
+    }
+
+    private void closeAfterRead(final RrdDb rrd, final String fileName) {
+        if (m_handlePool != null) {
+            m_handlePool.release(rrd);
+            return;
+        }
+        try {
+            rrd.close();
+        } catch (IOException e) {
+            log().error("Failed to close rrd file: " + fileName, e);
+        }
     }
 
     /**
-     * Closes the JRobin RrdDb.
+     * Closes the JRobin RrdDb, or returns it to the pool of open files.
      *
      * @param rrdFile a {@link org.jrobin.core.RrdDb} object.
      * @throws java.lang.Exception if any.
      */
     @Override
     public void closeFile(final RrdDb rrdFile) throws Exception {
-        rrdFile.close();
+        if (m_handlePool == null) {
+            rrdFile.close();
+        } else {
+            m_handlePool.release(rrdFile);
+        }
     }
 
     /** {@inheritDoc} */
@@ -199,6 +259,9 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
             return;
         }
         log().info("createRRD: creating RRD file " + rrdDef.getPath());
+        if (m_handlePool != null) {
+            m_handlePool.evict(rrdDef.getPath());
+        }
         
         RrdDb rrd = new RrdDb(rrdDef);
         rrd.close();
@@ -215,10 +278,14 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     /**
      * {@inheritDoc}
      *
-     * Opens the JRobin RrdDb by name and returns it.
+     * Opens the JRobin RrdDb by name and returns it. When a pool of open
+     * files is configured the handle is taken from the pool instead.
      */
     @Override
     public RrdDb openFile(final String fileName) throws Exception {
+        if (m_handlePool != null) {
+            return m_handlePool.acquire(fileName);
+        }
         RrdDb rrd = new RrdDb(fileName);
         return rrd;
     }
@@ -234,6 +301,18 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
         sample.setAndUpdate(data);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Stores the values in a sample directly, without going through a string.
+     */
+    @Override
+    public void updateFile(final RrdDb rrdFile, final String owner, final long timestamp, final double[] values) throws Exception {
+        Sample sample = rrdFile.createSample(timestamp);
+        sample.setValues(values);
+        sample.update();
+    }
+
     /**
      * Initialized the RrdDb to use the FILE factory because the NIO factory
      * uses too much memory for our implementation.
@@ -263,7 +342,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
         try {
             long now = System.currentTimeMillis();
             long collectTime = (now - (now % interval)) / 1000L;
-            rrd = new RrdDb(fileName, true);
+            rrd = openForRead(fileName);
             FetchData data = rrd.createFetchRequest(consolidationFunction, collectTime, collectTime).fetchData();
             if(log().isDebugEnabled()) {
             	//The "toString" method of FetchData is quite computationally expensive; 
@@ -280,11 +359,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
             throw new org.opennms.netmgt.rrd.RrdException("Exception occurred fetching data from " + fileName, e);
         } finally {
             if (rrd != null) {
-                try {
-                    rrd.close();
-                } catch (IOException e) {
-                    log().error("Failed to close rrd file: " + fileName, e);
-                }
+                closeAfterRead(rrd, fileName);
             }
         }
     }
@@ -294,7 +369,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     public Double fetchLastValueInRange(final String fileName, final String ds, final int interval, final int range) throws NumberFormatException, org.opennms.netmgt.rrd.RrdException {
         RrdDb rrd = null;
         try {
-        	rrd = new RrdDb(fileName, true);
+        	rrd = openForRead(fileName);
          	long now = System.currentTimeMillis();
             long latestUpdateTime = (now - (now % interval)) / 1000L;
             long earliestUpdateTime = ((now - (now % interval)) - range) / 1000L;
@@ -328,11 +403,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
             throw new org.opennms.netmgt.rrd.RrdException("Exception occurred fetching data from " + fileName, e);
         } finally {
             if (rrd != null) {
-                try {
-                    rrd.close();
-                } catch (IOException e) {
-                    log().error("Failed to close rrd file: " + fileName, e);
-                }
+                closeAfterRead(rrd, fileName);
             }
         }
     }
@@ -835,6 +906,9 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
      */
     @Override
     public String getStats() {
+        if (m_handlePool != null) {
+            return "open files: " + m_handlePool.getOpenFiles() + "/" + m_handlePool.getMaxOpenFiles() + ", handle hits: " + m_handlePool.getHits() + ", handle misses: " + m_handlePool.getMisses();
+        }
         return "";
     }
 
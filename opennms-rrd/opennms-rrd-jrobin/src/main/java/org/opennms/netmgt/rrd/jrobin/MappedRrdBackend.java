@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd.jrobin;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.jrobin.core.RrdBackend;
+
+/**
+ * JRobin backend that maps fixed-size windows of the file on first access and
+ * keeps them mapped until the file is closed.
+ *
+ * Updates become stores into the page cache instead of one write system call
+ * per changed value, and the kernel writes dirty pages back in the
+ * background, so repeated updates of the same file are written together. The
+ * windows are only unmapped on {@link #close()}, so the backend pays off when
+ * files are kept open between updates (see
+ * <code>org.opennms.rrd.jrobin.maxOpenFiles</code>).
+ */
+public class MappedRrdBackend extends RrdBackend {
+
+    private final MappedRrdBackendFactory m_factory;
+    private final boolean m_readOnly;
+    private final RandomAccessFile m_file;
+    private final FileChannel m_channel;
+    private final int m_windowSize;
+    private long m_length;
+    private MappedByteBuffer[] m_windows;
+    private long m_mappedBytes = 0;
+
+    MappedRrdBackend(String path, boolean readOnly, MappedRrdBackendFactory factory) throws IOException {
+        super(path);
+        m_factory = factory;
+        m_readOnly = readOnly;
+        m_file = new RandomAccessFile(path, readOnly ? "r" : "rw");
+        m_channel = m_file.getChannel();
+        m_windowSize = factory.getWindowSize();
+        m_length = m_channel.size();
+        m_windows = new MappedByteBuffer[windowCount(m_length)];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected synchronized void write(long offset, byte[] b) throws IOException {
+        int done = 0;
+        while (done < b.length) {
+            long position = offset + done;
+            int index = (int) (position / m_windowSize);
+            int windowOffset = (int) (position % m_windowSize);
+            int count = Math.min(b.length - done, m_windowSize - windowOffset);
+            MappedByteBuffer window = getWindow(index);
+            if (window != null && windowOffset + count <= window.capacity()) {
+                ByteBuffer target = window.duplicate();
+                target.position(windowOffset);
+                target.put(b, done, count);
+            } else {
+                m_channel.write(ByteBuffer.wrap(b, done, count), position);
+            }
+            done += count;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected synchronized void read(long offset, byte[] b) throws IOException {
+        int done = 0;
+        while (done < b.length) {
+            long position = offset + done;
+            int index = (int) (position / m_windowSize);
+            int windowOffset = (int) (position % m_windowSize);
+            int count = Math.min(b.length - done, m_windowSize - windowOffset);
+            MappedByteBuffer window = getWindow(index);
+            if (window != null && windowOffset + count <= window.capacity()) {
+                ByteBuffer source = window.duplicate();
+                source.position(windowOffset);
+                source.get(b, done, count);
+            } else {
+                ByteBuffer target = ByteBuffer.wrap(b, done, count);
+                while (target.hasRemaining()) {
+                    if (m_channel.read(target, position + target.position() - done) < 0) {
+                        throw new IOException("Unexpected end of file " + getPath() + " at offset " + (position + target.position() - done));
+                    }
+                }
+            }
+            done += count;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized long getLength() throws IOException {
+        return m_length;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected synchronized void setLength(long length) throws IOException {
+        unmapAll();
+        m_file.setLength(length);
+        m_length = length;
+        m_windows = new MappedByteBuffer[windowCount(length)];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            unmapAll();
+        } finally {
+            m_file.close();
+        }
+    }
+
+    /**
+     * Values are only written through this backend, so JRobin may cache them.
+     */
+    @Override
+    protected boolean isCachingAllowed() {
+        return true;
+    }
+
+    private int windowCount(long length) {
+        return (int) ((length + m_windowSize - 1) / m_windowSize);
+    }
+
+    private MappedByteBuffer getWindow(int index) {
+        if (index >= m_windows.length) {
+            return null;
+        }
+        MappedByteBuffer window = m_windows[index];
+        if (window != null) {
+            return window;
+        }
+        long start = (long) index * m_windowSize;
+        long size = Math.min(m_windowSize, m_length - start);
+        if (!m_factory.reserve(size)) {
+            return null;
+        }
+        try {
+            window = m_channel.map(m_readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, start, size);
+        } catch (IOException e) {
+            // typically the per-process map count limit, fall back to file I/O
+            m_factory.unreserve(size);
+            return null;
+        }
+        m_windows[index] = window;
+        m_mappedBytes += size;
+        return window;
+    }
+
+    private void unmapAll() {
+        for (int i = 0; i < m_windows.length; i++) {
+            if (m_windows[i] != null) {
+                unmap(m_windows[i]);
+                m_windows[i] = null;
+            }
+        }
+        m_factory.unreserve(m_mappedBytes);
+        m_mappedBytes = 0;
+    }
+
+    /**
+     * Releases a mapping right away instead of waiting for the buffer to be
+     * garbage collected, which would let the mapped total drift far above the
+     * configured cap. Dirty pages stay in the page cache and are written back
+     * by the kernel.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // not a HotSpot direct buffer, leave it to the garbage collector
+        }
+    }
+}
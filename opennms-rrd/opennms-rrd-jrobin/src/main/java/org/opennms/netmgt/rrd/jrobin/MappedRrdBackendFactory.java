@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd.jrobin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jrobin.core.RrdBackend;
+import org.jrobin.core.RrdBackendFactory;
+
+/**
+ * JRobin backend factory for {@link MappedRrdBackend}, registered as
+ * <code>MMAP</code>.
+ *
+ * Unlike JRobin's own NIO backend, which maps every file in full, this
+ * backend only maps the windows of a file that are actually read or written,
+ * normally the header and the current row of each archive. The total number
+ * of bytes mapped by all open files is capped; once the cap is reached,
+ * further accesses go through plain positional file I/O until mapped files are
+ * closed.
+ */
+public class MappedRrdBackendFactory extends RrdBackendFactory {
+
+    /** Name under which the factory is registered with JRobin */
+    public static final String NAME = "MMAP";
+
+    /** Default total number of bytes that may be mapped at once */
+    public static final long DEFAULT_MAX_MAPPED_BYTES = 1024L * 1024L * 1024L;
+
+    /** Default size of a mapped window */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+    private final long m_maxMappedBytes;
+    private final int m_windowSize;
+    private final AtomicLong m_mappedBytes = new AtomicLong();
+
+    public MappedRrdBackendFactory() {
+        this(DEFAULT_MAX_MAPPED_BYTES, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param maxMappedBytes total number of bytes that may be mapped by all open files
+     * @param windowSize size of a mapped window, rounded up to a multiple of 4096
+     */
+    public MappedRrdBackendFactory(long maxMappedBytes, int windowSize) {
+        m_maxMappedBytes = maxMappedBytes;
+        m_windowSize = Math.max(4096, (windowSize + 4095) / 4096 * 4096);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected RrdBackend open(String path, boolean readOnly) throws IOException {
+        return new MappedRrdBackend(path, readOnly, this);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected boolean exists(String path) throws IOException {
+        return new File(path).exists();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getFactoryName() {
+        return NAME;
+    }
+
+    public long getMaxMappedBytes() {
+        return m_maxMappedBytes;
+    }
+
+    public int getWindowSize() {
+        return m_windowSize;
+    }
+
+    /**
+     * @return the number of bytes currently mapped by all open files
+     */
+    public long getMappedBytes() {
+        return m_mappedBytes.get();
+    }
+
+    boolean reserve(long bytes) {
+        while (true) {
+            long current = m_mappedBytes.get();
+            if (current + bytes > m_maxMappedBytes) {
+                return false;
+            }
+            if (m_mappedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    void unreserve(long bytes) {
+        m_mappedBytes.addAndGet(-bytes);
+    }
+}
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd.jrobin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdException;
+import org.opennms.core.utils.ThreadCategory;
+
+/**
+ * A bounded, least-recently-used pool of open JRobin {@link RrdDb} handles so
+ * that consecutive updates and fetches on the same file do not each have to
+ * open the file and parse its header.
+ *
+ * A handle is handed out by {@link #acquire(String)} and must be given back
+ * with {@link #release(RrdDb)}. Several threads may hold the same handle at
+ * once; JRobin serializes access to an RrdDb internally. Once more than
+ * <code>maxOpenFiles</code> handles are open, the least recently used handles
+ * that nobody holds are closed. Handles that have not been used for
+ * <code>idleTimeout</code> milliseconds are closed in the background.
+ */
+public class RrdDbHandlePool {
+
+    private static class Handle {
+        private final String m_path;
+        private final RrdDb m_rrdDb;
+        private int m_references = 0;
+        private long m_lastUsed = System.currentTimeMillis();
+
+        public Handle(String path, RrdDb rrdDb) {
+            m_path = path;
+            m_rrdDb = rrdDb;
+        }
+    }
+
+    private final int m_maxOpenFiles;
+    private final long m_idleTimeout;
+    private final Map<String, Handle> m_handles = new LinkedHashMap<String, Handle>(16, 0.75f, true);
+    private final Map<RrdDb, Handle> m_handlesByDb = new IdentityHashMap<RrdDb, Handle>();
+    private final Timer m_idleTimer;
+
+    private long m_hits = 0;
+    private long m_misses = 0;
+
+    /**
+     * @param maxOpenFiles the number of handles to keep open
+     * @param idleTimeout milliseconds after which an unused handle is closed, 0 to never close idle handles
+     */
+    public RrdDbHandlePool(int maxOpenFiles, long idleTimeout) {
+        m_maxOpenFiles = maxOpenFiles;
+        m_idleTimeout = idleTimeout;
+        if (idleTimeout > 0) {
+            m_idleTimer = new Timer("JRobin-RrdDbHandlePool-Idle", true);
+            long period = Math.max(1000L, idleTimeout / 2);
+            m_idleTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    closeIdle();
+                }
+            }, period, period);
+        } else {
+            m_idleTimer = null;
+        }
+    }
+
+    /**
+     * Returns an open handle for the file, opening it if it is not in the pool.
+     *
+     * @param path the path of the RRD file
+     * @return an open {@link RrdDb}
+     * @throws IOException if the file cannot be opened
+     * @throws RrdException if the file is not a valid RRD
+     */
+    public RrdDb acquire(String path) throws IOException, RrdException {
+        synchronized (this) {
+            Handle handle = m_handles.get(path);
+            if (handle != null) {
+                handle.m_references++;
+                m_hits++;
+                return handle.m_rrdDb;
+            }
+            m_misses++;
+        }
+
+        // open outside of the lock so that other files can be served meanwhile
+        RrdDb rrdDb = new RrdDb(path);
+        RrdDb result;
+        List<RrdDb> toClose = new ArrayList<RrdDb>();
+        synchronized (this) {
+            Handle handle = m_handles.get(path);
+            if (handle == null) {
+                handle = new Handle(path, rrdDb);
+                m_handles.put(path, handle);
+                m_handlesByDb.put(rrdDb, handle);
+            } else {
+                // another thread opened the same file in the meantime
+                toClose.add(rrdDb);
+            }
+            handle.m_references++;
+            result = handle.m_rrdDb;
+            evictOverflow(toClose);
+        }
+        close(toClose);
+        return result;
+    }
+
+    /**
+     * Gives back a handle obtained from {@link #acquire(String)}.
+     *
+     * @param rrdDb the handle
+     */
+    public void release(RrdDb rrdDb) {
+        List<RrdDb> toClose = new ArrayList<RrdDb>();
+        synchronized (this) {
+            Handle handle = m_handlesByDb.get(rrdDb);
+            if (handle == null) {
+                // not a pooled handle
+                toClose.add(rrdDb);
+            } else if (--handle.m_references == 0 && m_handles.get(handle.m_path) != handle) {
+                // the handle was evicted while it was in use
+                m_handlesByDb.remove(rrdDb);
+                toClose.add(rrdDb);
+            } else {
+                handle.m_lastUsed = System.currentTimeMillis();
+                evictOverflow(toClose);
+            }
+        }
+        close(toClose);
+    }
+
+    /**
+     * Closes the handle for a file, e.g. because the file is being recreated.
+     * A handle that is still in use is closed when it is released.
+     *
+     * @param path the path of the RRD file
+     */
+    public void evict(String path) {
+        List<RrdDb> toClose = new ArrayList<RrdDb>();
+        synchronized (this) {
+            Handle handle = m_handles.remove(path);
+            if (handle != null && handle.m_references == 0) {
+                m_handlesByDb.remove(handle.m_rrdDb);
+                toClose.add(handle.m_rrdDb);
+            }
+        }
+        close(toClose);
+    }
+
+    /**
+     * Closes every handle that is not in use and stops the idle timer.
+     */
+    public void close() {
+        if (m_idleTimer != null) {
+            m_idleTimer.cancel();
+        }
+        List<RrdDb> toClose = new ArrayList<RrdDb>();
+        synchronized (this) {
+            for (Handle handle : m_handles.values()) {
+                if (handle.m_references == 0) {
+                    m_handlesByDb.remove(handle.m_rrdDb);
+                    toClose.add(handle.m_rrdDb);
+                }
+            }
+            m_handles.clear();
+        }
+        close(toClose);
+    }
+
+    void closeIdle() {
+        long oldest = System.currentTimeMillis() - m_idleTimeout;
+        List<RrdDb> toClose = new ArrayList<RrdDb>();
+        synchronized (this) {
+            for (Iterator<Handle> it = m_handles.values().iterator(); it.hasNext();) {
+                Handle handle = it.next();
+                if (handle.m_references == 0 && handle.m_lastUsed < oldest) {
+                    it.remove();
+                    m_handlesByDb.remove(handle.m_rrdDb);
+                    toClose.add(handle.m_rrdDb);
+                }
+            }
+        }
+        close(toClose);
+    }
+
+    public synchronized int getOpenFiles() {
+        return m_handles.size();
+    }
+
+    public synchronized long getHits() {
+        return m_hits;
+    }
+
+    public synchronized long getMisses() {
+        return m_misses;
+    }
+
+    public int getMaxOpenFiles() {
+        return m_maxOpenFiles;
+    }
+
+    private void evictOverflow(List<RrdDb> toClose) {
+        if (m_handles.size() <= m_maxOpenFiles) {
+            return;
+        }
+        // iteration order of an access-ordered LinkedHashMap is least recently used first
+        for (Iterator<Handle> it = m_handles.values().iterator(); it.hasNext() && m_handles.size() > m_maxOpenFiles;) {
+            Handle handle = it.next();
+            if (handle.m_references == 0) {
+                it.remove();
+                m_handlesByDb.remove(handle.m_rrdDb);
+                toClose.add(handle.m_rrdDb);
+            }
+        }
+    }
+
+    private static void close(List<RrdDb> rrdDbs) {
+        for (RrdDb rrdDb : rrdDbs) {
+            try {
+                rrdDb.close();
+            } catch (IOException e) {
+                log().warn("Failed to close RRD file " + rrdDb.getPath() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static ThreadCategory log() {
+        return ThreadCategory.getInstance(RrdDbHandlePool.class);
+    }
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LastValueCacheTest {
+
+    private static final String FILE = "/opt/opennms/share/rrd/snmp/1/ifInOctets.jrb";
+
+    private final LastValueCache m_cache = new LastValueCache();
+
+    @Test
+    public void testGauge() {
+        List<RrdDataSource> dataSources = Arrays.asList(new RrdDataSource("load", "GAUGE", 600, "U", "100"));
+        m_cache.update(FILE, dataSources, 300000L, "42.5");
+        assertEquals(42.5, m_cache.get(FILE, "load", 300000L, true), 0.0);
+        assertNull(m_cache.get(FILE, "load", 300001L, true));
+
+        // above max is stored as NaN and only returned when NaN is acceptable
+        m_cache.update(FILE, dataSources, 600000L, "150");
+        assertTrue(m_cache.get(FILE, "load", 600000L, true).isNaN());
+        assertNull(m_cache.get(FILE, "load", 600000L, false));
+
+        assertEquals(2, m_cache.getHits());
+        assertEquals(2, m_cache.getMisses());
+        assertEquals(0.5, m_cache.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void testCounter() {
+        List<RrdDataSource> dataSources = Arrays.asList(
+            new RrdDataSource("ifInOctets", "COUNTER", 600, "U", "U"),
+            new RrdDataSource("ifOutOctets", "COUNTER", 600, "U", "U")
+        );
+        m_cache.update(FILE, dataSources, 0L, "1000:4294966992");
+        assertNull(m_cache.get(FILE, "ifInOctets", 0L, false));
+        // the rate of the first sample is only known to the RRD file
+        assertNull(m_cache.get(FILE, "ifInOctets", 0L, true));
+
+        m_cache.update(FILE, dataSources, 300000L, "31000:296");
+        assertEquals(100.0, m_cache.get(FILE, "ifInOctets", 0L, false), 0.0);
+        // 32 bit counter wrap
+        assertEquals(2.0, m_cache.get(FILE, "ifOutOctets", 0L, false), 0.0);
+
+        // samples further apart than the heartbeat are unknown
+        m_cache.update(FILE, dataSources, 1000000L, "61000:896");
+        assertTrue(m_cache.get(FILE, "ifInOctets", 0L, true).isNaN());
+
+        m_cache.invalidate(FILE, dataSources);
+        assertEquals(0, m_cache.size());
+    }
+
+    @Test
+    public void testUnknownValues() {
+        List<RrdDataSource> dataSources = Arrays.asList(
+            new RrdDataSource("a", "GAUGE", 600, "U", "U"),
+            new RrdDataSource("b", "DERIVE", 600, "U", "U")
+        );
+        m_cache.update(FILE, dataSources, 0L, "U:10");
+        assertTrue(m_cache.get(FILE, "a", 0L, true).isNaN());
+        assertNull(m_cache.get(FILE, "b", 0L, true));
+    }
+}
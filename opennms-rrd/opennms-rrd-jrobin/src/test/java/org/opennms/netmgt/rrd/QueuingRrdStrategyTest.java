@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.netmgt.rrd.QueuingRrdStrategy.Operation;
+
+public class QueuingRrdStrategyTest {
+
+    private static final String FILE = "/opt/opennms/share/rrd/snmp/1/ifInOctets.jrb";
+    private static final Object RRD = new Object();
+
+    private RrdStrategy<Object, Object> m_delegate;
+    private QueuingRrdStrategy m_strategy;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        MockLogAppender.setupLogging();
+
+        m_delegate = createMock(RrdStrategy.class);
+        m_strategy = new QueuingRrdStrategy(m_delegate);
+        m_strategy.setCategory(getClass().getSimpleName());
+        m_strategy.setModulus(10000);
+    }
+
+    @Test
+    public void testValuesUpdateOperation() throws Exception {
+        final double[] values = new double[] { 1.5, Double.NaN, 42.0 };
+
+        expect(m_delegate.openFile(FILE)).andReturn(RRD);
+        m_delegate.updateFile(eq(RRD), eq(""), eq(1000L), aryEq(values));
+        replay(m_delegate);
+
+        final Operation op = m_strategy.makeUpdateOperation(FILE, "owner", 1000L, values);
+        assertTrue(op instanceof QueuingRrdStrategy.ValuesUpdateOperation);
+        assertTrue(op.isSignificant());
+        assertEquals(RRD, op.process(null));
+
+        verify(m_delegate);
+        assertEquals(1, m_strategy.getUpdatesCompleted());
+    }
+
+    @Test
+    public void testValuesUpdateOperationUsesOpenFile() throws Exception {
+        final double[] values = new double[] { 2.0, 3.0 };
+
+        m_delegate.updateFile(eq(RRD), eq(""), eq(2000L), aryEq(values));
+        replay(m_delegate);
+
+        assertEquals(RRD, m_strategy.makeUpdateOperation(FILE, "owner", 2000L, values).process(RRD));
+
+        verify(m_delegate);
+    }
+
+    @Test
+    public void testValuesUpdateOperationFailure() throws Exception {
+        final double[] values = new double[] { 1.5, Double.NaN };
+
+        m_delegate.updateFile(eq(RRD), eq(""), eq(1000L), aryEq(values));
+        expectLastCall().andThrow(new RrdException("update failed"));
+        replay(m_delegate);
+
+        try {
+            m_strategy.makeUpdateOperation(FILE, "owner", 1000L, values).process(RRD);
+            fail("expected the delegate's exception to be rethrown");
+        } catch (final Exception e) {
+            assertEquals("Error processing update for file " + FILE + ": 1000:1.5:U", e.getMessage());
+            assertTrue(e.getCause() instanceof RrdException);
+        }
+
+        verify(m_delegate);
+        assertEquals(0, m_strategy.getUpdatesCompleted());
+    }
+
+    @Test
+    public void testZeroValuesUpdateOperation() throws Exception {
+        final Operation op = m_strategy.makeUpdateOperation(FILE, "owner", 1000L, new double[] { 0.0 });
+        assertTrue(op instanceof QueuingRrdStrategy.ZeroUpdateOperation);
+
+        m_delegate.updateFile(eq(RRD), eq(""), eq(1000L), aryEq(new double[] { 0.0 }));
+        replay(m_delegate);
+
+        assertEquals(RRD, op.process(RRD));
+
+        verify(m_delegate);
+    }
+}
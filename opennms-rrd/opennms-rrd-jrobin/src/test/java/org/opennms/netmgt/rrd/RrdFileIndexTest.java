@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.test.FileAnticipator;
+
+public class RrdFileIndexTest {
+
+    private FileAnticipator m_fileAnticipator;
+    private File m_rrdDirectory;
+    private File m_journal;
+
+    @Before
+    public void setUp() throws Exception {
+        MockLogAppender.setupLogging();
+        m_fileAnticipator = new FileAnticipator();
+        m_rrdDirectory = m_fileAnticipator.tempDir("rrd");
+        m_journal = m_fileAnticipator.tempFile("resource-index.txt");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        m_fileAnticipator.tearDown();
+    }
+
+    @Test
+    public void testNotIndexedUntilScanned() throws Exception {
+        RrdFileIndex index = createIndex();
+        index.fileCreated(new File(m_rrdDirectory, "snmp/1/ifInOctets.jrb"));
+
+        assertFalse(index.isIndexed(m_rrdDirectory));
+        assertEquals(1, index.getFileCount());
+
+        index.reconcile(m_rrdDirectory);
+        assertTrue(index.isIndexed(m_rrdDirectory));
+        assertTrue(index.isIndexed(new File(m_rrdDirectory, "snmp")));
+        assertFalse(index.isIndexed(m_rrdDirectory.getParentFile()));
+        assertFalse(index.isIndexed(new File(m_rrdDirectory.getPath() + "2")));
+
+        // the file only existed in the index, so the scan drops it again
+        assertEquals(0, index.getFileCount());
+        assertFalse(index.isDirectory(new File(m_rrdDirectory, "snmp")));
+    }
+
+    @Test
+    public void testScanAndCreate() throws Exception {
+        File nodeDir = m_fileAnticipator.tempDir(m_fileAnticipator.tempDir(m_rrdDirectory, "snmp"), "1");
+        File intfDir = m_fileAnticipator.tempDir(nodeDir, "eth0-001122334455");
+        m_fileAnticipator.tempFile(nodeDir, "tcpActiveOpens.jrb");
+        m_fileAnticipator.tempFile(nodeDir, "ds.properties");
+        m_fileAnticipator.tempFile(intfDir, "ifInOctets.jrb");
+        m_fileAnticipator.tempDir(nodeDir, "empty");
+
+        RrdFileIndex index = createIndex();
+        index.reconcile(m_rrdDirectory);
+
+        assertEquals(2, index.getFileCount());
+        assertTrue(index.isDirectory(nodeDir));
+        assertFalse(index.isDirectory(new File(nodeDir, "empty")));
+        assertArrayEquals(new String[] { "eth0-001122334455" }, index.getDirectoryNames(nodeDir));
+        assertArrayEquals(new String[] { "tcpActiveOpens.jrb" }, index.getFileNames(nodeDir));
+        assertNull(index.getFileNames(new File(nodeDir, "empty")));
+
+        index.fileCreated(new File(nodeDir, "eth1/ifInOctets.jrb"));
+        index.fileCreated(new File(nodeDir, "eth1/ifInOctets.jrb"));
+        assertEquals(3, index.getFileCount());
+        String[] directories = index.getDirectoryNames(nodeDir);
+        Arrays.sort(directories);
+        assertArrayEquals(new String[] { "eth0-001122334455", "eth1" }, directories);
+        assertArrayEquals(new String[] { "ifInOctets.jrb" }, index.getFileNames(new File(nodeDir, "eth1")));
+    }
+
+    @Test
+    public void testJournal() throws Exception {
+        File nodeDir = m_fileAnticipator.tempDir(m_fileAnticipator.tempDir(m_rrdDirectory, "snmp"), "1");
+        m_fileAnticipator.tempFile(nodeDir, "tcpActiveOpens.jrb");
+
+        RrdFileIndex writer = createIndex();
+        writer.reconcile(m_rrdDirectory);
+        writer.fileCreated(new File(nodeDir, "tcpPassiveOpens.jrb"));
+
+        // a second process picks up both the snapshot and the appended file
+        RrdFileIndex reader = createIndex();
+        reader.refresh();
+        assertTrue(reader.isIndexed(nodeDir));
+        assertEquals(2, reader.getFileCount());
+
+        writer.fileCreated(new File(nodeDir, "tcpAttemptFails.jrb"));
+        reader.refresh();
+        assertEquals(3, reader.getFileCount());
+
+        // rewriting the snapshot makes the reader start over
+        writer.reconcile(m_rrdDirectory);
+        reader.refresh();
+        assertEquals(1, reader.getFileCount());
+        assertArrayEquals(new String[] { "tcpActiveOpens.jrb" }, reader.getFileNames(nodeDir));
+    }
+
+    @Test
+    public void testLongerSnapshotIsDetected() throws Exception {
+        File nodeDir = m_fileAnticipator.tempDir(m_fileAnticipator.tempDir(m_rrdDirectory, "snmp"), "1");
+        File removed = m_fileAnticipator.tempFile(nodeDir, "tcpActiveOpens.jrb");
+
+        RrdFileIndex writer = createIndex();
+        writer.reconcile(m_rrdDirectory);
+
+        RrdFileIndex reader = createIndex();
+        reader.refresh();
+        assertEquals(1, reader.getFileCount());
+
+        // the new snapshot is longer than the old one, so its length does not give the rewrite away
+        assertTrue(removed.delete());
+        m_fileAnticipator.tempFile(nodeDir, "tcpPassiveOpens.jrb");
+        m_fileAnticipator.tempFile(nodeDir, "tcpAttemptFails.jrb");
+        m_fileAnticipator.tempFile(nodeDir, "tcpEstabResets.jrb");
+        writer.reconcile(m_rrdDirectory);
+
+        reader.refresh();
+        assertEquals(3, reader.getFileCount());
+        String[] files = reader.getFileNames(nodeDir);
+        Arrays.sort(files);
+        assertArrayEquals(new String[] { "tcpAttemptFails.jrb", "tcpEstabResets.jrb", "tcpPassiveOpens.jrb" }, files);
+    }
+
+    @Test
+    public void testPartialLineIsNotConsumed() throws Exception {
+        File nodeDir = m_fileAnticipator.tempDir(m_fileAnticipator.tempDir(m_rrdDirectory, "snmp"), "1");
+        m_fileAnticipator.tempFile(nodeDir, "tcpActiveOpens.jrb");
+
+        RrdFileIndex writer = createIndex();
+        writer.reconcile(m_rrdDirectory);
+
+        RrdFileIndex reader = createIndex();
+        reader.refresh();
+        assertEquals(1, reader.getFileCount());
+
+        // another process is half way through appending a line
+        File created = new File(nodeDir, "tcpPassiveOpens.jrb");
+        appendToJournal("+" + created.getPath().substring(0, created.getPath().length() - 4));
+        reader.refresh();
+        assertEquals(1, reader.getFileCount());
+
+        appendToJournal(".jrb\n");
+        reader.refresh();
+        assertEquals(2, reader.getFileCount());
+        String[] files = reader.getFileNames(nodeDir);
+        Arrays.sort(files);
+        assertArrayEquals(new String[] { "tcpActiveOpens.jrb", "tcpPassiveOpens.jrb" }, files);
+    }
+
+    @Test
+    public void testStartScansRightAway() throws Exception {
+        File nodeDir = m_fileAnticipator.tempDir(m_fileAnticipator.tempDir(m_rrdDirectory, "snmp"), "1");
+        m_fileAnticipator.tempFile(nodeDir, "tcpActiveOpens.jrb");
+
+        RrdFileIndex writer = createIndex();
+        writer.reconcile(m_rrdDirectory);
+
+        // created while no process was keeping the journal up to date
+        m_fileAnticipator.tempFile(nodeDir, "tcpPassiveOpens.jrb");
+
+        RrdFileIndex index = createIndex();
+        index.setScanInterval(3600000L);
+        index.start(m_rrdDirectory);
+        try {
+            for (int i = 0; i < 100 && index.getFileCount() < 2; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(2, index.getFileCount());
+        } finally {
+            index.stop();
+        }
+    }
+
+    private void appendToJournal(String text) throws IOException {
+        FileOutputStream out = new FileOutputStream(m_journal, true);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private RrdFileIndex createIndex() {
+        RrdFileIndex index = new RrdFileIndex();
+        index.setJournal(m_journal.getAbsolutePath());
+        index.setExtension(".jrb");
+        return index;
+    }
+}
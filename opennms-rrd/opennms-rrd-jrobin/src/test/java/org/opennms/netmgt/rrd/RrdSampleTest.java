@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class RrdSampleTest {
+
+    @Test
+    public void testAppendValue() {
+        assertEquals("U", appendValue(Double.NaN));
+        assertEquals("0", appendValue(0.0));
+        assertEquals("42", appendValue(42.0));
+        assertEquals("-3", appendValue(-3.0));
+        assertEquals("1.5", appendValue(1.5));
+        assertEquals("-0.25", appendValue(-0.25));
+        assertEquals("Infinity", appendValue(Double.POSITIVE_INFINITY));
+        assertEquals("-Infinity", appendValue(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    public void testAppendLargeWholeNumbers() {
+        // COUNTER values must be written as plain integers, never with an exponent
+        assertEquals("4294967296", appendValue(4294967296.0));
+        assertEquals("100000000000000000", appendValue(1e17));
+        assertEquals("1000000000000000000", appendValue(1e18));
+        assertEquals("18446744073709551616", appendValue(Math.pow(2, 64)));
+        assertEquals("-100000000000000000000", appendValue(-1e20));
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("1000", RrdSample.format(1000L, new double[0]));
+        assertEquals("1000:1:U:2.5", RrdSample.format(1000L, new double[] { 1.0, Double.NaN, 2.5 }));
+    }
+
+    @Test
+    public void testParseValue() {
+        assertTrue(Double.isNaN(RrdSample.parseValue(null)));
+        assertTrue(Double.isNaN(RrdSample.parseValue("U")));
+        assertEquals(42.0, RrdSample.parseValue("42"), 0.0);
+        assertEquals(6.022E23, RrdSample.parseValue("6.022E23"), 0.0);
+        try {
+            RrdSample.parseValue("not a number");
+            fail("expected a NumberFormatException");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+
+    private static String appendValue(double value) {
+        StringBuffer buf = new StringBuffer();
+        RrdSample.appendValue(buf, value);
+        return buf.toString();
+    }
+}
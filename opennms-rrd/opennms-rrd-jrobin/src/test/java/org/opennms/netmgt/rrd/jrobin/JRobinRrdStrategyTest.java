@@ -31,12 +31,15 @@ package org.opennms.netmgt.rrd.jrobin;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
 
 import org.jrobin.core.RrdDb;
 import org.jrobin.core.RrdDef;
@@ -173,6 +176,102 @@ public class JRobinRrdStrategyTest {
         m_strategy.closeFile(openedFile);
     }
 
+    @Test
+    public void testPooledOpenFiles() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("org.jrobin.core.RrdBackendFactory", "FILE");
+        properties.setProperty("org.opennms.rrd.jrobin.maxOpenFiles", "1");
+        properties.setProperty("org.opennms.rrd.jrobin.idleTimeout", "0");
+        m_strategy.setConfigurationProperties(properties);
+
+        File foo = createRrdFile("foo");
+        File bar = createRrdFile("bar");
+
+        RrdDb first = m_strategy.openFile(foo.getAbsolutePath());
+        m_strategy.updateFile(first, "huh?", "N:1.5");
+        m_strategy.closeFile(first);
+
+        RrdDb second = m_strategy.openFile(foo.getAbsolutePath());
+        assertSame("file should stay open between updates", first, second);
+        m_strategy.closeFile(second);
+
+        // opening another file pushes the idle one out of the pool
+        RrdDb other = m_strategy.openFile(bar.getAbsolutePath());
+        m_strategy.closeFile(other);
+        RrdDb third = m_strategy.openFile(foo.getAbsolutePath());
+        assertNotSame("least recently used file should have been closed", first, third);
+        m_strategy.closeFile(third);
+
+        assertTrue("stats were " + m_strategy.getStats(), m_strategy.getStats().startsWith("open files: 1/1"));
+    }
+
+    @Test
+    public void testTypedUpdate() throws Exception {
+        File rrdFile = createRrdFile();
+
+        long start = System.currentTimeMillis() / 1000L - 3000;
+        RrdDb openedFile = m_strategy.openFile(rrdFile.getAbsolutePath());
+        m_strategy.updateFile(openedFile, "huh?", start, new double[] { 1.5 });
+        m_strategy.updateFile(openedFile, "huh?", start + 300, new double[] { Double.NaN });
+        m_strategy.updateFile(openedFile, "huh?", start + 600, new double[] { 2.5 });
+        assertEquals(start + 600, openedFile.getLastUpdateTime());
+        assertEquals(2.5, openedFile.getDatasource("bar").getLastValue(), 0.0);
+        m_strategy.closeFile(openedFile);
+    }
+
+    /**
+     * Compares the bytes allocated per sample by the string update path, as
+     * collectd used it, with the typed update path.
+     */
+    @Test
+    @Ignore("benchmark")
+    public void testUpdateAllocationBenchmark() throws Exception {
+        final int datasources = 10;
+        final int samples = 100000;
+        java.lang.management.ThreadMXBean threads = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            System.err.println("per-thread allocation counters are not available on this JVM");
+            return;
+        }
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        long threadId = Thread.currentThread().getId();
+
+        m_fileAnticipator.initialize();
+        List<RrdDataSource> dataSources = new ArrayList<RrdDataSource>();
+        for (int i = 0; i < datasources; i++) {
+            dataSources.add(new RrdDataSource("ds" + i, "GAUGE", 600, "U", "U"));
+        }
+        List<String> rraList = Arrays.asList("RRA:AVERAGE:0.5:1:2016");
+        double[] values = new double[datasources];
+        for (String name : new String[] { "string", "typed" }) {
+            RrdDef def = m_strategy.createDefinition("benchmark", m_fileAnticipator.getTempDir().getAbsolutePath(), name, 300, dataSources, rraList);
+            m_strategy.createFile(def, null);
+            File file = m_fileAnticipator.expecting(name + RrdUtils.getExtension());
+
+            RrdDb rrdDb = m_strategy.openFile(file.getAbsolutePath());
+            long before = allocation.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < samples; i++) {
+                long timestamp = 1000 + (i + 1) * 300L;
+                for (int j = 0; j < datasources; j++) {
+                    values[j] = i * 10 + j + 0.5;
+                }
+                if ("string".equals(name)) {
+                    StringBuffer update = new StringBuffer();
+                    update.append(timestamp);
+                    for (int j = 0; j < datasources; j++) {
+                        update.append(':').append(Double.toString(values[j]));
+                    }
+                    m_strategy.updateFile(rrdDb, "benchmark", update.toString());
+                } else {
+                    m_strategy.updateFile(rrdDb, "benchmark", timestamp, values.clone());
+                }
+            }
+            long allocated = allocation.getThreadAllocatedBytes(threadId) - before;
+            m_strategy.closeFile(rrdDb);
+            System.err.println(String.format("%s updates of %d datasources: %d bytes allocated per sample", name, datasources, allocated / samples));
+        }
+    }
+
     @Test
     public void testSampleSetFloatingPointValueGood() throws Exception {
         File rrdFile = createRrdFile();
@@ -484,9 +583,13 @@ public class JRobinRrdStrategyTest {
     }
 
     public File createRrdFile() throws Exception {
-        String rrdFileBase = "foo";
+        return createRrdFile("foo");
+    }
 
-        m_fileAnticipator.initialize();
+    public File createRrdFile(String rrdFileBase) throws Exception {
+        if (!m_fileAnticipator.isInitialized()) {
+            m_fileAnticipator.initialize();
+        }
         String rrdExtension = RrdUtils.getExtension();
         
         List<RrdDataSource> dataSources = new ArrayList<RrdDataSource>();
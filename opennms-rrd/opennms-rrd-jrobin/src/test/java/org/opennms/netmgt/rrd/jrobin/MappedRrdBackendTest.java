@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd.jrobin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.jrobin.core.FetchData;
+import org.jrobin.core.RrdBackendFactory;
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.test.FileAnticipator;
+
+public class MappedRrdBackendTest {
+
+    private FileAnticipator m_fileAnticipator;
+
+    @Before
+    public void setUp() throws Exception {
+        MockLogAppender.setupLogging();
+        m_fileAnticipator = new FileAnticipator();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        m_fileAnticipator.deleteExpected();
+        m_fileAnticipator.tearDown();
+    }
+
+    @Test
+    public void testSameContentsAsFileBackend() throws Exception {
+        // windows of 4k so that the archives span several windows
+        MappedRrdBackendFactory mapped = new MappedRrdBackendFactory(1024L * 1024L, 4096);
+        File mappedFile = updateRrd("mapped.jrb", mapped);
+        File plainFile = updateRrd("plain.jrb", RrdBackendFactory.getFactory("FILE"));
+
+        assertEquals(0, mapped.getMappedBytes());
+        assertEquals(plainFile.length(), mappedFile.length());
+        assertArrayEquals(fetch(plainFile, RrdBackendFactory.getFactory("FILE")), fetch(mappedFile, mapped), 0.0);
+    }
+
+    @Test
+    public void testMappedBytesCap() throws Exception {
+        // room for a single window, everything else goes through file I/O
+        MappedRrdBackendFactory mapped = new MappedRrdBackendFactory(4096, 4096);
+        File mappedFile = updateRrd("capped.jrb", mapped);
+        File plainFile = updateRrd("uncapped.jrb", RrdBackendFactory.getFactory("FILE"));
+
+        RrdDb rrdDb = new RrdDb(mappedFile.getAbsolutePath(), mapped);
+        try {
+            assertTrue(mapped.getMappedBytes() <= 4096);
+        } finally {
+            rrdDb.close();
+        }
+        assertArrayEquals(fetch(plainFile, RrdBackendFactory.getFactory("FILE")), fetch(mappedFile, mapped), 0.0);
+    }
+
+    private File updateRrd(String name, RrdBackendFactory factory) throws Exception {
+        File file = m_fileAnticipator.expecting(name);
+        RrdDef def = new RrdDef(file.getAbsolutePath());
+        def.setStartTime(1000);
+        def.setStep(300);
+        def.addDatasource("bar", "GAUGE", 600, Double.NaN, Double.NaN);
+        def.addArchive("RRA:AVERAGE:0.5:1:2016");
+        def.addArchive("RRA:MAX:0.5:12:1488");
+        new RrdDb(def, factory).close();
+
+        RrdDb rrdDb = new RrdDb(file.getAbsolutePath(), factory);
+        try {
+            for (int i = 1; i <= 100; i++) {
+                rrdDb.createSample().setAndUpdate((1000 + i * 300) + ":" + i);
+            }
+        } finally {
+            rrdDb.close();
+        }
+        return file;
+    }
+
+    private double[] fetch(File file, RrdBackendFactory factory) throws Exception {
+        RrdDb rrdDb = new RrdDb(file.getAbsolutePath(), factory);
+        try {
+            FetchData data = rrdDb.createFetchRequest("AVERAGE", 1000, 1000 + 100 * 300).fetchData();
+            return data.getValues("bar");
+        } finally {
+            rrdDb.close();
+        }
+    }
+}
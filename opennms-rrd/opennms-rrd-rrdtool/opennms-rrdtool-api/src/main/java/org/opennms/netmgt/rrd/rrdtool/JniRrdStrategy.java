@@ -45,6 +45,7 @@ import org.opennms.core.utils.ThreadCategory;
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdException;
 import org.opennms.netmgt.rrd.RrdGraphDetails;
+import org.opennms.netmgt.rrd.RrdSample;
 import org.opennms.netmgt.rrd.RrdStrategy;
 import org.opennms.netmgt.rrd.RrdUtils;
 import org.springframework.util.FileCopyUtils;
@@ -214,6 +215,18 @@ public class JniRrdStrategy implements RrdStrategy<JniRrdStrategy.CreateCommand
         rrd.append(data);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Appends the values to the pending update command without building an
+     * intermediate string.
+     */
+        @Override
+    public void updateFile(StringBuffer rrd, String owner, long timestamp, double[] values) throws Exception {
+        rrd.append(' ');
+        RrdSample.append(rrd, timestamp, values);
+    }
+
     /**
      * Initialized the JNI Interface
      *
@@ -68,9 +68,10 @@ import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.model.events.EventIpcManager;
 import org.opennms.netmgt.model.events.EventListener;
-import org.opennms.netmgt.scheduler.LegacyScheduler;
 import org.opennms.netmgt.scheduler.ReadyRunnable;
 import org.opennms.netmgt.scheduler.Scheduler;
+import org.opennms.netmgt.scheduler.SchedulerFactory;
+import org.opennms.netmgt.threshd.ExpressionConfigWrapper;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xml.event.Parm;
 import org.opennms.netmgt.xml.event.Value;
@@ -292,7 +293,8 @@ public class Collectd extends AbstractServiceDaemon implements
         try {
             log().debug("init: Creating collectd scheduler");
 
-            setScheduler(new LegacyScheduler(
+            setScheduler(SchedulerFactory.createScheduler(
+                                             getCollectorConfigDao().getSchedulerType(),
                                              "Collectd",
                                              getCollectorConfigDao().getSchedulerThreads()));
         } catch (RuntimeException e) {
@@ -1137,10 +1139,12 @@ public class Collectd extends AbstractServiceDaemon implements
                 // Reloading Factories
                 if (targetFile.equals(thresholdsFile)) {
                     ThresholdingConfigFactory.reload();
+                    ExpressionConfigWrapper.clearCompiledExpressions();
                 }
                 if (targetFile.equals(threshdFile)) {
                     ThreshdConfigFactory.reload();
                     ThresholdingConfigFactory.reload(); // This is required if the threshold packages has been changed.
+                    ExpressionConfigWrapper.clearCompiledExpressions();
                 }
                 // Sending the threshold configuration change event
                 ebldr = new EventBuilder(EventConstants.THRESHOLDCONFIG_CHANGED_EVENT_UEI, "Collectd");
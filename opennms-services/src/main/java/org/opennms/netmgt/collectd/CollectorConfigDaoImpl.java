@@ -100,6 +100,16 @@ public class CollectorConfigDaoImpl implements CollectorConfigDao {
         return getConfig().getThreads();
     }
 
+    /**
+     * <p>getSchedulerType</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    @Override
+    public String getSchedulerType() {
+        return getConfig().getScheduler();
+    }
+
 
     /**
      * <p>getCollectors</p>
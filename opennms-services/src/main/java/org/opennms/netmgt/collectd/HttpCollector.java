@@ -36,7 +36,6 @@ import java.io.UnsupportedEncodingException;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
@@ -52,8 +51,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import javax.net.ssl.SSLContext;
-
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpVersion;
@@ -70,9 +67,6 @@ import org.apache.http.client.params.ClientPNames;
 import org.apache.http.client.params.CookiePolicy;
 import org.apache.http.client.utils.URIUtils;
 import org.apache.http.client.utils.URLEncodedUtils;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.message.BasicNameValuePair;
@@ -85,7 +79,6 @@ import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.ValidationException;
 import org.opennms.core.db.DataSourceFactory;
 import org.opennms.core.utils.EmptyKeyRelaxedTrustProvider;
-import org.opennms.core.utils.EmptyKeyRelaxedTrustSSLContext;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.LogUtils;
 import org.opennms.core.utils.ParameterMap;
@@ -108,6 +101,7 @@ import org.opennms.netmgt.config.httpdatacollection.Parameter;
 import org.opennms.netmgt.config.httpdatacollection.Uri;
 import org.opennms.netmgt.model.RrdRepository;
 import org.opennms.netmgt.model.events.EventProxy;
+import org.opennms.netmgt.utils.HttpClientPool;
 
 /**
  * Collect data via URI
@@ -286,21 +280,12 @@ public class HttpCollector implements ServiceCollector {
 
         DefaultHttpClient client = null;
         HttpUriRequest method = null;
+        HttpResponse response = null;
 
         try {
             HttpParams params = buildParams(collectionSet);
-            client = new DefaultHttpClient(params);
-            if ("https".equals(collectionSet.getUriDef().getUrl().getScheme())) {
-                final SchemeRegistry registry = client.getConnectionManager().getSchemeRegistry();
-                final Scheme https = registry.getScheme("https");
-
-                // Override the trust validation with a lenient implementation
-                final SSLSocketFactory factory = new SSLSocketFactory(SSLContext.getInstance(EmptyKeyRelaxedTrustSSLContext.ALGORITHM), SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-
-                final Scheme lenient = new Scheme(https.getName(), https.getDefaultPort(), factory);
-                // This will replace the existing "https" schema
-                registry.register(lenient);
-            }
+            // Use the shared connections with lenient trust validation for HTTPS
+            client = HttpClientPool.getInstance().createClient(params, true);
 
             String key = "retry";
             if (collectionSet.getParameters().containsKey("retries")) {
@@ -314,22 +299,32 @@ public class HttpCollector implements ServiceCollector {
             buildCredentials(collectionSet, client, method);
 
             log().info("doCollection: collecting for client: "+client+" using method: "+method);
-            HttpResponse response = client.execute(method);
+            response = client.execute(method);
             //Not really a persist as such; it just stores data in collectionSet for later retrieval
             persistResponse(collectionSet, collectionResource, client, response);
         } catch (URISyntaxException e) {
             throw new HttpCollectorException("Error building HttpClient URI", e);
         } catch (IOException e) {
             throw new HttpCollectorException("IO Error retrieving page", e);
-        } catch (NoSuchAlgorithmException e) {
-            throw new HttpCollectorException("Could not find EmptyKeyRelaxedTrustSSLContext to allow connection to untrusted HTTPS hosts", e);
         } catch (PatternSyntaxException e) {
             throw new HttpCollectorException("Invalid regex specified in HTTP collection configuration: " + e.getMessage(), e);
         } catch (Throwable e) {
             throw new HttpCollectorException("Unexpected exception caught during HTTP collection: " + e.getMessage(), e);
         } finally {
-            // Do we need to do any cleanup?
-            // if (method != null) method.releaseConnection();
+            // Hand the connection back to the shared pool
+            releaseConnection(method, response);
+        }
+    }
+
+    private static void releaseConnection(final HttpUriRequest method, final HttpResponse response) {
+        if (response == null || response.getEntity() == null) {
+            return;
+        }
+        try {
+            EntityUtils.consume(response.getEntity());
+        } catch (final IOException e) {
+            // the connection can not be reused, close it
+            method.abort();
         }
     }
 
@@ -32,7 +32,7 @@ import java.net.InetAddress;
 import java.util.Map;
 
 import org.opennms.protocols.jmx.connectors.ConnectionWrapper;
-import org.opennms.protocols.jmx.connectors.JBossConnectionFactory;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 /*
  * The JBossCollector class manages the querying and storage of data into RRD files.  The list of 
@@ -65,7 +65,7 @@ public class JBossCollector  extends JMXCollector {
     /** {@inheritDoc} */
     @Override
     public ConnectionWrapper getMBeanServerConnection(Map<String, Object> parameterMap, InetAddress address) {
-        return  JBossConnectionFactory.getMBeanServerConnection(parameterMap, address);
+        return JMXConnectionPool.getInstance().getConnection(JMXConnectionPool.JBOSS, parameterMap, address);
     }
     
 }
@@ -67,6 +67,7 @@ import org.opennms.netmgt.config.collector.ServiceParameters;
 import org.opennms.netmgt.model.RrdRepository;
 import org.opennms.netmgt.model.events.EventProxy;
 import org.opennms.protocols.jmx.connectors.ConnectionWrapper;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 /**
  * This class performs the collection and storage of data. The derived class
@@ -477,10 +478,21 @@ public abstract class JMXCollector implements ServiceCollector {
                     break;
                 } catch (final Exception e) {
                     LogUtils.debugf(this, e, "%s Collector.collect: IOException while collecting address: %s", serviceName, agent.getAddress());
+                    if (e instanceof IOException) {
+                        // the pooled connection may have gone stale, retry with a new one
+                        JMXConnectionPool.invalidate(connection);
+                        connection = getMBeanServerConnection(map, ipaddr);
+                        if (connection == null) {
+                            break;
+                        }
+                        mbeanServer = connection.getMBeanServer();
+                    }
                 }
             }
         } catch (final Exception e) {
             LogUtils.errorf(this, e, "Error getting MBeanServer");
+            JMXConnectionPool.invalidate(connection);
+            connection = null;
         } finally {
             if (connection != null) {
                 connection.close();
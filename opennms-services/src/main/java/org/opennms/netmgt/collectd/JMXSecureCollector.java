@@ -32,7 +32,7 @@ import java.net.InetAddress;
 import java.util.Map;
 
 import org.opennms.protocols.jmx.connectors.ConnectionWrapper;
-import org.opennms.protocols.jmx.connectors.JMXSecureConnectionFactory;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 /**
  * <p>JMXSecureCollector class.</p>
@@ -65,6 +65,6 @@ public class JMXSecureCollector extends JMXCollector
         @Override
     public ConnectionWrapper getMBeanServerConnection(Map<String,Object> parameterMap, InetAddress address)
 	{
-		return JMXSecureConnectionFactory.getMBeanServerConnection(parameterMap, address);
+		return JMXConnectionPool.getInstance().getConnection(JMXConnectionPool.JMX_SECURE, parameterMap, address);
 	}
 }
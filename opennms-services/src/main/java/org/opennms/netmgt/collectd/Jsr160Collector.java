@@ -32,7 +32,7 @@ import java.net.InetAddress;
 import java.util.Map;
 
 import org.opennms.protocols.jmx.connectors.ConnectionWrapper;
-import org.opennms.protocols.jmx.connectors.Jsr160ConnectionFactory;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 /*
  * The Jsr160Collector class manages the querying and storage of data into RRD files.  The list of 
@@ -66,6 +66,6 @@ public class Jsr160Collector extends JMXCollector {
     /** {@inheritDoc} */
     @Override
     public ConnectionWrapper getMBeanServerConnection(Map<String, Object> parameterMap, InetAddress address) {
-        return Jsr160ConnectionFactory.getMBeanServerConnection(parameterMap, address);
+        return JMXConnectionPool.getInstance().getConnection(JMXConnectionPool.JSR160, parameterMap, address);
     }
 }
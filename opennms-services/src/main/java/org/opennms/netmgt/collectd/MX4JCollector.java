@@ -32,7 +32,7 @@ import java.net.InetAddress;
 import java.util.Map;
 
 import org.opennms.protocols.jmx.connectors.ConnectionWrapper;
-import org.opennms.protocols.jmx.connectors.MX4JConnectionFactory;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 /*
 * The MX4JCollector class manages the querying and storage of data into RRD files.  The list of 
@@ -66,6 +66,6 @@ public class MX4JCollector extends JMXCollector {
   /** {@inheritDoc} */
   @Override
   public ConnectionWrapper getMBeanServerConnection(Map<String, Object> parameterMap, InetAddress address) {
-      return MX4JConnectionFactory.getMBeanServerConnection(parameterMap, address);
+      return JMXConnectionPool.getInstance().getConnection(JMXConnectionPool.MX4J, parameterMap, address);
   }
 }
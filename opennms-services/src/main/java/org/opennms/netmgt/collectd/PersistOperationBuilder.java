@@ -33,6 +33,7 @@ import java.io.File;
 import java.util.*;
 
 import org.opennms.core.utils.DefaultTimeKeeper;
+import org.opennms.core.utils.LogUtils;
 import org.opennms.core.utils.StringUtils;
 import org.opennms.core.utils.TimeKeeper;
 import org.opennms.netmgt.config.collector.AttributeDefinition;
@@ -41,6 +42,7 @@ import org.opennms.netmgt.config.collector.ResourceIdentifier;
 import org.opennms.netmgt.model.RrdRepository;
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdException;
+import org.opennms.netmgt.rrd.RrdSample;
 import org.opennms.netmgt.rrd.RrdUtils;
 
 /**
@@ -146,25 +148,26 @@ public class PersistOperationBuilder {
             return;
         }
         
-        RrdUtils.createRRD(m_resource.getOwnerName(), getResourceDir(m_resource).getAbsolutePath(), m_rrdName, getRepository().getStep(), getDataSources(), getRepository().getRraList(), getAttributeMappings());
-        RrdUtils.updateRRD(m_resource.getOwnerName(), getResourceDir(m_resource).getAbsolutePath(), m_rrdName, m_timeKeeper.getCurrentTime(), getValues());
+        List<RrdDataSource> dataSources = getDataSources();
+        RrdUtils.createRRD(m_resource.getOwnerName(), getResourceDir(m_resource).getAbsolutePath(), m_rrdName, getRepository().getStep(), dataSources, getRepository().getRraList(), getAttributeMappings());
+        RrdUtils.updateRRD(m_resource.getOwnerName(), getResourceDir(m_resource).getAbsolutePath(), m_rrdName, m_timeKeeper.getCurrentTime(), getValues(), dataSources);
         RrdUtils.createMetaDataFile(getResourceDir(m_resource).getAbsolutePath(), m_rrdName, m_metaData);
     }
 
-    private String getValues() {
-        boolean first = true;
-        StringBuffer values = new StringBuffer();
-        for (Iterator<AttributeDefinition> iter = m_declarations.keySet().iterator(); iter.hasNext();) {
-            AttributeDefinition attrDef = iter.next();
-            String value = m_declarations.get(attrDef);
-            if (!first) {
-                values.append(':');
-            } else {
-                first = false;
+    private double[] getValues() {
+        double[] values = new double[m_declarations.size()];
+        int i = 0;
+        for (Map.Entry<AttributeDefinition, String> entry : m_declarations.entrySet()) {
+            try {
+                values[i] = RrdSample.parseValue(entry.getValue());
+            } catch (NumberFormatException e) {
+                // store only this datasource as unknown, like JRobin did when parsing the update string
+                LogUtils.warnf(this, "Value '%s' of attribute %s in %s is not a number, storing it as unknown", entry.getValue(), entry.getKey().getName(), m_rrdName);
+                values[i] = Double.NaN;
             }
-            values.append(value);
+            i++;
         }
-        return values.toString();
+        return values;
     }
 
     private Map<String, String> getAttributeMappings() {
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.collectd.jmx;
 
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 /**
  * <p>Collectd class.</p>
@@ -51,4 +52,40 @@ public class Collectd extends AbstractSpringContextJmxServiceDaemon<org.opennms.
         return "collectdContext";
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int getJmxConnectionPoolSize() {
+        return JMXConnectionPool.getInstance().getPoolSize();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getJmxConnectionsOpened() {
+        return JMXConnectionPool.getInstance().getConnectionsOpened();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getJmxConnectionsReused() {
+        return JMXConnectionPool.getInstance().getConnectionsReused();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getJmxConnectFailures() {
+        return JMXConnectionPool.getInstance().getConnectFailures();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getJmxAverageConnectTime() {
+        return JMXConnectionPool.getInstance().getAverageConnectTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getJmxMaxConnectTime() {
+        return JMXConnectionPool.getInstance().getMaxConnectTime();
+    }
+
 }
@@ -37,4 +37,33 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface CollectdMBean extends BaseOnmsMBean {
+    /**
+     * @return the number of open connections in the shared JMX connection pool
+     */
+    int getJmxConnectionPoolSize();
+
+    /**
+     * @return the number of JMX connections opened by the shared pool
+     */
+    long getJmxConnectionsOpened();
+
+    /**
+     * @return the number of JMX requests served with an already open pooled connection
+     */
+    long getJmxConnectionsReused();
+
+    /**
+     * @return the number of failed JMX connect attempts
+     */
+    long getJmxConnectFailures();
+
+    /**
+     * @return the average time opening a JMX connection took in milliseconds
+     */
+    double getJmxAverageConnectTime();
+
+    /**
+     * @return the longest time opening a JMX connection took in milliseconds
+     */
+    double getJmxMaxConnectTime();
 }
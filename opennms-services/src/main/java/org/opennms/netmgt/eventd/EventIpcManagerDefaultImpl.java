@@ -32,10 +32,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -100,9 +98,15 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
     private List<EventListener> m_listeners = new ArrayList<EventListener>();
 
     /**
-     * Hash table of event listener threads keyed by the listener's id
+     * Hash table of event listener queues keyed by the listener's id
      */
-    private Map<String, EventListenerExecutor> m_listenerThreads = new HashMap<String, EventListenerExecutor>();
+    private Map<String, EventListenerQueue> m_listenerQueues = new HashMap<String, EventListenerQueue>();
+
+    /**
+     * Snapshot of the registrations above that is used to route events. It
+     * is replaced, never modified, whenever a listener is added or removed.
+     */
+    private volatile EventRoutingTable m_routingTable = new EventRoutingTable();
 
     /**
      * The thread pool handling the events
@@ -115,81 +119,11 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
     
     private Integer m_handlerQueueLength;
 
-    private EventIpcManagerProxy m_eventIpcManagerProxy;
-
-    /**
-     * A thread dedicated to each listener. The events meant for each listener
-     * is added to an execution queue when the 'sendNow()' is called. The
-     * ListenerThread reads events off of this queue and sends them to the
-     * appropriate listener.
-     */
-    private static class EventListenerExecutor {
-        /**
-         * Listener to which this thread is dedicated
-         */
-        private final EventListener m_listener;
-
-        /**
-         * The thread that is running this runnable.
-         */
-        private final ExecutorService m_delegateThread;
+    private Integer m_listenerQueueLength;
 
-        /**
-         * Constructor
-         */
-        EventListenerExecutor(EventListener listener, Integer handlerQueueLength) {
-            m_listener = listener;
-            // You could also do Executors.newSingleThreadExecutor() here
-            m_delegateThread = new ThreadPoolExecutor(
-                    1,
-                    1,
-                    0L,
-                    TimeUnit.MILLISECONDS,
-                    handlerQueueLength == null ? new LinkedBlockingQueue<Runnable>() : new LinkedBlockingQueue<Runnable>(handlerQueueLength),
-                    // This ThreadFactory will ensure that the log prefix of the calling thread
-                    // is used for all events that this listener handles. Therefore, if Notifd
-                    // registers for an event then all logs for handling that event will end up
-                    // inside notifd.log.
-                    new LogPreservingThreadFactory(m_listener.getName(), 1, true),
-                    new RejectedExecutionHandler() {
-                        @Override
-                        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-                            log().warn("Listener " + m_listener.getName() + "'s event queue is full, discarding event");
-                        }
-                    }
-            );
-        }
-
-        public void addEvent(final Event event) {
-            m_delegateThread.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        if (log().isInfoEnabled()) {
-                            log().info("run: calling onEvent on " + m_listener.getName() + " for event " + event.getUei() + " dbid " + event.getDbid() + " with time " + event.getTime());
-                        }
-
-                        // Make sure we restore our log4j logging prefix after onEvent is called
-                        String log4jPrefix = ThreadCategory.getPrefix(); 
-                        try {
-                            m_listener.onEvent(event);
-                        } finally {
-                            ThreadCategory.setPrefix(log4jPrefix);
-                        }
-                    } catch (Throwable t) {
-                        log().warn("run: an unexpected error occured during ListenerThread " + m_listener.getName() + " run: " + t, t);
-                    }
-                }
-            });
-        }
+    private EventListenerOverflowPolicy m_listenerOverflowPolicy = EventListenerOverflowPolicy.DROP_NEWEST;
 
-        /**
-         * Stops the execution of this listener.
-         */
-        public void stop() {
-            m_delegateThread.shutdown();
-        }
-    }
+    private EventIpcManagerProxy m_eventIpcManagerProxy;
 
     /**
      * <p>Constructor for EventIpcManagerDefaultImpl.</p>
@@ -261,13 +195,16 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
             log().debug("Event ID " + event.getDbid() + " to be broadcasted: " + event.getUei());
         }
 
-        if (m_listeners.isEmpty()) {
+        EventRoutingTable routingTable = m_routingTable;
+
+        EventListenerQueue[] matchAll = routingTable.getMatchAllQueues();
+        if (matchAll.length == 0) {
             log().debug("No listeners interested in all events");
         }
 
         // Send to listeners interested in receiving all events
-        for (EventListener listener : m_listeners) {
-            queueEventToListener(event, listener);
+        for (EventListenerQueue queue : matchAll) {
+            queue.add(event);
         }
 
         if (event.getUei() == null) {
@@ -278,42 +215,21 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         }
 
         /*
-         * Send to listeners who are interested in this event UEI.
-         * Loop to attempt partial wild card "directory" matches.
+         * Send to listeners who are interested in this event UEI or in one
+         * of its partial wild card "directory" matches.
          */
-        Set<EventListener> sentToListeners = new HashSet<EventListener>();
-        for (String uei = event.getUei(); uei.length() > 0; ) {
-            if (m_ueiListeners.containsKey(uei)) {
-                for (EventListener listener : m_ueiListeners.get(uei)) {
-                    if (!sentToListeners.contains(listener)) {
-                        queueEventToListener(event, listener);
-                        sentToListeners.add(listener);
-                    }
-                }
-            }
-            
-            // Try wild cards: Find / before last character
-            int i = uei.lastIndexOf("/", uei.length() - 2);
-            if (i > 0) {
-                // Split at "/", including the /
-                uei = uei.substring (0, i + 1);
-            } else {
-                // No more wild cards to match
-                break;
-            }
+        EventListenerQueue[] queues = routingTable.getQueues(event.getUei());
+        for (EventListenerQueue queue : queues) {
+            queue.add(event);
         }
-        
-        if (sentToListeners.isEmpty()) {
+
+        if (queues.length == 0) {
             if (log().isDebugEnabled()) {
                 log().debug("No listener interested in event ID " + event.getDbid() + ": " + event.getUei());
             }
         }
     }
 
-    private void queueEventToListener(Event event, EventListener listener) {
-        m_listenerThreads.get(listener.getName()).addEvent(event);
-    }
-
     /**
      * {@inheritDoc}
      *
@@ -332,6 +248,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         for (String uei : m_ueiListeners.keySet()) {
             removeUeiForListener(uei, listener);
         }
+
+        rebuildRoutingTable();
     }
 
     /**
@@ -361,6 +279,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
 
         // Since we have a UEI-specific listener, remove the match-all listener
         removeMatchAllForListener(listener);
+
+        rebuildRoutingTable();
     }
 
     /**
@@ -395,6 +315,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         for (String uei : ueis) {
             removeUeiForListener(uei, listener);
         }
+
+        rebuildRoutingTable();
     }
 
     /**
@@ -414,6 +336,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         Assert.notNull(uei, "uei argument cannot be null");
 
         removeUeiForListener(uei, listener);
+
+        rebuildRoutingTable();
     }
 
     /**
@@ -435,10 +359,12 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         }
 
         // stop and remove the listener thread for this listener
-        if (m_listenerThreads.containsKey(listener.getName())) {
-            m_listenerThreads.get(listener.getName()).stop();
+        EventListenerQueue queue = m_listenerQueues.remove(listener.getName());
 
-            m_listenerThreads.remove(listener.getName());
+        rebuildRoutingTable();
+
+        if (queue != null) {
+            queue.stop();
         }
     }
 
@@ -447,12 +373,31 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
      * already exist.
      */
     private void createListenerThread(EventListener listener) {
-        if (m_listenerThreads.containsKey(listener.getName())) {
+        if (m_listenerQueues.containsKey(listener.getName())) {
             return;
         }
-        
-        EventListenerExecutor listenerThread = new EventListenerExecutor(listener, m_handlerQueueLength);
-        m_listenerThreads.put(listener.getName(), listenerThread);
+
+        Integer queueLength = m_listenerQueueLength == null ? m_handlerQueueLength : m_listenerQueueLength;
+        EventListenerQueue queue = new EventListenerQueue(listener, queueLength, m_listenerOverflowPolicy);
+        m_listenerQueues.put(listener.getName(), queue);
+    }
+
+    /**
+     * Publish a new routing table built from the current registrations.
+     * Must be called with the lock on this object held.
+     */
+    private void rebuildRoutingTable() {
+        m_routingTable = new EventRoutingTable(m_listeners, m_ueiListeners, m_listenerQueues);
+    }
+
+    /**
+     * Returns the queues of the registered listeners so that their depth,
+     * latency and drop counters can be reported.
+     *
+     * @return a snapshot of the listener queues
+     */
+    public synchronized Collection<EventListenerQueue> getListenerQueues() {
+        return new ArrayList<EventListenerQueue>(m_listenerQueues.values());
     }
 
     /**
@@ -592,6 +537,47 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         m_handlerQueueLength = size;
     }
 
+    /**
+     * <p>getListenerQueueLength</p>
+     *
+     * @return the capacity of each listener's event queue, or null to use the handler queue length
+     */
+    public Integer getListenerQueueLength() {
+        return m_listenerQueueLength;
+    }
+
+    /**
+     * <p>setListenerQueueLength</p>
+     *
+     * Only affects listeners registered after it is set.
+     *
+     * @param listenerQueueLength the capacity of each listener's event queue
+     */
+    public void setListenerQueueLength(Integer listenerQueueLength) {
+        m_listenerQueueLength = listenerQueueLength;
+    }
+
+    /**
+     * <p>getListenerOverflowPolicy</p>
+     *
+     * @return what happens to an event when a listener's queue is full
+     */
+    public EventListenerOverflowPolicy getListenerOverflowPolicy() {
+        return m_listenerOverflowPolicy;
+    }
+
+    /**
+     * <p>setListenerOverflowPolicy</p>
+     *
+     * Only affects listeners registered after it is set.
+     *
+     * @param listenerOverflowPolicy what happens to an event when a listener's queue is full
+     */
+    public void setListenerOverflowPolicy(EventListenerOverflowPolicy listenerOverflowPolicy) {
+        Assert.notNull(listenerOverflowPolicy, "listenerOverflowPolicy argument cannot be null");
+        m_listenerOverflowPolicy = listenerOverflowPolicy;
+    }
+
     /**
      * <p>getEventIpcManagerProxy</p>
      *
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+/**
+ * What {@link EventIpcManagerDefaultImpl} does with a broadcast event when
+ * the queue of a listener is full.
+ */
+public enum EventListenerOverflowPolicy {
+    /**
+     * Wait for the listener to make room. Slow listeners hold up the
+     * event handler threads, and with them every other listener.
+     */
+    BLOCK("block"),
+
+    /**
+     * Discard the oldest queued event to make room for the new one.
+     */
+    DROP_OLDEST("drop-oldest"),
+
+    /**
+     * Discard the new event.
+     */
+    DROP_NEWEST("drop-newest");
+
+    private final String m_configValue;
+
+    private EventListenerOverflowPolicy(String configValue) {
+        m_configValue = configValue;
+    }
+
+    /**
+     * <p>getConfigValue</p>
+     *
+     * @return the name of this policy in eventd-configuration.xml
+     */
+    public String getConfigValue() {
+        return m_configValue;
+    }
+
+    /**
+     * <p>fromConfigValue</p>
+     *
+     * @param configValue the name of a policy in eventd-configuration.xml, e.g. "drop-oldest"
+     * @return the matching policy
+     * @throws java.lang.IllegalArgumentException if the name is not a known policy
+     */
+    public static EventListenerOverflowPolicy fromConfigValue(String configValue) {
+        for (EventListenerOverflowPolicy policy : values()) {
+            if (policy.getConfigValue().equalsIgnoreCase(configValue) || policy.name().equalsIgnoreCase(configValue)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown listener overflow policy: " + configValue);
+    }
+}
@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.utils.ThreadCategory;
+import org.opennms.netmgt.model.events.EventListener;
+import org.opennms.netmgt.xml.event.Event;
+
+/**
+ * The queue of broadcast events waiting for one {@link EventListener}, along
+ * with the thread dedicated to delivering them. When a capacity is given the
+ * events are held in a fixed-size ring buffer and the
+ * {@link EventListenerOverflowPolicy} decides what happens once it is full.
+ *
+ * The queue keeps counters of the events delivered and dropped and of the
+ * time events spend queued and in the listener, so that a listener that is
+ * falling behind can be spotted.
+ */
+public class EventListenerQueue {
+    private static final long IDLE_POLL_MILLIS = 500;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private static final class QueuedEvent {
+        private final Event m_event;
+        private final long m_queuedAt;
+
+        QueuedEvent(Event event, long queuedAt) {
+            m_event = event;
+            m_queuedAt = queuedAt;
+        }
+    }
+
+    /**
+     * Listener to which this queue is dedicated
+     */
+    private final EventListener m_listener;
+
+    private final BlockingQueue<QueuedEvent> m_queue;
+
+    private final int m_capacity;
+
+    private final EventListenerOverflowPolicy m_overflowPolicy;
+
+    /**
+     * The thread delivering events to the listener.
+     */
+    private final Thread m_thread;
+
+    private volatile boolean m_stopped = false;
+
+    private final AtomicLong m_delivered = new AtomicLong();
+    private final AtomicLong m_dropped = new AtomicLong();
+    private final AtomicLong m_totalQueueTime = new AtomicLong();
+    private final AtomicLong m_maxQueueTime = new AtomicLong();
+    private final AtomicLong m_totalProcessingTime = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param listener the listener to deliver events to
+     * @param capacity the maximum number of queued events, or null for no limit
+     * @param overflowPolicy what to do with an event when the queue is full
+     */
+    EventListenerQueue(EventListener listener, Integer capacity, EventListenerOverflowPolicy overflowPolicy) {
+        m_listener = listener;
+        m_overflowPolicy = overflowPolicy;
+        if (capacity == null || capacity == Integer.MAX_VALUE) {
+            m_capacity = Integer.MAX_VALUE;
+            m_queue = new LinkedBlockingQueue<QueuedEvent>();
+        } else {
+            m_capacity = capacity;
+            m_queue = new ArrayBlockingQueue<QueuedEvent>(capacity);
+        }
+
+        // This ThreadFactory will ensure that the log prefix of the calling thread
+        // is used for all events that this listener handles. Therefore, if Notifd
+        // registers for an event then all logs for handling that event will end up
+        // inside notifd.log.
+        m_thread = new LogPreservingThreadFactory(m_listener.getName(), 1, true).newThread(new Runnable() {
+            @Override
+            public void run() {
+                deliverEvents();
+            }
+        });
+        m_thread.start();
+    }
+
+    /**
+     * Queues an event for the listener, applying the overflow policy if the
+     * queue is full.
+     *
+     * @param event the event to queue
+     * @return false if the event was not queued
+     */
+    boolean add(Event event) {
+        if (m_stopped) {
+            dropped();
+            return false;
+        }
+
+        QueuedEvent queued = new QueuedEvent(event, System.nanoTime());
+        switch (m_overflowPolicy) {
+        case BLOCK:
+            try {
+                m_queue.put(queued);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped();
+                return false;
+            }
+
+        case DROP_OLDEST:
+            while (!m_queue.offer(queued)) {
+                if (m_queue.poll() != null) {
+                    dropped();
+                }
+            }
+            return true;
+
+        default:
+            if (m_queue.offer(queued)) {
+                return true;
+            }
+            dropped();
+            return false;
+        }
+    }
+
+    private void dropped() {
+        long dropped = m_dropped.incrementAndGet();
+        if (dropped == 1 || dropped % 1000 == 0) {
+            log().warn("Listener " + m_listener.getName() + "'s event queue is full, " + dropped + " events discarded so far");
+        }
+    }
+
+    private void deliverEvents() {
+        while (true) {
+            QueuedEvent queued;
+            try {
+                queued = m_queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                queued = null;
+            }
+
+            if (queued == null) {
+                if (m_stopped) {
+                    return;
+                }
+                continue;
+            }
+
+            deliver(queued);
+        }
+    }
+
+    private void deliver(QueuedEvent queued) {
+        final Event event = queued.m_event;
+        final long start = System.nanoTime();
+        updateMax(m_maxQueueTime, start - queued.m_queuedAt);
+        m_totalQueueTime.addAndGet(start - queued.m_queuedAt);
+
+        try {
+            if (log().isInfoEnabled()) {
+                log().info("run: calling onEvent on " + m_listener.getName() + " for event " + event.getUei() + " dbid " + event.getDbid() + " with time " + event.getTime());
+            }
+
+            // Make sure we restore our log4j logging prefix after onEvent is called
+            String log4jPrefix = ThreadCategory.getPrefix();
+            try {
+                m_listener.onEvent(event);
+            } finally {
+                ThreadCategory.setPrefix(log4jPrefix);
+            }
+        } catch (Throwable t) {
+            log().warn("run: an unexpected error occured during ListenerThread " + m_listener.getName() + " run: " + t, t);
+        } finally {
+            m_totalProcessingTime.addAndGet(System.nanoTime() - start);
+            m_delivered.incrementAndGet();
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Stops accepting events. The events already queued are still delivered
+     * before the thread exits.
+     */
+    void stop() {
+        m_stopped = true;
+    }
+
+    /**
+     * <p>getListener</p>
+     *
+     * @return the listener to which this queue is dedicated
+     */
+    public EventListener getListener() {
+        return m_listener;
+    }
+
+    /**
+     * <p>getName</p>
+     *
+     * @return the name of the listener
+     */
+    public String getName() {
+        return m_listener.getName();
+    }
+
+    /**
+     * <p>getCapacity</p>
+     *
+     * @return the maximum number of queued events, Integer.MAX_VALUE if unbounded
+     */
+    public int getCapacity() {
+        return m_capacity;
+    }
+
+    /**
+     * <p>getOverflowPolicy</p>
+     *
+     * @return what happens to events once the queue is full
+     */
+    public EventListenerOverflowPolicy getOverflowPolicy() {
+        return m_overflowPolicy;
+    }
+
+    /**
+     * <p>getQueueDepth</p>
+     *
+     * @return the number of events waiting for the listener
+     */
+    public int getQueueDepth() {
+        return m_queue.size();
+    }
+
+    /**
+     * <p>getDeliveredCount</p>
+     *
+     * @return the number of events handed to the listener
+     */
+    public long getDeliveredCount() {
+        return m_delivered.get();
+    }
+
+    /**
+     * <p>getDroppedCount</p>
+     *
+     * @return the number of events discarded because the queue was full
+     */
+    public long getDroppedCount() {
+        return m_dropped.get();
+    }
+
+    /**
+     * <p>getAverageQueueTime</p>
+     *
+     * @return the average time, in milliseconds, events waited in the queue
+     */
+    public double getAverageQueueTime() {
+        long delivered = m_delivered.get();
+        return delivered == 0 ? 0 : (double) m_totalQueueTime.get() / delivered / NANOS_PER_MILLI;
+    }
+
+    /**
+     * <p>getMaxQueueTime</p>
+     *
+     * @return the longest time, in milliseconds, an event waited in the queue
+     */
+    public double getMaxQueueTime() {
+        return (double) m_maxQueueTime.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * <p>getAverageProcessingTime</p>
+     *
+     * @return the average time, in milliseconds, the listener spent in onEvent
+     */
+    public double getAverageProcessingTime() {
+        long delivered = m_delivered.get();
+        return delivered == 0 ? 0 : (double) m_totalProcessingTime.get() / delivered / NANOS_PER_MILLI;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return String.format("%s: depth=%d capacity=%s delivered=%d dropped=%d avgQueueTime=%.3fms maxQueueTime=%.3fms avgProcessingTime=%.3fms",
+                             getName(),
+                             getQueueDepth(),
+                             m_capacity == Integer.MAX_VALUE ? "unbounded" : String.valueOf(m_capacity),
+                             getDeliveredCount(),
+                             getDroppedCount(),
+                             getAverageQueueTime(),
+                             getMaxQueueTime(),
+                             getAverageProcessingTime());
+    }
+
+    private static ThreadCategory log() {
+        return ThreadCategory.getInstance(EventListenerQueue.class);
+    }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.opennms.netmgt.model.events.EventListener;
+
+/**
+ * An immutable snapshot of which listener queues receive which events.
+ * {@link EventIpcManagerDefaultImpl} builds a new table whenever a listener
+ * is added or removed, so broadcasting never needs a lock.
+ *
+ * The listeners for a UEI are those registered for the UEI itself or for
+ * any of its "directory" prefixes, e.g. "uei.opennms.org/nodes/". They are
+ * resolved the first time the UEI is seen and remembered, so an event with a
+ * known UEI is routed with a single map lookup.
+ */
+class EventRoutingTable {
+    /**
+     * Upper bound on the number of distinct UEIs whose routes are remembered.
+     */
+    static final int MAX_RESOLVED_UEIS = 10000;
+
+    private static final EventListenerQueue[] NO_QUEUES = new EventListenerQueue[0];
+
+    private final EventListenerQueue[] m_matchAll;
+
+    private final Map<String, EventListenerQueue[]> m_ueiQueues;
+
+    private final ConcurrentMap<String, EventListenerQueue[]> m_resolved = new ConcurrentHashMap<String, EventListenerQueue[]>();
+
+    /**
+     * Creates an empty routing table.
+     */
+    EventRoutingTable() {
+        m_matchAll = NO_QUEUES;
+        m_ueiQueues = new HashMap<String, EventListenerQueue[]>();
+    }
+
+    /**
+     * Creates a routing table from the current registrations.
+     *
+     * @param matchAll the listeners interested in all events
+     * @param ueiListeners the listeners interested in each UEI or UEI prefix
+     * @param queues the queue of each listener, keyed by listener name
+     */
+    EventRoutingTable(List<EventListener> matchAll, Map<String, List<EventListener>> ueiListeners, Map<String, EventListenerQueue> queues) {
+        m_matchAll = toQueues(matchAll, queues);
+        m_ueiQueues = new HashMap<String, EventListenerQueue[]>();
+        for (Map.Entry<String, List<EventListener>> entry : ueiListeners.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                m_ueiQueues.put(entry.getKey(), toQueues(entry.getValue(), queues));
+            }
+        }
+    }
+
+    private static EventListenerQueue[] toQueues(List<EventListener> listeners, Map<String, EventListenerQueue> queues) {
+        List<EventListenerQueue> result = new ArrayList<EventListenerQueue>(listeners.size());
+        for (EventListener listener : listeners) {
+            EventListenerQueue queue = queues.get(listener.getName());
+            if (queue != null) {
+                result.add(queue);
+            }
+        }
+        return result.toArray(new EventListenerQueue[result.size()]);
+    }
+
+    /**
+     * <p>getMatchAllQueues</p>
+     *
+     * @return the queues of the listeners interested in all events
+     */
+    EventListenerQueue[] getMatchAllQueues() {
+        return m_matchAll;
+    }
+
+    /**
+     * Returns the queues of the listeners registered for the UEI or one of
+     * its prefixes, each at most once. Listeners interested in all events are
+     * not included.
+     *
+     * @param uei the UEI of the event being broadcast
+     * @return the queues to deliver the event to, never null
+     */
+    EventListenerQueue[] getQueues(String uei) {
+        EventListenerQueue[] queues = m_resolved.get(uei);
+        if (queues == null) {
+            queues = resolve(uei);
+            if (m_resolved.size() < MAX_RESOLVED_UEIS) {
+                m_resolved.putIfAbsent(uei, queues);
+            }
+        }
+        return queues;
+    }
+
+    private EventListenerQueue[] resolve(String uei) {
+        if (m_ueiQueues.isEmpty()) {
+            return NO_QUEUES;
+        }
+
+        /*
+         * Loop to attempt partial wild card "directory" matches.
+         */
+        Set<EventListenerQueue> queues = new LinkedHashSet<EventListenerQueue>();
+        for (String prefix = uei; prefix.length() > 0; ) {
+            EventListenerQueue[] matches = m_ueiQueues.get(prefix);
+            if (matches != null) {
+                for (EventListenerQueue queue : matches) {
+                    queues.add(queue);
+                }
+            }
+
+            // Try wild cards: Find / before last character
+            int i = prefix.lastIndexOf("/", prefix.length() - 2);
+            if (i > 0) {
+                // Split at "/", including the /
+                prefix = prefix.substring(0, i + 1);
+            } else {
+                // No more wild cards to match
+                break;
+            }
+        }
+        return queues.isEmpty() ? NO_QUEUES : queues.toArray(new EventListenerQueue[queues.size()]);
+    }
+}
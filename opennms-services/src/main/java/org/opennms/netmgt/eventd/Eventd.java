@@ -33,6 +33,7 @@ import java.util.Collection;
 
 import org.opennms.netmgt.daemon.AbstractServiceDaemon;
 import org.opennms.netmgt.eventd.adaptors.EventReceiver;
+import org.opennms.netmgt.eventd.processor.InterfaceHostnameCache;
 import org.springframework.util.Assert;
 
 /**
@@ -89,6 +90,16 @@ public final class Eventd extends AbstractServiceDaemon {
      */
     private Collection<EventReceiver> m_eventReceivers;
 
+    /**
+     * The local event dispatcher, if any, whose listener queues are reported over JMX.
+     */
+    private EventIpcManagerDefaultImpl m_eventIpcManagerImpl;
+
+    /**
+     * Cache of interface hostnames used when persisting events, if any.
+     */
+    private InterfaceHostnameCache m_interfaceHostnameCache;
+
     /**
      * Constuctor creates the localhost address(to be used eventually when
      * eventd originates events during correlation) and the broadcast queue
@@ -114,6 +125,11 @@ public final class Eventd extends AbstractServiceDaemon {
      */
     @Override
     protected void onStart() {
+        // the event IPC manager is running now, so the cache can subscribe
+        if (m_interfaceHostnameCache != null) {
+            m_interfaceHostnameCache.start();
+        }
+
         for (EventReceiver eventReceiver : m_eventReceivers) {
             eventReceiver.start();
         }
@@ -139,6 +155,10 @@ public final class Eventd extends AbstractServiceDaemon {
             m_receiver.close();
         }
 
+        if (m_interfaceHostnameCache != null) {
+            m_interfaceHostnameCache.stop();
+        }
+
         log().debug("shutdown on tcp/udp listener threads returned");
     }
 
@@ -195,4 +215,40 @@ public final class Eventd extends AbstractServiceDaemon {
     public void setEventReceivers(Collection<EventReceiver> eventReceivers) {
         m_eventReceivers = eventReceivers;
     }
+
+    /**
+     * <p>getInterfaceHostnameCache</p>
+     *
+     * @return a {@link org.opennms.netmgt.eventd.processor.InterfaceHostnameCache} object, or null if hostnames are not cached.
+     */
+    public InterfaceHostnameCache getInterfaceHostnameCache() {
+        return m_interfaceHostnameCache;
+    }
+
+    /**
+     * <p>setInterfaceHostnameCache</p>
+     *
+     * @param interfaceHostnameCache a {@link org.opennms.netmgt.eventd.processor.InterfaceHostnameCache} object.
+     */
+    public void setInterfaceHostnameCache(InterfaceHostnameCache interfaceHostnameCache) {
+        m_interfaceHostnameCache = interfaceHostnameCache;
+    }
+
+    /**
+     * <p>getEventIpcManagerImpl</p>
+     *
+     * @return a {@link org.opennms.netmgt.eventd.EventIpcManagerDefaultImpl} object, or null if not set.
+     */
+    public EventIpcManagerDefaultImpl getEventIpcManagerImpl() {
+        return m_eventIpcManagerImpl;
+    }
+
+    /**
+     * <p>setEventIpcManagerImpl</p>
+     *
+     * @param eventIpcManagerImpl a {@link org.opennms.netmgt.eventd.EventIpcManagerDefaultImpl} object.
+     */
+    public void setEventIpcManagerImpl(EventIpcManagerDefaultImpl eventIpcManagerImpl) {
+        m_eventIpcManagerImpl = eventIpcManagerImpl;
+    }
 }
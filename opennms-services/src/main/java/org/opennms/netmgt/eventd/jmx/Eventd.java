@@ -28,7 +28,15 @@
 
 package org.opennms.netmgt.eventd.jmx;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
+import org.opennms.netmgt.eventd.EventIpcManagerDefaultImpl;
+import org.opennms.netmgt.eventd.EventListenerQueue;
+import org.opennms.netmgt.eventd.processor.InterfaceHostnameCache;
 
 /**
  * <p>Eventd class.</p>
@@ -48,4 +56,117 @@ public class Eventd extends AbstractSpringContextJmxServiceDaemon<org.opennms.ne
     protected String getSpringContext() {
         return "eventDaemonContext";       
     }
+
+    private InterfaceHostnameCache getHostnameCache() {
+        return getDaemon().getInterfaceHostnameCache();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getHostnameCacheHits() {
+        return getHostnameCache() == null ? 0 : getHostnameCache().getHits();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getHostnameCacheMisses() {
+        return getHostnameCache() == null ? 0 : getHostnameCache().getMisses();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getHostnameCacheEvictions() {
+        return getHostnameCache() == null ? 0 : getHostnameCache().getEvictions();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getHostnameCacheInvalidations() {
+        return getHostnameCache() == null ? 0 : getHostnameCache().getInvalidations();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getHostnameCacheSize() {
+        return getHostnameCache() == null ? 0 : getHostnameCache().getSize();
+    }
+
+    private Collection<EventListenerQueue> getListenerQueues() {
+        EventIpcManagerDefaultImpl eventIpcManager = getDaemon().getEventIpcManagerImpl();
+        if (eventIpcManager == null) {
+            return Collections.emptyList();
+        }
+        return eventIpcManager.getListenerQueues();
+    }
+
+    private EventListenerQueue getListenerQueue(String listenerName) {
+        for (EventListenerQueue queue : getListenerQueues()) {
+            if (queue.getName().equals(listenerName)) {
+                return queue;
+            }
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String[] getListenerStatistics() {
+        List<String> statistics = new ArrayList<String>();
+        for (EventListenerQueue queue : getListenerQueues()) {
+            statistics.add(queue.toString());
+        }
+        Collections.sort(statistics);
+        return statistics.toArray(new String[statistics.size()]);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getListenerQueueDepth() {
+        long depth = 0;
+        for (EventListenerQueue queue : getListenerQueues()) {
+            depth += queue.getQueueDepth();
+        }
+        return depth;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getListenerQueueDepthMax() {
+        int max = 0;
+        for (EventListenerQueue queue : getListenerQueues()) {
+            max = Math.max(max, queue.getQueueDepth());
+        }
+        return max;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getListenerEventsDropped() {
+        long dropped = 0;
+        for (EventListenerQueue queue : getListenerQueues()) {
+            dropped += queue.getDroppedCount();
+        }
+        return dropped;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getListenerQueueDepth(String listenerName) {
+        EventListenerQueue queue = getListenerQueue(listenerName);
+        return queue == null ? -1 : queue.getQueueDepth();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getListenerEventsDropped(String listenerName) {
+        EventListenerQueue queue = getListenerQueue(listenerName);
+        return queue == null ? -1 : queue.getDroppedCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getListenerAverageQueueTime(String listenerName) {
+        EventListenerQueue queue = getListenerQueue(listenerName);
+        return queue == null ? -1 : queue.getAverageQueueTime();
+    }
 }
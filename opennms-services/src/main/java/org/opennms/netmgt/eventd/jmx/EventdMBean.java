@@ -37,4 +37,67 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface EventdMBean extends BaseOnmsMBean {
+    /**
+     * @return the number of event hosts resolved from the interface hostname cache
+     */
+    public long getHostnameCacheHits();
+
+    /**
+     * @return the number of event hosts that had to be looked up in the database
+     */
+    public long getHostnameCacheMisses();
+
+    /**
+     * @return the number of entries dropped because the interface hostname cache was full
+     */
+    public long getHostnameCacheEvictions();
+
+    /**
+     * @return the number of entries dropped because of node or interface events
+     */
+    public long getHostnameCacheInvalidations();
+
+    /**
+     * @return the number of interfaces in the interface hostname cache
+     */
+    public int getHostnameCacheSize();
+
+    /**
+     * @return one line per event listener with its queue depth, capacity,
+     * delivered and dropped events and queue and processing times
+     */
+    public String[] getListenerStatistics();
+
+    /**
+     * @return the total number of broadcast events waiting in listener queues
+     */
+    public long getListenerQueueDepth();
+
+    /**
+     * @return the depth of the fullest listener queue
+     */
+    public int getListenerQueueDepthMax();
+
+    /**
+     * @return the total number of broadcast events discarded because a listener queue was full
+     */
+    public long getListenerEventsDropped();
+
+    /**
+     * @param listenerName the name of an event listener, e.g. "Notifd:BroadcastEventProcessor"
+     * @return the number of events waiting in the listener's queue, or -1 if there is no such listener
+     */
+    public int getListenerQueueDepth(String listenerName);
+
+    /**
+     * @param listenerName the name of an event listener
+     * @return the number of events the listener dropped, or -1 if there is no such listener
+     */
+    public long getListenerEventsDropped(String listenerName);
+
+    /**
+     * @param listenerName the name of an event listener
+     * @return the average time, in milliseconds, events waited in the listener's queue, or -1 if there is no such listener
+     */
+    public double getListenerAverageQueueTime(String listenerName);
 }
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd.processor;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.core.utils.LogUtils;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Header;
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Groups events handed to it by the eventd handler threads into batches and
+ * passes each batch to a {@link BatchWriter} from a single flusher thread.
+ *
+ * Callers of {@link #write(Header, Event)} block until the batch containing
+ * their event has been committed, so the event has its database ID set before
+ * the caller goes on to broadcast it.  A batch is flushed as soon as it holds
+ * <code>batchSize</code> events or <code>batchDelay</code> milliseconds after
+ * its first event arrived, whichever comes first.
+ */
+class EventWriteBatcher implements Runnable {
+
+    /**
+     * Persists a batch of events in a single transaction.
+     */
+    interface BatchWriter {
+        /**
+         * Write all the events in the batch and set their database IDs.
+         */
+        void writeBatch(List<PendingEvent> batch) throws SQLException;
+
+        /**
+         * Write a single event in its own transaction.  Used to isolate the
+         * offending event(s) when a batch fails.
+         */
+        void writeOne(PendingEvent pending) throws SQLException;
+    }
+
+    /**
+     * An event waiting to be written along with the latch its caller is
+     * blocked on.
+     */
+    static class PendingEvent {
+        private final Header m_header;
+        private final Event m_event;
+        private final CountDownLatch m_done = new CountDownLatch(1);
+        private volatile Exception m_failure;
+
+        PendingEvent(final Header header, final Event event) {
+            m_header = header;
+            m_event = event;
+        }
+
+        public Header getHeader() {
+            return m_header;
+        }
+
+        public Event getEvent() {
+            return m_event;
+        }
+
+        void complete(final Exception failure) {
+            m_failure = failure;
+            m_done.countDown();
+        }
+    }
+
+    private final BlockingQueue<PendingEvent> m_queue = new LinkedBlockingQueue<PendingEvent>();
+    private final BatchWriter m_writer;
+    private final int m_batchSize;
+    private final long m_batchDelay;
+    private volatile boolean m_running = false;
+    private Thread m_thread;
+
+    EventWriteBatcher(final BatchWriter writer, final int batchSize, final long batchDelay) {
+        m_writer = writer;
+        m_batchSize = batchSize;
+        m_batchDelay = batchDelay;
+    }
+
+    public synchronized void start() {
+        if (m_running) return;
+        m_running = true;
+        m_thread = new Thread(this, "EventWriteBatcher");
+        m_thread.setDaemon(true);
+        m_thread.start();
+    }
+
+    /**
+     * Stops the flusher thread after any queued events have been written.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (!m_running) return;
+        m_running = false;
+        m_thread.interrupt();
+        m_thread.join();
+        m_thread = null;
+
+        // anything that slipped in after the flusher exited will never be written
+        final List<PendingEvent> leftover = new ArrayList<PendingEvent>();
+        m_queue.drainTo(leftover);
+        for (final PendingEvent pending : leftover) {
+            pending.complete(new IllegalStateException("EventWriteBatcher was stopped before the event was written"));
+        }
+    }
+
+    /**
+     * Queue an event for the next batch and wait until it has been written.
+     *
+     * @throws SQLException if the event could not be written
+     * @throws DataAccessException if the event could not be written
+     */
+    public void write(final Header header, final Event event) throws SQLException, DataAccessException {
+        if (!m_running) {
+            throw new IllegalStateException("EventWriteBatcher is not running");
+        }
+
+        final PendingEvent pending = new PendingEvent(header, event);
+        m_queue.add(pending);
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                pending.m_done.await();
+                break;
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        final Exception failure = pending.m_failure;
+        if (failure instanceof SQLException) {
+            throw (SQLException)failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException)failure;
+        } else if (failure != null) {
+            throw new IllegalStateException("Unable to write event " + event.getUei(), failure);
+        }
+    }
+
+    /**
+     * <p>getQueueSize</p>
+     *
+     * @return the number of events waiting for the next batch
+     */
+    public int getQueueSize() {
+        return m_queue.size();
+    }
+
+    @Override
+    public void run() {
+        final List<PendingEvent> batch = new ArrayList<PendingEvent>(m_batchSize);
+        while (m_running || !m_queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (final InterruptedException e) {
+                // stop() was called; drain whatever is left without waiting
+                m_queue.drainTo(batch, m_batchSize - batch.size());
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collectBatch(final List<PendingEvent> batch) throws InterruptedException {
+        final PendingEvent first = m_queue.take();
+        batch.add(first);
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(m_batchDelay);
+        while (batch.size() < m_batchSize) {
+            m_queue.drainTo(batch, m_batchSize - batch.size());
+            if (batch.size() >= m_batchSize) {
+                break;
+            }
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            final PendingEvent next = m_queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(final List<PendingEvent> batch) {
+        try {
+            m_writer.writeBatch(batch);
+            for (final PendingEvent pending : batch) {
+                pending.complete(null);
+            }
+        } catch (final Exception e) {
+            LogUtils.warnf(this, e, "Failed to write a batch of %d events; retrying them one at a time.", batch.size());
+            for (final PendingEvent pending : batch) {
+                try {
+                    m_writer.writeOne(pending);
+                    pending.complete(null);
+                } catch (final Exception e2) {
+                    pending.complete(e2);
+                }
+            }
+        }
+    }
+}
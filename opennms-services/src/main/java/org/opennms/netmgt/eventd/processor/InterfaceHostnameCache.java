@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd.processor;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opennms.core.utils.LogUtils;
+import org.opennms.netmgt.EventConstants;
+import org.opennms.netmgt.model.events.EventListener;
+import org.opennms.netmgt.model.events.EventSubscriptionService;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Parm;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * A bounded, least-recently-used cache of the hostnames that
+ * {@link JdbcEventWriter} resolves from the <code>ipInterface</code> table
+ * for each event's host.
+ *
+ * Entries are keyed by node ID and IP address.  Negative results (no matching
+ * interface, or no hostname) are cached too.  The cache listens for the node
+ * and interface events that can change the answer and drops the affected
+ * entries.  Entries also expire after <code>timeToLive</code> milliseconds,
+ * in case hostnames are updated without any event being sent.
+ *
+ * The cache is created as part of the event handler chain of the event IPC
+ * manager, so it can not subscribe to events while the context is being
+ * built. {@link #start()} subscribes it once the IPC manager is running.
+ */
+public class InterfaceHostnameCache implements EventListener, InitializingBean, DisposableBean {
+    private static final String[] UEIS = new String[] {
+        EventConstants.NODE_DELETED_EVENT_UEI,
+        EventConstants.DUP_NODE_DELETED_EVENT_UEI,
+        EventConstants.NODE_UPDATED_EVENT_UEI,
+        EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI,
+        EventConstants.INTERFACE_DELETED_EVENT_UEI,
+        EventConstants.INTERFACE_REPARENTED_EVENT_UEI,
+        EventConstants.INTERFACE_IP_HOSTNAME_CHANGED_EVENT_UEI
+    };
+
+    private static final class Key {
+        private final int m_nodeId;
+        private final String m_ipAddr;
+
+        Key(final int nodeId, final String ipAddr) {
+            m_nodeId = nodeId;
+            m_ipAddr = ipAddr;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * m_nodeId + m_ipAddr.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) return false;
+            final Key other = (Key)obj;
+            return m_nodeId == other.m_nodeId && m_ipAddr.equals(other.m_ipAddr);
+        }
+    }
+
+    private static final class Entry {
+        private final String m_hostname;
+        private final long m_expires;
+
+        Entry(final String hostname, final long expires) {
+            m_hostname = hostname;
+            m_expires = expires;
+        }
+    }
+
+    private EventSubscriptionService m_eventSubscriptionService;
+    private int m_maxSize = 10000;
+    private long m_timeToLive = 300000;
+
+    private final AtomicLong m_hits = new AtomicLong();
+    private final AtomicLong m_misses = new AtomicLong();
+    private final AtomicLong m_evictions = new AtomicLong();
+    private final AtomicLong m_invalidations = new AtomicLong();
+
+    /**
+     * Bumped on every invalidation so that a lookup that raced with an
+     * invalidation does not put a stale hostname back into the cache.
+     */
+    private long m_generation = 0;
+
+    private Map<Key,Entry> m_cache;
+
+    private boolean m_started = false;
+
+    /**
+     * <p>afterPropertiesSet</p>
+     */
+    @Override
+    public void afterPropertiesSet() {
+        Assert.state(m_eventSubscriptionService != null, "property eventSubscriptionService must be set");
+        Assert.state(m_maxSize > 0, "property maxSize must be greater than zero");
+
+        final int maxSize = m_maxSize;
+        m_cache = new LinkedHashMap<Key,Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 3506478311392946339L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key,Entry> eldest) {
+                if (size() > maxSize) {
+                    m_evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Subscribe to the events that invalidate cached hostnames. This must
+     * not be called before the event subscription service has started.
+     */
+    public synchronized void start() {
+        if (m_started) return;
+        m_eventSubscriptionService.addEventListener(this, Arrays.asList(UEIS));
+        m_started = true;
+    }
+
+    /**
+     * Unsubscribe from events and drop all cached hostnames, since changes
+     * are no longer tracked.
+     */
+    public synchronized void stop() {
+        if (!m_started) return;
+        m_eventSubscriptionService.removeEventListener(this);
+        m_started = false;
+        clear();
+    }
+
+    /**
+     * <p>destroy</p>
+     */
+    @Override
+    public void destroy() {
+        stop();
+    }
+
+    /**
+     * Look up the cached hostname for an interface.
+     *
+     * @param nodeId the node ID
+     * @param ipAddr the IP address
+     * @return the cached hostname, or null if the interface is not cached
+     */
+    public synchronized String get(final int nodeId, final String ipAddr) {
+        final Key key = new Key(nodeId, ipAddr);
+        final Entry entry = m_cache.get(key);
+        if (entry == null) {
+            m_misses.incrementAndGet();
+            return null;
+        }
+        if (entry.m_expires < System.currentTimeMillis()) {
+            m_cache.remove(key);
+            m_misses.incrementAndGet();
+            return null;
+        }
+        m_hits.incrementAndGet();
+        return entry.m_hostname;
+    }
+
+    /**
+     * Returns a token to pass to {@link #put(int, String, String, long)}
+     * that identifies the state of the cache before the hostname was looked
+     * up.
+     *
+     * @return a long.
+     */
+    public synchronized long getGeneration() {
+        return m_generation;
+    }
+
+    /**
+     * Cache the hostname of an interface, unless an invalidation has
+     * happened since <code>generation</code> was obtained.
+     *
+     * @param nodeId the node ID
+     * @param ipAddr the IP address
+     * @param hostname the resolved hostname
+     * @param generation the value of {@link #getGeneration()} from before the lookup
+     */
+    public synchronized void put(final int nodeId, final String ipAddr, final String hostname, final long generation) {
+        if (generation != m_generation) {
+            return;
+        }
+        m_cache.put(new Key(nodeId, ipAddr), new Entry(hostname, System.currentTimeMillis() + m_timeToLive));
+    }
+
+    /**
+     * Remove all cached interfaces of a node.
+     *
+     * @param nodeId the node ID
+     */
+    public synchronized void invalidateNode(final int nodeId) {
+        m_generation++;
+        for (final Iterator<Key> it = m_cache.keySet().iterator(); it.hasNext(); ) {
+            if (it.next().m_nodeId == nodeId) {
+                it.remove();
+                m_invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remove a single cached interface.
+     *
+     * @param nodeId the node ID
+     * @param ipAddr the IP address
+     */
+    public synchronized void invalidateInterface(final int nodeId, final String ipAddr) {
+        m_generation++;
+        if (m_cache.remove(new Key(nodeId, ipAddr)) != null) {
+            m_invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * <p>clear</p>
+     */
+    public synchronized void clear() {
+        m_generation++;
+        m_invalidations.addAndGet(m_cache.size());
+        m_cache.clear();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return "Eventd:InterfaceHostnameCache";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onEvent(final Event event) {
+        final String uei = event.getUei();
+        if (!event.hasNodeid()) {
+            return;
+        }
+        final int nodeId = event.getNodeid().intValue();
+
+        if (EventConstants.NODE_DELETED_EVENT_UEI.equals(uei) || EventConstants.DUP_NODE_DELETED_EVENT_UEI.equals(uei) || EventConstants.NODE_UPDATED_EVENT_UEI.equals(uei)) {
+            invalidateNode(nodeId);
+        } else if (EventConstants.INTERFACE_REPARENTED_EVENT_UEI.equals(uei)) {
+            invalidateNode(nodeId);
+            for (final Parm parm : event.getParmCollection()) {
+                if (EventConstants.PARM_OLD_NODEID.equals(parm.getParmName()) && parm.getValue() != null) {
+                    try {
+                        invalidateNode(Integer.parseInt(parm.getValue().getContent()));
+                    } catch (final NumberFormatException e) {
+                        LogUtils.warnf(this, "Invalid %s parameter on event %s: %s", EventConstants.PARM_OLD_NODEID, uei, parm.getValue().getContent());
+                    }
+                }
+            }
+        } else if (event.getInterface() != null) {
+            invalidateInterface(nodeId, event.getInterface());
+        } else {
+            invalidateNode(nodeId);
+        }
+    }
+
+    /**
+     * <p>getSize</p>
+     *
+     * @return the number of cached interfaces
+     */
+    public synchronized int getSize() {
+        return m_cache.size();
+    }
+
+    /**
+     * <p>getHits</p>
+     *
+     * @return a long.
+     */
+    public long getHits() {
+        return m_hits.get();
+    }
+
+    /**
+     * <p>getMisses</p>
+     *
+     * @return a long.
+     */
+    public long getMisses() {
+        return m_misses.get();
+    }
+
+    /**
+     * <p>getEvictions</p>
+     *
+     * @return the number of entries dropped because the cache was full
+     */
+    public long getEvictions() {
+        return m_evictions.get();
+    }
+
+    /**
+     * <p>getInvalidations</p>
+     *
+     * @return the number of entries dropped because of node or interface events
+     */
+    public long getInvalidations() {
+        return m_invalidations.get();
+    }
+
+    /**
+     * <p>getEventSubscriptionService</p>
+     *
+     * @return a {@link org.opennms.netmgt.model.events.EventSubscriptionService} object.
+     */
+    public EventSubscriptionService getEventSubscriptionService() {
+        return m_eventSubscriptionService;
+    }
+
+    /**
+     * <p>setEventSubscriptionService</p>
+     *
+     * @param eventSubscriptionService a {@link org.opennms.netmgt.model.events.EventSubscriptionService} object.
+     */
+    public void setEventSubscriptionService(final EventSubscriptionService eventSubscriptionService) {
+        m_eventSubscriptionService = eventSubscriptionService;
+    }
+
+    /**
+     * <p>getMaxSize</p>
+     *
+     * @return the maximum number of cached interfaces
+     */
+    public int getMaxSize() {
+        return m_maxSize;
+    }
+
+    /**
+     * <p>setMaxSize</p>
+     *
+     * @param maxSize the maximum number of cached interfaces
+     */
+    public void setMaxSize(final int maxSize) {
+        m_maxSize = maxSize;
+    }
+
+    /**
+     * <p>getTimeToLive</p>
+     *
+     * @return the time, in milliseconds, an entry is kept
+     */
+    public long getTimeToLive() {
+        return m_timeToLive;
+    }
+
+    /**
+     * <p>setTimeToLive</p>
+     *
+     * @param timeToLive the time, in milliseconds, an entry is kept
+     */
+    public void setTimeToLive(final long timeToLive) {
+        m_timeToLive = timeToLive;
+    }
+}
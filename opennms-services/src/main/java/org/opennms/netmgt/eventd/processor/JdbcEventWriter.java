@@ -30,6 +30,7 @@ package org.opennms.netmgt.eventd.processor;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
@@ -49,10 +50,12 @@ import org.opennms.netmgt.model.events.Parameter;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xml.event.Header;
 import org.opennms.netmgt.xml.event.Operaction;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
+import org.springframework.util.Assert;
 
 /**
  * EventWriter loads the information in each 'Event' into the database.
@@ -68,6 +71,13 @@ import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
  *
  * Values for the ' <parms>' block are loaded with each parm name and parm value
  * delimited with the NAME_VAL_DELIM.
+ *
+ * If <code>batchSize</code> is greater than one, events processed concurrently
+ * by the eventd handler threads are grouped into JDBC batches that are
+ * committed together.  Event IDs for batches are taken from blocks
+ * preallocated from the event sequence (see <code>getNextIdBlockString</code>)
+ * and every event still has its database ID set before {@link #process}
+ * returns, so it is available to the processors that broadcast the event.
  * 
  * @deprecated Replace with a Hibernate implementation. See bug NMS-3033. Actually
  * it doesn't have any details. :P
@@ -85,7 +95,21 @@ import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
  * @author <A HREF="mailto:sowmya@opennms.org">Sowmya Nataraj </A>
  * @author <A HREF="http://www.opennms.org">OpenNMS.org </A>
  */
-public final class JdbcEventWriter extends AbstractJdbcPersister implements EventProcessor, InitializingBean {
+public final class JdbcEventWriter extends AbstractJdbcPersister implements EventProcessor, InitializingBean, DisposableBean, EventWriteBatcher.BatchWriter {
+    private int m_batchSize = 1;
+
+    private long m_batchDelay = 10;
+
+    private String m_getNextIdBlockString;
+
+    private EventWriteBatcher m_batcher;
+
+    private int[] m_preallocatedIds = new int[0];
+
+    private int m_preallocatedIndex = 0;
+
+    private InterfaceHostnameCache m_hostnameCache;
+
     /**
      * {@inheritDoc}
      *
@@ -99,6 +123,130 @@ public final class JdbcEventWriter extends AbstractJdbcPersister implements Even
 
         LogUtils.debugf(this, "JdbcEventWriter: processing %s nodeid: %d ipaddr: %s serviceid: %s time: %s", event.getUei(), event.getNodeid(), event.getInterface(), event.getService(), event.getTime());
 
+        if (m_batcher != null) {
+            m_batcher.write(eventHeader, event);
+        } else {
+            writeEvent(eventHeader, event);
+        }
+
+        LogUtils.debugf(this, "EventWriter finished for : %s", event.getUei());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeOne(final EventWriteBatcher.PendingEvent pending) throws SQLException {
+        writeEvent(pending.getHeader(), pending.getEvent());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Inserts all events of the batch with a single JDBC batch and commit.
+     * The database IDs are only set on the events once the transaction has
+     * been committed.
+     */
+    @Override
+    public void writeBatch(final List<EventWriteBatcher.PendingEvent> batch) throws SQLException {
+        final Connection connection = getDataSource().getConnection();
+        final DBUtils d = new DBUtils(getClass());
+        d.watch(connection);
+
+        try {
+            connection.setAutoCommit(false);
+
+            final int[] eventIds = new int[batch.size()];
+            try {
+                for (int i = 0; i < eventIds.length; i++) {
+                    eventIds[i] = nextPreallocatedId(connection);
+                }
+
+                final PreparedStatement insStmt = connection.prepareStatement(EventdConstants.SQL_DB_INS_EVENT);
+                d.watch(insStmt);
+
+                for (int i = 0; i < eventIds.length; i++) {
+                    final EventWriteBatcher.PendingEvent pending = batch.get(i);
+                    setInsertParameters(insStmt, pending.getHeader(), pending.getEvent(), eventIds[i]);
+                    insStmt.addBatch();
+                }
+                insStmt.executeBatch();
+
+                connection.commit();
+            } catch (final SQLException e) {
+                try {
+                    connection.rollback();
+                } catch (final Throwable e2) {
+                    LogUtils.warnf(this, e2, "Rollback of transaction failed.");
+                }
+
+                throw e;
+            }
+
+            for (int i = 0; i < eventIds.length; i++) {
+                final Event event = batch.get(i).getEvent();
+                synchronized (event) {
+                    event.setDbid(eventIds[i]);
+                }
+            }
+
+            LogUtils.debugf(this, "SUCCESSFULLY added a batch of %d events into the EVENTS table.", eventIds.length);
+        } finally {
+            d.cleanUp();
+        }
+    }
+
+    /**
+     * Returns the next event ID from the block of preallocated IDs, fetching a
+     * new block from the event sequence when the current one is used up.
+     */
+    private synchronized int nextPreallocatedId(final Connection connection) throws SQLException {
+        if (m_preallocatedIndex >= m_preallocatedIds.length) {
+            m_preallocatedIds = allocateIdBlock(connection, m_batchSize);
+            m_preallocatedIndex = 0;
+        }
+        return m_preallocatedIds[m_preallocatedIndex++];
+    }
+
+    private int[] allocateIdBlock(final Connection connection, final int count) throws SQLException {
+        final int[] ids = new int[count];
+        final DBUtils d = new DBUtils(getClass());
+
+        try {
+            if (m_getNextIdBlockString == null) {
+                // no block query configured; fetch the IDs one by one on the batch connection
+                final PreparedStatement stmt = connection.prepareStatement(getGetNextIdString());
+                d.watch(stmt);
+                for (int i = 0; i < count; i++) {
+                    final ResultSet rs = stmt.executeQuery();
+                    d.watch(rs);
+                    if (!rs.next()) {
+                        throw new SQLException("Query '" + getGetNextIdString() + "' did not return an event ID");
+                    }
+                    ids[i] = rs.getInt(1);
+                    rs.close();
+                }
+            } else {
+                final PreparedStatement stmt = connection.prepareStatement(m_getNextIdBlockString);
+                d.watch(stmt);
+                stmt.setInt(1, count);
+                final ResultSet rs = stmt.executeQuery();
+                d.watch(rs);
+                int i = 0;
+                while (i < count && rs.next()) {
+                    ids[i++] = rs.getInt(1);
+                }
+                if (i < count) {
+                    throw new SQLException("Query '" + m_getNextIdBlockString + "' returned " + i + " event IDs, expected " + count);
+                }
+            }
+        } finally {
+            d.cleanUp();
+        }
+
+        LogUtils.debugf(this, "Preallocated %d event IDs starting at %d", count, ids[0]);
+        return ids;
+    }
+
+    private void writeEvent(final Header eventHeader, final Event event) throws SQLException, DataAccessException {
         final Connection connection = getDataSource().getConnection();
 
         try {
@@ -134,8 +282,119 @@ public final class JdbcEventWriter extends AbstractJdbcPersister implements Even
                 LogUtils.warnf(this, e, "SQLException while closing database connection.");
             }
         }
+    }
 
-        LogUtils.debugf(this, "EventWriter finished for : %s", event.getUei());
+    /**
+     * <p>afterPropertiesSet</p>
+     *
+     * @throws java.sql.SQLException if any.
+     */
+    @Override
+    public void afterPropertiesSet() throws SQLException {
+        super.afterPropertiesSet();
+        Assert.state(m_batchSize > 0, "property batchSize must be greater than zero");
+        Assert.state(m_batchDelay >= 0, "property batchDelay must not be negative");
+
+        if (m_batchSize > 1 && m_batcher == null) {
+            LogUtils.infof(this, "Writing events in batches of up to %d events, waiting at most %d ms for a batch to fill", m_batchSize, m_batchDelay);
+            m_batcher = new EventWriteBatcher(this, m_batchSize, m_batchDelay);
+            m_batcher.start();
+        }
+    }
+
+    /**
+     * Flushes any events waiting for a batch and stops the batch writer.
+     *
+     * @throws java.lang.InterruptedException if any.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        if (m_batcher != null) {
+            m_batcher.stop();
+            m_batcher = null;
+        }
+    }
+
+    /**
+     * <p>getBatchSize</p>
+     *
+     * @return the maximum number of events written in a single batch
+     */
+    public int getBatchSize() {
+        return m_batchSize;
+    }
+
+    /**
+     * Sets the maximum number of events written with a single JDBC batch and
+     * commit.  A value of 1 (the default) writes each event in its own
+     * transaction.
+     *
+     * @param batchSize a int.
+     */
+    public void setBatchSize(final int batchSize) {
+        m_batchSize = batchSize;
+    }
+
+    /**
+     * <p>getBatchDelay</p>
+     *
+     * @return the maximum time, in milliseconds, to wait for a batch to fill
+     */
+    public long getBatchDelay() {
+        return m_batchDelay;
+    }
+
+    /**
+     * Sets the maximum time, in milliseconds, the first event of a batch waits
+     * for more events before the batch is written.
+     *
+     * @param batchDelay a long.
+     */
+    public void setBatchDelay(final long batchDelay) {
+        m_batchDelay = batchDelay;
+    }
+
+    /**
+     * <p>getHostnameCache</p>
+     *
+     * @return a {@link org.opennms.netmgt.eventd.processor.InterfaceHostnameCache} object.
+     */
+    public InterfaceHostnameCache getHostnameCache() {
+        return m_hostnameCache;
+    }
+
+    /**
+     * Sets the cache consulted before looking up the hostname of an event's
+     * host in the <code>ipInterface</code> table.  If unset, every event
+     * with a node ID and host is looked up in the database.
+     *
+     * @param hostnameCache a {@link org.opennms.netmgt.eventd.processor.InterfaceHostnameCache} object.
+     */
+    public void setHostnameCache(final InterfaceHostnameCache hostnameCache) {
+        m_hostnameCache = hostnameCache;
+    }
+
+    /**
+     * <p>getGetNextIdBlockString</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getGetNextIdBlockString() {
+        return m_getNextIdBlockString;
+    }
+
+    /**
+     * Sets the SQL query used to preallocate a block of event IDs when
+     * writing batches.  The query takes the number of IDs as its only
+     * parameter and must return one ID per row, for example
+     * <code>SELECT nextval('eventsNxtId') FROM generate_series(1, ?)</code>.
+     * If unset, the IDs are fetched one at a time with
+     * <code>getNextIdString</code>.
+     *
+     * @param getNextIdBlockString a {@link java.lang.String} object.
+     */
+    public void setGetNextIdBlockString(final String getNextIdBlockString) {
+        m_getNextIdBlockString = getNextIdBlockString;
     }
 
     /**
@@ -163,184 +422,194 @@ public final class JdbcEventWriter extends AbstractJdbcPersister implements Even
             final PreparedStatement insStmt = connection.prepareStatement(EventdConstants.SQL_DB_INS_EVENT);
             d.watch(insStmt);
 
-            // eventID
-            insStmt.setInt(1, eventID);
-
-            // eventUEI
-            insStmt.setString(2, Constants.format(event.getUei(), EVENT_UEI_FIELD_SIZE));
+            setInsertParameters(insStmt, eventHeader, event, eventID);
 
-            // nodeID
-            final Long nodeid = event.getNodeid();
-            set(insStmt, 3, event.hasNodeid() ? nodeid.intValue() : -1);
+            // execute
+            insStmt.executeUpdate();
+        } finally {
+            d.cleanUp();
+        }
 
-            // eventTime
-            insStmt.setTimestamp(4, getEventTime(event));
+        LogUtils.debugf(this, "SUCCESSFULLY added %s related  data into the EVENTS table.", event.getUei());
+    }
 
-            // Resolve the event host to a hostname using the ipInterface table
-            String hostname = getEventHost(event);
+    /**
+     * Binds the values of an event to the parameters of an
+     * {@link EventdConstants#SQL_DB_INS_EVENT} statement.
+     */
+    private void setInsertParameters(final PreparedStatement insStmt, final Header eventHeader, final Event event, final int eventID) throws SQLException {
+        // eventID
+        insStmt.setInt(1, eventID);
 
-            // eventHost
-            set(insStmt, 5, Constants.format(hostname, EVENT_HOST_FIELD_SIZE));
+        // eventUEI
+        insStmt.setString(2, Constants.format(event.getUei(), EVENT_UEI_FIELD_SIZE));
 
-            // ipAddr
-            set(insStmt, 6, Constants.format(event.getInterface(), EVENT_INTERFACE_FIELD_SIZE));
+        // nodeID
+        final Long nodeid = event.getNodeid();
+        set(insStmt, 3, event.hasNodeid() ? nodeid.intValue() : -1);
 
-            // eventDpName
-            String dpName = "localhost";
-            if (eventHeader != null && eventHeader.getDpName() != null) {
-                dpName = Constants.format(eventHeader.getDpName(), EVENT_DPNAME_FIELD_SIZE);
-            } else if (event.getDistPoller() != null) {
-                dpName = Constants.format(event.getDistPoller(), EVENT_DPNAME_FIELD_SIZE);
-            }
-            insStmt.setString(7, dpName);
+        // eventTime
+        insStmt.setTimestamp(4, getEventTime(event));
 
-            // eventSnmpHost
-            set(insStmt, 8, Constants.format(event.getSnmphost(), EVENT_SNMPHOST_FIELD_SIZE));
+        // Resolve the event host to a hostname using the ipInterface table
+        String hostname = getEventHost(event);
 
-            // service identifier - convert the service name to a service id
-            set(insStmt, 9, getEventServiceId(event));
+        // eventHost
+        set(insStmt, 5, Constants.format(hostname, EVENT_HOST_FIELD_SIZE));
 
-            // eventSnmp
-            if (event.getSnmp() != null) {
-                insStmt.setString(10, SnmpInfo.format(event.getSnmp(), EVENT_SNMP_FIELD_SIZE));
-            } else {
-                insStmt.setNull(10, Types.VARCHAR);
-            }
+        // ipAddr
+        set(insStmt, 6, Constants.format(event.getInterface(), EVENT_INTERFACE_FIELD_SIZE));
 
-            // eventParms
-
-            // Replace any null bytes with a space, otherwise postgres will complain about encoding in UNICODE 
-            final String parametersString=Parameter.format(event);
-            set(insStmt, 11, Constants.format(parametersString, 0));
-
-            // eventCreateTime
-            final Timestamp eventCreateTime = new Timestamp(System.currentTimeMillis());
-            insStmt.setTimestamp(12, eventCreateTime);
-
-            // eventDescr
-            set(insStmt, 13, Constants.format(event.getDescr(), 0));
-
-            // eventLoggroup
-            set(insStmt, 14, (event.getLoggroupCount() > 0) ? Constants.format(event.getLoggroup(), EVENT_LOGGRP_FIELD_SIZE) : null);
-
-            // eventLogMsg
-            // eventLog
-            // eventDisplay
-            if (event.getLogmsg() != null) {
-                // set log message
-                set(insStmt, 15, Constants.format(event.getLogmsg().getContent(), 0));
-                String logdest = event.getLogmsg().getDest();
-                if (logdest.equals("logndisplay")) {
-                    // if 'logndisplay' set both log and display column to yes
-                    set(insStmt, 16, MSG_YES);
-                    set(insStmt, 17, MSG_YES);
-                } else if (logdest.equals("logonly")) {
-                    // if 'logonly' set log column to true
-                    set(insStmt, 16, MSG_YES);
-                    set(insStmt, 17, MSG_NO);
-                } else if (logdest.equals("displayonly")) {
-                    // if 'displayonly' set display column to true
-                    set(insStmt, 16, MSG_NO);
-                    set(insStmt, 17, MSG_YES);
-                } else if (logdest.equals("suppress")) {
-                    // if 'suppress' set both log and display to false
-                    set(insStmt, 16, MSG_NO);
-                    set(insStmt, 17, MSG_NO);
-                }
-            } else {
-                insStmt.setNull(15, Types.VARCHAR);
-
-                /*
-                 * If this is an event that had no match in the event conf
-                 * mark it as to be logged and displayed so that there
-                 * are no events that slip through the system
-                 * without the user knowing about them
-                 */
-                set(insStmt, 17, MSG_YES);
-            }
+        // eventDpName
+        String dpName = "localhost";
+        if (eventHeader != null && eventHeader.getDpName() != null) {
+            dpName = Constants.format(eventHeader.getDpName(), EVENT_DPNAME_FIELD_SIZE);
+            // listeners only see the event, so carry the name that was stored
+            event.setDistPoller(eventHeader.getDpName());
+        } else if (event.getDistPoller() != null) {
+            dpName = Constants.format(event.getDistPoller(), EVENT_DPNAME_FIELD_SIZE);
+        }
+        insStmt.setString(7, dpName);
 
-            // eventSeverity
-            set(insStmt, 18, OnmsSeverity.get(event.getSeverity()).getId());
+        // eventSnmpHost
+        set(insStmt, 8, Constants.format(event.getSnmphost(), EVENT_SNMPHOST_FIELD_SIZE));
 
-            // eventPathOutage
-            set(insStmt, 19, (event.getPathoutage() != null) ? Constants.format(event.getPathoutage(), EVENT_PATHOUTAGE_FIELD_SIZE) : null);
+        // service identifier - convert the service name to a service id
+        set(insStmt, 9, getEventServiceId(event));
 
-            // eventCorrelation
-            set(insStmt, 20, (event.getCorrelation() != null) ? org.opennms.netmgt.eventd.db.Correlation.format(event.getCorrelation(), EVENT_CORRELATION_FIELD_SIZE) : null);
+        // eventSnmp
+        if (event.getSnmp() != null) {
+            insStmt.setString(10, SnmpInfo.format(event.getSnmp(), EVENT_SNMP_FIELD_SIZE));
+        } else {
+            insStmt.setNull(10, Types.VARCHAR);
+        }
 
-            // eventSuppressedCount
-            insStmt.setNull(21, Types.INTEGER);
+        // eventParms
 
-            // eventOperInstruct
-            set(insStmt, 22, Constants.format(event.getOperinstruct(), EVENT_OPERINSTRUCT_FIELD_SIZE));
+        // Replace any null bytes with a space, otherwise postgres will complain about encoding in UNICODE 
+        final String parametersString=Parameter.format(event);
+        set(insStmt, 11, Constants.format(parametersString, 0));
 
-            // eventAutoAction
-            set(insStmt, 23, (event.getAutoactionCount() > 0) ? AutoAction.format(event.getAutoaction(), EVENT_AUTOACTION_FIELD_SIZE) : null);
+        // eventCreateTime
+        final Timestamp eventCreateTime = new Timestamp(System.currentTimeMillis());
+        insStmt.setTimestamp(12, eventCreateTime);
 
-            // eventOperAction / eventOperActionMenuText
-            if (event.getOperactionCount() > 0) {
-                final List<Operaction> a = new ArrayList<Operaction>();
-                final List<String> b = new ArrayList<String>();
+        // eventDescr
+        set(insStmt, 13, Constants.format(event.getDescr(), 0));
 
-                for (final Operaction eoa : event.getOperactionCollection()) {
-                    a.add(eoa);
-                    b.add(eoa.getMenutext());
-                }
+        // eventLoggroup
+        set(insStmt, 14, (event.getLoggroupCount() > 0) ? Constants.format(event.getLoggroup(), EVENT_LOGGRP_FIELD_SIZE) : null);
 
-                set(insStmt, 24, OperatorAction.format(a, EVENT_OPERACTION_FIELD_SIZE));
-                set(insStmt, 25, Constants.format(b, EVENT_OPERACTION_MENU_FIELD_SIZE));
-            } else {
-                insStmt.setNull(24, Types.VARCHAR);
-                insStmt.setNull(25, Types.VARCHAR);
+        // eventLogMsg
+        // eventLog
+        // eventDisplay
+        if (event.getLogmsg() != null) {
+            // set log message
+            set(insStmt, 15, Constants.format(event.getLogmsg().getContent(), 0));
+            String logdest = event.getLogmsg().getDest();
+            if (logdest.equals("logndisplay")) {
+                // if 'logndisplay' set both log and display column to yes
+                set(insStmt, 16, MSG_YES);
+                set(insStmt, 17, MSG_YES);
+            } else if (logdest.equals("logonly")) {
+                // if 'logonly' set log column to true
+                set(insStmt, 16, MSG_YES);
+                set(insStmt, 17, MSG_NO);
+            } else if (logdest.equals("displayonly")) {
+                // if 'displayonly' set display column to true
+                set(insStmt, 16, MSG_NO);
+                set(insStmt, 17, MSG_YES);
+            } else if (logdest.equals("suppress")) {
+                // if 'suppress' set both log and display to false
+                set(insStmt, 16, MSG_NO);
+                set(insStmt, 17, MSG_NO);
             }
+        } else {
+            insStmt.setNull(15, Types.VARCHAR);
+
+            /*
+             * If this is an event that had no match in the event conf
+             * mark it as to be logged and displayed so that there
+             * are no events that slip through the system
+             * without the user knowing about them
+             */
+            set(insStmt, 17, MSG_YES);
+        }
 
-            // eventNotification, this column no longer needed
-            insStmt.setNull(26, Types.VARCHAR);
+        // eventSeverity
+        set(insStmt, 18, OnmsSeverity.get(event.getSeverity()).getId());
 
-            // eventTroubleTicket / eventTroubleTicket state
-            if (event.getTticket() != null) {
-                set(insStmt, 27, Constants.format(event.getTticket().getContent(), EVENT_TTICKET_FIELD_SIZE));
-                set(insStmt, 28, event.getTticket().getState().equals("on") ? 1 : 0);
-            } else {
-                insStmt.setNull(27, Types.VARCHAR);
-                insStmt.setNull(28, Types.INTEGER);
-            }
+        // eventPathOutage
+        set(insStmt, 19, (event.getPathoutage() != null) ? Constants.format(event.getPathoutage(), EVENT_PATHOUTAGE_FIELD_SIZE) : null);
 
-            // eventForward
-            set(insStmt, 29, (event.getForwardCount() > 0) ? org.opennms.netmgt.eventd.db.Forward.format(event.getForward(), EVENT_FORWARD_FIELD_SIZE) : null);
+        // eventCorrelation
+        set(insStmt, 20, (event.getCorrelation() != null) ? org.opennms.netmgt.eventd.db.Correlation.format(event.getCorrelation(), EVENT_CORRELATION_FIELD_SIZE) : null);
 
-            // event mouseOverText
-            set(insStmt, 30, Constants.format(event.getMouseovertext(), EVENT_MOUSEOVERTEXT_FIELD_SIZE));
+        // eventSuppressedCount
+        insStmt.setNull(21, Types.INTEGER);
 
-            // eventAckUser
-            if (event.getAutoacknowledge() != null && event.getAutoacknowledge().getState().equals("on")) {
-                set(insStmt, 31, Constants.format(event.getAutoacknowledge().getContent(), EVENT_ACKUSER_FIELD_SIZE));
+        // eventOperInstruct
+        set(insStmt, 22, Constants.format(event.getOperinstruct(), EVENT_OPERINSTRUCT_FIELD_SIZE));
 
-                // eventAckTime - if autoacknowledge is present,
-                // set time to event create time
-                set(insStmt, 32, eventCreateTime);
-            } else {
-                insStmt.setNull(31, Types.INTEGER);
-                insStmt.setNull(32, Types.TIMESTAMP);
-            }
+        // eventAutoAction
+        set(insStmt, 23, (event.getAutoactionCount() > 0) ? AutoAction.format(event.getAutoaction(), EVENT_AUTOACTION_FIELD_SIZE) : null);
 
-            // eventSource
-            set(insStmt, 33, Constants.format(event.getSource(), EVENT_SOURCE_FIELD_SIZE));
+        // eventOperAction / eventOperActionMenuText
+        if (event.getOperactionCount() > 0) {
+            final List<Operaction> a = new ArrayList<Operaction>();
+            final List<String> b = new ArrayList<String>();
 
-            // ifindex
-            if (event.hasIfIndex()) {
-                set(insStmt, 34, event.getIfIndex());
-            } else {
-                insStmt.setNull(34, Types.INTEGER);
+            for (final Operaction eoa : event.getOperactionCollection()) {
+                a.add(eoa);
+                b.add(eoa.getMenutext());
             }
-            
-            // execute
-            insStmt.executeUpdate();
-        } finally {
-            d.cleanUp();
+
+            set(insStmt, 24, OperatorAction.format(a, EVENT_OPERACTION_FIELD_SIZE));
+            set(insStmt, 25, Constants.format(b, EVENT_OPERACTION_MENU_FIELD_SIZE));
+        } else {
+            insStmt.setNull(24, Types.VARCHAR);
+            insStmt.setNull(25, Types.VARCHAR);
         }
 
-        LogUtils.debugf(this, "SUCCESSFULLY added %s related  data into the EVENTS table.", event.getUei());
+        // eventNotification, this column no longer needed
+        insStmt.setNull(26, Types.VARCHAR);
+
+        // eventTroubleTicket / eventTroubleTicket state
+        if (event.getTticket() != null) {
+            set(insStmt, 27, Constants.format(event.getTticket().getContent(), EVENT_TTICKET_FIELD_SIZE));
+            set(insStmt, 28, event.getTticket().getState().equals("on") ? 1 : 0);
+        } else {
+            insStmt.setNull(27, Types.VARCHAR);
+            insStmt.setNull(28, Types.INTEGER);
+        }
+
+        // eventForward
+        set(insStmt, 29, (event.getForwardCount() > 0) ? org.opennms.netmgt.eventd.db.Forward.format(event.getForward(), EVENT_FORWARD_FIELD_SIZE) : null);
+
+        // event mouseOverText
+        set(insStmt, 30, Constants.format(event.getMouseovertext(), EVENT_MOUSEOVERTEXT_FIELD_SIZE));
+
+        // eventAckUser
+        if (event.getAutoacknowledge() != null && event.getAutoacknowledge().getState().equals("on")) {
+            set(insStmt, 31, Constants.format(event.getAutoacknowledge().getContent(), EVENT_ACKUSER_FIELD_SIZE));
+
+            // eventAckTime - if autoacknowledge is present,
+            // set time to event create time
+            set(insStmt, 32, eventCreateTime);
+        } else {
+            insStmt.setNull(31, Types.INTEGER);
+            insStmt.setNull(32, Types.TIMESTAMP);
+        }
+
+        // eventSource
+        set(insStmt, 33, Constants.format(event.getSource(), EVENT_SOURCE_FIELD_SIZE));
+
+        // ifindex
+        if (event.hasIfIndex()) {
+            set(insStmt, 34, event.getIfIndex());
+        } else {
+            insStmt.setNull(34, Types.INTEGER);
+        }
     }
 
 
@@ -363,6 +632,22 @@ public final class JdbcEventWriter extends AbstractJdbcPersister implements Even
      */
     
     String getHostName(final int nodeId, final String hostip) throws SQLException {
+        if (m_hostnameCache == null) {
+            return queryHostName(nodeId, hostip);
+        }
+
+        final String cached = m_hostnameCache.get(nodeId, hostip);
+        if (cached != null) {
+            return cached;
+        }
+
+        final long generation = m_hostnameCache.getGeneration();
+        final String hostname = queryHostName(nodeId, hostip);
+        m_hostnameCache.put(nodeId, hostip, hostname, generation);
+        return hostname;
+    }
+
+    private String queryHostName(final int nodeId, final String hostip) throws SQLException {
         try {
             final String hostname = new SimpleJdbcTemplate(getDataSource()).queryForObject(EventdConstants.SQL_DB_HOSTIP_TO_HOSTNAME, String.class, new Object[] { nodeId, hostip });
             return (hostname != null) ? hostname : hostip;
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.linkd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only index of the bridge identifiers and forwarding tables of the
+ * bridge nodes in a discovery package, built once per {@link DiscoveryLink}
+ * run.
+ *
+ * MAC addresses are stored as primitive longs: the usual 12 lower case hex
+ * digit form maps onto its 48-bit value, anything else is given an id above
+ * that range, so two addresses get the same long exactly when their strings
+ * are equal.
+ */
+final class BridgeMacIndex {
+    private static final long NON_CANONICAL_BASE = 1L << 48;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final class BridgeEntry {
+        final int m_ordinal;
+        final LongHashSet m_identifiers;
+        final Map<Integer, long[]> m_portMacs;
+        final LongObjectHashMap<int[]> m_macPorts;
+
+        BridgeEntry(final int ordinal, final int identifiers, final int ports, final int macs) {
+            m_ordinal = ordinal;
+            m_identifiers = new LongHashSet(identifiers);
+            m_portMacs = new HashMap<Integer, long[]>(Math.max(16, ports * 2));
+            m_macPorts = new LongObjectHashMap<int[]>(macs);
+        }
+    }
+
+    private final Map<String, Long> m_nonCanonicalIds = new HashMap<String, Long>();
+    private final List<String> m_nonCanonicalMacs = new ArrayList<String>();
+
+    private final Map<LinkableNode, BridgeEntry> m_bridges = new IdentityHashMap<LinkableNode, BridgeEntry>();
+    private final List<LinkableNode> m_bridgesByOrdinal = new ArrayList<LinkableNode>();
+    private final LongObjectHashMap<int[]> m_identifierOwners = new LongObjectHashMap<int[]>();
+
+    /**
+     * Builds the index. The iteration order of <code>bridges</code> decides
+     * which bridge wins when several claim the same identifier and the
+     * order of {@link #getBridgesOnPort(LinkableNode, int)}.
+     */
+    BridgeMacIndex(final Collection<LinkableNode> bridges) {
+        for (final LinkableNode bridge : bridges) {
+            final int ordinal = m_bridgesByOrdinal.size();
+            final Map<Integer, Set<String>> portMacs = bridge.getPortMacs();
+
+            int macCount = 0;
+            for (final Set<String> macs : portMacs.values()) {
+                if (macs != null) macCount += macs.size();
+            }
+
+            final BridgeEntry entry = new BridgeEntry(ordinal, bridge.getBridgeIdentifiers().size(), portMacs.size(), macCount);
+            for (final String identifier : bridge.getBridgeIdentifiers()) {
+                final long id = encode(identifier);
+                if (entry.m_identifiers.add(id)) {
+                    addOwner(id, ordinal);
+                }
+            }
+
+            for (final Map.Entry<Integer, Set<String>> port : portMacs.entrySet()) {
+                final Set<String> macs = port.getValue();
+                if (macs == null) continue;
+                final int bridgePort = port.getKey().intValue();
+                final long[] encoded = new long[macs.size()];
+                int i = 0;
+                for (final String mac : macs) {
+                    final long id = encode(mac);
+                    encoded[i++] = id;
+                    entry.m_macPorts.put(id, append(entry.m_macPorts.get(id), bridgePort));
+                }
+                Arrays.sort(encoded);
+                entry.m_portMacs.put(port.getKey(), encoded);
+            }
+
+            m_bridges.put(bridge, entry);
+            m_bridgesByOrdinal.add(bridge);
+        }
+    }
+
+    /**
+     * Returns the long form of a MAC address, assigning a new id to MAC
+     * addresses not in canonical form.
+     */
+    long encode(final String mac) {
+        final long canonical = parseCanonical(mac);
+        if (canonical >= 0) return canonical;
+
+        final Long id = m_nonCanonicalIds.get(mac);
+        if (id != null) return id.longValue();
+
+        final long newId = NON_CANONICAL_BASE + m_nonCanonicalMacs.size();
+        m_nonCanonicalIds.put(mac, Long.valueOf(newId));
+        m_nonCanonicalMacs.add(mac);
+        return newId;
+    }
+
+    /**
+     * Returns the string a long returned by {@link #encode(String)} was
+     * created from.
+     */
+    String decode(final long mac) {
+        if (mac >= NON_CANONICAL_BASE) {
+            return m_nonCanonicalMacs.get((int)(mac - NON_CANONICAL_BASE));
+        }
+        final char[] digits = new char[12];
+        long value = mac;
+        for (int i = digits.length - 1; i >= 0; i--) {
+            digits[i] = HEX_DIGITS[(int)(value & 0xf)];
+            value >>>= 4;
+        }
+        return new String(digits);
+    }
+
+    boolean isBridgeIdentifier(final long mac) {
+        return m_identifierOwners.containsKey(mac);
+    }
+
+    boolean isBridgeIdentifier(final LinkableNode bridge, final long mac) {
+        final BridgeEntry entry = m_bridges.get(bridge);
+        return entry != null && entry.m_identifiers.contains(mac);
+    }
+
+    /**
+     * @return the first bridge having <code>mac</code> as identifier, or
+     *         null if none
+     */
+    LinkableNode getBridge(final long mac) {
+        final int[] owners = m_identifierOwners.get(mac);
+        return owners == null ? null : m_bridgesByOrdinal.get(owners[0]);
+    }
+
+    /**
+     * @return the sorted MAC addresses learned on the bridge port, or null
+     *         if the port is unknown
+     */
+    long[] getMacsOnPort(final LinkableNode bridge, final int bridgePort) {
+        final BridgeEntry entry = m_bridges.get(bridge);
+        return entry == null ? null : entry.m_portMacs.get(bridgePort);
+    }
+
+    /**
+     * @return the bridge ports <code>mac</code> was learned on, or null if
+     *         none
+     */
+    int[] getPortsForMac(final LinkableNode bridge, final long mac) {
+        final BridgeEntry entry = m_bridges.get(bridge);
+        return entry == null ? null : entry.m_macPorts.get(mac);
+    }
+
+    /**
+     * Returns the bridges whose identifiers were learned on a bridge port,
+     * in index order. A bridge is listed once for each of its identifiers
+     * found on the port.
+     */
+    List<LinkableNode> getBridgesOnPort(final LinkableNode bridge, final int bridgePort) {
+        final long[] macs = getMacsOnPort(bridge, bridgePort);
+        if (macs == null) return Collections.emptyList();
+
+        int[] ordinals = null;
+        int count = 0;
+        for (final long mac : macs) {
+            final int[] owners = m_identifierOwners.get(mac);
+            if (owners == null) continue;
+            for (final int owner : owners) {
+                if (ordinals == null) {
+                    ordinals = new int[4];
+                } else if (count == ordinals.length) {
+                    ordinals = Arrays.copyOf(ordinals, count * 2);
+                }
+                ordinals[count++] = owner;
+            }
+        }
+        if (count == 0) return Collections.emptyList();
+
+        Arrays.sort(ordinals, 0, count);
+        final List<LinkableNode> bridges = new ArrayList<LinkableNode>(count);
+        for (int i = 0; i < count; i++) {
+            bridges.add(m_bridgesByOrdinal.get(ordinals[i]));
+        }
+        return bridges;
+    }
+
+    static boolean contains(final long[] sortedMacs, final long mac) {
+        return sortedMacs != null && Arrays.binarySearch(sortedMacs, mac) >= 0;
+    }
+
+    private void addOwner(final long mac, final int ordinal) {
+        m_identifierOwners.put(mac, append(m_identifierOwners.get(mac), ordinal));
+    }
+
+    private static int[] append(final int[] values, final int value) {
+        if (values == null) return new int[] { value };
+        final int[] grown = Arrays.copyOf(values, values.length + 1);
+        grown[values.length] = value;
+        return grown;
+    }
+
+    private static long parseCanonical(final String mac) {
+        if (mac == null || mac.length() != 12) return -1;
+        long value = 0;
+        for (int i = 0; i < 12; i++) {
+            final char c = mac.charAt(i);
+            final int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+}
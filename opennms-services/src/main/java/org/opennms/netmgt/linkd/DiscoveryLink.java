@@ -33,6 +33,7 @@ import static org.opennms.core.utils.InetAddressUtils.str;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -58,6 +59,9 @@ public final class DiscoveryLink implements ReadyRunnable {
 
     private List<NodeToNodeLink> m_links = new ArrayList<NodeToNodeLink>();
 
+    // the links in m_links, for duplicate checks
+    private Set<NodeToNodeLink> m_linkSet = new HashSet<NodeToNodeLink>();
+
     private List<MacToNodeLink> m_maclinks = new ArrayList<MacToNodeLink>();
 
     private Map<Integer, LinkableNode> m_bridgeNodes = new HashMap<Integer, LinkableNode>();
@@ -70,11 +74,14 @@ public final class DiscoveryLink implements ReadyRunnable {
     
     private List<LinkableNode> m_cdpNodes = new ArrayList<LinkableNode>();
 
-    // this is the list of MAC address just parsed by discovery process
-    private List<String> m_macsParsed = new ArrayList<String>();
+    // index of the bridge identifiers and forwarding tables of m_bridgeNodes
+    private BridgeMacIndex m_macIndex;
+
+    // this is the set of MAC address just parsed by discovery process
+    private LongHashSet m_macsParsed = new LongHashSet();
 
-    // this is the list of MAC address excluded by discovery process
-    private List<String> macsExcluded = new ArrayList<String>();
+    // this is the set of MAC address excluded by discovery process
+    private LongHashSet macsExcluded = new LongHashSet();
 
     // this is the list of atinterfaces for which to be discovery link
     // here there aren't the bridge identifier because they should be
@@ -204,6 +211,8 @@ public final class DiscoveryLink implements ReadyRunnable {
             }
         }
 
+        m_macIndex = new BridgeMacIndex(m_bridgeNodes.values());
+
         // This will found all mac address on
         // current package and their association
         // with ip addresses.
@@ -231,6 +240,7 @@ public final class DiscoveryLink implements ReadyRunnable {
         getLinksFromCdp();
 
         m_bridgeNodes.clear();
+        m_macIndex = null;
         m_routerNodes.clear();
         m_cdpNodes.clear();
         m_macsParsed.clear();
@@ -244,6 +254,7 @@ public final class DiscoveryLink implements ReadyRunnable {
         m_linkd.updateDiscoveryLinkCollection(this);
 
         m_links.clear();
+        m_linkSet.clear();
         m_maclinks.clear();
 
         // rescheduling activities
@@ -258,6 +269,7 @@ public final class DiscoveryLink implements ReadyRunnable {
         if (macs == null || macs.keySet() == null)
             return;
         for (final String macAddress : macs.keySet()) {
+            final long mac = m_macIndex.encode(macAddress);
             LogUtils.debugf(this,
                             "populateMacToAtInterface: MAC %s now has atinterface reference: %d",
                             macAddress,
@@ -267,11 +279,11 @@ public final class DiscoveryLink implements ReadyRunnable {
                 LogUtils.debugf(this,
                                 "populateMacToAtInterface: Parsing AtInterface nodeid/ipaddr/macaddr: %d/%s/%s",
                                 nodeid, at.getIpAddress(), macAddress);
-                if (isMacIdentifierOfBridgeNode(macAddress)) {
+                if (m_macIndex.isBridgeIdentifier(mac)) {
                     LogUtils.debugf(this,
                                     "populateMacToAtInterface: AtInterface %s belongs to bridge node! Not adding to discoverable atinterface.",
                                     macAddress);
-                    macsExcluded.add(macAddress);
+                    macsExcluded.add(mac);
                     continue;
                 }
                 if ((macAddress.indexOf("00000c07ac") == 0)
@@ -279,7 +291,7 @@ public final class DiscoveryLink implements ReadyRunnable {
                     LogUtils.debugf(this,
                                     "populateMacToAtInterface: AtInterface %s is Cisco HSRP address! Not adding to discoverable atinterface.",
                                     macAddress);
-                    macsExcluded.add(macAddress);
+                    macsExcluded.add(mac);
                     continue;
                 }
             }
@@ -303,7 +315,7 @@ public final class DiscoveryLink implements ReadyRunnable {
                 LogUtils.debugf(this,
                                 "getLinksFromBridges: parsing bridge port %d with MAC address %s",
                                 curBridgePort,
-                                curNode.getMacAddressesOnBridgePort(curBridgePort).toString());
+                                curNode.getMacAddressesOnBridgePort(curBridgePort));
 
                 if (curNode.isBackBoneBridgePort(curBridgePort)) {
                     LogUtils.debugf(this,
@@ -321,11 +333,11 @@ public final class DiscoveryLink implements ReadyRunnable {
                 }
                 // First get the MAC addresses on bridge port
 
-                final Set<String> macs = curNode.getMacAddressesOnBridgePort(curBridgePort);
+                final long[] macs = m_macIndex.getMacsOnPort(curNode, curBridgePort);
 
                 // Then find the bridges whose MAC addresses are learned on
                 // bridge port
-                final List<LinkableNode> bridgesOnPort = getBridgesFromMacs(macs);
+                final List<LinkableNode> bridgesOnPort = m_macIndex.getBridgesOnPort(curNode, curBridgePort);
 
                 if (bridgesOnPort.isEmpty()) {
                     LogUtils.debugf(this,
@@ -546,7 +558,7 @@ public final class DiscoveryLink implements ReadyRunnable {
 
                     // try to see if designated bridge is linkable SNMP node
 
-                    final LinkableNode designatedNode = getNodeFromMacIdentifierOfBridgeNode(stpPortDesignatedBridge.substring(4));
+                    final LinkableNode designatedNode = m_macIndex.getBridge(m_macIndex.encode(stpPortDesignatedBridge.substring(4)));
 
                     if (designatedNode == null) {
                         LogUtils.debugf(this,
@@ -906,43 +918,32 @@ public final class DiscoveryLink implements ReadyRunnable {
                         "isNearestBridgeLink: bridge1/port1 %d/%d bridge2/port2 %d/%d",
                         bridge1.getNodeId(), bp1, bridge2.getNodeId(), bp2);
 
-        Set<String> macsOnBridge2 = bridge2.getMacAddressesOnBridgePort(bp2);
+        final long[] macsOnBridge2 = m_macIndex.getMacsOnPort(bridge2, bp2);
 
-        Set<String> macsOnBridge1 = bridge1.getMacAddressesOnBridgePort(bp1);
+        final long[] macsOnBridge1 = m_macIndex.getMacsOnPort(bridge1, bp1);
 
         if (macsOnBridge2 == null || macsOnBridge1 == null
-                || macsOnBridge2.isEmpty() || macsOnBridge1.isEmpty()) {
+                || macsOnBridge2.length == 0 || macsOnBridge1.length == 0) {
             LogUtils.debugf(this,
                             "isNearestBridgeLink: no macs found on at least one bridge port, nearest bridges found. Return true.");
             return true;
         }
 
-        for (final String curMacOnBridge1 : macsOnBridge1) {
-            LogUtils.debugf(this,
-                            "isNearestBridgeLink: parsing mac address %s on bridge1",
-                            curMacOnBridge1);
-
+        for (final long curMacOnBridge1 : macsOnBridge1) {
+            // only a MAC address of a third bridge learned on both ports
+            // means there is another bridge between them
+            if (!m_macIndex.isBridgeIdentifier(curMacOnBridge1))
+                continue;
             // if MAC address is bridge identifier of bridge 2 continue
-            if (bridge2.isBridgeIdentifier(curMacOnBridge1)) {
-                LogUtils.debugf(this,
-                                "isNearestBridgeLink: mac address %s is bridge identifier on bridge2. Continue",
-                                curMacOnBridge1);
+            if (m_macIndex.isBridgeIdentifier(bridge2, curMacOnBridge1))
                 continue;
-            }
             // if MAC address is itself identifier of bridge1 continue
-            if (bridge1.isBridgeIdentifier(curMacOnBridge1)) {
-                LogUtils.debugf(this,
-                                "isNearestBridgeLink: mac address %s is bridge identifier on bridge1. Continue",
-                                curMacOnBridge1);
+            if (m_macIndex.isBridgeIdentifier(bridge1, curMacOnBridge1))
                 continue;
-            }
-            // then no identifier of bridge one no identifier of bridge 2
-            // bridge 2 contains
-            if (macsOnBridge2.contains(curMacOnBridge1)
-                    && isMacIdentifierOfBridgeNode(curMacOnBridge1)) {
+            if (BridgeMacIndex.contains(macsOnBridge2, curMacOnBridge1)) {
                 LogUtils.debugf(this,
                                 "isNearestBridgeLink: mac address %s is bridge identifier. Other bridge found. Return false",
-                                curMacOnBridge1);
+                                m_macIndex.decode(curMacOnBridge1));
                 return false;
             }
         }
@@ -950,96 +951,73 @@ public final class DiscoveryLink implements ReadyRunnable {
         return true;
     }
 
-    private Set<String> getMacsOnBridgeLink(LinkableNode bridge1, int bp1,
+    private long[] getMacsOnBridgeLink(LinkableNode bridge1, int bp1,
             LinkableNode bridge2, int bp2) {
 
-        Set<String> macsOnLink = new HashSet<String>();
-
-        Set<String> macsOnBridge1 = bridge1.getMacAddressesOnBridgePort(bp1);
+        final long[] macsOnBridge1 = m_macIndex.getMacsOnPort(bridge1, bp1);
 
-        Set<String> macsOnBridge2 = bridge2.getMacAddressesOnBridgePort(bp2);
+        final long[] macsOnBridge2 = m_macIndex.getMacsOnPort(bridge2, bp2);
 
         if (macsOnBridge2 == null || macsOnBridge1 == null)
             return null;
 
-        if (macsOnBridge2.isEmpty() || macsOnBridge1.isEmpty())
+        if (macsOnBridge2.length == 0 || macsOnBridge1.length == 0)
             return null;
 
-        for (final String curMacOnBridge1 : macsOnBridge1) {
-            if (bridge2.isBridgeIdentifier(curMacOnBridge1))
-                continue;
-            if (macsOnBridge2.contains(curMacOnBridge1))
-                macsOnLink.add(curMacOnBridge1);
-        }
-        return macsOnLink;
-    }
-
-    private boolean isMacIdentifierOfBridgeNode(String macAddress) {
-        for (final LinkableNode curNode : m_bridgeNodes.values()) {
-            if (curNode.isBridgeIdentifier(macAddress))
-                return true;
-        }
-        return false;
-    }
-
-    private LinkableNode getNodeFromMacIdentifierOfBridgeNode(
-            final String macAddress) {
-        for (final LinkableNode curNode : m_bridgeNodes.values()) {
-            if (curNode.isBridgeIdentifier(macAddress))
-                return curNode;
-        }
-        return null;
-    }
-
-    private List<LinkableNode> getBridgesFromMacs(final Set<String> macs) {
-        List<LinkableNode> bridges = new ArrayList<LinkableNode>();
-        for (final LinkableNode curNode : m_bridgeNodes.values()) {
-            for (final String curBridgeIdentifier : curNode.getBridgeIdentifiers()) {
-                if (macs.contains((curBridgeIdentifier)))
-                    bridges.add(curNode);
+        // both arrays are sorted, so walk them together
+        final long[] macsOnLink = new long[Math.min(macsOnBridge1.length, macsOnBridge2.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < macsOnBridge1.length && j < macsOnBridge2.length) {
+            final long curMacOnBridge1 = macsOnBridge1[i];
+            if (curMacOnBridge1 < macsOnBridge2[j]) {
+                i++;
+            } else if (curMacOnBridge1 > macsOnBridge2[j]) {
+                j++;
+            } else {
+                if (!m_macIndex.isBridgeIdentifier(bridge2, curMacOnBridge1))
+                    macsOnLink[count++] = curMacOnBridge1;
+                i++;
+                j++;
             }
         }
-        return bridges;
+        return count == macsOnLink.length ? macsOnLink : Arrays.copyOf(macsOnLink, count);
     }
 
     private int getBridgePortOnEndBridge(final LinkableNode startBridge,
             final LinkableNode endBridge) {
 
-        int port = -1;
         for (final String curBridgeIdentifier : startBridge.getBridgeIdentifiers()) {
             LogUtils.debugf(this,
-                            "getBridgePortOnEndBridge: parsing bridge identifier "
-                                    + curBridgeIdentifier);
+                            "getBridgePortOnEndBridge: parsing bridge identifier %s",
+                            curBridgeIdentifier);
 
-            if (endBridge.hasMacAddress(curBridgeIdentifier)) {
-                for (final Integer p : endBridge.getBridgePortsFromMac(curBridgeIdentifier)) {
-                    port = p;
+            final int[] ports = m_macIndex.getPortsForMac(endBridge, m_macIndex.encode(curBridgeIdentifier));
+            if (ports != null) {
+                for (final int port : ports) {
                     if (endBridge.isBackBoneBridgePort(port)) {
                         LogUtils.debugf(this,
-                                        "getBridgePortOnEndBridge: found backbone bridge port "
-                                                + port + " .... Skipping.");
+                                        "getBridgePortOnEndBridge: found backbone bridge port %d .... Skipping.",
+                                        port);
                         continue;
                     }
                     if (port == -1) {
                         LogUtils.debugf(this,
-                                        "getBridgePortOnEndBridge: no port found on bridge nodeid "
-                                                + endBridge.getNodeId()
-                                                + " for node bridge identifiers nodeid "
-                                                + startBridge.getNodeId()
-                                                + " . .....Skipping.");
+                                        "getBridgePortOnEndBridge: no port found on bridge nodeid %d for node bridge identifiers nodeid %d . .....Skipping.",
+                                        endBridge.getNodeId(), startBridge.getNodeId());
                         continue;
                     }
                     LogUtils.debugf(this,
-                                    "getBridgePortOnEndBridge: using MAC address table found bridge port "
-                                            + port + " on node "
-                                            + endBridge.getNodeId());
+                                    "getBridgePortOnEndBridge: using MAC address table found bridge port %d on node %d",
+                                    port, endBridge.getNodeId());
                     return port;
                 }
 
             } else {
                 LogUtils.debugf(this,
-                                "getBridgePortOnEndBridge: bridge identifier not found on node "
-                                        + endBridge.getNodeId());
+                                "getBridgePortOnEndBridge: bridge identifier not found on node %d",
+                                endBridge.getNodeId());
             }
         }
         return -1;
@@ -1249,41 +1227,40 @@ public final class DiscoveryLink implements ReadyRunnable {
             LogUtils.warnf(this, "addNodetoNodeLink: node link is null.");
             return;
         }
-        for (NodeToNodeLink curNnLink : m_links) {
-            if (curNnLink.equals(nnlink)) {
-                LogUtils.infof(this,
-                               "addNodetoNodeLink: link %s exists, not adding",
-                               nnlink.toString());
-                return;
-            }
+        if (!m_linkSet.add(nnlink)) {
+            LogUtils.infof(this,
+                           "addNodetoNodeLink: link %s exists, not adding",
+                           nnlink);
+            return;
         }
         LogUtils.debugf(this, "addNodetoNodeLink: adding link %s",
-                        nnlink.toString());
+                        nnlink);
         m_links.add(nnlink);
     }
 
-    private void addLinks(Set<String> macs, int nodeid, int ifindex) {
-        if (macs == null || macs.isEmpty()) {
+    private void addLinks(long[] macs, int nodeid, int ifindex) {
+        if (macs == null || macs.length == 0) {
             LogUtils.debugf(this,
                             "addLinks: MAC address list on link is empty.");
         } else {
-            for (String curMacAddress : macs) {
-                if (m_macsParsed.contains(curMacAddress)) {
-                    LogUtils.warnf(this, "addLinks: MAC address "
-                            + curMacAddress
-                            + " just found on other bridge port! Skipping...");
+            final Map<String, List<AtInterface>> atInterfaces = m_linkd.getAtInterfaces(getPackageName());
+            for (final long curMac : macs) {
+                if (m_macsParsed.contains(curMac)) {
+                    LogUtils.warnf(this,
+                                   "addLinks: MAC address %s just found on other bridge port! Skipping...",
+                                   m_macIndex.decode(curMac));
                     continue;
                 }
 
-                if (macsExcluded.contains(curMacAddress)) {
+                if (macsExcluded.contains(curMac)) {
                     LogUtils.warnf(this,
-                                   "addLinks: MAC address "
-                                           + curMacAddress
-                                           + " is excluded from discovery package! Skipping...");
+                                   "addLinks: MAC address %s is excluded from discovery package! Skipping...",
+                                   m_macIndex.decode(curMac));
                     continue;
                 }
-                if (m_linkd.getAtInterfaces(getPackageName()) != null && m_linkd.getAtInterfaces(getPackageName()).containsKey(curMacAddress)) {
-                    List<AtInterface> ats = m_linkd.getAtInterfaces(getPackageName()).get(curMacAddress);
+                final String curMacAddress = m_macIndex.decode(curMac);
+                final List<AtInterface> ats = atInterfaces == null ? null : atInterfaces.get(curMacAddress);
+                if (ats != null) {
                     for (AtInterface at : ats) {
                         NodeToNodeLink lNode = new NodeToNodeLink(
                                                                   at.getNodeid(),
@@ -1301,7 +1278,7 @@ public final class DiscoveryLink implements ReadyRunnable {
                     lMac.setParentifindex(ifindex);
                     m_maclinks.add(lMac);
                 }
-                m_macsParsed.add(curMacAddress);
+                m_macsParsed.add(curMac);
             }
         }
     }
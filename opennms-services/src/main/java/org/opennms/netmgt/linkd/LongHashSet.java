@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.linkd;
+
+/**
+ * A set of primitive longs using open addressing with linear probing, so
+ * that large sets of MAC addresses do not need a boxed Long and a hash map
+ * entry per element.
+ */
+final class LongHashSet {
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MIN_CAPACITY = 16;
+
+    // 0 marks a free slot, so the key 0 is tracked separately
+    private long[] m_keys;
+    private int m_size;
+    private boolean m_hasZero;
+    private int m_threshold;
+
+    LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    LongHashSet(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    static int capacityFor(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static int hash(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    boolean add(final long key) {
+        if (key == 0L) {
+            if (m_hasZero) {
+                return false;
+            }
+            m_hasZero = true;
+            return true;
+        }
+        final int mask = m_keys.length - 1;
+        int i = hash(key) & mask;
+        while (m_keys[i] != 0L) {
+            if (m_keys[i] == key) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        m_keys[i] = key;
+        if (++m_size > m_threshold) {
+            rehash(m_keys.length << 1);
+        }
+        return true;
+    }
+
+    boolean contains(final long key) {
+        if (key == 0L) {
+            return m_hasZero;
+        }
+        final int mask = m_keys.length - 1;
+        int i = hash(key) & mask;
+        while (m_keys[i] != 0L) {
+            if (m_keys[i] == key) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return m_hasZero ? m_size + 1 : m_size;
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all elements and releases the table.
+     */
+    void clear() {
+        allocate(MIN_CAPACITY);
+        m_size = 0;
+        m_hasZero = false;
+    }
+
+    private void allocate(final int capacity) {
+        m_keys = new long[capacity];
+        m_threshold = (int)(capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldKeys = m_keys;
+        allocate(capacity);
+        final int mask = capacity - 1;
+        for (final long key : oldKeys) {
+            if (key != 0L) {
+                int i = hash(key) & mask;
+                while (m_keys[i] != 0L) {
+                    i = (i + 1) & mask;
+                }
+                m_keys[i] = key;
+            }
+        }
+    }
+}
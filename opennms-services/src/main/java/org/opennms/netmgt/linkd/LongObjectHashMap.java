@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.linkd;
+
+/**
+ * A map from primitive longs to objects using open addressing with linear
+ * probing. Null values are not supported.
+ *
+ * @param <V> the value type
+ */
+final class LongObjectHashMap<V> {
+    private static final float LOAD_FACTOR = 0.75f;
+
+    // 0 marks a free slot, so the value for the key 0 is kept separately
+    private long[] m_keys;
+    private Object[] m_values;
+    private int m_size;
+    private V m_zeroValue;
+    private int m_threshold;
+
+    LongObjectHashMap() {
+        this(16);
+    }
+
+    LongObjectHashMap(final int expectedSize) {
+        allocate(LongHashSet.capacityFor(expectedSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(final long key) {
+        if (key == 0L) {
+            return m_zeroValue;
+        }
+        final int mask = m_keys.length - 1;
+        int i = LongHashSet.hash(key) & mask;
+        while (m_keys[i] != 0L) {
+            if (m_keys[i] == key) {
+                return (V)m_values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    boolean containsKey(final long key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(final long key, final V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null values are not supported");
+        }
+        if (key == 0L) {
+            final V previous = m_zeroValue;
+            m_zeroValue = value;
+            return previous;
+        }
+        final int mask = m_keys.length - 1;
+        int i = LongHashSet.hash(key) & mask;
+        while (m_keys[i] != 0L) {
+            if (m_keys[i] == key) {
+                final V previous = (V)m_values[i];
+                m_values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        m_keys[i] = key;
+        m_values[i] = value;
+        if (++m_size > m_threshold) {
+            rehash(m_keys.length << 1);
+        }
+        return null;
+    }
+
+    int size() {
+        return m_zeroValue == null ? m_size : m_size + 1;
+    }
+
+    private void allocate(final int capacity) {
+        m_keys = new long[capacity];
+        m_values = new Object[capacity];
+        m_threshold = (int)(capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldKeys = m_keys;
+        final Object[] oldValues = m_values;
+        allocate(capacity);
+        final int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0L) {
+                int i = LongHashSet.hash(oldKeys[j]) & mask;
+                while (m_keys[i] != 0L) {
+                    i = (i + 1) & mask;
+                }
+                m_keys[i] = oldKeys[j];
+                m_values[i] = oldValues[j];
+            }
+        }
+    }
+}
@@ -117,9 +117,13 @@ public class NodeToNodeLink {
 	/** {@inheritDoc} */
 	@Override
 	public int hashCode() {
+	    // equals() does not care about the direction of the link, so the
+	    // two endpoints must contribute symmetrically
 	    return new HashCodeBuilder(17, 57)
 	        .append(m_nodeId)
 	        .append(m_ifIndex)
+	        .toHashCode()
+	        + new HashCodeBuilder(17, 57)
 	        .append(m_nodeParentId)
 	        .append(m_parentIfIndex)
 	        .toHashCode();
@@ -52,6 +52,7 @@ import org.opennms.core.utils.PropertiesUtils;
 import org.opennms.core.utils.ThreadCategory;
 import org.opennms.netmgt.config.NotificationManager;
 import org.opennms.netmgt.model.notifd.NotificationStrategy;
+import org.opennms.netmgt.utils.HttpClientPool;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 /**
@@ -79,7 +80,7 @@ public class HttpNotificationStrategy implements NotificationStrategy {
         		return 1;
         }
         
-        DefaultHttpClient client = new DefaultHttpClient();
+        DefaultHttpClient client = HttpClientPool.getInstance().createClient(null, false);
         HttpUriRequest method = null;
         List<NameValuePair> posts = getPostArguments();
                 
@@ -102,8 +103,9 @@ public class HttpNotificationStrategy implements NotificationStrategy {
 
         String contents = null;
         int statusCode = -1;
+        HttpResponse response = null;
         try {
-            HttpResponse response = client.execute(method);
+            response = client.execute(method);
             statusCode = response.getStatusLine().getStatusCode();
             contents = EntityUtils.toString(response.getEntity());
             log().info("send: Contents is: "+contents);
@@ -111,8 +113,14 @@ public class HttpNotificationStrategy implements NotificationStrategy {
             log().error("send: IO problem with HTTP post/response: "+e);
             throw new RuntimeException("Problem with HTTP post: "+e.getMessage());
         } finally {
-            // Do we need to do any cleanup?
-            // method.releaseConnection();
+            // Hand the connection back to the shared pool
+            if (response != null && response.getEntity() != null) {
+                try {
+                    EntityUtils.consume(response.getEntity());
+                } catch (IOException e) {
+                    method.abort();
+                }
+            }
         }
         
         doSql(contents);
@@ -33,12 +33,19 @@ import java.net.InetAddress;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.LogUtils;
 import org.opennms.core.utils.Querier;
@@ -59,9 +66,9 @@ import org.opennms.netmgt.poller.pollables.PollableService;
 import org.opennms.netmgt.poller.pollables.PollableServiceConfig;
 import org.opennms.netmgt.poller.pollables.PollableVisitor;
 import org.opennms.netmgt.poller.pollables.PollableVisitorAdaptor;
-import org.opennms.netmgt.scheduler.LegacyScheduler;
 import org.opennms.netmgt.scheduler.Schedule;
 import org.opennms.netmgt.scheduler.Scheduler;
+import org.opennms.netmgt.scheduler.SchedulerFactory;
 
 /**
  * <p>Poller class.</p>
@@ -75,7 +82,7 @@ public class Poller extends AbstractServiceDaemon {
 
     private boolean m_initialized = false;
 
-    private LegacyScheduler m_scheduler = null;
+    private Scheduler m_scheduler = null;
 
     private PollerEventProcessor m_eventProcessor;
 
@@ -91,6 +98,22 @@ public class Poller extends AbstractServiceDaemon {
 
     private DataSource m_dataSource;
 
+    /**
+     * The number of rows read at a time when the existing services are
+     * scheduled in parallel.
+     */
+    private static final int STARTUP_FETCH_SIZE = 1000;
+
+    private volatile int m_startupServicesScheduled = 0;
+
+    private volatile long m_startupScheduleTime = 0;
+
+    private volatile long m_startupStatusUpdateTime = 0;
+
+    private volatile long m_startupStatusTime = 0;
+
+    private volatile long m_startupTime = 0;
+
     /**
      * <p>Constructor for Poller.</p>
      */
@@ -228,12 +251,51 @@ public class Poller extends AbstractServiceDaemon {
     /**
      * <p>setScheduler</p>
      *
-     * @param scheduler a {@link org.opennms.netmgt.scheduler.LegacyScheduler} object.
+     * @param scheduler a {@link org.opennms.netmgt.scheduler.Scheduler} object.
      */
-    public void setScheduler(LegacyScheduler scheduler) {
+    public void setScheduler(Scheduler scheduler) {
         m_scheduler = scheduler;
     }
 
+    /**
+     * @return the number of services scheduled when the poller started
+     */
+    public int getStartupServicesScheduled() {
+        return m_startupServicesScheduled;
+    }
+
+    /**
+     * @return how long reading, resolving the packages of and scheduling the
+     *   existing services took at startup, in milliseconds
+     */
+    public long getStartupScheduleTime() {
+        return m_startupScheduleTime;
+    }
+
+    /**
+     * @return how long the batched ifservices status updates took at startup,
+     *   in milliseconds (only done by a parallel startup)
+     */
+    public long getStartupStatusUpdateTime() {
+        return m_startupStatusUpdateTime;
+    }
+
+    /**
+     * @return how long computing the initial status of the pollable network
+     *   took at startup, in milliseconds
+     */
+    public long getStartupStatusTime() {
+        return m_startupStatusTime;
+    }
+
+    /**
+     * @return how long scheduling the existing services took at startup in
+     *   total, in milliseconds
+     */
+    public long getStartupTime() {
+        return m_startupTime;
+    }
+
     /**
      * <p>onInit</p>
      */
@@ -353,7 +415,7 @@ public class Poller extends AbstractServiceDaemon {
         try {
             log.debug("init: Creating poller scheduler");
 
-            setScheduler(new LegacyScheduler("Poller", getPollerConfig().getThreads()));
+            setScheduler(SchedulerFactory.createScheduler(getPollerConfig().getSchedulerType(), "Poller", getPollerConfig().getThreads()));
         } catch (RuntimeException e) {
             log.fatal("init: Failed to create poller scheduler", e);
             throw e;
@@ -438,12 +500,27 @@ public class Poller extends AbstractServiceDaemon {
     private void scheduleExistingServices() throws Exception {
         ThreadCategory log = ThreadCategory.getInstance(getClass());
         
-        scheduleMatchingServices(null);
+        final long start = System.currentTimeMillis();
+        final int threads = getPollerConfig().getStartupThreads();
+        m_startupStatusUpdateTime = 0;
+        if (threads > 1) {
+            m_startupServicesScheduled = scheduleExistingServices(threads);
+        } else {
+            m_startupServicesScheduled = scheduleMatchingServices(null);
+        }
+        final long scheduled = System.currentTimeMillis();
+        m_startupScheduleTime = scheduled - start - m_startupStatusUpdateTime;
         
         getNetwork().recalculateStatus();
         getNetwork().propagateInitialCause();
         getNetwork().resetStatusChanged();
         
+        final long end = System.currentTimeMillis();
+        m_startupStatusTime = end - scheduled;
+        m_startupTime = end - start;
+        log.info("scheduleExistingServices: scheduled " + m_startupServicesScheduled + " services with " + Math.max(threads, 1) + " threads in " + m_startupTime
+                 + "ms (scheduling: " + m_startupScheduleTime + "ms, status updates: " + m_startupStatusUpdateTime + "ms, network status: " + m_startupStatusTime + "ms)");
+        
         
         // Debug dump pollable network
         //
@@ -498,8 +575,95 @@ public class Poller extends AbstractServiceDaemon {
         }
     }
     
-    private int scheduleMatchingServices(String criteria) {
-        String sql = "SELECT ifServices.nodeId AS nodeId, node.nodeLabel AS nodeLabel, ifServices.ipAddr AS ipAddr, " +
+    /**
+     * Schedules the existing services with several threads.  The services are
+     * read through a cursor, the package of each one is resolved against a
+     * {@link ServicePackageIndex} and the pollable network is built by the
+     * threads concurrently, each holding the tree lock of the node it adds a
+     * service to.  The status changes to ifservices are collected and written
+     * with one statement per status at the end.
+     */
+    private int scheduleExistingServices(final int threads) throws InterruptedException {
+        final ServicePackageIndex index = new ServicePackageIndex(getPollerConfig());
+        final boolean updateStatus = !OpennmsServerConfigFactory.getInstance().verifyServer();
+        final Queue<Integer> notPolled = new ConcurrentLinkedQueue<Integer>();
+        final Queue<Integer> activated = new ConcurrentLinkedQueue<Integer>();
+        final AtomicInteger count = new AtomicInteger(0);
+
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(threads * STARTUP_FETCH_SIZE),
+            new LogPreservingThreadFactory("PollerStartup", threads, false),
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+
+        Querier querier = new Querier(m_dataSource, getServiceQuery(null)) {
+            @Override
+            public void processRow(ResultSet rs) throws SQLException {
+                final int ifServiceId = rs.getInt("ifServiceId");
+                final int nodeId = rs.getInt("nodeId");
+                final String nodeLabel = rs.getString("nodeLabel");
+                final String ipAddr = rs.getString("ipAddr");
+                final String serviceName = rs.getString("serviceName");
+                final boolean active = "A".equals(rs.getString("status"));
+                final Number svcLostEventId = (Number)rs.getObject("svcLostEventId");
+                final Date date = rs.getTimestamp("ifLostService");
+                final String svcLostUei = rs.getString("svcLostEventUei");
+
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            final Package pkg = index.findPackageForService(ipAddr, serviceName);
+                            if (pkg == null) {
+                                if (active && updateStatus) {
+                                    log().warn("Active service "+serviceName+" on "+ipAddr+" not configured for any package. Marking as Not Polled.");
+                                    notPolled.add(ifServiceId);
+                                }
+                                return;
+                            } else if (!active && updateStatus) {
+                                log().info("Active service "+serviceName+" on "+ipAddr+" is now configured for any package. Marking as active.");
+                                activated.add(ifServiceId);
+                            }
+
+                            final PollableNode node = getNetwork().createNodeIfNecessary(nodeId, nodeLabel);
+                            node.withTreeLock(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (scheduleService(pkg, nodeId, nodeLabel, ipAddr, serviceName, svcLostEventId, date, svcLostUei)) {
+                                        count.incrementAndGet();
+                                    }
+                                }
+                            });
+                        } catch (final Throwable e) {
+                            LogUtils.errorf(Poller.this, e, "Unable to schedule service %d/%s/%s", nodeId, ipAddr, serviceName);
+                        }
+                    }
+                });
+            }
+        };
+        querier.setFetchSize(STARTUP_FETCH_SIZE);
+
+        try {
+            querier.execute();
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        final long start = System.currentTimeMillis();
+        updateServiceStatus(notPolled, "N");
+        updateServiceStatus(activated, "A");
+        m_startupStatusUpdateTime = System.currentTimeMillis() - start;
+
+        return count.get();
+    }
+
+    private String getServiceQuery(String criteria) {
+        return "SELECT ifServices.id AS ifServiceId, ifServices.nodeId AS nodeId, node.nodeLabel AS nodeLabel, ifServices.ipAddr AS ipAddr, " +
                 "ifServices.serviceId AS serviceId, service.serviceName AS serviceName, ifServices.status as status, " +
                 "outages.svcLostEventId AS svcLostEventId, events.eventUei AS svcLostEventUei, " +
                 "outages.ifLostService AS ifLostService, outages.ifRegainedService AS ifRegainedService " +
@@ -514,11 +678,12 @@ public class Poller extends AbstractServiceDaemon {
         "LEFT OUTER JOIN events ON outages.svcLostEventId = events.eventid " +
         "WHERE ifServices.status in ('A','N')" +
         (criteria == null ? "" : " AND "+criteria);
-       
-        
+    }
+
+    private int scheduleMatchingServices(String criteria) {
         final AtomicInteger count = new AtomicInteger(0);
         
-        Querier querier = new Querier(m_dataSource, sql) {
+        Querier querier = new Querier(m_dataSource, getServiceQuery(criteria)) {
             @Override
             public void processRow(ResultSet rs) throws SQLException {
                 if (scheduleService(rs.getInt("nodeId"), rs.getString("nodeLabel"), rs.getString("ipAddr"), rs.getString("serviceName"), 
@@ -545,6 +710,24 @@ public class Poller extends AbstractServiceDaemon {
         
     }
 
+    private void updateServiceStatus(Collection<Integer> ifServiceIds, String status) {
+        if (ifServiceIds.isEmpty()) {
+            return;
+        }
+
+        final StringBuilder ids = new StringBuilder();
+        for (final Integer id : ifServiceIds) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(id);
+        }
+
+        final String sql = "UPDATE ifservices SET status = ? WHERE id = ANY (string_to_array(?, ',')::integer[])";
+        Updater updater = new Updater(m_dataSource, sql);
+        updater.execute(status, ids.toString());
+    }
+
     private boolean scheduleService(int nodeId, String nodeLabel, String ipAddr, String serviceName, boolean active, Number svcLostEventId, Date date, String svcLostUei) {
         ThreadCategory log = ThreadCategory.getInstance(getClass());
 
@@ -564,6 +747,12 @@ public class Poller extends AbstractServiceDaemon {
             updateServiceStatus(nodeId, ipAddr, serviceName, "A");
         }
 
+        return scheduleService(pkg, nodeId, nodeLabel, ipAddr, serviceName, svcLostEventId, date, svcLostUei);
+    }
+
+    private boolean scheduleService(Package pkg, int nodeId, String nodeLabel, String ipAddr, String serviceName, Number svcLostEventId, Date date, String svcLostUei) {
+        ThreadCategory log = ThreadCategory.getInstance(getClass());
+
         ServiceMonitor monitor = m_pollerConfig.getServiceMonitor(serviceName);
         if (monitor == null) {
             log.info("Could not find service monitor associated with service "+serviceName);
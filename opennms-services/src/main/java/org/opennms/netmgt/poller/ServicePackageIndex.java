@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.opennms.netmgt.config.PollerConfig;
+import org.opennms.netmgt.config.poller.Package;
+import org.opennms.netmgt.config.poller.Service;
+
+/**
+ * Finds the package that polls a service the same way the
+ * {@link Poller} does, but from the enabled service names of each local
+ * package computed once up front, so that it can be shared by the threads
+ * that schedule the existing services at startup.  As with the poller, when
+ * several packages match the last one in the configuration wins.
+ */
+class ServicePackageIndex {
+
+    private final PollerConfig m_pollerConfig;
+    private final List<Package> m_packages = new ArrayList<Package>();
+    private final List<Set<String>> m_services = new ArrayList<Set<String>>();
+
+    ServicePackageIndex(final PollerConfig pollerConfig) {
+        m_pollerConfig = pollerConfig;
+
+        final Enumeration<Package> en = pollerConfig.enumeratePackage();
+        while (en.hasMoreElements()) {
+            final Package pkg = en.nextElement();
+            if (pkg.getRemote()) {
+                continue;
+            }
+
+            final Set<String> services = new HashSet<String>();
+            for (final Service svc : pkg.getServiceCollection()) {
+                if (pollerConfig.isServiceInPackageAndEnabled(svc.getName(), pkg)) {
+                    services.add(svc.getName().toLowerCase());
+                }
+            }
+            m_packages.add(pkg);
+            m_services.add(Collections.unmodifiableSet(services));
+        }
+    }
+
+    /**
+     * @return the last package that polls the service on the address, or
+     *   <code>null</code> if no package does
+     */
+    Package findPackageForService(final String ipAddr, final String serviceName) {
+        final String name = serviceName.toLowerCase();
+        for (int i = m_packages.size() - 1; i >= 0; i--) {
+            final Package pkg = m_packages.get(i);
+            if (m_services.get(i).contains(name) && m_pollerConfig.isInterfaceInPackage(ipAddr, pkg)) {
+                return pkg;
+            }
+        }
+        return null;
+    }
+}
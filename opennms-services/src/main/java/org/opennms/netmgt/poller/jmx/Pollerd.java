@@ -29,6 +29,7 @@
 package org.opennms.netmgt.poller.jmx;
 
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 /**
  * <p>Pollerd class.</p>
@@ -50,5 +51,70 @@ public class Pollerd extends AbstractSpringContextJmxServiceDaemon<org.opennms.n
         return "pollerdContext";
     }
 
-}
+    /** {@inheritDoc} */
+    @Override
+    public int getStartupServicesScheduled() {
+        return getDaemon().getStartupServicesScheduled();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getStartupScheduleTime() {
+        return getDaemon().getStartupScheduleTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getStartupStatusUpdateTime() {
+        return getDaemon().getStartupStatusUpdateTime();
+    }
 
+    /** {@inheritDoc} */
+    @Override
+    public long getStartupStatusTime() {
+        return getDaemon().getStartupStatusTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getStartupTime() {
+        return getDaemon().getStartupTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getJmxConnectionPoolSize() {
+        return JMXConnectionPool.getInstance().getPoolSize();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getJmxConnectionsOpened() {
+        return JMXConnectionPool.getInstance().getConnectionsOpened();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getJmxConnectionsReused() {
+        return JMXConnectionPool.getInstance().getConnectionsReused();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getJmxConnectFailures() {
+        return JMXConnectionPool.getInstance().getConnectFailures();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getJmxAverageConnectTime() {
+        return JMXConnectionPool.getInstance().getAverageConnectTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getJmxMaxConnectTime() {
+        return JMXConnectionPool.getInstance().getMaxConnectTime();
+    }
+
+}
@@ -37,4 +37,59 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface PollerdMBean extends BaseOnmsMBean {
+
+    /**
+     * @return the number of services scheduled when the poller started
+     */
+    int getStartupServicesScheduled();
+
+    /**
+     * @return how long reading and scheduling the existing services took at startup in milliseconds
+     */
+    long getStartupScheduleTime();
+
+    /**
+     * @return how long the batched ifservices status updates took at startup in milliseconds
+     */
+    long getStartupStatusUpdateTime();
+
+    /**
+     * @return how long computing the initial status of the network took at startup in milliseconds
+     */
+    long getStartupStatusTime();
+
+    /**
+     * @return how long scheduling the existing services took at startup in total in milliseconds
+     */
+    long getStartupTime();
+
+    /**
+     * @return the number of open connections in the shared JMX connection pool
+     */
+    int getJmxConnectionPoolSize();
+
+    /**
+     * @return the number of JMX connections opened by the shared pool
+     */
+    long getJmxConnectionsOpened();
+
+    /**
+     * @return the number of JMX requests served with an already open pooled connection
+     */
+    long getJmxConnectionsReused();
+
+    /**
+     * @return the number of failed JMX connect attempts
+     */
+    long getJmxConnectFailures();
+
+    /**
+     * @return the average time opening a JMX connection took in milliseconds
+     */
+    double getJmxAverageConnectTime();
+
+    /**
+     * @return the longest time opening a JMX connection took in milliseconds
+     */
+    double getJmxMaxConnectTime();
 }
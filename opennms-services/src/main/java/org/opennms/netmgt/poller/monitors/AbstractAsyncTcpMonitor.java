@@ -0,0 +1,738 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.ssl.SSLEngine;
+
+import org.apache.log4j.Level;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.jboss.netty.handler.codec.string.StringEncoder;
+import org.jboss.netty.handler.ssl.SslHandler;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
+import org.opennms.netmgt.poller.DefaultPollFuture;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.NetworkInterface;
+import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
+import org.opennms.netmgt.poller.PollFuture;
+
+/**
+ * <p>
+ * Base class for monitors that poll a line based TCP protocol (banner,
+ * command, reply) without blocking a poller thread.
+ * </p>
+ *
+ * <p>
+ * All subclasses share a single Netty client socket factory with a fixed
+ * number of I/O threads and a single timer thread, so the number of threads
+ * used does not grow with the number of outstanding polls. Each connection
+ * attempt is driven by a {@link Conversation} created by the subclass which
+ * is fed the lines received from the remote service and returns the status
+ * of the attempt once it is known.
+ * </p>
+ *
+ * <p>
+ * The usual <code>retry</code>, <code>timeout</code> and
+ * <code>strict-timeout</code> parameters are honoured through a
+ * {@link TimeoutTracker}, the timeout applies to the connection and to each
+ * read as it did with blocking sockets.
+ * </p>
+ */
+public abstract class AbstractAsyncTcpMonitor extends AbstractServiceMonitor implements AsyncServiceMonitor {
+
+    /**
+     * Default retries.
+     */
+    protected static final int DEFAULT_RETRY = 0;
+
+    /**
+     * Default timeout. Specifies how long (in milliseconds) to wait for the
+     * connection and for each line of data from the monitored interface.
+     */
+    protected static final int DEFAULT_TIMEOUT = 3000;
+
+    /**
+     * Character set used to decode and encode the protocol lines. Latin-1
+     * maps every byte to a character so nothing received is lost.
+     */
+    protected static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    private static final int DEFAULT_MAX_LINE_LENGTH = 8192;
+
+    private static final int WORKER_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final ChannelFactory CHANNEL_FACTORY = new NioClientSocketChannelFactory(
+        Executors.newCachedThreadPool(daemonThreadFactory("AsyncMonitorBoss")),
+        Executors.newCachedThreadPool(daemonThreadFactory("AsyncMonitorWorker")),
+        WORKER_COUNT
+    );
+
+    private static final Timer TIMER = new HashedWheelTimer(daemonThreadFactory("AsyncMonitorTimer"), 10, TimeUnit.MILLISECONDS);
+
+    private static ThreadFactory daemonThreadFactory(final String name) {
+        final ThreadFactory delegate = new LogPreservingThreadFactory(name, Integer.MAX_VALUE, false);
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = delegate.newThread(r);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of I/O threads shared by all asynchronous monitors.
+     *
+     * @return the I/O thread count
+     */
+    public static int getWorkerCount() {
+        return WORKER_COUNT;
+    }
+
+    /**
+     * Returns the ports to try, in order, until the service is found.
+     *
+     * @param parameters the service parameters
+     * @return the ports to poll
+     */
+    protected abstract int[] determinePorts(Map<String, Object> parameters);
+
+    /**
+     * Creates the conversation for a single connection attempt.
+     *
+     * @param svc the service being polled
+     * @param parameters the service parameters
+     * @param port the port the attempt connects to
+     * @return a new conversation, conversations are never reused
+     */
+    protected abstract Conversation createConversation(MonitoredService svc, Map<String, Object> parameters, int port);
+
+    /**
+     * Returns an engine used to wrap the connection in SSL before the
+     * conversation starts, or null for a plain connection.
+     *
+     * @param remoteAddress the address being connected to
+     * @return the engine in client mode, or null
+     * @throws java.lang.Exception if the engine can not be created
+     */
+    protected SSLEngine createSslEngine(final InetSocketAddress remoteAddress) throws Exception {
+        return null;
+    }
+
+    /**
+     * Called once all attempts are finished to post-process the final
+     * status.
+     *
+     * @param svc the service being polled
+     * @param parameters the service parameters
+     * @param ports the ports that were configured
+     * @param port the last port that was polled
+     * @param status the status of the last attempt
+     * @return the status to report
+     */
+    protected PollStatus completePoll(final MonitoredService svc, final Map<String, Object> parameters, final int[] ports, final int port, final PollStatus status) {
+        return status;
+    }
+
+    /**
+     * Returns the number of bytes after which a line without terminator is
+     * handed to the conversation anyway.
+     *
+     * @return the maximum line length
+     */
+    protected int getMaxLineLength() {
+        return DEFAULT_MAX_LINE_LENGTH;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Waits for the result of {@link #pollAsync(MonitoredService, Map)}.
+     */
+    @Override
+    public PollStatus poll(final MonitoredService svc, final Map<String, Object> parameters) {
+        try {
+            return pollAsync(svc, parameters).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return logDown(Level.WARN, "Interrupted while waiting for poll of " + svc + " to complete", e);
+        } catch (final ExecutionException e) {
+            return logDown(Level.WARN, "Unexpected exception while polling " + svc, e.getCause());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PollFuture pollAsync(final MonitoredService svc, final Map<String, Object> parameters) {
+        final NetworkInterface<InetAddress> iface = svc.getNetInterface();
+
+        if (iface.getType() != NetworkInterface.TYPE_INET) {
+            throw new NetworkInterfaceNotSupportedException("Unsupported interface type, only TYPE_INET currently supported");
+        }
+
+        final AsyncPoll poll = new AsyncPoll(svc, parameters, iface.getAddress(), determinePorts(parameters));
+        poll.nextPort();
+        return poll.getFuture();
+    }
+
+    /**
+     * <p>
+     * Drives a single connection attempt. The methods are called from the
+     * shared I/O and timer threads, they must not block. Each returns null
+     * to keep the connection open, or the status of the attempt to end it.
+     * </p>
+     *
+     * <p>
+     * The default failure handling matches the reasons reported by the
+     * blocking monitors.
+     * </p>
+     */
+    protected abstract class Conversation {
+        private Channel m_channel;
+        private TimeoutTracker m_tracker;
+        private String m_hostAddress;
+        private int m_port;
+        private boolean m_connected;
+
+        private void attach(final Channel channel, final TimeoutTracker tracker, final InetAddress address, final int port) {
+            m_channel = channel;
+            m_tracker = tracker;
+            m_hostAddress = InetAddressUtils.str(address);
+            m_port = port;
+        }
+
+        /**
+         * Writes the given data to the remote service as is.
+         *
+         * @param data the data to write
+         */
+        protected void write(final String data) {
+            m_channel.write(data);
+        }
+
+        /**
+         * Writes the given command followed by CRLF.
+         *
+         * @param command the command to write
+         */
+        protected void sendLine(final String command) {
+            write(command + "\r\n");
+        }
+
+        protected TimeoutTracker getTracker() {
+            return m_tracker;
+        }
+
+        protected String getHostAddress() {
+            return m_hostAddress;
+        }
+
+        protected int getPort() {
+            return m_port;
+        }
+
+        protected boolean isConnected() {
+            return m_connected;
+        }
+
+        /**
+         * Called once the connection (and SSL handshake, if any) is
+         * established.
+         *
+         * @param elapsed milliseconds since the attempt started
+         * @return the status of the attempt, or null to continue
+         */
+        public PollStatus connected(final double elapsed) {
+            return null;
+        }
+
+        /**
+         * Called for each line received, without the line terminator.
+         *
+         * @param line the line received
+         * @param elapsed milliseconds since the attempt started
+         * @return the status of the attempt, or null to continue
+         */
+        public abstract PollStatus lineReceived(String line, double elapsed);
+
+        /**
+         * Called when the remote service closes the connection before the
+         * conversation returned a status.
+         *
+         * @param elapsed milliseconds since the attempt started
+         * @return the status of the attempt
+         */
+        public PollStatus closed(final double elapsed) {
+            return PollStatus.unresponsive();
+        }
+
+        /**
+         * Called when the connection or a read did not complete within the
+         * timeout.
+         *
+         * @return the status of the attempt
+         */
+        public PollStatus timedOut() {
+            if (isConnected()) {
+                return logDown(Level.DEBUG, "Did not receive expected response within timeout " + getTracker());
+            }
+            return logDown(Level.DEBUG, "did not connect to host with " + getTracker());
+        }
+
+        /**
+         * Called when the connection fails or an exception is raised while
+         * processing the conversation.
+         *
+         * @param cause the exception
+         * @return the status of the attempt
+         */
+        public PollStatus failed(final Throwable cause) {
+            if (cause instanceof NoRouteToHostException) {
+                return logDown(Level.WARN, "No route to host exception for address " + getHostAddress(), cause);
+            } else if (cause instanceof ConnectException) {
+                return logDown(Level.DEBUG, "Connection exception for address " + getHostAddress(), cause);
+            }
+            return logDown(Level.DEBUG, "IOException while polling address " + getHostAddress(), cause);
+        }
+    }
+
+    /**
+     * Collects a numeric reply as used by SMTP and FTP, where all but the
+     * last line of a multi-line reply have a hyphen after the three digit
+     * reply code.
+     */
+    protected static final class MultilineReply {
+        private final List<String> m_lines = new ArrayList<String>();
+        private int m_code = -1;
+
+        /**
+         * Adds a line to the reply.
+         *
+         * @param line the line received
+         * @return true once the last line of the reply has been added
+         * @throws java.lang.NumberFormatException if the reply does not start
+         *             with a numeric code
+         */
+        public boolean add(final String line) {
+            if (line.length() < 3) {
+                throw new NumberFormatException("Reply line too short: '" + line + "'");
+            }
+            m_lines.add(line);
+            if (m_code < 0) {
+                m_code = Integer.parseInt(line.substring(0, 3));
+                return !isContinuation(line);
+            }
+            return line.startsWith(Integer.toString(m_code)) && !isContinuation(line);
+        }
+
+        private static boolean isContinuation(final String line) {
+            return line.length() > 3 && line.charAt(3) == '-';
+        }
+
+        public int getCode() {
+            return m_code;
+        }
+
+        public boolean isSuccess() {
+            return m_code >= 200 && m_code < 300;
+        }
+
+        public boolean isIntermediate() {
+            return m_code >= 300 && m_code < 400;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            for (final String line : m_lines) {
+                if (sb.length() > 0) sb.append('\n');
+                sb.append(line);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * State of one poll across all ports and retries.
+     */
+    private final class AsyncPoll {
+        private final MonitoredService m_svc;
+        private final Map<String, Object> m_parameters;
+        private final InetAddress m_address;
+        private final int[] m_ports;
+        private final DefaultPollFuture m_future = new DefaultPollFuture();
+
+        private int m_portIndex = -1;
+        private TimeoutTracker m_tracker;
+        private PollStatus m_status = PollStatus.unavailable();
+
+        private AsyncPoll(final MonitoredService svc, final Map<String, Object> parameters, final InetAddress address, final int[] ports) {
+            m_svc = svc;
+            m_parameters = parameters;
+            m_address = address;
+            m_ports = ports;
+        }
+
+        public PollFuture getFuture() {
+            return m_future;
+        }
+
+        private int getCurrentPort() {
+            return m_ports[Math.min(m_portIndex, m_ports.length - 1)];
+        }
+
+        private void nextPort() {
+            m_portIndex++;
+            if (m_portIndex >= m_ports.length) {
+                finish();
+                return;
+            }
+
+            m_tracker = new TimeoutTracker(m_parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
+            if (log().isDebugEnabled()) {
+                log().debug("poll: address = " + InetAddressUtils.str(m_address) + ", port = " + getCurrentPort() + ", " + m_tracker);
+            }
+            m_tracker.reset();
+            nextAttempt();
+        }
+
+        private void nextAttempt() {
+            if (!m_tracker.shouldRetry()) {
+                nextPort();
+                return;
+            }
+
+            final long delay = m_tracker.getNextAttemptDelayNanos();
+            if (delay > 0) {
+                TIMER.newTimeout(new TimerTask() {
+                    @Override
+                    public void run(final Timeout timeout) {
+                        startAttempt();
+                    }
+                }, delay, TimeUnit.NANOSECONDS);
+            } else {
+                startAttempt();
+            }
+        }
+
+        private void startAttempt() {
+            try {
+                m_tracker.startAttempt();
+                new Attempt(this, createConversation(m_svc, m_parameters, getCurrentPort())).start();
+            } catch (final Throwable t) {
+                attemptComplete(logDown(Level.WARN, "Unexpected exception while polling address " + InetAddressUtils.str(m_address), t), true);
+            }
+        }
+
+        private void attemptComplete(final PollStatus status, final boolean stopPolling) {
+            m_status = status;
+            if (status.isAvailable() || stopPolling) {
+                finish();
+                return;
+            }
+            m_tracker.nextAttempt();
+            nextAttempt();
+        }
+
+        private void finish() {
+            PollStatus status = m_status;
+            if (m_ports.length > 0) {
+                try {
+                    status = completePoll(m_svc, m_parameters, m_ports, getCurrentPort(), m_status);
+                } catch (final Throwable t) {
+                    status = logDown(Level.WARN, "Unexpected exception while completing poll of " + m_svc, t);
+                }
+            }
+            m_future.setStatus(status);
+        }
+    }
+
+    /**
+     * Channel handler for a single connection attempt. Netty delivers the
+     * channel events on one I/O thread, the timeout fires on the timer
+     * thread, so the conversation is only ever called with the handler
+     * locked and the attempt completes exactly once.
+     */
+    private final class Attempt extends SimpleChannelUpstreamHandler implements TimerTask {
+        private final AsyncPoll m_poll;
+        private final Conversation m_conversation;
+        private final TimeoutTracker m_tracker;
+        private final InetSocketAddress m_remoteAddress;
+        private final AtomicBoolean m_done = new AtomicBoolean(false);
+        private volatile Channel m_channel;
+        private Timeout m_timeout;
+
+        private Attempt(final AsyncPoll poll, final Conversation conversation) {
+            m_poll = poll;
+            m_conversation = conversation;
+            m_tracker = poll.m_tracker;
+            m_remoteAddress = new InetSocketAddress(poll.m_address, poll.getCurrentPort());
+        }
+
+        private void start() throws Exception {
+            final SSLEngine sslEngine = createSslEngine(m_remoteAddress);
+            final ClientBootstrap bootstrap = new ClientBootstrap(CHANNEL_FACTORY);
+            bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+                @Override
+                public ChannelPipeline getPipeline() throws Exception {
+                    final ChannelPipeline pipeline = Channels.pipeline();
+                    if (sslEngine != null) {
+                        pipeline.addLast("ssl", new SslHandler(sslEngine));
+                    }
+                    pipeline.addLast("lineDecoder", new LineDecoder(getMaxLineLength()));
+                    pipeline.addLast("stringEncoder", new StringEncoder(CHARSET));
+                    pipeline.addLast("conversation", Attempt.this);
+                    return pipeline;
+                }
+            });
+            bootstrap.setOption("tcpNoDelay", true);
+            bootstrap.setOption("connectTimeoutMillis", m_tracker.getConnectionTimeout());
+
+            synchronized (this) {
+                m_timeout = TIMER.newTimeout(this, m_tracker.getConnectionTimeout(), TimeUnit.MILLISECONDS);
+            }
+            m_channel = bootstrap.connect(m_remoteAddress).getChannel();
+        }
+
+        @Override
+        public void channelOpen(final ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
+            m_channel = e.getChannel();
+            synchronized (this) {
+                m_conversation.attach(m_channel, m_tracker, m_remoteAddress.getAddress(), m_remoteAddress.getPort());
+            }
+            super.channelOpen(ctx, e);
+        }
+
+        @Override
+        public void channelConnected(final ChannelHandlerContext ctx, final ChannelStateEvent e) {
+            synchronized (this) {
+                m_conversation.m_connected = true;
+            }
+            if (log().isDebugEnabled()) {
+                log().debug(AbstractAsyncTcpMonitor.this.getClass().getSimpleName() + ": connected to host: " + m_conversation.getHostAddress() + " on port: " + m_remoteAddress.getPort());
+            }
+
+            final SslHandler ssl = ctx.getPipeline().get(SslHandler.class);
+            if (ssl == null) {
+                startConversation();
+                return;
+            }
+
+            resetTimeout();
+            ssl.handshake().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(final ChannelFuture future) {
+                    if (future.isSuccess()) {
+                        startConversation();
+                    } else {
+                        fail(future.getCause());
+                    }
+                }
+            });
+        }
+
+        private void startConversation() {
+            resetTimeout();
+            PollStatus status;
+            synchronized (this) {
+                try {
+                    status = m_conversation.connected(m_tracker.elapsedTimeInMillis());
+                } catch (final Throwable t) {
+                    status = m_conversation.failed(t);
+                }
+            }
+            complete(status, false);
+        }
+
+        @Override
+        public void messageReceived(final ChannelHandlerContext ctx, final MessageEvent e) {
+            resetTimeout();
+            PollStatus status;
+            synchronized (this) {
+                if (m_done.get()) return;
+                try {
+                    status = m_conversation.lineReceived((String) e.getMessage(), m_tracker.elapsedTimeInMillis());
+                } catch (final Throwable t) {
+                    status = m_conversation.failed(t);
+                }
+            }
+            complete(status, false);
+        }
+
+        @Override
+        public void exceptionCaught(final ChannelHandlerContext ctx, final ExceptionEvent e) {
+            fail(e.getCause());
+        }
+
+        @Override
+        public void channelClosed(final ChannelHandlerContext ctx, final ChannelStateEvent e) {
+            PollStatus status;
+            synchronized (this) {
+                if (m_done.get()) return;
+                if (m_conversation.isConnected()) {
+                    status = m_conversation.closed(m_tracker.elapsedTimeInMillis());
+                } else {
+                    status = m_conversation.failed(new ConnectException("Connection closed before it was established"));
+                }
+            }
+            complete(status, false);
+        }
+
+        /**
+         * Fired by the timer when the connection or a read takes too long.
+         */
+        @Override
+        public void run(final Timeout timeout) {
+            PollStatus status;
+            synchronized (this) {
+                if (timeout != m_timeout || m_done.get()) return;
+                status = m_conversation.timedOut();
+            }
+            complete(status, false);
+        }
+
+        private void fail(final Throwable cause) {
+            PollStatus status;
+            synchronized (this) {
+                if (m_done.get()) return;
+                if (!m_conversation.isConnected() && cause instanceof ConnectException && m_tracker.elapsedTimeInMillis() >= m_tracker.getConnectionTimeout()) {
+                    // Netty's own connect timeout fired before ours
+                    status = m_conversation.timedOut();
+                } else {
+                    status = m_conversation.failed(cause);
+                }
+            }
+            complete(status, cause instanceof NoRouteToHostException);
+        }
+
+        private synchronized void resetTimeout() {
+            if (m_done.get()) return;
+            if (m_timeout != null) {
+                m_timeout.cancel();
+            }
+            m_timeout = TIMER.newTimeout(this, m_tracker.getSoTimeout(), TimeUnit.MILLISECONDS);
+        }
+
+        private void complete(final PollStatus status, final boolean stopPolling) {
+            if (status == null || !m_done.compareAndSet(false, true)) {
+                return;
+            }
+            synchronized (this) {
+                if (m_timeout != null) {
+                    m_timeout.cancel();
+                }
+            }
+            final Channel channel = m_channel;
+            if (channel != null) {
+                channel.close();
+            }
+            m_poll.attemptComplete(status, stopPolling);
+        }
+    }
+
+    /**
+     * Splits the received data into lines on LF, dropping a trailing CR.
+     * Unlike Netty's delimiter based decoders, data left over when the
+     * connection closes is passed on as a last line, as
+     * {@link java.io.BufferedReader#readLine()} would.
+     */
+    private static final class LineDecoder extends FrameDecoder {
+        private final int m_maxLineLength;
+
+        private LineDecoder(final int maxLineLength) {
+            m_maxLineLength = maxLineLength;
+        }
+
+        @Override
+        protected Object decode(final ChannelHandlerContext ctx, final Channel channel, final ChannelBuffer buffer) {
+            final int eol = buffer.indexOf(buffer.readerIndex(), buffer.writerIndex(), (byte) '\n');
+            if (eol < 0) {
+                if (buffer.readableBytes() >= m_maxLineLength) {
+                    return readLine(buffer, m_maxLineLength, 0);
+                }
+                return null;
+            }
+            return readLine(buffer, eol - buffer.readerIndex(), 1);
+        }
+
+        @Override
+        protected Object decodeLast(final ChannelHandlerContext ctx, final Channel channel, final ChannelBuffer buffer) {
+            if (!buffer.readable()) {
+                return null;
+            }
+            return readLine(buffer, buffer.readableBytes(), 0);
+        }
+
+        private static String readLine(final ChannelBuffer buffer, final int length, final int terminatorLength) {
+            String line = buffer.toString(buffer.readerIndex(), length, CHARSET);
+            buffer.skipBytes(length + terminatorLength);
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            return line;
+        }
+    }
+}
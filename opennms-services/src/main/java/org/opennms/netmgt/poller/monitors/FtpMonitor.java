@@ -28,27 +28,13 @@
 
 package org.opennms.netmgt.poller.monitors;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.InterruptedIOException;
-import java.net.ConnectException;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.NoRouteToHostException;
-import java.net.Socket;
 import java.util.Map;
 
 import org.apache.log4j.Level;
-import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.ParameterMap;
-import org.opennms.core.utils.TimeoutTracker;
-import org.opennms.netmgt.capsd.plugins.FtpResponse;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
-import org.opennms.netmgt.poller.NetworkInterface;
-import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
 
 /**
  * This class is designed to be used by the service poller framework to test the
@@ -60,25 +46,13 @@ import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
  * @author <A HREF="http://www.opennms.org/">OpenNMS </A>
  */
 @Distributable
-final public class FtpMonitor extends AbstractServiceMonitor {
+final public class FtpMonitor extends AbstractAsyncTcpMonitor {
 
     /**
      * Default FTP port.
      */
     private static final int DEFAULT_PORT = 21;
 
-    /**
-     * Default retries.
-     */
-    private static final int DEFAULT_RETRY = 0;
-
-    /**
-     * Default timeout. Specifies how long (in milliseconds) to block waiting
-     * for data from the monitored interface.
-     */
-    private static final int DEFAULT_TIMEOUT = 3000; // 3 second timeout on
-                                                        // read()
-
     /**
      * {@inheritDoc}
      *
@@ -90,141 +64,120 @@ final public class FtpMonitor extends AbstractServiceMonitor {
      * code indicates that we are talking to an FTP server we continue. Next, an
      * FTP 'QUIT' command is sent. Provided that the interface's response is
      * valid we set the service status to SERVICE_AVAILABLE and return.
+     *
+     * If both a userid and password are configured, the monitor logs in with
+     * USER and PASS before sending the QUIT.
      */
     @Override
-    public PollStatus poll(MonitoredService svc, Map<String, Object> parameters) {
-        NetworkInterface<InetAddress> iface = svc.getNetInterface();
-
-        // Check the interface type
-        if (iface.getType() != NetworkInterface.TYPE_INET) {
-            throw new NetworkInterfaceNotSupportedException("Unsupported interface type, only TYPE_INET currently supported");
-        }
+    protected Conversation createConversation(MonitoredService svc, Map<String, Object> parameters, int port) {
+        return new FtpConversation(ParameterMap.getKeyedString(parameters, "userid", null), ParameterMap.getKeyedString(parameters, "password", null));
+    }
 
-        // Get the parameters
-        TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
-        int port = ParameterMap.getKeyedInteger(parameters, "port", DEFAULT_PORT);
-        String userid = ParameterMap.getKeyedString(parameters, "userid", null);
-        String password = ParameterMap.getKeyedString(parameters, "password", null);
+    /** {@inheritDoc} */
+    @Override
+    protected int[] determinePorts(Map<String, Object> parameters) {
+        return new int[] { ParameterMap.getKeyedInteger(parameters, "port", DEFAULT_PORT) };
+    }
 
-        // Extract the address
-        InetAddress ipv4Addr = (InetAddress) iface.getAddress();
+    private enum FtpState { BANNER, USER, PASS, QUIT }
 
-        PollStatus serviceStatus = PollStatus.unavailable();
-        for (tracker.reset(); tracker.shouldRetry() && !serviceStatus.isAvailable(); tracker.nextAttempt()) {
+    private final class FtpConversation extends Conversation {
+        private final String m_userid;
+        private final String m_password;
+        private FtpState m_state = FtpState.BANNER;
+        private MultilineReply m_reply = new MultilineReply();
+        private double m_responseTime;
 
-            if (log().isDebugEnabled()) {
-                log().debug("FtpMonitor.poll: Polling interface: " + InetAddressUtils.str(ipv4Addr) + tracker);
-            }
+        private FtpConversation(String userid, String password) {
+            m_userid = userid;
+            m_password = password;
+        }
 
-            Socket socket = null;
+        @Override
+        public PollStatus lineReceived(String line, double elapsed) {
             try {
-                // create a connected socket
-                tracker.startAttempt();
-
-                socket = new Socket();
-                socket.connect(new InetSocketAddress(ipv4Addr, port), tracker.getConnectionTimeout());
-                socket.setSoTimeout(tracker.getSoTimeout());
-                log().debug("FtpMonitor: connected to host: " + ipv4Addr + " on port: " + port);
-
-                // We're connected, so upgrade status to unresponsive
-                serviceStatus = PollStatus.unresponsive();
-
-                BufferedReader lineRdr = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                
-                FtpResponse bannerResponse = FtpResponse.readResponse(lineRdr);
-
-                if (bannerResponse.isSuccess()) {
-                    // Attempt to login if userid and password available
-                    boolean loggedInSuccessfully = false;
-                    log().debug("FtpMonitor: Banner response successful.");
-                    if (userid == null || userid.length() == 0 || password == null || password.length() == 0) {
-                        loggedInSuccessfully = true;
-                    } else {
-                        FtpResponse.sendCommand(socket, "USER " + userid);
-
-                        FtpResponse userResponse = FtpResponse.readResponse(lineRdr);
-
-                        if (userResponse.isSuccess() || userResponse.isIntermediate()) {
-                            log().debug("FtpMonitor: User response successful.");
-                            FtpResponse.sendCommand(socket, "PASS " + password);
-                            
-                            FtpResponse passResponse = FtpResponse.readResponse(lineRdr);
-                            if (passResponse.isSuccess()) {
-                                if (log().isDebugEnabled()) {
-                                    log().debug("FtpMonitor.poll: Login successful, parsed return code: " + passResponse.getCode());
-                                }
-                                loggedInSuccessfully = true;
-                            } else {
-                                if (log().isDebugEnabled()) {
-                                    log().debug("FtpMonitor.poll: Login failed, parsed return code: " + passResponse.getCode() + ", full response: " + passResponse.toString());
-                                }
-                                loggedInSuccessfully = false;
-                            }
-                        }
-                    }
-
-                    // Store the response time before we try to quit
-                    double responseTime = tracker.elapsedTimeInMillis();
-
-                    if (loggedInSuccessfully) {
-                        FtpResponse.sendCommand(socket, "QUIT");
+                if (!m_reply.add(line)) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                return logDown(Level.DEBUG, "NumberFormatException while polling address: " + getHostAddress(), e);
+            }
 
-                        FtpResponse quitResponse = FtpResponse.readResponse(lineRdr);
+            final MultilineReply reply = m_reply;
+            m_reply = new MultilineReply();
 
-                        /*
-                         * Special Cases for success:
-                         * 
-                         * Also want to accept the following
-                         * ERROR message generated by some FTP servers
-                         * following a QUIT command without a previous
-                         * successful login:
-                         *
-                         * "530 QUIT : User not logged in. Please login with
-                         * USER and PASS first."
-                         * 
-                         * Also want to accept the following ERROR
-                         * message generated by some FTP servers following a
-                         * QUIT command without a previously successful login:
-                         *
-                         * "425 Session is disconnected."
-                         */
-                        if (quitResponse.isSuccess()
-                                || (quitResponse.getCode() == 530 ) || (quitResponse.getCode() == 425 )) {
-                            serviceStatus = PollStatus.available(responseTime);
-                        }
+            switch (m_state) {
+            case BANNER:
+                if (!reply.isSuccess()) {
+                    return PollStatus.unavailable();
+                }
+                log().debug("FtpMonitor: Banner response successful.");
+                // Attempt to login if userid and password available
+                if (m_userid == null || m_userid.length() == 0 || m_password == null || m_password.length() == 0) {
+                    return quit(elapsed);
+                }
+                sendLine("USER " + m_userid);
+                m_state = FtpState.USER;
+                return null;
+            case USER:
+                if (!reply.isSuccess() && !reply.isIntermediate()) {
+                    return PollStatus.unavailable();
+                }
+                log().debug("FtpMonitor: User response successful.");
+                sendLine("PASS " + m_password);
+                m_state = FtpState.PASS;
+                return null;
+            case PASS:
+                if (!reply.isSuccess()) {
+                    if (log().isDebugEnabled()) {
+                        log().debug("FtpMonitor.poll: Login failed, parsed return code: " + reply.getCode() + ", full response: " + reply.toString());
                     }
+                    return PollStatus.unavailable();
                 }
-
+                if (log().isDebugEnabled()) {
+                    log().debug("FtpMonitor.poll: Login successful, parsed return code: " + reply.getCode());
+                }
+                return quit(elapsed);
+            default:
                 /*
-                 * If we get this far and the status has not been set
-                 * to available, then something didn't verify during
-                 * the banner checking or login/QUIT command process.
+                 * Special Cases for success:
+                 * 
+                 * Also want to accept the following
+                 * ERROR message generated by some FTP servers
+                 * following a QUIT command without a previous
+                 * successful login:
+                 *
+                 * "530 QUIT : User not logged in. Please login with
+                 * USER and PASS first."
+                 * 
+                 * Also want to accept the following ERROR
+                 * message generated by some FTP servers following a
+                 * QUIT command without a previously successful login:
+                 *
+                 * "425 Session is disconnected."
                  */
-                if (!serviceStatus.isAvailable()) {
-                    serviceStatus = PollStatus.unavailable();
-                }
-            } catch (NumberFormatException e) {
-            	serviceStatus = logDown(Level.DEBUG, "NumberFormatException while polling address: " + ipv4Addr, e);
-            } catch (NoRouteToHostException e) {
-            	serviceStatus = logDown(Level.WARN, "No route to host exception for address: " + ipv4Addr, e);
-            } catch (InterruptedIOException e) {
-            	serviceStatus = logDown(Level.DEBUG, "did not connect to host with " + tracker);
-            } catch (ConnectException e) {
-            	serviceStatus = logDown(Level.DEBUG, "Connection exception for address: " + ipv4Addr, e);
-            } catch (IOException e) {
-            	serviceStatus = logDown(Level.DEBUG, "IOException while polling address: " + ipv4Addr, e);
-            } finally {
-                try {
-                    // Close the socket
-                    if (socket != null) {
-                        socket.close();
-                    }
-                } catch (IOException e) {
-                    log().debug("FtpMonitor.poll: Error closing socket: " + e, e);
+                if (reply.isSuccess() || (reply.getCode() == 530) || (reply.getCode() == 425)) {
+                    return PollStatus.available(m_responseTime);
                 }
+                return PollStatus.unavailable();
             }
         }
 
-        return serviceStatus;
+        private PollStatus quit(double elapsed) {
+            // Store the response time before we try to quit
+            m_responseTime = elapsed;
+            sendLine("QUIT");
+            m_state = FtpState.QUIT;
+            return null;
+        }
+
+        /**
+         * The server closing the connection before a complete response is an
+         * error, as it was for the blocking FtpResponse reader.
+         */
+        @Override
+        public PollStatus closed(double elapsed) {
+            return logDown(Level.DEBUG, "IOException while polling address: " + getHostAddress() + ": End of stream was reached before a response could be read");
+        }
     }
 }
@@ -28,18 +28,11 @@
 
 package org.opennms.netmgt.poller.monitors;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.InterruptedIOException;
 import java.net.ConnectException;
 import java.net.Inet6Address;
 import java.net.InetAddress;
-import java.net.InetSocketAddress;
 import java.net.NoRouteToHostException;
-import java.net.Socket;
-import java.net.SocketException;
-import java.net.SocketTimeoutException;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
@@ -47,17 +40,13 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.opennms.core.utils.Base64;
-import org.opennms.core.utils.DefaultSocketWrapper;
 import org.opennms.core.utils.IPLike;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.ParameterMap;
-import org.opennms.core.utils.SocketWrapper;
-import org.opennms.core.utils.TimeoutTracker;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
-import org.opennms.netmgt.poller.NetworkInterface;
-import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
+import org.opennms.netmgt.poller.PollFuture;
 
 /**
  * This class is designed to be used by the service poller framework to test the availability
@@ -70,7 +59,7 @@ import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
  * @author <a href="mailto:david@opennms.org">David Hustace</a>
  */
 @Distributable
-public class HttpMonitor extends AbstractServiceMonitor {
+public class HttpMonitor extends AbstractAsyncTcpMonitor {
     private static final Pattern HEADER_PATTERN = Pattern.compile("header[0-9]+$");
 
     /**
@@ -78,22 +67,11 @@ public class HttpMonitor extends AbstractServiceMonitor {
      */
     private static final int[] DEFAULT_PORTS = { 80, 8080, 8888};
 
-    /**
-     * Default retries.
-     */
-    private static final int DEFAULT_RETRY = 0;
-
     /**
      * Default URL to 'GET'
      */
     private static final String DEFAULT_URL = "/";
 
-    /**
-     * Default timeout. Specifies how long (in milliseconds) to block waiting for data from the
-     * monitored interface.
-     */
-    private static final int DEFAULT_TIMEOUT = 3000; // 3 second timeout on read()
-
     public static final String PARAMETER_VERBOSE = "verbose";
     public static final String PARAMETER_USER_AGENT = "user-agent";
     public static final String PARAMETER_BASIC_AUTHENTICATION = "basic-authentication";
@@ -117,91 +95,63 @@ public class HttpMonitor extends AbstractServiceMonitor {
      * sent to the interface. The response is parsed and a return code extracted and verified.
      * Provided that the interface's response is valid we set the service status to
      * SERVICE_AVAILABLE and return.
+     *
+     * The parameters are copied so the 'qualifier' parameter set by the poll
+     * does not leak into the service configuration. When 'resolve-ip' is set,
+     * the host name is looked up here, on the calling thread, and kept in the
+     * copy as 'host-name', since the conversations run on the I/O threads.
      */
     @Override
-    public PollStatus poll(final MonitoredService svc, final Map<String, Object> parameters) {
-        final NetworkInterface<InetAddress> iface = svc.getNetInterface();
-        final String nodeLabel = svc.getNodeLabel();
-
-        if (iface.getType() != NetworkInterface.TYPE_INET) {
-            throw new NetworkInterfaceNotSupportedException("Unsupported interface type, only TYPE_INET currently supported");
+    public PollFuture pollAsync(final MonitoredService svc, final Map<String, Object> parameters) {
+        final Map<String, Object> pollParameters = new TreeMap<String, Object>(parameters);
+        if (isBlank(ParameterMap.getKeyedString(pollParameters, PARAMETER_HOST_NAME, null))
+                && ParameterMap.getKeyedBoolean(pollParameters, PARAMETER_RESOLVE_IP, false)) {
+            pollParameters.put(PARAMETER_HOST_NAME, svc.getNetInterface().getAddress().getCanonicalHostName());
         }
+        return super.pollAsync(svc, pollParameters);
+    }
 
-        // Cycle through the port list
-        //
-        int currentPort = -1;
-        final HttpMonitorClient httpClient = new HttpMonitorClient(nodeLabel, iface, new TreeMap<String, Object>(parameters));
-
-        for (int portIndex = 0; portIndex < determinePorts(httpClient.getParameters()).length && httpClient.getPollStatus() != PollStatus.SERVICE_AVAILABLE; portIndex++) {
-            currentPort = determinePorts(httpClient.getParameters())[portIndex];
-
-            httpClient.setTimeoutTracker(new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT));
-            log().debug("Port = " + currentPort + ", Address = " + (iface.getAddress()) + ", " + httpClient.getTimeoutTracker());
-            
-            httpClient.setCurrentPort(currentPort);
-
-            for(httpClient.getTimeoutTracker().reset();
-                httpClient.getTimeoutTracker().shouldRetry() && httpClient.getPollStatus() != PollStatus.SERVICE_AVAILABLE; 
-                httpClient.getTimeoutTracker().nextAttempt()) {
-                
-                try {
-                    httpClient.getTimeoutTracker().startAttempt();                    
-                    httpClient.connect();
-                    log().debug("HttpMonitor: connected to host: " + (iface.getAddress()) + " on port: " + currentPort);
-
-                    httpClient.sendHttpCommand();
-                    
-                    if (httpClient.isEndOfStream()) {
-                        continue;
-                    }
-
-                    httpClient.setResponseTime(httpClient.getTimeoutTracker().elapsedTimeInMillis());
-                    logResponseTimes(httpClient.getResponseTime(), httpClient.getCurrentLine());
-
-                    if (httpClient.getPollStatus() == PollStatus.SERVICE_AVAILABLE && StringUtils.isNotBlank(httpClient.getResponseText())) {
-                        httpClient.setPollStatus(PollStatus.SERVICE_UNAVAILABLE);
-                        httpClient.readLinedMatching();
-                        
-                        if (httpClient.isEndOfStream()) {
-                            continue;
-                        }
-
-                        httpClient.read();
+    /** {@inheritDoc} */
+    @Override
+    protected Conversation createConversation(final MonitoredService svc, final Map<String, Object> parameters, final int port) {
+        return new HttpConversation(svc.getNodeLabel(), svc.getNetInterface().getAddress(), parameters);
+    }
 
-                        if (!httpClient.isResponseTextFound()) {
-                            String message = "Matching text: ["+httpClient.getResponseText()+"] not found in body of HTTP response";
-                            log().debug(message);
-                            httpClient.setReason("Matching text: ["+httpClient.getResponseText()+"] not found in body of HTTP response");
-                        }
-                    }
-                    
-                } catch (NoRouteToHostException e) {
-                    log().warn("checkStatus: No route to host exception for address " + (iface.getAddress()), e);
-                    portIndex = determinePorts(httpClient.getParameters()).length; // Will cause outer for(;;) to terminate
-                    httpClient.setReason("No route to host exception");
-                } catch (SocketTimeoutException e) {
-                    log().info("checkStatus: HTTP socket connection timed out with " + httpClient.getTimeoutTracker().toString());
-                    httpClient.setReason("HTTP connection timeout");
-                } catch (InterruptedIOException e) {
-                    log().info(String.format("checkStatus: HTTP connection interrupted after %d bytes transferred with %s", e.bytesTransferred, httpClient.getTimeoutTracker().toString()), e);
-                    httpClient.setReason(String.format("HTTP connection interrupted, %d bytes transferred", e.bytesTransferred));
-                } catch (ConnectException e) {
-                    log().warn("Connection exception for " + (iface.getAddress()) + ":" + determinePorts(httpClient.getParameters())[portIndex], e);
-                    httpClient.setReason("HTTP connection exception on port: "+determinePorts(httpClient.getParameters())[portIndex]+": "+e.getMessage());
-                } catch (IOException e) {
-                    log().warn("IOException while polling address " + (iface.getAddress()), e);
-                    httpClient.setReason("IOException while polling address: "+(iface.getAddress())+": "+e.getMessage());
-                } catch (Throwable e) {
-                    log().warn("Unexpected exception while polling address " + (iface.getAddress()), e);
-                    httpClient.setReason("Unexpected exception while polling address: "+(iface.getAddress())+": "+e.getMessage());
-                } finally {
-                    httpClient.closeConnection();
+    /**
+     * {@inheritDoc}
+     *
+     * Add the 'qualifier' parm to the parameter map. This parm will contain
+     * the port on which the service was found if AVAILABLE or will contain a
+     * comma delimited list of the port(s) which were tried if the service is
+     * UNAVAILABLE.
+     */
+    @Override
+    protected PollStatus completePoll(final MonitoredService svc, final Map<String, Object> parameters, final int[] ports, final int port, final PollStatus status) {
+        if (status.isUnavailable()) {
+            //
+            // Build port string
+            //
+            final StringBuffer testedPorts = new StringBuffer();
+            for (int i = 0; i < ports.length; i++) {
+                if (i == 0) {
+                    testedPorts.append(ports[0]);
+                } else {
+                    testedPorts.append(',').append(ports[i]);
                 }
+            }
 
-            } // end for (attempts)
-        } // end for (ports)
-        return httpClient.determinePollStatusResponse();
+            // Add to parameter map
+            parameters.put("qualifier", testedPorts.toString());
+            final String reason = status.getReason() + "/Ports: " + testedPorts.toString();
 
+            if (log().isDebugEnabled()) {
+                log().debug("checkStatus: Reason: \""+reason+"\"");
+            }
+            return PollStatus.unavailable(reason);
+        } else if (status.isAvailable()) {
+            parameters.put("qualifier", Integer.toString(port));
+        }
+        return status;
     }
 
     private void logResponseTimes(Double responseTime, String line) {
@@ -211,17 +161,6 @@ public class HttpMonitor extends AbstractServiceMonitor {
         }
     }
 
-    /**
-     * <p>wrapSocket</p>
-     *
-     * @param socket a {@link java.net.Socket} object.
-     * @return a {@link java.net.Socket} object.
-     * @throws java.io.IOException if any.
-     */
-    protected SocketWrapper getSocketWrapper() {
-        return new DefaultSocketWrapper();
-    }
-
     private static boolean determineVerbosity(final Map<String, Object> parameters) {
         final String verbose = ParameterMap.getKeyedString(parameters, PARAMETER_VERBOSE, null);
         return (verbose != null && verbose.equalsIgnoreCase("true")) ? true : false;
@@ -277,6 +216,7 @@ public class HttpMonitor extends AbstractServiceMonitor {
      * @param parameters a {@link java.util.Map} object.
      * @return an array of int.
      */
+    @Override
     protected int[] determinePorts(final Map<String, Object> parameters) {
         return ParameterMap.getKeyedIntegerArray(parameters, PARAMETER_PORT, DEFAULT_PORTS);
     }
@@ -296,193 +236,96 @@ public class HttpMonitor extends AbstractServiceMonitor {
         return org.apache.commons.lang.StringUtils.isBlank(str);
     }
 
-    final class HttpMonitorClient {
-        private double m_responseTime;
-        final NetworkInterface<InetAddress> m_iface;
-        final Map<String, Object> m_parameters;
-        String m_httpCmd;
-        Socket m_httpSocket;
-        private BufferedReader m_lineRdr;
-        private String m_currentLine;
-        private int m_serviceStatus;
-        private String m_reason;
-        private final StringBuffer m_html = new StringBuffer();
-        private int m_serverResponseCode;
-        private TimeoutTracker m_timeoutTracker;
-        private int m_currentPort;
-        private String m_responseText;
-        private boolean m_responseTextFound = false;
+    private final class HttpConversation extends Conversation {
         private final String m_nodeLabel;
+        private final InetAddress m_address;
+        private final Map<String, Object> m_parameters;
+        private final String m_responseText;
+        private final boolean m_verbose;
+        private final String m_command;
+        private boolean m_statusLineRead = false;
+        private boolean m_matchingResponseText = false;
         private boolean m_headerFinished = false;
-        
-        HttpMonitorClient(final String nodeLabel, final NetworkInterface<InetAddress> iface, final TreeMap<String, Object>parameters) {
+        private double m_responseTime;
+
+        HttpConversation(final String nodeLabel, final InetAddress address, final Map<String, Object> parameters) {
             m_nodeLabel = nodeLabel;
-            m_iface = iface;
+            m_address = address;
             m_parameters = parameters;
-            buildCommand();
-            m_serviceStatus = PollStatus.SERVICE_UNAVAILABLE;
             m_responseText = determineResponseText(parameters);
-        }
-        
-        public void read() throws IOException {
-            for (int nullCount = 0; nullCount < 2;) {
-                readLinedMatching();
-                if (isEndOfStream()) {
-                    nullCount++;
-                }
-            }
+            m_verbose = determineVerbosity(parameters);
+            m_command = buildCommand();
         }
 
-        public int getCurrentPort() {
-            return m_currentPort;
-        }
-
-        public Map<String, Object> getParameters() {
-            return m_parameters;
-        }
-
-        public boolean isResponseTextFound() {
-            return m_responseTextFound;
-        }
-        public void setResponseTextFound(final boolean found) {
-            m_responseTextFound  = found;
+        @Override
+        public PollStatus connected(final double elapsed) {
+            if (m_verbose && log().isDebugEnabled()) {
+                log().debug("Sending HTTP command: "+m_command);
+            }
+            write(m_command);
+            return null;
         }
 
-        private String determineVirtualHost(final NetworkInterface<InetAddress> iface, final Map<String, Object> parameters) {
-            final boolean res = ParameterMap.getKeyedBoolean(parameters, PARAMETER_RESOLVE_IP, false);
-            final boolean useNodeLabel = ParameterMap.getKeyedBoolean(parameters, PARAMETER_NODE_LABEL_HOST_NAME, false);
-            String virtualHost = ParameterMap.getKeyedString(parameters, PARAMETER_HOST_NAME, null);
-
-            if (isBlank(virtualHost)) {
-                if (res) {
-                    return iface.getAddress().getCanonicalHostName();
-                } else if (useNodeLabel) {
-                    return m_nodeLabel;
-                } else {
-                    final InetAddress addr = iface.getAddress();
-                    final String host = InetAddressUtils.str(iface.getAddress());
-                    // Wrap IPv6 addresses in square brackets
-                    if (addr instanceof Inet6Address) {
-                        return "[" + host + "]";
-                    } else {
-                        return host;
-                    }
-                }
+        @Override
+        public PollStatus lineReceived(final String line, final double elapsed) {
+            if (m_verbose && log().isDebugEnabled()) {
+                log().debug("\t<<: "+line);
             }
 
-            return virtualHost;
-        }
+            if (!m_statusLineRead) {
+                m_statusLineRead = true;
+                m_responseTime = elapsed;
+                logResponseTimes(m_responseTime, line);
+                return determineServerInitialResponse(line);
+            }
 
-        public boolean checkCurrentLineMatchesResponseText() {
-            if (!m_headerFinished && StringUtils.isEmpty(m_currentLine)) {
+            if (!m_headerFinished && StringUtils.isEmpty(line)) {
                 m_headerFinished = true;  // Set to true when all HTTP headers has been processed.
             }
             if (!m_headerFinished) { // Skip perform the regex processing over HTTP headers.
-                return false;
+                return null;
             }
-            if (m_responseText.charAt(0) == '~' && !m_responseTextFound) {
-                m_responseTextFound = m_currentLine.matches(m_responseText.substring(1));
+
+            final boolean found;
+            if (m_responseText.charAt(0) == '~') {
+                found = line.matches(m_responseText.substring(1));
             } else {
-                m_responseTextFound = (m_currentLine.indexOf(m_responseText) != -1 ? true : false);
+                found = line.indexOf(m_responseText) != -1;
             }
-            return m_responseTextFound;
-        }
-
-        public String getResponseText() {
-            return m_responseText;
-        }
-
-        public void setResponseText(final String responseText) {
-            m_responseText = responseText;
-        }
-
-        public void setCurrentPort(final int currentPort) {
-            m_currentPort = currentPort;
-        }
-
-        public TimeoutTracker getTimeoutTracker() {
-            return m_timeoutTracker;
-        }
-
-        public void setTimeoutTracker(final TimeoutTracker tracker) {
-            m_timeoutTracker = tracker;
-        }
-
-        public Double getResponseTime() {
-            return m_responseTime;
-        }
-
-        public void setResponseTime(final double elapsedTimeInMillis) {
-            m_responseTime = elapsedTimeInMillis;
-        }
-
-        private void connect() throws IOException, SocketException {
-            m_httpSocket = new Socket();
-            m_httpSocket.connect(new InetSocketAddress(((InetAddress) m_iface.getAddress()), m_currentPort), m_timeoutTracker.getConnectionTimeout());
-            m_serviceStatus = PollStatus.SERVICE_UNRESPONSIVE;
-            m_httpSocket.setSoTimeout(m_timeoutTracker.getSoTimeout());
-            m_httpSocket = getSocketWrapper().wrapSocket(m_httpSocket);
-        }
-        
-        public void closeConnection() {
-            try {
-                if (m_httpSocket != null) {
-                    m_httpSocket.close();
-                    m_httpSocket = null;
+            if (found) {
+                if (log().isDebugEnabled()) {
+                    log().debug("response-text: "+m_responseText+": found.");
                 }
-            } catch (final IOException e) {
-                e.fillInStackTrace();
-                log().warn("Error closing socket connection", e);
+                return PollStatus.available(m_responseTime);
             }
+            return null;
         }
 
-        public int getPollStatus() {
-            return m_serviceStatus;
-        }
+        private PollStatus determineServerInitialResponse(final String line) {
+            if (!line.startsWith("HTTP/")) {
+                return PollStatus.unresponsive();
+            }
 
-        public void setPollStatus(final int serviceStatus) {
-            m_serviceStatus = serviceStatus;
-        }
+            final int serverResponseValue = parseHttpResponse(line);
+            final String response = determineResponse(m_parameters);
+            if (!IPLike.matchNumericListOrRange(String.valueOf(serverResponseValue), response)) {
+                return PollStatus.unavailable("HTTP response value: " + serverResponseValue + ". Expecting: " + response + ".");
+            }
 
-        public String getCurrentLine() {
-            return m_currentLine;
-        }
-        
+            if (log().isDebugEnabled()) {
+                log().debug("determineServerResponse: valid server response: "+serverResponseValue+" found.");
+            }
+            if (StringUtils.isBlank(m_responseText)) {
+                return PollStatus.available(m_responseTime);
+            }
 
-        public int getServerResponse() {
-            return m_serverResponseCode;
+            // Keep reading until the response text is found in the body
+            m_matchingResponseText = true;
+            return null;
         }
 
-        private void determineServerInitialResponse() {
-            int serverResponseValue = -1;
-
-            if (m_currentLine != null) {
-
-                if (m_currentLine.startsWith("HTTP/")) {
-                    serverResponseValue = parseHttpResponse();
-
-                    if (IPLike.matchNumericListOrRange(String.valueOf(serverResponseValue), determineResponse(m_parameters))) {
-                        if (log().isDebugEnabled()) {
-                            log().debug("determineServerResponse: valid server response: "+serverResponseValue+" found.");
-                        }
-                        m_serviceStatus = PollStatus.SERVICE_AVAILABLE;
-                    } else {
-                        m_serviceStatus = PollStatus.SERVICE_UNAVAILABLE;
-                        final StringBuffer sb = new StringBuffer();
-                        sb.append("HTTP response value: ");
-                        sb.append(serverResponseValue);
-                        sb.append(". Expecting: ");
-                        sb.append(determineResponse(m_parameters));
-                        sb.append(".");
-                        m_reason = sb.toString();
-                    }
-                }
-            }
-            m_serverResponseCode = serverResponseValue;
-        }
-        
-        private int parseHttpResponse() {
-            final StringTokenizer t = new StringTokenizer(m_currentLine);
+        private int parseHttpResponse(final String line) {
+            final StringTokenizer t = new StringTokenizer(line);
             if (t.hasMoreTokens()) {
                 t.nextToken();
             }
@@ -493,60 +336,79 @@ public class HttpMonitor extends AbstractServiceMonitor {
                     serverResponse = Integer.parseInt(t.nextToken());
                 } catch (final NumberFormatException nfE) {
                     if (log().isInfoEnabled()) {
-                        log().info("Error converting response code from host = " + (m_iface.getAddress()) + ", response = " + m_currentLine);
+                        log().info("Error converting response code from host = " + getHostAddress() + ", response = " + line);
                     }
                 }
             }
             return serverResponse;
         }
 
-        public boolean isEndOfStream() {
-            if (m_currentLine == null) {
-                return true;
+        @Override
+        public PollStatus closed(final double elapsed) {
+            if (m_matchingResponseText) {
+                final String message = "Matching text: ["+m_responseText+"] not found in body of HTTP response";
+                log().debug(message);
+                return PollStatus.unavailable(message);
             }
-            return false;
+            return PollStatus.unresponsive();
+        }
+
+        /**
+         * The status stays unresponsive if the server accepted the
+         * connection but did not answer in time.
+         */
+        @Override
+        public PollStatus timedOut() {
+            log().info("checkStatus: HTTP socket connection timed out with " + getTracker().toString());
+            return PollStatus.get(getStatusCode(), "HTTP connection timeout");
+        }
+
+        @Override
+        public PollStatus failed(final Throwable e) {
+            if (e instanceof NoRouteToHostException) {
+                log().warn("checkStatus: No route to host exception for address " + getHostAddress(), e);
+                return PollStatus.unavailable("No route to host exception");
+            } else if (e instanceof ConnectException) {
+                log().warn("Connection exception for " + getHostAddress() + ":" + getPort(), e);
+                return PollStatus.unavailable("HTTP connection exception on port: "+getPort()+": "+e.getMessage());
+            } else if (e instanceof IOException) {
+                log().warn("IOException while polling address " + getHostAddress(), e);
+                return PollStatus.get(getStatusCode(), "IOException while polling address: "+getHostAddress()+": "+e.getMessage());
+            }
+            log().warn("Unexpected exception while polling address " + getHostAddress(), e);
+            return PollStatus.get(getStatusCode(), "Unexpected exception while polling address: "+getHostAddress()+": "+e.getMessage());
         }
 
-        public String readLine() throws IOException {
-            m_currentLine = m_lineRdr.readLine();
-            
-            if (determineVerbosity(m_parameters) && log().isDebugEnabled()) {
-                log().debug("\t<<: "+m_currentLine);
-            }
-            
-            m_html.append(m_currentLine);
-            return m_currentLine;
+        private int getStatusCode() {
+            return isConnected() && !m_matchingResponseText ? PollStatus.SERVICE_UNRESPONSIVE : PollStatus.SERVICE_UNAVAILABLE;
         }
 
-        public String readLinedMatching() throws IOException {
-            readLine();
-            
-            if (m_responseText != null && m_currentLine != null && !m_responseTextFound) {
-                if (checkCurrentLineMatchesResponseText()) {
-                    if (log().isDebugEnabled()) {
-                        log().debug("response-text: "+m_responseText+": found.");
+        /**
+         * A 'resolve-ip' lookup was already stored as 'host-name' by
+         * {@link HttpMonitor#pollAsync(MonitoredService, Map)}.
+         */
+        private String determineVirtualHost() {
+            final boolean useNodeLabel = ParameterMap.getKeyedBoolean(m_parameters, PARAMETER_NODE_LABEL_HOST_NAME, false);
+            String virtualHost = ParameterMap.getKeyedString(m_parameters, PARAMETER_HOST_NAME, null);
+
+            if (isBlank(virtualHost)) {
+                if (useNodeLabel) {
+                    return m_nodeLabel;
+                } else {
+                    final String host = InetAddressUtils.str(m_address);
+                    // Wrap IPv6 addresses in square brackets
+                    if (m_address instanceof Inet6Address) {
+                        return "[" + host + "]";
+                    } else {
+                        return host;
                     }
-                    m_serviceStatus = PollStatus.SERVICE_AVAILABLE;
                 }
             }
-            return m_currentLine;
-        }
 
-        public void sendHttpCommand() throws IOException {
-            if (determineVerbosity(m_parameters) && log().isDebugEnabled()) {
-                log().debug("Sending HTTP command: "+m_httpCmd);
-            }
-            m_httpSocket.getOutputStream().write(m_httpCmd.getBytes());
-            m_lineRdr = new BufferedReader(new InputStreamReader(m_httpSocket.getInputStream()));
-            readLine();
-            if (determineVerbosity(m_parameters)) {
-                log().debug("Server response: "+m_currentLine);
-            }
-            determineServerInitialResponse();
-            m_headerFinished = false; // Clean header flag for each HTTP request.
+            return virtualHost;
         }
 
-        private void buildCommand() {
+        private String buildCommand() {
             /*
              * Sorting this map just in case the poller gets changed and the Map
              * is no longer a TreeMap.
@@ -554,7 +416,7 @@ public class HttpMonitor extends AbstractServiceMonitor {
             final StringBuilder sb = new StringBuilder();
             sb.append("GET ").append(determineUrl(m_parameters)).append(" HTTP/1.1\r\n");
             sb.append("Connection: CLOSE \r\n");
-            sb.append("Host: ").append(determineVirtualHost(m_iface, m_parameters)).append("\r\n");
+            sb.append("Host: ").append(determineVirtualHost()).append("\r\n");
             sb.append("User-Agent: ").append(determineUserAgent(m_parameters)).append("\r\n");
             
             if (determineBasicAuthentication(m_parameters) != null) {
@@ -572,63 +434,7 @@ public class HttpMonitor extends AbstractServiceMonitor {
             if (log().isDebugEnabled()) {
                 log().debug("checkStatus: cmd:\n" + cmd);
             }
-            m_httpCmd = cmd;
+            return cmd;
         }
-
-        public void setReason(final String reason) {
-            m_reason = reason;
-        }
-        
-        public String getReason() {
-            return m_reason;
-        }
-
-        public Socket getHttpSocket() {
-            return m_httpSocket;
-        }
-
-        public void setHttpSocket(final Socket httpSocket) {
-            m_httpSocket = httpSocket;
-        }
-
-        protected PollStatus determinePollStatusResponse() {
-            /*
-             Add the 'qualifier' parm to the parameter map. This parm will
-             contain the port on which the service was found if AVAILABLE or
-             will contain a comma delimited list of the port(s) which were
-             tried if the service is UNAVAILABLE
-            */
-            
-            if (getPollStatus() == PollStatus.SERVICE_UNAVAILABLE) {
-                //
-                // Build port string
-                //
-                final StringBuffer testedPorts = new StringBuffer();
-                for (int i = 0; i < determinePorts(getParameters()).length; i++) {
-                    if (i == 0) {
-                        testedPorts.append(determinePorts(getParameters())[0]);
-                    } else {
-                        testedPorts.append(',').append(determinePorts(getParameters())[i]);
-                    }
-                }
-        
-                // Add to parameter map
-                getParameters().put("qualifier", testedPorts.toString());
-                setReason(getReason() + "/Ports: " + testedPorts.toString());
-
-                if (log().isDebugEnabled()) {
-                    log().debug("checkStatus: Reason: \""+getReason()+"\"");
-                }
-                return PollStatus.unavailable(getReason());
-        
-            } else if (getPollStatus() == PollStatus.SERVICE_AVAILABLE) {
-                getParameters().put("qualifier", Integer.toString(getCurrentPort()));
-                return PollStatus.available(getResponseTime());
-            } else {
-                return PollStatus.get(getPollStatus(), getReason());
-            }
-        }
-        
     }
-
-}
\ No newline at end of file
+}
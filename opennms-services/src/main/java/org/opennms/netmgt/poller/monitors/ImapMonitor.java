@@ -28,26 +28,12 @@
 
 package org.opennms.netmgt.poller.monitors;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.InterruptedIOException;
-import java.net.ConnectException;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.NoRouteToHostException;
-import java.net.Socket;
 import java.util.Map;
 
-import org.apache.log4j.Level;
 import org.opennms.core.utils.ParameterMap;
-import org.opennms.core.utils.ThreadCategory;
-import org.opennms.core.utils.TimeoutTracker;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
-import org.opennms.netmgt.poller.NetworkInterface;
-import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
 
 /**
  * <P>
@@ -76,24 +62,13 @@ import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
  * @version CVS 1.1.1.1
  */
 @Distributable
-final public class ImapMonitor extends AbstractServiceMonitor {
+final public class ImapMonitor extends AbstractAsyncTcpMonitor {
 
     /**
      * Default IMAP port.
      */
     private static final int DEFAULT_PORT = 143;
 
-    /**
-     * Default retries.
-     */
-    private static final int DEFAULT_RETRY = 0;
-
-    /**
-     * Default timeout. Specifies how long (in milliseconds) to block waiting
-     * for data from the monitored interface.
-     */
-    private static final int DEFAULT_TIMEOUT = 3000;
-
     /**
      * The start of the initial banner received from the server
      */
@@ -102,7 +77,7 @@ final public class ImapMonitor extends AbstractServiceMonitor {
     /**
      * The LOGOUT request sent to the server to close the connection
      */
-    private static String IMAP_LOGOUT_REQUEST = "ONMSPOLLER LOGOUT\r\n";
+    private static String IMAP_LOGOUT_REQUEST = "ONMSPOLLER LOGOUT";
 
     /**
      * The BYE response received from the server in response to the logout
@@ -133,114 +108,55 @@ final public class ImapMonitor extends AbstractServiceMonitor {
      * </P>
      */
     @Override
-    public PollStatus poll(MonitoredService svc, Map<String, Object> parameters) {
-        NetworkInterface<InetAddress> iface = svc.getNetInterface();
-
-        // Get interface address from NetworkInterface
-        //
-        if (iface.getType() != NetworkInterface.TYPE_INET)
-            throw new NetworkInterfaceNotSupportedException("Unsupported interface type, only TYPE_INET currently supported");
-
-        // Process parameters
-        //
-        ThreadCategory log = ThreadCategory.getInstance(getClass());
-
-        
-        TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
-        // Retries
-        //
-        int port = ParameterMap.getKeyedInteger(parameters, "port", DEFAULT_PORT);
-
-        // Get interface address from NetworkInterface
-        //
-        InetAddress ipv4Addr = (InetAddress) iface.getAddress();
-
-        if (log.isDebugEnabled())
-            log.debug("ImapMonitor.poll: address: " + ipv4Addr + " port: " + port + tracker);
-
-        PollStatus serviceStatus = PollStatus.unavailable();
-
-        for (tracker.reset(); tracker.shouldRetry() && !serviceStatus.isAvailable(); tracker.nextAttempt()) {
-            Socket socket = null;
-            try {
-                //
-                // create a connected socket
-                //
-                tracker.startAttempt();
-
-                socket = new Socket();
-                socket.connect(new InetSocketAddress(ipv4Addr, port), tracker.getConnectionTimeout());
-                socket.setSoTimeout(tracker.getSoTimeout());
-
-                // We're connected, so upgrade status to unresponsive
-                serviceStatus = PollStatus.unresponsive();
-                
-                BufferedReader rdr = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-                //
-                // Tokenize the Banner Line, and check the first
-                // line for a valid return.
-                //
-                String banner = rdr.readLine();
-                
-                double responseTime = tracker.elapsedTimeInMillis();
-
-                if (log.isDebugEnabled())
-                    log.debug("ImapMonitor.Poll(): banner: " + banner);
-
-                if (banner != null && banner.startsWith(IMAP_START_RESPONSE_PREFIX)) {
-                    //
-                    // Send the LOGOUT
-                    //
-                    socket.getOutputStream().write(IMAP_LOGOUT_REQUEST.getBytes());
-
-                    //
-                    // get the returned string, tokenize, and
-                    // verify the correct output.
-                    //
-                    String response = rdr.readLine();
-                    if (response != null && response.startsWith(IMAP_BYE_RESPONSE_PREFIX)) {
-                        response = rdr.readLine();
-                        if (response != null && response.startsWith(IMAP_LOGOUT_RESPONSE_PREFIX)) {
-                            serviceStatus = PollStatus.available(responseTime);
-                        }
-                    }
-                }
+    protected Conversation createConversation(MonitoredService svc, Map<String, Object> parameters, int port) {
+        return new ImapConversation();
+    }
 
-                // If we get this far and the status has not been set
-                // to available, then something didn't verify during
-                // the banner checking or logout process.
-                if (!serviceStatus.isAvailable()) {
-                    serviceStatus = PollStatus.unavailable();
-                }
+    /** {@inheritDoc} */
+    @Override
+    protected int[] determinePorts(Map<String, Object> parameters) {
+        return new int[] { ParameterMap.getKeyedInteger(parameters, "port", DEFAULT_PORT) };
+    }
 
-            } catch (NoRouteToHostException e) {
-            	
-            	serviceStatus = logDown(Level.WARN,"No route to host exception for address: " + ipv4Addr, e);
-
-            } catch (ConnectException e) {
-                // Connection refused. Continue to retry.
-            	serviceStatus = logDown(Level.DEBUG, "Connection exception for address: " + ipv4Addr, e);
-            } catch (InterruptedIOException e) {
-            	serviceStatus = logDown(Level.DEBUG, "did not connect to host with " + tracker);
-            } catch (IOException e) {
-            	serviceStatus = logDown(Level.DEBUG, "IOException while polling address: " + ipv4Addr, e);
-            } finally {
-                try {
-                    // Close the socket
-                    if (socket != null)
-                        socket.close();
-                } catch (IOException e) {
-                    e.fillInStackTrace();
-                    log.debug("ImapMonitor.poll: Error closing socket.", e);
+    private enum ImapState { BANNER, BYE, LOGOUT }
+
+    private final class ImapConversation extends Conversation {
+        private ImapState m_state = ImapState.BANNER;
+        private double m_responseTime;
+
+        @Override
+        public PollStatus lineReceived(String line, double elapsed) {
+            switch (m_state) {
+            case BANNER:
+                m_responseTime = elapsed;
+                if (log().isDebugEnabled())
+                    log().debug("ImapMonitor.Poll(): banner: " + line);
+                if (!line.startsWith(IMAP_START_RESPONSE_PREFIX)) {
+                    return PollStatus.unavailable();
+                }
+                // Send the LOGOUT
+                sendLine(IMAP_LOGOUT_REQUEST);
+                m_state = ImapState.BYE;
+                return null;
+            case BYE:
+                if (!line.startsWith(IMAP_BYE_RESPONSE_PREFIX)) {
+                    return PollStatus.unavailable();
                 }
+                m_state = ImapState.LOGOUT;
+                return null;
+            default:
+                return line.startsWith(IMAP_LOGOUT_RESPONSE_PREFIX) ? PollStatus.available(m_responseTime) : PollStatus.unavailable();
             }
         }
 
-        //
-        // return the status of the service
-        //
-        return serviceStatus;
+        /**
+         * A server that hangs up before completing the logout is not an
+         * IMAP server we can talk to.
+         */
+        @Override
+        public PollStatus closed(double elapsed) {
+            return PollStatus.unavailable();
+        }
     }
 
 }
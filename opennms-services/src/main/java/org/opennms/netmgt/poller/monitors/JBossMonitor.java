@@ -32,7 +32,7 @@ import java.net.InetAddress;
 import java.util.Map;
 
 import org.opennms.protocols.jmx.connectors.ConnectionWrapper;
-import org.opennms.protocols.jmx.connectors.JBossConnectionFactory;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 /*
  * The class is responsible for getting the connection to the JBoss server.  The
@@ -56,7 +56,7 @@ public class JBossMonitor extends JMXMonitor {
     /** {@inheritDoc} */
     @Override
     public ConnectionWrapper getMBeanServerConnection(Map<String,Object> parameterMap, InetAddress address) {
-        return  JBossConnectionFactory.getMBeanServerConnection(parameterMap, address);
+        return getPooledConnection(JMXConnectionPool.JBOSS, parameterMap, address);
     }
 
 }
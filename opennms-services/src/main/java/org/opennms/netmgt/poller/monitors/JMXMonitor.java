@@ -40,6 +40,7 @@ import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.NetworkInterface;
 import org.opennms.protocols.jmx.connectors.ConnectionWrapper;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 /*
  * This class computes the response time of making a connection to 
@@ -67,6 +68,29 @@ public abstract class JMXMonitor extends AbstractServiceMonitor {
      * @return a {@link org.opennms.protocols.jmx.connectors.ConnectionWrapper} object.
      */
     public abstract ConnectionWrapper getMBeanServerConnection(Map<String, Object> parameterMap, InetAddress address);
+
+    /**
+     * Returns a pooled connection for {@link #getMBeanServerConnection(Map, InetAddress)}.
+     * The reconnect backoff of the pool is ignored since the monitor has its
+     * own retry and timeout.
+     *
+     * @param connector the connector for the agent type
+     * @param parameterMap the service parameters
+     * @param address the address of the agent
+     * @return the connection, or null if it could not be opened
+     */
+    protected ConnectionWrapper getPooledConnection(final JMXConnectionPool.Connector connector, final Map<String, Object> parameterMap, final InetAddress address) {
+        return getConnectionPool().getConnection(connector, parameterMap, address, false);
+    }
+
+    /**
+     * <p>getConnectionPool</p>
+     *
+     * @return the pool the connections are taken from
+     */
+    protected JMXConnectionPool getConnectionPool() {
+        return JMXConnectionPool.getInstance();
+    }
     
     /* (non-Javadoc)
      * @see org.opennms.netmgt.poller.monitors.ServiceMonitor#poll(org.opennms.netmgt.poller.monitors.NetworkInterface, java.util.Map, org.opennms.netmgt.config.poller.Package)
@@ -102,11 +126,15 @@ public abstract class JMXMonitor extends AbstractServiceMonitor {
                 }
                 catch(IOException e) {
                     serviceStatus = logDown(Level.DEBUG, dsName+": IOException while polling address: " + ipv4Addr);
-                    break;
+                    // the pooled connection may have gone stale, retry with a new one
+                    JMXConnectionPool.invalidate(connection);
+                    connection = null;
                 }
             }
         } catch (Throwable e) {
             serviceStatus = logDown(Level.DEBUG, dsName+" Monitor - failed! " + InetAddressUtils.str(ipv4Addr));
+            JMXConnectionPool.invalidate(connection);
+            connection = null;
         } finally {
             if (connection != null) {
                 connection.close();
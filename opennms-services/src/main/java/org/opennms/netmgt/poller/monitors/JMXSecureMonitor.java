@@ -33,7 +33,7 @@ import java.util.Map;
 
 import org.opennms.netmgt.poller.Distributable;
 import org.opennms.protocols.jmx.connectors.ConnectionWrapper;
-import org.opennms.protocols.jmx.connectors.JMXSecureConnectionFactory;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 @Distributable
 /**
@@ -48,6 +48,6 @@ public class JMXSecureMonitor extends JMXMonitor
         @Override
 	public ConnectionWrapper getMBeanServerConnection(Map<String,Object> parameterMap, InetAddress address)
 	{
-		return JMXSecureConnectionFactory.getMBeanServerConnection(parameterMap, address);
+		return getPooledConnection(JMXConnectionPool.JMX_SECURE, parameterMap, address);
 	}
 }
@@ -32,7 +32,7 @@ import java.net.InetAddress;
 import java.util.Map;
 
 import org.opennms.protocols.jmx.connectors.ConnectionWrapper;
-import org.opennms.protocols.jmx.connectors.Jsr160ConnectionFactory;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 /*
  * The class is responsible for getting the connection to the rmote jmx server.  The
@@ -56,7 +56,7 @@ public class Jsr160Monitor extends JMXMonitor {
     /** {@inheritDoc} */
     @Override
     public ConnectionWrapper getMBeanServerConnection(Map<String, Object> parameterMap, InetAddress address) {
-        return Jsr160ConnectionFactory.getMBeanServerConnection(parameterMap, address);
+        return getPooledConnection(JMXConnectionPool.JSR160, parameterMap, address);
     }
 
 }
@@ -32,7 +32,7 @@ import java.net.InetAddress;
 import java.util.Map;
 
 import org.opennms.protocols.jmx.connectors.ConnectionWrapper;
-import org.opennms.protocols.jmx.connectors.MX4JConnectionFactory;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
 
 /*
 * The class is responsible for getting the connection to the remote jmx server.  The
@@ -56,7 +56,7 @@ public class MX4JMonitor extends JMXMonitor {
   /** {@inheritDoc} */
   @Override
   public ConnectionWrapper getMBeanServerConnection(Map<String, Object> parameterMap, InetAddress address) {
-      return MX4JConnectionFactory.getMBeanServerConnection(parameterMap, address);
+      return getPooledConnection(JMXConnectionPool.MX4J, parameterMap, address);
   }
 
 }
@@ -36,7 +36,6 @@ import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -46,8 +45,6 @@ import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.net.ssl.SSLContext;
-
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.http.Header;
 import org.apache.http.HttpHost;
@@ -55,17 +52,18 @@ import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.params.ClientPNames;
 import org.apache.http.client.params.CookiePolicy;
+import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.client.utils.URIUtils;
 import org.apache.http.client.utils.URLEncodedUtils;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.message.BasicNameValuePair;
@@ -73,11 +71,12 @@ import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.params.CoreProtocolPNames;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.ValidationException;
 import org.opennms.core.utils.EmptyKeyRelaxedTrustProvider;
-import org.opennms.core.utils.EmptyKeyRelaxedTrustSSLContext;
 import org.opennms.core.utils.HttpResponseRange;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.MatchTable;
@@ -93,6 +92,7 @@ import org.opennms.netmgt.config.pagesequence.SessionVariable;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.utils.HttpClientPool;
 
 /**
  * This class is designed to be used by the service poller framework to test the availability
@@ -189,7 +189,7 @@ public class PageSequenceMonitor extends AbstractServiceMonitor {
             return m_pages;
         }
 
-        private void execute(DefaultHttpClient client, MonitoredService svc, Map<String,Number> responseTimes) {
+        private void execute(PageSequenceHttpClient client, MonitoredService svc, Map<String,Number> responseTimes) {
             // Clear the sequence properties before each run
             clearSequenceProperties();
 
@@ -231,6 +231,39 @@ public class PageSequenceMonitor extends AbstractServiceMonitor {
         }
     }
 
+    /**
+     * The pooled clients used for one run of a page sequence. Each page picks the strict or
+     * the relaxed client from its own disable-ssl-verification setting. Both clients execute
+     * in one shared context, so cookies and credentials carry over from page to page.
+     */
+    public static class PageSequenceHttpClient {
+        private final DefaultHttpClient m_strictClient;
+        private final DefaultHttpClient m_relaxedClient;
+        private final CredentialsProvider m_credentialsProvider = new BasicCredentialsProvider();
+        private final HttpContext m_context = new BasicHttpContext();
+
+        PageSequenceHttpClient(HttpParams params, int retries) {
+            m_strictClient = createClient(params, false, retries);
+            m_relaxedClient = createClient(params, true, retries);
+            m_context.setAttribute(ClientContext.COOKIE_STORE, new BasicCookieStore());
+            m_context.setAttribute(ClientContext.CREDS_PROVIDER, m_credentialsProvider);
+        }
+
+        private static DefaultHttpClient createClient(HttpParams params, boolean relaxedSsl, int retries) {
+            DefaultHttpClient client = HttpClientPool.getInstance().createClient(params, relaxedSsl);
+            client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(retries, false));
+            return client;
+        }
+
+        void setCredentials(UsernamePasswordCredentials credentials) {
+            m_credentialsProvider.setCredentials(AuthScope.ANY, credentials);
+        }
+
+        HttpResponse execute(HttpUriRequest request, boolean relaxedSsl) throws IOException {
+            return (relaxedSsl ? m_relaxedClient : m_strictClient).execute(request, m_context);
+        }
+    }
+
     public interface PageSequenceHttpUriRequest extends HttpUriRequest {
         public void setQueryParameters(List<NameValuePair> parms);
     }
@@ -322,7 +355,9 @@ public class PageSequenceMonitor extends AbstractServiceMonitor {
             return retval.toString();
         }
 
-        void execute(DefaultHttpClient client, MonitoredService svc, Properties sequenceProperties) {
+        void execute(PageSequenceHttpClient client, MonitoredService svc, Properties sequenceProperties) {
+            HttpUriRequest request = null;
+            HttpResponse response = null;
             try {
                 URI uri = getURI(svc);
                 PageSequenceHttpUriRequest method = getMethod(uri);
@@ -346,20 +381,6 @@ public class PageSequenceMonitor extends AbstractServiceMonitor {
                     method.getParams().setParameter(CoreProtocolPNames.USER_AGENT, "OpenNMS PageSequenceMonitor (Service name: " + svc.getSvcName() + ")");
                 }
 
-                if ("https".equals(uri.getScheme())) {
-                    if (Boolean.parseBoolean(m_page.getDisableSslVerification())) {
-                        final SchemeRegistry registry = client.getConnectionManager().getSchemeRegistry();
-                        final Scheme https = registry.getScheme("https");
-
-                        // Override the trust validation with a lenient implementation
-                        final SSLSocketFactory factory = new SSLSocketFactory(SSLContext.getInstance(EmptyKeyRelaxedTrustSSLContext.ALGORITHM), SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-
-                        final Scheme lenient = new Scheme(https.getName(), https.getDefaultPort(), factory);
-                        // This will replace the existing "https" schema
-                        registry.register(lenient);
-                    }
-                }
-
                 if (m_parms.size() > 0) {
                     method.setQueryParameters(expandParms(svc));
                 }
@@ -368,14 +389,15 @@ public class PageSequenceMonitor extends AbstractServiceMonitor {
                     String userInfo = getUserInfo();
                     String[] streetCred = userInfo.split(":", 2);
                     if (streetCred.length == 2) {
-                        client.getCredentialsProvider().setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(streetCred[0], streetCred[1]));
+                        client.setCredentials(new UsernamePasswordCredentials(streetCred[0], streetCred[1]));
                     } else { 
                         log().warn("Illegal value found for username/password HTTP credentials: " + userInfo);
                     }
                 }
 
                 long startTime = System.nanoTime();
-                HttpResponse response = client.execute(method);
+                request = method;
+                response = client.execute(method, Boolean.parseBoolean(m_page.getDisableSslVerification()));
                 long endTime = System.nanoTime();
                 m_responseTime = (endTime - startTime)/1000000.0;
 
@@ -421,9 +443,6 @@ public class PageSequenceMonitor extends AbstractServiceMonitor {
                     updateSequenceProperties(sequenceProperties, matcher);
                 }
 
-            } catch (NoSuchAlgorithmException e) {
-                // Should never happen
-                throw new PageSequenceMonitorException("Could not find appropriate SSL context provider: " + e.getMessage(), e);
             } catch (URISyntaxException e) {
                 throw new IllegalArgumentException("unable to construct URL for page: " + e, e);
             } catch (IOException e) {
@@ -431,6 +450,15 @@ public class PageSequenceMonitor extends AbstractServiceMonitor {
                     log().debug("I/O Error " + e, e);
                 }
                 throw new PageSequenceMonitorException("I/O Error " + e, e);
+            } finally {
+                // Hand the connection back to the shared pool, even if the page failed
+                if (response != null && response.getEntity() != null) {
+                    try {
+                        EntityUtils.consume(response.getEntity());
+                    } catch (IOException e) {
+                        request.abort();
+                    }
+                }
             }
         }
 
@@ -673,19 +701,15 @@ public class PageSequenceMonitor extends AbstractServiceMonitor {
             return m_clientParams;
         }
 
-        DefaultHttpClient createHttpClient() {
-            DefaultHttpClient client = new DefaultHttpClient(getClientParams());
-
-            client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(getRetries(), false));
-
-            return client;
+        PageSequenceHttpClient createHttpClient() {
+            return new PageSequenceHttpClient(getClientParams(), getRetries());
         }
     }
 
     /** {@inheritDoc} */
     @Override
     public PollStatus poll(final MonitoredService svc, final Map<String, Object> parameterMap) {
-        DefaultHttpClient client = null;
+        PageSequenceHttpClient client = null;
         PollStatus serviceStatus = PollStatus.unavailable("Poll not completed yet");
 
         Map<String,Number> responseTimes = new LinkedHashMap<String,Number>();
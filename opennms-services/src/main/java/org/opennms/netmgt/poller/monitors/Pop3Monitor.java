@@ -28,27 +28,13 @@
 
 package org.opennms.netmgt.poller.monitors;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.InterruptedIOException;
-import java.net.ConnectException;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.NoRouteToHostException;
-import java.net.Socket;
 import java.util.Map;
 import java.util.StringTokenizer;
 
-import org.apache.log4j.Level;
-import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.ParameterMap;
-import org.opennms.core.utils.TimeoutTracker;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
-import org.opennms.netmgt.poller.NetworkInterface;
-import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
 
 /**
  * <P>
@@ -63,24 +49,13 @@ import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
  */
 
 @Distributable
-final public class Pop3Monitor extends AbstractServiceMonitor {
+final public class Pop3Monitor extends AbstractAsyncTcpMonitor {
 
     /**
      * Default POP3 port.
      */
     private static final int DEFAULT_PORT = 110;
 
-    /**
-     * Default retries.
-     */
-    private static final int DEFAULT_RETRY = 0;
-
-    /**
-     * Default timeout. Specifies how long (in milliseconds) to block waiting
-     * for data from the monitored interface.
-     */
-    private static final int DEFAULT_TIMEOUT = 3000;
-
     /**
      * {@inheritDoc}
      *
@@ -99,113 +74,40 @@ final public class Pop3Monitor extends AbstractServiceMonitor {
      * </P>
      */
     @Override
-    public PollStatus poll(MonitoredService svc, Map<String, Object> parameters) {
-        NetworkInterface<InetAddress> iface = svc.getNetInterface();
-
-        // Get interface address from NetworkInterface
-        //
-        if (iface.getType() != NetworkInterface.TYPE_INET)
-            throw new NetworkInterfaceNotSupportedException("Unsupported interface type, only TYPE_INET currently supported");
-
-        // Process parameters
-        //
-        TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
-
-        int port = ParameterMap.getKeyedInteger(parameters, "port", DEFAULT_PORT);
-
-        InetAddress ipv4Addr = (InetAddress) iface.getAddress();
-
-        if (log().isDebugEnabled())
-            log().debug("poll: address = " + ipv4Addr + ", port = " + port + ", " + tracker);
-
-        PollStatus serviceStatus = PollStatus.unavailable();
-
-        for (tracker.reset(); tracker.shouldRetry() && !serviceStatus.isAvailable(); tracker.nextAttempt()) {
-            Socket socket = null;
-            final String hostAddress = InetAddressUtils.str(ipv4Addr);
-			try {
-                //
-                // create a connected socket
-                //
-                tracker.startAttempt();
-
-                socket = new Socket();
-                socket.connect(new InetSocketAddress(ipv4Addr, port), tracker.getConnectionTimeout());
-                socket.setSoTimeout(tracker.getSoTimeout());
-                log().debug("Pop3Monitor: connected to host: " + ipv4Addr + " on port: " + port);
-
-                // We're connected, so upgrade status to unresponsive
-                serviceStatus = PollStatus.unresponsive();
-                BufferedReader rdr = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-                //
-                // Tokenize the Banner Line, and check the first
-                // line for a valid return.
-                //
-                // Server response should start with: "+OK"
-                //
-                String banner = rdr.readLine();
-                double responseTime = tracker.elapsedTimeInMillis();
-
-                if (banner == null)
-                    continue;
-                StringTokenizer t = new StringTokenizer(banner);
+    protected Conversation createConversation(MonitoredService svc, Map<String, Object> parameters, int port) {
+        return new Pop3Conversation();
+    }
 
-                if (t.nextToken().equals("+OK")) {
-                    //
-                    // POP3 server should recoginize the QUIT command
-                    //
-                    String cmd = "QUIT\r\n";
-                    socket.getOutputStream().write(cmd.getBytes());
+    /** {@inheritDoc} */
+    @Override
+    protected int[] determinePorts(Map<String, Object> parameters) {
+        return new int[] { ParameterMap.getKeyedInteger(parameters, "port", DEFAULT_PORT) };
+    }
 
-                    //
-                    // Parse the response to the QUIT command
-                    //
-                    // Server response should start with: "+OK"
-                    //
-                    t = new StringTokenizer(rdr.readLine());
-                    if (t.nextToken().equals("+OK")) {
-                        serviceStatus = PollStatus.available(responseTime);
-                    }
-                }
+    private static boolean isOk(String response) {
+        StringTokenizer t = new StringTokenizer(response);
+        return t.hasMoreTokens() && t.nextToken().equals("+OK");
+    }
 
-                // If we get this far and the status has not been set
-                // to available, then something didn't verify during
-                // the banner checking or QUIT command process.
-                if (!serviceStatus.isAvailable()) {
-                    serviceStatus = PollStatus.unavailable();
-                }
-            } catch (NoRouteToHostException e) {
-            	
-            	serviceStatus = logDown(Level.WARN, "No route to host exception for address " + hostAddress, e);
-                
-            } catch (InterruptedIOException e) {
-            	
-            	serviceStatus = logDown(Level.DEBUG, "did not connect to host with " + tracker);
-            	
-            } catch (ConnectException e) {
-            	
-            	serviceStatus = logDown(Level.DEBUG, "Connection exception for address " + hostAddress, e);
-            } catch (IOException e) {
-            	
-            	serviceStatus = logDown(Level.DEBUG, "IOException while polling address " + hostAddress, e);
-            } finally {
-                try {
-                    // Close the socket
-                    if (socket != null)
-                        socket.close();
+    private final class Pop3Conversation extends Conversation {
+        private double m_responseTime = -1;
 
-                } catch (IOException e) {
-                    if (log().isDebugEnabled())
-                        log().debug("poll: Error closing socket.", e);
+        @Override
+        public PollStatus lineReceived(String line, double elapsed) {
+            // Server response should start with: "+OK"
+            if (m_responseTime < 0) {
+                m_responseTime = elapsed;
+                if (!isOk(line)) {
+                    return PollStatus.unavailable();
                 }
+                // POP3 server should recoginize the QUIT command
+                sendLine("QUIT");
+                return null;
             }
-        }
 
-        //
-        // return the status of the service
-        //
-        return serviceStatus;
+            // Parse the response to the QUIT command
+            return isOk(line) ? PollStatus.available(m_responseTime) : PollStatus.unavailable();
+        }
     }
 
 }
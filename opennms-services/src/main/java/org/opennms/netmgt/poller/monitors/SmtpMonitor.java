@@ -28,29 +28,15 @@
 
 package org.opennms.netmgt.poller.monitors;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.InterruptedIOException;
 import java.net.ConnectException;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.NoRouteToHostException;
-import java.net.Socket;
 import java.util.Map;
-import java.util.StringTokenizer;
 
 import org.apache.log4j.Level;
-import org.apache.regexp.RE;
-import org.apache.regexp.RESyntaxException;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.ParameterMap;
-import org.opennms.core.utils.TimeoutTracker;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
-import org.opennms.netmgt.poller.NetworkInterface;
-import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
 
 /**
  * <P>
@@ -65,45 +51,22 @@ import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
  */
 
 @Distributable
-public final class SmtpMonitor extends AbstractServiceMonitor {
+public final class SmtpMonitor extends AbstractAsyncTcpMonitor {
 
     /**
      * Default SMTP port.
      */
     private static final int DEFAULT_PORT = 25;
 
-    /**
-     * Default retries.
-     */
-    private static final int DEFAULT_RETRY = 0;
-
-    /**
-     * Default timeout. Specifies how long (in milliseconds) to block waiting
-     * for data from the monitored interface.
-     */
-    private static final int DEFAULT_TIMEOUT = 3000;
-
     /**
      * The name of the local host.
      */
     private static final String LOCALHOST_NAME = InetAddressUtils.getLocalHostName();
 
-    /**
-     * Used to check for a multiline response. A multiline response begins with
-     * the same 3 digit response code, but has a hyphen after the last number
-     * instead of a space.
-     */
-    private static final RE MULTILINE;
-
-    /**
-     * Init MULTILINE
-     */
-    static {
-        try {
-            MULTILINE = new RE("^[0-9]{3}-");
-        } catch (RESyntaxException ex) {
-            throw new java.lang.reflect.UndeclaredThrowableException(ex);
-        }
+    /** {@inheritDoc} */
+    @Override
+    protected int[] determinePorts(Map<String, Object> parameters) {
+        return new int[] { ParameterMap.getKeyedInteger(parameters, "port", DEFAULT_PORT) };
     }
 
     /**
@@ -123,220 +86,75 @@ public final class SmtpMonitor extends AbstractServiceMonitor {
      * command is sent. Provided that the interface's response is valid we set
      * the service status to SERVICE_AVAILABLE and return.
      * </P>
+     *
+     * <P>
+     * Multi-line responses, where every line but the last has a hyphen after
+     * the 3 digit response code, are read up to their last line before the
+     * code is checked.
+     * </P>
      */
     @Override
-    public PollStatus poll(MonitoredService svc, Map<String, Object> parameters) {
-        NetworkInterface<InetAddress> iface = svc.getNetInterface();
-
-        // Get interface address from NetworkInterface
-        //
-        if (iface.getType() != NetworkInterface.TYPE_INET) {
-            throw new NetworkInterfaceNotSupportedException("Unsupported interface type, only TYPE_INET currently supported");
-        }
-        
-        TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
-
-        int port = ParameterMap.getKeyedInteger(parameters, "port", DEFAULT_PORT);
-
-        // Get interface address from NetworkInterface
-        //
-        InetAddress ipAddr = iface.getAddress();
+    protected Conversation createConversation(MonitoredService svc, Map<String, Object> parameters, int port) {
+        return new SmtpConversation();
+    }
 
-        final String hostAddress = InetAddressUtils.str(ipAddr);
-        if (log().isDebugEnabled()) {
-            log().debug("poll: address = " + hostAddress + ", port = " + port + ", " + tracker);
-        }
+    private enum SmtpState { BANNER, HELO, QUIT }
 
-        PollStatus serviceStatus = PollStatus.unavailable();
+    private final class SmtpConversation extends Conversation {
+        private SmtpState m_state = SmtpState.BANNER;
+        private MultilineReply m_reply = new MultilineReply();
+        private double m_responseTime;
 
-        for (tracker.reset(); tracker.shouldRetry() && !serviceStatus.isAvailable(); tracker.nextAttempt()) {
-            Socket socket = null;
+        @Override
+        public PollStatus lineReceived(String line, double elapsed) {
             try {
-                // create a connected socket
-                //
-                tracker.startAttempt();
-
-                socket = new Socket();
-                socket.connect(new InetSocketAddress(ipAddr, port), tracker.getConnectionTimeout());
-                socket.setSoTimeout(tracker.getSoTimeout());
-
-                log().debug("SmtpMonitor: connected to host: " + ipAddr + " on port: " + port);
-
-                // We're connected, so upgrade status to unresponsive
-                serviceStatus = PollStatus.unresponsive();
-
-                BufferedReader rdr = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ASCII"));
-
-                //
-                // Tokenize the Banner Line, and check the first
-                // line for a valid return.
-                //
-                String banner = rdr.readLine();
-
-                if (banner == null) {
-                    continue;
+                if (!m_reply.add(line)) {
+                    return null;
                 }
+            } catch (NumberFormatException e) {
+                return logDown(Level.DEBUG, "NumberFormatException while polling address " + getHostAddress(), e);
+            }
 
-                if (MULTILINE.match(banner)) {
-                    // Ok we have a multi-line response...first three
-                    // chars of the response line are the return code.
-                    // The last line of the response will start with
-                    // return code followed by a space.
-                    String multiLineRC = new String(banner.getBytes("ASCII"), 0, 3, "ASCII");
-
-                    // Create new regExp to look for last line
-                    // of this multi line response
-                    RE endMultiline = null;
-                    try {
-                        endMultiline = new RE(multiLineRC);
-                    } catch (RESyntaxException ex) {
-                        throw new java.lang.reflect.UndeclaredThrowableException(ex);
-                    }
-
-                    // read until we hit the last line of the multi-line
-                    // response
-                    do {
-                        banner = rdr.readLine();
-                    } while (banner != null && !endMultiline.match(banner));
-                    if (banner == null) {
-                        continue;
-                    }
-                }
-
-                if (log().isDebugEnabled())
-                    log().debug("poll: banner = " + banner);
-
-                StringTokenizer t = new StringTokenizer(banner);
-                int rc = Integer.parseInt(t.nextToken());
-                if (rc == 220) {
-                    //
-                    // Send the HELO command
-                    //
-                    String cmd = "HELO " + LOCALHOST_NAME + "\r\n";
-                    socket.getOutputStream().write(cmd.getBytes());
-
-                    //
-                    // get the returned string, tokenize, and
-                    // verify the correct output.
-                    //
-                    String response = rdr.readLine();
-                    double responseTime = tracker.elapsedTimeInMillis();
-
-                    if (response == null) {
-                        continue;
-                    }
-
-                    if (MULTILINE.match(response)) {
-                        // Ok we have a multi-line response...first three
-                        // chars of the response line are the return code.
-                        // The last line of the response will start with
-                        // return code followed by a space.
-                        String multiLineRC = new String(response.getBytes("ASCII"), 0, 3, "ASCII");
-
-                        // Create new regExp to look for last line
-                        // of this multi line response
-                        RE endMultiline = null;
-                        try {
-                            endMultiline = new RE(multiLineRC);
-                        } catch (RESyntaxException ex) {
-                            throw new java.lang.reflect.UndeclaredThrowableException(ex);
-                        }
-
-                        // read until we hit the last line of the multi-line
-                        // response
-                        do {
-                            response = rdr.readLine();
-                        } while (response != null && !endMultiline.match(response));
-                        if (response == null) {
-                            continue;
-                        }
-                    }
-
-                    t = new StringTokenizer(response);
-                    rc = Integer.parseInt(t.nextToken());
-                    if (rc == 250) {
-                        cmd = "QUIT\r\n";
-                        socket.getOutputStream().write(cmd.getBytes("ASCII"));
-
-                        //
-                        // get the returned string, tokenize, and
-                        // verify the correct output.
-                        //
-                        response = rdr.readLine();
-                        if (response == null) {
-                            continue;
-                        }
-                        if (MULTILINE.match(response)) {
-                            // Ok we have a multi-line response...first three
-                            // chars of the response line are the return code.
-                            // The last line of the response will start with
-                            // return code followed by a space.
-                            String multiLineRC = new String(response.getBytes("ASCII"), 0, 3, "ASCII");
-
-                            // Create new regExp to look for last line
-                            // of this multi line response
-                            RE endMultiline = null;
-                            try {
-                                endMultiline = new RE(multiLineRC);
-                            } catch (RESyntaxException ex) {
-                                throw new java.lang.reflect.UndeclaredThrowableException(ex);
-                            }
-
-                            // read until we hit the last line of the multi-line
-                            // response
-                            do {
-                                response = rdr.readLine();
-                            } while (response != null && !endMultiline.match(response));
-                            if (response == null) {
-                                continue;
-                            }
-                        }
-
-                        t = new StringTokenizer(response);
-                        rc = Integer.parseInt(t.nextToken());
+            final int rc = m_reply.getCode();
+            m_reply = new MultilineReply();
 
-                        if (rc == 221) {
-                            serviceStatus = PollStatus.available(responseTime);
-                        }
-                    }
+            switch (m_state) {
+            case BANNER:
+                if (log().isDebugEnabled()) {
+                    log().debug("poll: banner = " + line);
                 }
-
-                // If we get this far and the status has not been set
-                // to available, then something didn't verify during
-                // the banner checking or HELO/QUIT comand process.
-                if (!serviceStatus.isAvailable()) {
-                    serviceStatus = PollStatus.unavailable();
+                if (rc != 220) {
+                    return PollStatus.unavailable();
                 }
-            } catch (NumberFormatException e) {
-            	serviceStatus = logDown(Level.DEBUG, "NumberFormatException while polling address " + hostAddress, e);
-            } catch (NoRouteToHostException e) {
-            	serviceStatus = logDown(Level.DEBUG, "No route to host exception for address " + hostAddress, e);
-                break; // Break out of for(;;)
-            } catch (InterruptedIOException e) {
-            	serviceStatus = logDown(Level.DEBUG, "Did not receive expected response within timeout " + tracker);
-            } catch (ConnectException e) {
-            	serviceStatus = logDown(Level.DEBUG, "Unable to connect to address " + hostAddress, e);
-            } catch (IOException e) {
-            	serviceStatus = logDown(Level.DEBUG, "IOException while polling address " + hostAddress, e);
-            } finally {
-                try {
-                    // Close the socket
-                    if (socket != null) {
-                        socket.close();
-                    }
-                } catch (IOException e) {
-                    e.fillInStackTrace();
-                    if (log().isDebugEnabled()) {
-                        log().debug("poll: Error closing socket.", e);
-                    }
+                // Send the HELO command
+                sendLine("HELO " + LOCALHOST_NAME);
+                m_state = SmtpState.HELO;
+                return null;
+            case HELO:
+                m_responseTime = elapsed;
+                if (rc != 250) {
+                    return PollStatus.unavailable();
                 }
+                sendLine("QUIT");
+                m_state = SmtpState.QUIT;
+                return null;
+            default:
+                return rc == 221 ? PollStatus.available(m_responseTime) : PollStatus.unavailable();
             }
         }
 
-        //
-        // return the status of the service
-        //
-        return serviceStatus;
+        @Override
+        public PollStatus timedOut() {
+            return logDown(Level.DEBUG, "Did not receive expected response within timeout " + getTracker());
+        }
+
+        @Override
+        public PollStatus failed(Throwable cause) {
+            if (cause instanceof ConnectException) {
+                return logDown(Level.DEBUG, "Unable to connect to address " + getHostAddress(), cause);
+            }
+            return super.failed(cause);
+        }
     }
 
 }
@@ -28,26 +28,12 @@
 
 package org.opennms.netmgt.poller.monitors;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.InterruptedIOException;
-import java.net.ConnectException;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.NoRouteToHostException;
-import java.net.Socket;
 import java.util.Map;
 
-import org.apache.log4j.Level;
-import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.ParameterMap;
-import org.opennms.core.utils.TimeoutTracker;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
-import org.opennms.netmgt.poller.NetworkInterface;
-import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
 
 /**
  * This class is designed to be used by the service poller framework to test the
@@ -62,27 +48,29 @@ import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
  */
 
 @Distributable
-final public class TcpMonitor extends AbstractServiceMonitor {
+final public class TcpMonitor extends AbstractAsyncTcpMonitor {
 
     /**
      * Default port.
      */
     private static final int DEFAULT_PORT = -1;
 
-    /**
-     * Default retries.
-     */
-    private static final int DEFAULT_RETRY = 0;
+    public static final String PARAMETER_BANNER = "banner";
+    public static final String PARAMETER_PORT = "port";
 
     /**
-     * Default timeout. Specifies how long (in milliseconds) to block waiting
-     * for data from the monitored interface.
+     * {@inheritDoc}
+     *
+     * The port has no default, it must be configured for each service.
      */
-    private static final int DEFAULT_TIMEOUT = 3000; // 3 second timeout on
-                                                        // read()
-
-    public static final String PARAMETER_BANNER = "banner";
-    public static final String PARAMETER_PORT = "port";
+    @Override
+    protected int[] determinePorts(Map<String, Object> parameters) {
+        int port = ParameterMap.getKeyedInteger(parameters, PARAMETER_PORT, DEFAULT_PORT);
+        if (port == DEFAULT_PORT) {
+            throw new RuntimeException("TcpMonitor: required parameter 'port' is not present in supplied properties.");
+        }
+        return new int[] { port };
+    }
 
     /**
      * {@inheritDoc}
@@ -96,109 +84,38 @@ final public class TcpMonitor extends AbstractServiceMonitor {
      * status to SERVICE_AVAILABLE and return.
      */
     @Override
-    public PollStatus poll(MonitoredService svc, Map<String, Object> parameters) {
-        NetworkInterface<InetAddress> iface = svc.getNetInterface();
-
-        //
-        // Process parameters
-        //
-
-        //
-        // Get interface address from NetworkInterface
-        //
-        if (iface.getType() != NetworkInterface.TYPE_INET)
-            throw new NetworkInterfaceNotSupportedException("Unsupported interface type, only TYPE_INET currently supported");
+    protected Conversation createConversation(MonitoredService svc, Map<String, Object> parameters, int port) {
+        return new BannerConversation(ParameterMap.getKeyedString(parameters, PARAMETER_BANNER, null));
+    }
 
-        TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
+    private final class BannerConversation extends Conversation {
+        private final String m_bannerMatch;
 
-        // Port
-        //
-        int port = ParameterMap.getKeyedInteger(parameters, PARAMETER_PORT, DEFAULT_PORT);
-        if (port == DEFAULT_PORT) {
-            throw new RuntimeException("TcpMonitor: required parameter 'port' is not present in supplied properties.");
+        private BannerConversation(String bannerMatch) {
+            m_bannerMatch = bannerMatch;
         }
 
-        // BannerMatch
-        //
-        String strBannerMatch = ParameterMap.getKeyedString(parameters, PARAMETER_BANNER, null);
-
-        // Get the address instance.
-        //
-        InetAddress ipv4Addr = (InetAddress) iface.getAddress();
-
-        final String hostAddress = InetAddressUtils.str(ipv4Addr);
-		if (log().isDebugEnabled())
-            log().debug("poll: address = " + hostAddress + ", port = " + port + ", " + tracker);
-
-        // Give it a whirl
-        //
-        PollStatus serviceStatus = PollStatus.unavailable();
-
-        for (tracker.reset(); tracker.shouldRetry() && !serviceStatus.isAvailable(); tracker.nextAttempt()) {
-            Socket socket = null;
-            try {
-                
-                tracker.startAttempt();
-
-                socket = new Socket();
-                socket.connect(new InetSocketAddress(ipv4Addr, port), tracker.getConnectionTimeout());
-                socket.setSoTimeout(tracker.getSoTimeout());
-                log().debug("TcpMonitor: connected to host: " + ipv4Addr + " on port: " + port);
-
-                // We're connected, so upgrade status to unresponsive
-                serviceStatus = PollStatus.unresponsive();
-
-                if (strBannerMatch == null || strBannerMatch.length() == 0 || strBannerMatch.equals("*")) {
-                    serviceStatus = PollStatus.available(tracker.elapsedTimeInMillis());
-                    break;
-                }
-
-                BufferedReader rdr = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-                //
-                // Tokenize the Banner Line, and check the first
-                // line for a valid return.
-                //
-                String response = rdr.readLine();
-                double responseTime = tracker.elapsedTimeInMillis();
+        @Override
+        public PollStatus connected(double elapsed) {
+            if (m_bannerMatch == null || m_bannerMatch.length() == 0 || m_bannerMatch.equals("*")) {
+                return PollStatus.available(elapsed);
+            }
+            return null;
+        }
 
-                if (response == null)
-                    continue;
-                if (log().isDebugEnabled()) {
-                    log().debug("poll: banner = " + response);
-                    log().debug("poll: responseTime= " + responseTime + "ms");
-                }
+        @Override
+        public PollStatus lineReceived(String response, double responseTime) {
+            if (log().isDebugEnabled()) {
+                log().debug("poll: banner = " + response);
+                log().debug("poll: responseTime= " + responseTime + "ms");
+            }
 
-                if (response.indexOf(strBannerMatch) > -1) {
-                    serviceStatus = PollStatus.available(responseTime);
-                } else
-                    serviceStatus = PollStatus.unavailable("Banner: '"+response+"' does not contain match string '"+strBannerMatch+"'");
-            } catch (NoRouteToHostException e) {
-            	serviceStatus = logDown(Level.WARN, "No route to host exception for address " + hostAddress, e);
-                break; // Break out of for(;;)
-            } catch (InterruptedIOException e) {
-            	serviceStatus = logDown(Level.DEBUG, "did not connect to host with " + tracker);
-            } catch (ConnectException e) {
-            	serviceStatus = logDown(Level.DEBUG, "Connection exception for address: " + ipv4Addr, e);
-            } catch (IOException e) {
-            	serviceStatus = logDown(Level.DEBUG, "IOException while polling address: " + ipv4Addr, e);
-            } finally {
-                try {
-                    // Close the socket
-                    if (socket != null)
-                        socket.close();
-                } catch (IOException e) {
-                    e.fillInStackTrace();
-                    if (log().isDebugEnabled())
-                        log().debug("poll: Error closing socket.", e);
-                }
+            if (response.indexOf(m_bannerMatch) > -1) {
+                return PollStatus.available(responseTime);
+            } else {
+                return PollStatus.unavailable("Banner: '"+response+"' does not contain match string '"+m_bannerMatch+"'");
             }
         }
-
-        //
-        // return the status of the service
-        //
-        return serviceStatus;
     }
 
 }
@@ -46,7 +46,9 @@ import org.opennms.netmgt.config.PollerConfig;
 import org.opennms.netmgt.config.poller.Package;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.model.RrdRepository;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
 import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollFuture;
 import org.opennms.netmgt.poller.ServiceMonitor;
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdException;
@@ -104,8 +106,35 @@ public class LatencyStoringServiceMonitorAdaptor implements ServiceMonitor {
     /** {@inheritDoc} */
     @Override
     public PollStatus poll(MonitoredService svc, Map<String, Object> parameters) {
-        PollStatus status = m_serviceMonitor.poll(svc, parameters);
+        return handlePollResult(svc, parameters, m_serviceMonitor.poll(svc, parameters));
+    }
+
+    /**
+     * Starts an asynchronous poll if the underlying monitor supports it. The
+     * result must be passed to {@link #handlePollResult(MonitoredService, Map, PollStatus)}
+     * once the future has completed.
+     *
+     * @param svc the service to poll
+     * @param parameters the service parameters
+     * @return the pending poll, or null if the monitor can only poll synchronously
+     */
+    public PollFuture pollAsync(MonitoredService svc, Map<String, Object> parameters) {
+        if (m_serviceMonitor instanceof AsyncServiceMonitor) {
+            return ((AsyncServiceMonitor)m_serviceMonitor).pollAsync(svc, parameters);
+        }
+        return null;
+    }
 
+    /**
+     * Stores the response times of a completed poll and applies the
+     * invert-status parameter.
+     *
+     * @param svc the polled service
+     * @param parameters the service parameters
+     * @param status the status returned by the monitor
+     * @return the status to report for the service
+     */
+    public PollStatus handlePollResult(MonitoredService svc, Map<String, Object> parameters, PollStatus status) {
         if (!status.getProperties().isEmpty()) {
             storeResponseTime(svc, new LinkedHashMap<String, Number>(status.getProperties()), parameters);
         }
@@ -238,7 +267,7 @@ public class LatencyStoringServiceMonitorAdaptor implements ServiceMonitor {
                     value.append(":");
                 }
             }
-            RrdUtils.updateRRD(hostAddress, path, rrdBaseName, value.toString());
+            RrdUtils.updateRRD(hostAddress, path, rrdBaseName, System.currentTimeMillis(), value.toString(), dsList);
 
         } catch (RrdException e) {
             if (log().isEnabledFor(ThreadCategory.Level.ERROR)) {
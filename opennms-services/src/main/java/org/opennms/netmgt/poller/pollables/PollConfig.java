@@ -29,6 +29,7 @@
 package org.opennms.netmgt.poller.pollables;
 
 import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.PollFuture;
 import org.opennms.netmgt.scheduler.Timer;
 
 
@@ -47,6 +48,23 @@ public interface PollConfig extends Timer {
      */
     public PollStatus poll();
 
+    /**
+     * Starts an asynchronous poll of the service.
+     *
+     * @return the pending poll, or null if the service must be polled with
+     *         {@link #poll()}
+     */
+    public PollFuture pollAsync();
+
+    /**
+     * Completes a poll started with {@link #pollAsync()}, the future must be
+     * done.
+     *
+     * @param future the completed poll
+     * @return the status of the service
+     */
+    public PollStatus completeAsyncPoll(PollFuture future);
+
     /**
      * <p>getCurrentTime</p>
      *
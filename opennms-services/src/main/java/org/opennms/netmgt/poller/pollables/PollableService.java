@@ -30,6 +30,7 @@ package org.opennms.netmgt.poller.pollables;
 
 import java.net.InetAddress;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.opennms.core.utils.ThreadCategory;
 import org.opennms.netmgt.EventConstants;
@@ -37,6 +38,8 @@ import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.poller.InetNetworkInterface;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.NetworkInterface;
+import org.opennms.netmgt.poller.PollFuture;
+import org.opennms.netmgt.poller.PollFutureListener;
 import org.opennms.netmgt.scheduler.PostponeNecessary;
 import org.opennms.netmgt.scheduler.ReadyRunnable;
 import org.opennms.netmgt.scheduler.Schedule;
@@ -53,9 +56,20 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
     private final class PollRunner implements Runnable {
     	
     	private volatile PollStatus m_pollStatus;
+    	private final PollStatus m_asyncStatus;
+
+    	PollRunner(PollStatus asyncStatus) {
+    	    m_asyncStatus = asyncStatus;
+    	}
+
             @Override
 		public void run() {
-		    doPoll();
+		    m_asyncPollStatus = m_asyncStatus;
+		    try {
+		        doPoll();
+		    } finally {
+		        m_asyncPollStatus = null;
+		    }
 		    getNode().processStatusChange(new Date());
 		    m_pollStatus = getStatus();
 		}
@@ -64,6 +78,53 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
 		}
 	}
 
+    /**
+     * Hands the result of an asynchronous poll back to the scheduler threads,
+     * where it is processed under the tree lock like a synchronous poll.
+     */
+    private final class AsyncPollCompletion implements ReadyRunnable, PollFutureListener {
+        private final PollFuture m_future;
+        private PollStatus m_status;
+
+        AsyncPollCompletion(PollFuture future) {
+            m_future = future;
+        }
+
+        @Override
+        public void pollComplete(PollFuture future) {
+            getSchedule().scheduleOnce(0, this);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if (isDeleted() || !getSchedule().isScheduled()) {
+                // like a pending scheduled poll, the result of a service that
+                // was removed from the schedule in the meantime is dropped
+                log().debug("Discarding asynchronous poll result of "+PollableService.this+" because it is no longer scheduled");
+                m_asyncPollInFlight.set(false);
+                return;
+            }
+            if (m_status == null) {
+                m_status = m_pollConfig.completeAsyncPoll(m_future);
+            }
+            try {
+                doRun(500, m_status);
+                m_asyncPollInFlight.set(false);
+            } catch (PostponeNecessary e) {
+                // Chose a random number of seconds between 5 and 14 to wait before trying again
+                getSchedule().scheduleOnce(Schedule.random.nextInt(10)*1000+5000, this);
+            }
+        }
+
+        @Override
+        public String toString() { return "AsyncPollCompletion for "+PollableService.this; }
+    }
+
 	private final String m_svcName;
     private final InetNetworkInterface m_netInterface;
 
@@ -71,6 +132,8 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
     private volatile PollStatus m_oldStatus;
     private volatile Schedule m_schedule;
     private volatile long m_statusChangeTime = 0L;
+    private volatile PollStatus m_asyncPollStatus;
+    private final AtomicBoolean m_asyncPollInFlight = new AtomicBoolean(false);
     /**
      * <p>Constructor for PollableService.</p>
      *
@@ -183,7 +246,12 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
      */
     @Override
     public PollStatus poll() {
-        PollStatus newStatus = m_pollConfig.poll();
+        PollStatus newStatus = m_asyncPollStatus;
+        if (newStatus == null) {
+            newStatus = m_pollConfig.poll();
+        } else {
+            m_asyncPollStatus = null;
+        }
         if (!newStatus.isUnknown()) { 
             updateStatus(newStatus);
         }
@@ -377,10 +445,31 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
      */
     /**
      * <p>run</p>
+     *
+     * If the monitor supports it the poll is only started here and the
+     * result is processed once it is available, so the scheduler thread is
+     * not held for the duration of the poll.
      */
     @Override
     public void run() {
-        doRun(500);
+        if (!startAsyncPoll()) {
+            doRun(500);
+        }
+    }
+
+    private boolean startAsyncPoll() {
+        if (!m_asyncPollInFlight.compareAndSet(false, true)) {
+            log().debug("Skipping poll of service "+this+" because the previous poll has not completed");
+            return true;
+        }
+        PollFuture future = m_pollConfig.pollAsync();
+        if (future == null) {
+            m_asyncPollInFlight.set(false);
+            return false;
+        }
+        log().debug("Started asynchronous poll of service "+this);
+        future.addListener(new AsyncPollCompletion(future));
+        return true;
     }
     
     /**
@@ -389,15 +478,15 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
      * @return a {@link org.opennms.netmgt.model.PollStatus} object.
      */
     public PollStatus doRun() {
-    	return doRun(0);
+    	return doRun(0, null);
     }
 
-	private PollStatus doRun(int timeout) {
+	private PollStatus doRun(int timeout, PollStatus asyncStatus) {
 		long startDate = System.currentTimeMillis();
         log().debug("Start Scheduled Poll of service "+this);
         PollStatus status;
         if (getContext().isNodeProcessingEnabled()) {
-            PollRunner r = new PollRunner();
+            PollRunner r = new PollRunner(asyncStatus);
             try {
 				withTreeLock(r, timeout);
             } catch (LockUnavailable e) {
@@ -407,7 +496,12 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
             status = r.getPollStatus();
         }
         else {
-            doPoll();
+            m_asyncPollStatus = asyncStatus;
+            try {
+                doPoll();
+            } finally {
+                m_asyncPollStatus = null;
+            }
             processStatusChange(new Date());
             status = getStatus();
         }
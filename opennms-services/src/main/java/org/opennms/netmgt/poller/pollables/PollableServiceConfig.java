@@ -39,6 +39,7 @@ import org.opennms.netmgt.config.poller.Package;
 import org.opennms.netmgt.config.poller.Parameter;
 import org.opennms.netmgt.config.poller.Service;
 import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.PollFuture;
 import org.opennms.netmgt.poller.ServiceMonitor;
 import org.opennms.netmgt.scheduler.ScheduleInterval;
 import org.opennms.netmgt.scheduler.Timer;
@@ -58,7 +59,7 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
     private Package m_pkg;
     private Timer m_timer;
     private Service m_configService;
-	private ServiceMonitor m_serviceMonitor;
+	private LatencyStoringServiceMonitorAdaptor m_serviceMonitor;
 
     /**
      * <p>Constructor for PollableServiceConfig.</p>
@@ -119,7 +120,44 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
         }
     }
 
-	private synchronized ServiceMonitor getServiceMonitor() {
+    /**
+     * <p>pollAsync</p>
+     *
+     * @return a {@link org.opennms.netmgt.poller.PollFuture} object, or null
+     *         if the monitor for this service does not poll asynchronously.
+     */
+    @Override
+    public PollFuture pollAsync() {
+        try {
+            PollFuture future = getServiceMonitor().pollAsync(m_service, getParameters());
+            if (future != null) {
+                ThreadCategory.getInstance(getClass()).debug("Started asynchronous poll of "+m_service+" using pkg " + getPackageName());
+            }
+            return future;
+        } catch (Throwable e) {
+            ThreadCategory.getInstance(getClass()).warn("Unable to start asynchronous poll of "+m_service+", polling synchronously", e);
+            return null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PollStatus completeAsyncPoll(PollFuture future) {
+        try {
+            PollStatus result = getServiceMonitor().handlePollResult(m_service, getParameters(), future.get());
+            ThreadCategory.getInstance(getClass()).debug("Finish polling "+m_service+" using pkg " + getPackageName() + " result = "+result);
+            return result;
+        } catch (Throwable e) {
+            ThreadCategory.getInstance(getClass()).error("Unexpected exception while polling "+m_service+". Marking service as DOWN", e);
+            return PollStatus.down("Unexpected exception while polling "+m_service+". "+e);
+        }
+    }
+
+    private synchronized String getPackageName() {
+        return m_pkg.getName();
+    }
+
+	private synchronized LatencyStoringServiceMonitorAdaptor getServiceMonitor() {
 		if (m_serviceMonitor == null) {
 			ServiceMonitor monitor = m_pollerConfig.getServiceMonitor(m_service.getSvcName());
 			m_serviceMonitor = new LatencyStoringServiceMonitorAdaptor(monitor, m_pollerConfig, m_pkg);
@@ -149,7 +187,7 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
      */
     @Override
     public synchronized void refreshThresholds() {
-        ((LatencyStoringServiceMonitorAdaptor)getServiceMonitor()).refreshThresholds();
+        getServiceMonitor().refreshThresholds();
     }
 
 
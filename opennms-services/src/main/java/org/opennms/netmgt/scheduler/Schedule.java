@@ -138,6 +138,27 @@ public class Schedule {
         m_schedulable.run();
     }
 
+    /**
+     * Runs a one-off task on the scheduler threads after the given delay
+     * without affecting this schedule. Used to hand the result of an
+     * asynchronous poll back to the scheduler.
+     *
+     * @param delay milliseconds to wait before running the task
+     * @param task the task to run
+     */
+    public void scheduleOnce(long delay, ReadyRunnable task) {
+        m_timer.schedule(delay, task);
+    }
+
+    /**
+     * <p>isScheduled</p>
+     *
+     * @return true if this schedule was started and not unscheduled since
+     */
+    public boolean isScheduled() {
+        return m_scheduled;
+    }
+
     /**
      * <p>adjustSchedule</p>
      */
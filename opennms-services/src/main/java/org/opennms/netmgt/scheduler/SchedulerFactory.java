@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import org.opennms.core.utils.ThreadCategory;
+
+/**
+ * Creates the {@link Scheduler} selected by the <code>scheduler</code>
+ * attribute of a daemon configuration.
+ */
+public abstract class SchedulerFactory {
+    /**
+     * The scheduler type for {@link LegacyScheduler}, the default.
+     */
+    public static final String LEGACY = "legacy";
+
+    /**
+     * The scheduler type for {@link TimingWheelScheduler}.
+     */
+    public static final String TIMING_WHEEL = "timing-wheel";
+
+    /**
+     * Creates a scheduler of the given type. Unknown types fall back to
+     * {@link #LEGACY} with a warning.
+     *
+     * @param type
+     *            The scheduler type, <code>null</code> for the default.
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     * @return a {@link org.opennms.netmgt.scheduler.Scheduler} object.
+     */
+    public static Scheduler createScheduler(final String type, final String parent, final int maxSize) {
+        if (TIMING_WHEEL.equalsIgnoreCase(type)) {
+            log().info("createScheduler: using the timing wheel scheduler for " + parent);
+            return new TimingWheelScheduler(parent, maxSize);
+        }
+        if (type != null && !LEGACY.equalsIgnoreCase(type)) {
+            log().warn("createScheduler: unknown scheduler type '" + type + "' for " + parent + ", using the " + LEGACY + " scheduler");
+        }
+        return new LegacyScheduler(parent, maxSize);
+    }
+
+    private static ThreadCategory log() {
+        return ThreadCategory.getInstance(SchedulerFactory.class);
+    }
+}
@@ -0,0 +1,470 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.fiber.PausableFiber;
+import org.opennms.core.utils.ThreadCategory;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Scheduler} based on a hierarchical timing wheel.
+ *
+ * Scheduling a runnable only appends it to a lock-free queue. The dispatch
+ * thread wakes up once per tick, moves new runnables into the wheel and
+ * hands the runnables of the current tick to the thread pool, so the cost
+ * of scheduling and dispatching does not depend on how many runnables are
+ * scheduled. There are four wheels of 256 slots; with the default tick of
+ * 10ms they cover about 16 months, runnables further in the future are
+ * parked in the outer wheel until they come in range.
+ *
+ * A runnable that is due but not ready is checked again after
+ * {@link #NOT_READY_DELAY} milliseconds. A runnable that throws
+ * {@link PostponeNecessary} is run again after 5 to 14 seconds, the same
+ * delay {@link Schedule} uses.
+ */
+public class TimingWheelScheduler implements Runnable, PausableFiber, Scheduler {
+    /**
+     * The default tick duration in milliseconds.
+     */
+    public static final long DEFAULT_TICK_DURATION = 10;
+
+    /**
+     * The delay in milliseconds before a runnable that is due but not ready
+     * is checked again.
+     */
+    public static final long NOT_READY_DELAY = 100;
+
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int WHEEL_COUNT = 4;
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * WHEEL_COUNT)) - 1;
+
+    /**
+     * A scheduled runnable, linked into a wheel slot.
+     */
+    private static final class Entry {
+        private final ReadyRunnable m_runnable;
+        private long m_deadline;
+        private Entry m_next;
+
+        Entry(final ReadyRunnable runnable, final long deadline) {
+            m_runnable = runnable;
+            m_deadline = deadline;
+        }
+    }
+
+    private final String m_name;
+    private final long m_tickNanos;
+    private final long m_startNanos;
+    private final long m_notReadyTicks;
+
+    /**
+     * The pool of threads that are used to executed the runnable instances
+     * scheduled by the class' instance.
+     */
+    private final ExecutorService m_runner;
+
+    /**
+     * Runnables scheduled since the last tick, moved into the wheel by the
+     * dispatch thread.
+     */
+    private final Queue<Entry> m_pending = new ConcurrentLinkedQueue<Entry>();
+
+    /**
+     * The total number of runnables scheduled and not yet dispatched.
+     */
+    private final AtomicInteger m_scheduled = new AtomicInteger();
+
+    /**
+     * The slots of the wheels, only accessed by the dispatch thread.
+     */
+    private final Entry[][] m_wheels = new Entry[WHEEL_COUNT][WHEEL_SIZE];
+
+    /**
+     * The next tick to process, only accessed by the dispatch thread.
+     */
+    private long m_currentTick = 0;
+
+    /**
+     * The status for this fiber.
+     */
+    private int m_status;
+
+    /**
+     * The worker thread that executes this instance.
+     */
+    private Thread m_worker;
+
+    /**
+     * Constructs a new instance of the scheduler with the default tick
+     * duration.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     */
+    public TimingWheelScheduler(final String parent, final int maxSize) {
+        this(parent, maxSize, DEFAULT_TICK_DURATION);
+    }
+
+    /**
+     * Constructs a new instance of the scheduler.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     * @param tickDuration
+     *            The resolution of the scheduler in milliseconds.
+     */
+    public TimingWheelScheduler(final String parent, final int maxSize, final long tickDuration) {
+        Assert.isTrue(tickDuration > 0, "tickDuration must be positive");
+        m_name = parent + "Scheduler";
+        m_tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        m_notReadyTicks = Math.max(1, NOT_READY_DELAY / tickDuration);
+        m_startNanos = System.nanoTime();
+        m_status = START_PENDING;
+        m_runner = Executors.newFixedThreadPool(
+            maxSize,
+            new LogPreservingThreadFactory(getClass().getSimpleName(), maxSize, false)
+        );
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void schedule(final long interval, final ReadyRunnable runnable) {
+        if (log().isDebugEnabled()) {
+            log().debug("schedule: Adding ready runnable " + runnable + " at interval " + interval);
+        }
+
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, interval));
+        // round up so a runnable never runs early
+        final long deadline = (deadlineNanos - m_startNanos + m_tickNanos - 1) / m_tickNanos;
+
+        m_pending.add(new Entry(runnable, deadline));
+        if (m_scheduled.getAndIncrement() == 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * <p>getCurrentTime</p>
+     *
+     * @return a long.
+     */
+    @Override
+    public long getCurrentTime() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * <p>start</p>
+     */
+    @Override
+    public synchronized void start() {
+        Assert.state(m_worker == null, "The fiber has already run or is running");
+
+        m_worker = new Thread(this, getName());
+        m_worker.start();
+        m_status = STARTING;
+
+        log().info("start: scheduler started");
+    }
+
+    /**
+     * <p>stop</p>
+     */
+    @Override
+    public synchronized void stop() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+
+        m_status = STOP_PENDING;
+        m_worker.interrupt();
+        m_runner.shutdown();
+
+        log().info("stop: scheduler stopped");
+    }
+
+    /**
+     * <p>pause</p>
+     */
+    @Override
+    public synchronized void pause() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+        Assert.state(m_status != STOPPED && m_status != STOP_PENDING, "The fiber is not running or a stop is pending");
+
+        if (m_status == PAUSED) {
+            return;
+        }
+
+        m_status = PAUSE_PENDING;
+        notifyAll();
+    }
+
+    /**
+     * <p>resume</p>
+     */
+    @Override
+    public synchronized void resume() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+        Assert.state(m_status != STOPPED && m_status != STOP_PENDING, "The fiber is not running or a stop is pending");
+
+        if (m_status == RUNNING) {
+            return;
+        }
+
+        m_status = RESUME_PENDING;
+        notifyAll();
+    }
+
+    /**
+     * <p>getStatus</p>
+     *
+     * @return a int.
+     */
+    @Override
+    public synchronized int getStatus() {
+        if (m_worker != null && m_worker.isAlive() == false) {
+            m_status = STOPPED;
+        }
+        return m_status;
+    }
+
+    /**
+     * Returns the name of this fiber.
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    @Override
+    public String getName() {
+        return m_name;
+    }
+
+    /**
+     * Returns total number of runnables currently scheduled.
+     *
+     * @return the number of runnables waiting to be dispatched
+     */
+    public int getScheduled() {
+        return m_scheduled.get();
+    }
+
+    /**
+     * Returns the pool of threads that are used to executed the runnable
+     * instances scheduled by the class' instance.
+     *
+     * @return thread pool
+     */
+    public ExecutorService getRunner() {
+        return m_runner;
+    }
+
+    /**
+     * The main method of the scheduler. This method advances the wheel one
+     * tick at a time and enqueues the runnables that are due into the thread
+     * pool for execution.
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            m_status = RUNNING;
+        }
+
+        log().debug("run: scheduler running");
+
+        try {
+            for (;;) {
+                synchronized (this) {
+                    if (m_status != RUNNING && m_status != PAUSED && m_status != PAUSE_PENDING && m_status != RESUME_PENDING) {
+                        if (log().isDebugEnabled()) {
+                            log().debug("run: status = " + m_status + ", time to exit");
+                        }
+                        break;
+                    }
+
+                    // if paused or pause pending then block
+                    while (m_status == PAUSE_PENDING || m_status == PAUSED) {
+                        if (m_status == PAUSE_PENDING) {
+                            log().debug("run: pausing.");
+                        }
+                        m_status = PAUSED;
+                        wait();
+                    }
+
+                    // if resume pending then change to running
+                    if (m_status == RESUME_PENDING) {
+                        log().debug("run: resuming.");
+                        m_status = RUNNING;
+                    }
+
+                    if (m_scheduled.get() == 0) {
+                        log().debug("run: no ready runnables scheduled, waiting...");
+                        wait();
+                        // nothing was in the wheel while waiting, skip the idle ticks
+                        m_currentTick = Math.max(m_currentTick, currentTick());
+                        continue;
+                    }
+                }
+
+                final long now = currentTick();
+                while (m_currentTick <= now) {
+                    transferPending();
+                    processTick(m_currentTick);
+                    m_currentTick++;
+                }
+
+                final long sleepNanos = m_startNanos + m_currentTick * m_tickNanos - System.nanoTime();
+                if (sleepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                }
+            }
+        } catch (final InterruptedException e) {
+            log().debug("run: interrupted");
+        }
+
+        log().debug("run: scheduler exiting, state = STOPPED");
+        synchronized (this) {
+            m_status = STOPPED;
+        }
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - m_startNanos) / m_tickNanos;
+    }
+
+    private void transferPending() {
+        Entry entry;
+        while ((entry = m_pending.poll()) != null) {
+            place(entry);
+        }
+    }
+
+    /**
+     * Puts the entry in the innermost wheel whose range covers its deadline.
+     */
+    private void place(final Entry entry) {
+        long delta = entry.m_deadline - m_currentTick;
+        if (delta < 0) {
+            // already due, run it with the current tick
+            entry.m_deadline = m_currentTick;
+            delta = 0;
+        }
+        final long position = delta > MAX_DELTA ? m_currentTick + MAX_DELTA : entry.m_deadline;
+        for (int wheel = 0; wheel < WHEEL_COUNT; wheel++) {
+            if (delta < 1L << (WHEEL_BITS * (wheel + 1)) || wheel == WHEEL_COUNT - 1) {
+                final int slot = (int) (position >>> (WHEEL_BITS * wheel)) & WHEEL_MASK;
+                entry.m_next = m_wheels[wheel][slot];
+                m_wheels[wheel][slot] = entry;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves the entries of the outer wheel slot that starts at this tick into
+     * the inner wheels, then dispatches the entries that are due.
+     */
+    private void processTick(final long tick) {
+        for (int wheel = 1; wheel < WHEEL_COUNT && (tick & ((1L << (WHEEL_BITS * wheel)) - 1)) == 0; wheel++) {
+            final int slot = (int) (tick >>> (WHEEL_BITS * wheel)) & WHEEL_MASK;
+            Entry entry = m_wheels[wheel][slot];
+            m_wheels[wheel][slot] = null;
+            while (entry != null) {
+                final Entry next = entry.m_next;
+                place(entry);
+                entry = next;
+            }
+        }
+
+        final int slot = (int) tick & WHEEL_MASK;
+        Entry entry = m_wheels[0][slot];
+        m_wheels[0][slot] = null;
+        while (entry != null) {
+            final Entry next = entry.m_next;
+            if (entry.m_deadline > tick) {
+                place(entry);
+            } else {
+                dispatch(entry);
+            }
+            entry = next;
+        }
+    }
+
+    private void dispatch(final Entry entry) {
+        final ReadyRunnable runnable = entry.m_runnable;
+        if (!runnable.isReady()) {
+            entry.m_deadline = m_currentTick + m_notReadyTicks;
+            place(entry);
+            return;
+        }
+
+        if (log().isDebugEnabled()) {
+            log().debug("run: found ready runnable " + runnable);
+        }
+
+        m_scheduled.decrementAndGet();
+        try {
+            m_runner.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runnable.run();
+                    } catch (final PostponeNecessary e) {
+                        // Chose a random number of seconds between 5 and 14 to wait before trying again
+                        schedule(Schedule.random.nextInt(10) * 1000 + 5000, runnable);
+                    }
+                }
+
+                @Override
+                public String toString() {
+                    return runnable.toString();
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            log().warn("run: unable to run " + runnable + ", the thread pool is shut down");
+        }
+    }
+
+    private ThreadCategory log() {
+        return ThreadCategory.getInstance(getClass());
+    }
+}
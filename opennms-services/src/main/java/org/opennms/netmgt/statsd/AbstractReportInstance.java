@@ -28,8 +28,14 @@
 
 package org.opennms.netmgt.statsd;
 
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.netmgt.dao.support.RrdStatisticAttributeVisitor;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.util.Assert;
 
@@ -45,6 +51,7 @@ public abstract class AbstractReportInstance implements ReportInstance, Initiali
     private ReportDefinition m_reportDefinition;
     private Date m_jobCompletedDate;
     private Date m_jobStartedDate;
+    private int m_parallelism = 1;
 
     /**
      * <p>Constructor for AbstractReportInstance.</p>
@@ -53,6 +60,88 @@ public abstract class AbstractReportInstance implements ReportInstance, Initiali
         super();
     }
 
+    /**
+     * Walks the resources of the report. When the parallelism is greater
+     * than one, the RRD fetches are handed to a pool of that many threads
+     * while the calling thread walks the resource tree; the walking thread
+     * runs fetches itself when the pool falls behind.
+     */
+    @Override
+    public void walk() {
+        setJobStartedDate(new Date());
+
+        ThreadPoolExecutor executor = null;
+        if (m_parallelism > 1) {
+            executor = new ThreadPoolExecutor(
+                m_parallelism,
+                m_parallelism,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(m_parallelism * 16),
+                new LogPreservingThreadFactory(getClass().getSimpleName(), m_parallelism, true),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+            );
+        }
+
+        getRrdVisitor().setExecutor(executor);
+        try {
+            walkResources();
+            getRrdVisitor().await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UndeclaredThrowableException(e);
+        } finally {
+            getRrdVisitor().setExecutor(null);
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        setJobCompletedDate(new Date());
+    }
+
+    /**
+     * Walks the resource tree, handing attributes to {@link #getRrdVisitor()}.
+     */
+    protected abstract void walkResources();
+
+    /**
+     * <p>getRrdVisitor</p>
+     *
+     * @return the visitor that fetches statistics from RRD files
+     */
+    protected abstract RrdStatisticAttributeVisitor getRrdVisitor();
+
+    /**
+     * <p>getParallelism</p>
+     *
+     * @return a int.
+     */
+    @Override
+    public int getParallelism() {
+        return m_parallelism;
+    }
+
+    /**
+     * <p>setParallelism</p>
+     *
+     * @param parallelism a int.
+     */
+    @Override
+    public void setParallelism(int parallelism) {
+        m_parallelism = parallelism;
+    }
+
+    /**
+     * <p>getFetchCount</p>
+     *
+     * @return a long.
+     */
+    @Override
+    public long getFetchCount() {
+        return getRrdVisitor().getFetchCount();
+    }
+
     /**
      * <p>getJobCompletedDate</p>
      *
@@ -28,7 +28,6 @@
 
 package org.opennms.netmgt.statsd;
 
-import java.util.Date;
 import java.util.SortedSet;
 
 import org.opennms.netmgt.dao.NodeDao;
@@ -114,14 +113,16 @@ public class FilteredReportInstance extends AbstractReportInstance implements Re
         m_rrdVisitor.setRrdDao(rrdDao);
     }
     
-    /**
-     * <p>walk</p>
-     */
+    /** {@inheritDoc} */
     @Override
-    public void walk() {
-        setJobStartedDate(new Date());
+    protected void walkResources() {
         m_walker.walk();
-        setJobCompletedDate(new Date());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected RrdStatisticAttributeVisitor getRrdVisitor() {
+        return m_rrdVisitor;
     }
 
     /**
@@ -55,6 +55,7 @@ public class ReportDefinition implements InitializingBean {
     private String m_attributeMatch;
     private String m_resourceAttributeKey;
     private String m_resourceAttributeValueMatch;
+    private Integer m_parallelism = 1;
     
     /**
      * <p>getAttributeMatch</p>
@@ -208,6 +209,23 @@ public class ReportDefinition implements InitializingBean {
     }
     
     
+    /**
+     * <p>getParallelism</p>
+     *
+     * @return the number of RRD fetches the report runs at the same time
+     */
+    public Integer getParallelism() {
+        return m_parallelism;
+    }
+    /**
+     * <p>setParallelism</p>
+     *
+     * @param parallelism the number of RRD fetches the report runs at the same time
+     */
+    public void setParallelism(Integer parallelism) {
+        m_parallelism = parallelism;
+    }
+    
     /**
      * <p>getCronExpression</p>
      *
@@ -287,6 +305,7 @@ public class ReportDefinition implements InitializingBean {
         report.setEndTime(getRelativeTime().getEnd().getTime());
         
         report.setCount(getCount());
+        report.setParallelism(getParallelism());
         report.setConsolidationFunction(getConsolidationFunction());
         report.setResourceTypeMatch(getResourceTypeMatch());
         report.setAttributeMatch(getAttributeMatch());
@@ -322,5 +341,6 @@ public class ReportDefinition implements InitializingBean {
         Assert.state(m_resourceTypeMatch != null, "property resourceTypeMatch must be set to a non-null value");
         Assert.state(m_attributeMatch != null, "property attributeMatch must be set to a non-null value");
         Assert.state(m_reportClass != null, "property reportClass must be set to a non-null value");
+        Assert.state(m_parallelism != null && m_parallelism > 0, "property parallelism must be set to a positive value");
     }
 }
@@ -213,4 +213,25 @@ public interface ReportInstance {
      * @return a {@link java.lang.String} object.
      */
     String getResourceAttributeValueMatch();
+
+    /**
+     * <p>getParallelism</p>
+     *
+     * @return the number of RRD fetches run at the same time
+     */
+    int getParallelism();
+
+    /**
+     * <p>setParallelism</p>
+     *
+     * @param parallelism the number of RRD fetches to run at the same time
+     */
+    void setParallelism(int parallelism);
+
+    /**
+     * <p>getFetchCount</p>
+     *
+     * @return the number of RRD fetches completed so far
+     */
+    long getFetchCount();
 }
@@ -29,7 +29,10 @@
 package org.opennms.netmgt.statsd;
 
 import java.text.ParseException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.opennms.core.utils.ThreadCategory;
 import org.opennms.netmgt.EventConstants;
@@ -72,6 +75,14 @@ public class Statsd implements SpringServiceDaemon {
     private ReportDefinitionBuilder m_reportDefinitionBuilder;
     private volatile EventForwarder m_eventForwarder;
 
+    private final Set<ReportInstance> m_runningReports = new HashSet<ReportInstance>();
+    private final AtomicLong m_reportsStarted = new AtomicLong();
+    private final AtomicLong m_reportsCompleted = new AtomicLong();
+    private final AtomicLong m_reportsFailed = new AtomicLong();
+    private final AtomicLong m_fetchesCompleted = new AtomicLong();
+    private volatile String m_lastReportName;
+    private volatile long m_lastReportRunTime = -1;
+
     /**
      * <p>handleReloadConfigEvent</p>
      *
@@ -216,17 +227,111 @@ public class Statsd implements SpringServiceDaemon {
             throw t;
         }
         
-        getTransactionTemplate().execute(new TransactionCallbackWithoutResult() {
-            @Override
-            public void doInTransactionWithoutResult(TransactionStatus status) {
-                log().debug("Starting report " + report);
-                report.walk();
-                log().debug("Completed report " + report);
-                
-                m_reportPersister.persist(report);
-                log().debug("Report " + report + " persisted");
+        m_reportsStarted.incrementAndGet();
+        synchronized (m_runningReports) {
+            m_runningReports.add(report);
+        }
+        final long start = System.currentTimeMillis();
+        boolean completed = false;
+        try {
+            getTransactionTemplate().execute(new TransactionCallbackWithoutResult() {
+                @Override
+                public void doInTransactionWithoutResult(TransactionStatus status) {
+                    log().debug("Starting report " + report);
+                    report.walk();
+                    log().debug("Completed report " + report + " with " + report.getFetchCount() + " RRD fetches in " + (System.currentTimeMillis() - start) + "ms");
+                    
+                    m_reportPersister.persist(report);
+                    log().debug("Report " + report + " persisted");
+                }
+            });
+            completed = true;
+        } finally {
+            synchronized (m_runningReports) {
+                m_runningReports.remove(report);
+            }
+            m_fetchesCompleted.addAndGet(report.getFetchCount());
+            if (completed) {
+                m_reportsCompleted.incrementAndGet();
+                m_lastReportName = report.getName();
+                m_lastReportRunTime = System.currentTimeMillis() - start;
+            } else {
+                m_reportsFailed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * <p>getReportsStarted</p>
+     *
+     * @return the number of report runs started
+     */
+    public long getReportsStarted() {
+        return m_reportsStarted.get();
+    }
+
+    /**
+     * <p>getReportsCompleted</p>
+     *
+     * @return the number of report runs that completed and were persisted
+     */
+    public long getReportsCompleted() {
+        return m_reportsCompleted.get();
+    }
+
+    /**
+     * <p>getReportsFailed</p>
+     *
+     * @return the number of report runs that failed
+     */
+    public long getReportsFailed() {
+        return m_reportsFailed.get();
+    }
+
+    /**
+     * <p>getReportsRunning</p>
+     *
+     * @return the number of reports currently running
+     */
+    public int getReportsRunning() {
+        synchronized (m_runningReports) {
+            return m_runningReports.size();
+        }
+    }
+
+    /**
+     * <p>getFetchesCompleted</p>
+     *
+     * @return the number of RRD fetches done by all report runs, including
+     * the ones still running
+     */
+    public long getFetchesCompleted() {
+        long fetches = m_fetchesCompleted.get();
+        synchronized (m_runningReports) {
+            for (ReportInstance report : m_runningReports) {
+                fetches += report.getFetchCount();
             }
-        });
+        }
+        return fetches;
+    }
+
+    /**
+     * <p>getLastReportName</p>
+     *
+     * @return the name of the report that completed last, or null
+     */
+    public String getLastReportName() {
+        return m_lastReportName;
+    }
+
+    /**
+     * <p>getLastReportRunTime</p>
+     *
+     * @return how long the report that completed last took in milliseconds,
+     * or -1 if no report has completed
+     */
+    public long getLastReportRunTime() {
+        return m_lastReportRunTime;
     }
 
     
@@ -28,7 +28,6 @@
 
 package org.opennms.netmgt.statsd;
 
-import java.util.Date;
 import java.util.SortedSet;
 
 import org.opennms.netmgt.dao.ResourceDao;
@@ -85,14 +84,16 @@ public class UnfilteredReportInstance extends AbstractReportInstance implements
         m_rrdVisitor.setRrdDao(rrdDao);
     }
 
-    /**
-     * <p>walk</p>
-     */
+    /** {@inheritDoc} */
     @Override
-    public void walk() {
-        setJobStartedDate(new Date());
+    protected void walkResources() {
         m_walker.walk();
-        setJobCompletedDate(new Date());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected RrdStatisticAttributeVisitor getRrdVisitor() {
+        return m_rrdVisitor;
     }
 
     /**
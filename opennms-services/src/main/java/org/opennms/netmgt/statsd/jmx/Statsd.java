@@ -49,4 +49,46 @@ public class Statsd extends AbstractSpringContextJmxServiceDaemon<org.opennms.ne
         return "statisticsDaemonContext";       
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public long getReportsStarted() {
+        return getDaemon().getReportsStarted();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getReportsCompleted() {
+        return getDaemon().getReportsCompleted();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getReportsFailed() {
+        return getDaemon().getReportsFailed();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getReportsRunning() {
+        return getDaemon().getReportsRunning();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getFetchesCompleted() {
+        return getDaemon().getFetchesCompleted();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getLastReportName() {
+        return getDaemon().getLastReportName();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getLastReportRunTime() {
+        return getDaemon().getLastReportRunTime();
+    }
+
 }
@@ -37,5 +37,39 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface StatsdMBean extends BaseOnmsMBean {
-    
+
+    /**
+     * @return the number of report runs started
+     */
+    long getReportsStarted();
+
+    /**
+     * @return the number of report runs that completed and were persisted
+     */
+    long getReportsCompleted();
+
+    /**
+     * @return the number of report runs that failed
+     */
+    long getReportsFailed();
+
+    /**
+     * @return the number of reports currently running
+     */
+    int getReportsRunning();
+
+    /**
+     * @return the number of RRD fetches done by all report runs, including the ones still running
+     */
+    long getFetchesCompleted();
+
+    /**
+     * @return the name of the report that completed last
+     */
+    String getLastReportName();
+
+    /**
+     * @return how long the report that completed last took in milliseconds
+     */
+    long getLastReportRunTime();
 }
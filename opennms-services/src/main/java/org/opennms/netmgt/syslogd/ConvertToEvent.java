@@ -31,29 +31,17 @@ package org.opennms.netmgt.syslogd;
 import static org.opennms.core.utils.InetAddressUtils.addr;
 
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.Method;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.LogUtils;
 import org.opennms.netmgt.config.SyslogdConfigFactory;
-import org.opennms.netmgt.config.syslogd.HideMatch;
 import org.opennms.netmgt.config.syslogd.HideMessage;
-import org.opennms.netmgt.config.syslogd.HostaddrMatch;
-import org.opennms.netmgt.config.syslogd.HostnameMatch;
-import org.opennms.netmgt.config.syslogd.ParameterAssignment;
-import org.opennms.netmgt.config.syslogd.ProcessMatch;
 import org.opennms.netmgt.config.syslogd.UeiList;
-import org.opennms.netmgt.config.syslogd.UeiMatch;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.xml.event.Event;
 
@@ -95,9 +83,11 @@ final class ConvertToEvent {
 
     private Event m_event;
 
-    private static Class<? extends SyslogParser> m_parserClass = null;
-
-    private static Map<String,Pattern> m_patterns = new ConcurrentHashMap<String,Pattern>();
+    /**
+     * The compiled uei-match and hide-match rules, rebuilt when the
+     * configuration changes.
+     */
+    private static volatile SyslogRuleEngine m_ruleEngine = null;
 
     /**
      * Private constructor to prevent the used of <em>new</em> except by the
@@ -114,8 +104,18 @@ final class ConvertToEvent {
     }
 
     public static void invalidate() {
-        m_parserClass = null;
-        m_patterns.clear();
+        m_ruleEngine = null;
+    }
+
+    private static SyslogRuleEngine getRuleEngine(final UeiList ueiList, final HideMessage hideMessage) {
+        final long generation = SyslogdConfigFactory.getGeneration();
+        SyslogRuleEngine engine = m_ruleEngine;
+        if (engine == null || !engine.isCurrent(ueiList, hideMessage, generation)) {
+            LogUtils.debugf(ConvertToEvent.class, "Compiling syslog match rules for configuration generation %d", generation);
+            engine = new SyslogRuleEngine(SyslogdConfigFactory.getInstance().getParser(), ueiList, hideMessage, generation);
+            m_ruleEngine = engine;
+        }
+        return engine;
     }
 
     /**
@@ -152,15 +152,7 @@ final class ConvertToEvent {
                                final int len, final String matchPattern, final int hostGroup, final int messageGroup,
                                final UeiList ueiList, final HideMessage hideMessage, final String discardUei)
             throws UnsupportedEncodingException, MessageDiscardedException {
-        if (m_parserClass == null) {
-            final String parser = SyslogdConfigFactory.getInstance().getParser();
-            try {
-                m_parserClass = Class.forName(parser).asSubclass(SyslogParser.class);
-            } catch (final Exception ex) {
-                LogUtils.debugf(ConvertToEvent.class, ex, "Unable to instantiate Syslog parser class specified in config: %s", parser);
-                m_parserClass = CustomSyslogParser.class;
-            }
-        }
+        final SyslogRuleEngine ruleEngine = getRuleEngine(ueiList, hideMessage);
 
         String deZeroedData = new String(data, 0, len, "US-ASCII");
         if (deZeroedData.endsWith("\0")) {
@@ -171,15 +163,7 @@ final class ConvertToEvent {
 
         LogUtils.debugf(ConvertToEvent.class, "Converting to event: %s", e);
 
-        final SyslogParser parser;
-        try {
-            Method m = m_parserClass.getDeclaredMethod("getParser", String.class);
-            Object[] args = new Object[] { e.m_eventXML };
-            parser = (SyslogParser)m.invoke(ConvertToEvent.class, args);
-        } catch (final Exception ex) {
-            LogUtils.debugf(ConvertToEvent.class, ex, "Unable to get parser for class '%s'", m_parserClass.getName());
-            throw new MessageDiscardedException(ex);
-        }
+        final SyslogParser parser = ruleEngine.getParser(e.m_eventXML);
 
         if (!parser.find()) {
             throw new MessageDiscardedException("message does not match");
@@ -237,69 +221,13 @@ final class ConvertToEvent {
         * node to match against nodeId.
          */
 
-        Pattern msgPat = null;
-        Matcher msgMat = null;
-
         // Time to verify UEI matching.
-
-        final String fullText = message.getFullText();
-        final String matchedText = message.getMatchedMessage();
-
-        final List<UeiMatch> ueiMatch = ueiList == null? null : ueiList.getUeiMatchCollection();
-        if (ueiMatch == null) {
-            LogUtils.warnf(ConvertToEvent.class, "No ueiList configured.");
-        } else {
-            for (final UeiMatch uei : ueiMatch) {
-                final boolean otherStuffMatches = matchFacility(uei.getFacilityCollection(), facilityTxt) &&
-                                                  matchSeverity(uei.getSeverityCollection(), priorityTxt) &&
-                                                  matchProcess(uei.getProcessMatch(), message.getProcessName()) && 
-                                                  matchHostname(uei.getHostnameMatch(), message.getHostName()) &&
-                                                  matchHostAddr(uei.getHostaddrMatch(), message.getHostAddress());
-                
-                if (otherStuffMatches && uei.getMatch().getType().equals("substr")) {
-                    if (matchSubstring(discardUei, bldr, matchedText, uei)) {
-                        break;
-                    }
-                } else if (otherStuffMatches && (uei.getMatch().getType().startsWith("regex"))) {
-                    if (matchRegex(message, uei, bldr, discardUei)) {
-                        break;
-                    }
-                }
-            }
-        }
+        ruleEngine.matchUei(message, facilityTxt, priorityTxt, bldr, discardUei);
 
         // Time to verify if we need to hide the message
-        boolean doHide = false;
-        final List<HideMatch> hideMatch = hideMessage == null? null : hideMessage.getHideMatchCollection();
-        if (hideMatch == null) {
-            LogUtils.warnf(ConvertToEvent.class, "No hideMessage configured.");
-        } else {
-            for (final HideMatch hide : hideMatch) {
-                if (hide.getMatch().getType().equals("substr")) {
-                    if (fullText.contains(hide.getMatch().getExpression())) {
-                        // We should hide the message based on this match
-                    	doHide = true;
-                    }            	
-                } else if (hide.getMatch().getType().equals("regex")) {
-                	try {
-                    	msgPat = Pattern.compile(hide.getMatch().getExpression(), Pattern.MULTILINE);
-                    	msgMat = msgPat.matcher(fullText);            		
-                	} catch (PatternSyntaxException pse) {
-                	    LogUtils.warnf(ConvertToEvent.class, pse, "Failed to compile regex pattern '%s'", hide.getMatch().getExpression());
-                		msgMat = null;
-                	}
-                	if ((msgMat != null) && (msgMat.find())) {
-                        // We should hide the message based on this match
-                		doHide = true;
-                	}
-                }
-                if (doHide) {
-                    LogUtils.debugf(ConvertToEvent.class, "Hiding syslog message from Event - May contain sensitive data");
-                    message.setMessage(HIDDEN_MESSAGE);
-    	            // We want to stop here, no point in checking further hideMatches
-    	            break;
-                }
-            }
+        if (ruleEngine.shouldHide(message.getFullText())) {
+            LogUtils.debugf(ConvertToEvent.class, "Hiding syslog message from Event - May contain sensitive data");
+            message.setMessage(HIDDEN_MESSAGE);
         }
 
         // Using parms provides configurability.
@@ -323,157 +251,6 @@ final class ConvertToEvent {
         return e;
     }
 
-    private static boolean matchFind(final String expression, final String input, final String context) {
-        final Pattern pat = getPattern(expression);
-        if (pat == null) {
-            LogUtils.debugf(ConvertToEvent.class, "Unable to get pattern for expression '%s' in %s context", expression, context);
-            return false;
-        }
-        final Matcher mat = pat.matcher(input);
-        if (mat != null && mat.find()) return true;
-        return false;
-    }
-    
-    private static boolean matchHostAddr(final HostaddrMatch hostaddrMatch, final String hostAddress) {
-        if (hostaddrMatch == null) return true;
-        if (hostAddress == null) return false;
-        
-        final String expression = hostaddrMatch.getExpression();
-        
-        if (matchFind(expression, hostAddress, "hostaddr-match")) {
-            LogUtils.tracef(ConvertToEvent.class, "Successful regex hostaddr-match for input '%s' against expression '%s'", hostAddress, expression);
-            return true;
-        }
-        return false;
-    }
-    
-    private static boolean matchHostname(final HostnameMatch hostnameMatch, final String hostName) {
-        if (hostnameMatch == null) return true;
-        if (hostName == null) return false;
-        
-        final String expression = hostnameMatch.getExpression();
-        
-        if (matchFind(expression, hostName, "hostname-match")) {
-            LogUtils.tracef(ConvertToEvent.class, "Successful regex hostname-match for input '%s' against expression '%s'", hostName, expression);
-            return true;
-        }
-        return false;
-    }
-
-    private static boolean matchProcess(final ProcessMatch processMatch, final String processName) {
-        if (processMatch == null) return true;
-        if (processName == null) return false;
-
-        final String expression = processMatch.getExpression();
-
-        if (matchFind(expression, processName, "process-match")) {
-            LogUtils.tracef("Successful regex process-match for input '%s' against expression '%s'", processName, expression);
-            return true;
-        }
-        return false;
-    }
-
-    private static boolean matchSeverity(List<String> severities, String priorityTxt) {
-        if (severities.size() == 0) return true;
-        for (String severity : severities) {
-            if (severity.toLowerCase().equals(priorityTxt.toLowerCase())) return true;
-        }
-        return false;
-    }
-
-    private static boolean matchFacility(List<String> facilities, String facilityTxt) {
-        if (facilities.size() == 0) return true;
-        for (String facility : facilities) {
-            if (facility.toLowerCase().equals(facilityTxt.toLowerCase())) return true;
-        }
-        return false;
-    }
-
-    private static Pattern getPattern(final String expression) {
-        final Pattern msgPat = m_patterns.get(expression);
-        if (msgPat == null) {
-            try {
-                final Pattern newPat = Pattern.compile(expression, Pattern.MULTILINE);
-                m_patterns.put(expression, newPat);
-                return newPat;
-            } catch(final PatternSyntaxException pse) {
-                LogUtils.warnf(ConvertToEvent.class, pse, "Failed to compile regex pattern '%s'", expression);
-        	}
-        }
-        return msgPat;
-    }
-
-    private static boolean matchSubstring(final String discardUei, final EventBuilder bldr, String message, final UeiMatch uei) throws MessageDiscardedException {
-        boolean doIMatch = false;
-        boolean traceEnabled = LogUtils.isTraceEnabled(ConvertToEvent.class);
-        if (message.contains(uei.getMatch().getExpression())) {
-            if (discardUei.equals(uei.getUei())) {
-                if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Specified UEI '%s' is same as discard-uei, discarding this message.", uei.getUei());
-                throw new MessageDiscardedException();
-            } else {
-                //We can pass a new UEI on this
-        	    if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Changed the UEI of a Syslogd event, based on substring match, to : %s", uei.getUei());
-                bldr.setUei(uei.getUei());
-                // I think we want to stop processing here so the first
-                // ueiMatch wins, right?
-                doIMatch = true;
-            }
-        } else {
-            if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "No substring match for text of a Syslogd event to : %s", uei.getMatch().getExpression());
-        }
-        return doIMatch;
-    }
-
-    private static boolean matchRegex(final SyslogMessage message, final UeiMatch uei, final EventBuilder bldr, final String discardUei) throws MessageDiscardedException {
-        boolean traceEnabled = LogUtils.isTraceEnabled(ConvertToEvent.class);
-        final String expression = uei.getMatch().getExpression();
-        final Pattern msgPat = getPattern(expression);
-        final Matcher msgMat;
-        if (msgPat == null) {
-            LogUtils.debugf(ConvertToEvent.class, "Unable to create pattern for expression '%s'", expression);
-            return false;
-        } else {
-            final String text;
-            if (message.getMatchedMessage() != null) {
-                text = message.getMatchedMessage();
-            } else {
-                text = message.getFullText();
-            }
-            msgMat = msgPat.matcher(text);
-        }
-        if ((msgMat != null) && (msgMat.find())) {
-            if (discardUei.equals(uei.getUei())) {
-                LogUtils.debugf(ConvertToEvent.class, "Specified UEI '%s' is same as discard-uei, discarding this message.", uei.getUei());
-                throw new MessageDiscardedException();
-            }
-
-            // We matched a UEI
-            bldr.setUei(uei.getUei());
-            if (msgMat.groupCount() > 0 && uei.getMatch().isDefaultParameterMapping()) {
-                if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Doing default parameter mappings for this regex match.");
-                for (int groupNum = 1; groupNum <= msgMat.groupCount(); groupNum++) {
-                    if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Added parm 'group%d' with value '%s' to Syslogd event based on regex match group", groupNum, msgMat.group(groupNum));
-                    bldr.addParam("group"+groupNum, msgMat.group(groupNum));
-                }
-            }
-            if (msgMat.groupCount() > 0 && uei.getParameterAssignmentCount() > 0) {
-                if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Doing user-specified parameter assignments for this regex match.");
-                for (ParameterAssignment assignment : uei.getParameterAssignmentCollection()) {
-                    String parmName = assignment.getParameterName();
-                    String parmValue = msgMat.group(assignment.getMatchingGroup());
-                    parmValue = parmValue == null ? "" : parmValue;
-                    bldr.addParam(parmName, parmValue);
-                    if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Added parm '%s' with value '%s' to Syslogd event based on user-specified parameter assignment", parmName, parmValue);
-                }
-            }
-            // I think we want to stop processing here so the first
-            // ueiMatch wins, right?
-            return true;
-        }
-        if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Message '%s' did not regex-match pattern '%s'", message.getMessage(), expression);
-        return false;
-    }
-
     /**
      * Adds the event to the list of events acknowledged in this event XML
      * document.
@@ -41,6 +41,12 @@ public class CustomSyslogParser extends SyslogParser {
     private static final Pattern m_datePattern = Pattern.compile("^((\\d\\d\\d\\d-\\d\\d-\\d\\d)\\s+)");
     private static final Pattern m_oldDatePattern = Pattern.compile("^\\s*(\\S\\S\\S\\s+\\d{1,2}\\s+\\d\\d:\\d\\d:\\d\\d)\\s+");
 
+    /**
+     * The most recently compiled forwarding pattern, reused as long as the
+     * configured forwarding regexp does not change.
+     */
+    private static volatile Pattern m_lastForwardingPattern = null;
+
     private Pattern m_forwardingPattern;
     private int m_matchingGroupHost;
     private int m_matchingGroupMessage;
@@ -53,7 +59,7 @@ public class CustomSyslogParser extends SyslogParser {
         if (forwardingRegexp == null || forwardingRegexp.length() == 0) {
             throw new SyslogParserException("no forwarding regular expression defined");
         }
-        m_forwardingPattern = Pattern.compile(forwardingRegexp, Pattern.MULTILINE);
+        m_forwardingPattern = getForwardingPattern(forwardingRegexp);
         m_matchingGroupHost = config.getMatchingGroupHost();
         m_matchingGroupMessage = config.getMatchingGroupMessage();
     }
@@ -62,6 +68,15 @@ public class CustomSyslogParser extends SyslogParser {
         return new CustomSyslogParser(text);
     }
 
+    private static Pattern getForwardingPattern(final String forwardingRegexp) {
+        Pattern pattern = m_lastForwardingPattern;
+        if (pattern == null || !pattern.pattern().equals(forwardingRegexp)) {
+            pattern = Pattern.compile(forwardingRegexp, Pattern.MULTILINE);
+            m_lastForwardingPattern = pattern;
+        }
+        return pattern;
+    }
+
     @Override
     public SyslogMessage parse() throws SyslogParserException {
         final SyslogMessage syslogMessage = new SyslogMessage();
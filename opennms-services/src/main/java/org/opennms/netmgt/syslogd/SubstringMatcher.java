@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds which of a fixed set of substrings occur in a text with a single
+ * pass over the text, using the Aho-Corasick automaton.
+ *
+ * Substrings are identified by the order in which they were given to the
+ * constructor. An empty substring occurs in every text.
+ */
+final class SubstringMatcher {
+    private static final int[] NO_IDS = new int[0];
+
+    /**
+     * Outgoing transitions of each state, sorted by character.
+     */
+    private final char[][] m_chars;
+    private final int[][] m_targets;
+
+    /**
+     * Failure link of each state: the state for the longest proper suffix of
+     * its path that is also a path in the trie.
+     */
+    private final int[] m_fail;
+
+    /**
+     * The ids of the substrings that end in each state, including those
+     * reached through failure links.
+     */
+    private final int[][] m_output;
+
+    private final int m_count;
+
+    /**
+     * <p>Constructor for SubstringMatcher.</p>
+     *
+     * @param substrings the substrings to look for
+     */
+    SubstringMatcher(final List<String> substrings) {
+        m_count = substrings.size();
+
+        // Build the trie
+        final List<TreeMap<Character,Integer>> trie = new ArrayList<TreeMap<Character,Integer>>();
+        final List<List<Integer>> output = new ArrayList<List<Integer>>();
+        trie.add(new TreeMap<Character,Integer>());
+        output.add(new ArrayList<Integer>());
+
+        for (int id = 0; id < substrings.size(); id++) {
+            final String substring = substrings.get(id);
+            int state = 0;
+            for (int i = 0; i < substring.length(); i++) {
+                final Character c = substring.charAt(i);
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<Character,Integer>());
+                    output.add(new ArrayList<Integer>());
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            output.get(state).add(id);
+        }
+
+        final int states = trie.size();
+        m_chars = new char[states][];
+        m_targets = new int[states][];
+        for (int state = 0; state < states; state++) {
+            final TreeMap<Character,Integer> transitions = trie.get(state);
+            m_chars[state] = new char[transitions.size()];
+            m_targets[state] = new int[transitions.size()];
+            int i = 0;
+            for (final Map.Entry<Character,Integer> transition : transitions.entrySet()) {
+                m_chars[state][i] = transition.getKey();
+                m_targets[state][i] = transition.getValue();
+                i++;
+            }
+        }
+
+        // Breadth-first walk to compute the failure links; a state's
+        // failure link is always shallower than the state itself.
+        m_fail = new int[states];
+        final LinkedList<Integer> queue = new LinkedList<Integer>();
+        for (final int child : m_targets[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.removeFirst();
+            for (int i = 0; i < m_chars[state].length; i++) {
+                final char c = m_chars[state][i];
+                final int child = m_targets[state][i];
+                int fail = m_fail[state];
+                while (fail != 0 && next(fail, c) < 0) {
+                    fail = m_fail[fail];
+                }
+                final int target = next(fail, c);
+                m_fail[child] = target < 0 ? 0 : target;
+                output.get(child).addAll(output.get(m_fail[child]));
+                queue.add(child);
+            }
+        }
+
+        m_output = new int[states][];
+        for (int state = 0; state < states; state++) {
+            final List<Integer> ids = output.get(state);
+            if (ids.isEmpty()) {
+                m_output[state] = NO_IDS;
+            } else {
+                m_output[state] = new int[ids.size()];
+                for (int i = 0; i < ids.size(); i++) {
+                    m_output[state][i] = ids.get(i);
+                }
+                Arrays.sort(m_output[state]);
+            }
+        }
+    }
+
+    private int next(final int state, final char c) {
+        final int i = Arrays.binarySearch(m_chars[state], c);
+        return i < 0 ? -1 : m_targets[state][i];
+    }
+
+    private int step(int state, final char c) {
+        while (true) {
+            final int next = next(state, c);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = m_fail[state];
+        }
+    }
+
+    /**
+     * <p>size</p>
+     *
+     * @return the number of substrings looked for
+     */
+    int size() {
+        return m_count;
+    }
+
+    /**
+     * Finds all the substrings that occur in the text.
+     *
+     * @param text the text to search
+     * @return the ids of the substrings that occur in the text
+     */
+    BitSet findAll(final CharSequence text) {
+        final BitSet found = new BitSet(m_count);
+        if (m_count == 0) {
+            return found;
+        }
+        int state = 0;
+        for (final int id : m_output[0]) {
+            found.set(id);
+        }
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            for (final int id : m_output[state]) {
+                found.set(id);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Tells whether any of the substrings occurs in the text, stopping at the
+     * first one found.
+     *
+     * @param text the text to search
+     * @return true if at least one of the substrings occurs in the text
+     */
+    boolean containsAny(final CharSequence text) {
+        if (m_count == 0) {
+            return false;
+        }
+        if (m_output[0].length > 0) {
+            return true;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            if (m_output[state].length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.utils.ThreadCategory;
+import org.opennms.netmgt.config.syslogd.HideMessage;
+import org.opennms.netmgt.config.syslogd.UeiList;
+
+/**
+ * Receives syslog datagrams from a non-blocking {@link DatagramChannel}
+ * with several threads. Each receiver thread waits on its own selector,
+ * drains up to a batch of datagrams into a reused direct buffer and hands
+ * the batch to a bounded pool of parser threads, which convert the messages
+ * to events and send them. When the parser queue is full the batch is
+ * dropped and counted instead of holding up the receiver threads.
+ */
+class SyslogChannelReceiver {
+    private static final String LOG4J_CATEGORY = "OpenNMS.Syslogd";
+
+    private static final int MAX_DATAGRAM_SIZE = 0xffff;
+
+    private static final long SELECT_TIMEOUT = 500;
+
+    private final DatagramChannel m_channel;
+
+    private final int m_receiverThreads;
+
+    private final int m_batchSize;
+
+    private final ThreadPoolExecutor m_parsers;
+
+    private final List<Thread> m_threads = new ArrayList<Thread>();
+
+    private final List<Selector> m_selectors = new ArrayList<Selector>();
+
+    private volatile boolean m_stop = false;
+
+    private String m_logPrefix = LOG4J_CATEGORY;
+
+    private final String m_matchPattern;
+
+    private final int m_hostGroup;
+
+    private final int m_messageGroup;
+
+    private final String m_discardUei;
+
+    private final UeiList m_UeiList;
+
+    private final HideMessage m_HideMessages;
+
+    private final SyslogStatistics m_statistics;
+
+    /**
+     * construct a new receiver
+     *
+     * @param channel a bound datagram channel
+     * @param receiverThreads the number of threads receiving datagrams
+     * @param batchSize the maximum number of datagrams handed to the parser threads at once
+     * @param parserThreads the number of threads converting messages to events
+     * @param parserQueueSize the maximum number of batches waiting for a parser thread
+     */
+    SyslogChannelReceiver(DatagramChannel channel, int receiverThreads, int batchSize, int parserThreads, int parserQueueSize,
+                          String matchPattern, int hostGroup, int messageGroup,
+                          UeiList ueiList, HideMessage hideMessages, String discardUei, SyslogStatistics statistics) {
+        m_channel = channel;
+        m_receiverThreads = receiverThreads;
+        m_batchSize = batchSize;
+        m_matchPattern = matchPattern;
+        m_hostGroup = hostGroup;
+        m_messageGroup = messageGroup;
+        m_discardUei = discardUei;
+        m_UeiList = ueiList;
+        m_HideMessages = hideMessages;
+        m_statistics = statistics;
+
+        m_parsers = new ThreadPoolExecutor(
+            parserThreads,
+            parserThreads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(parserQueueSize),
+            new LogPreservingThreadFactory(getClass().getSimpleName(), parserThreads, false),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Starts the receiver threads.
+     *
+     * @param name the name used for the receiver threads
+     * @throws java.io.IOException if the channel cannot be set up
+     */
+    synchronized void start(String name) throws IOException {
+        ThreadCategory log = ThreadCategory.getInstance(getClass());
+
+        m_channel.configureBlocking(false);
+
+        try {
+            log.debug("Setting receive buffer size to " + MAX_DATAGRAM_SIZE);
+            m_channel.socket().setReceiveBufferSize(MAX_DATAGRAM_SIZE);
+        } catch (SocketException e) {
+            log.info("Failed to set the receive buffer to " + MAX_DATAGRAM_SIZE, e);
+        }
+
+        for (int i = 1; i <= m_receiverThreads; i++) {
+            final Selector selector = Selector.open();
+            m_channel.register(selector, SelectionKey.OP_READ);
+            m_selectors.add(selector);
+
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    receive(selector);
+                }
+            }, name + "-" + i);
+            m_threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the receiver threads and waits for them to exit. Batches already
+     * handed to the parser threads are still processed.
+     *
+     * @throws java.lang.InterruptedException if interrupted while waiting
+     */
+    synchronized void stop() throws InterruptedException {
+        m_stop = true;
+
+        for (Selector selector : m_selectors) {
+            selector.wakeup();
+        }
+
+        ThreadCategory log = ThreadCategory.getInstance(getClass());
+        for (Thread thread : m_threads) {
+            log.debug("Stopping and joining thread context " + thread.getName());
+            thread.join();
+        }
+        log.debug("Thread contexts stopped and joined");
+
+        for (Selector selector : m_selectors) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.debug("Failed to close selector", e);
+            }
+        }
+
+        m_parsers.shutdown();
+    }
+
+    private void receive(Selector selector) {
+        ThreadCategory.setPrefix(m_logPrefix);
+        ThreadCategory log = ThreadCategory.getInstance(getClass());
+        log.debug("Thread context started");
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+        List<DatagramPacket> batch = new ArrayList<DatagramPacket>(m_batchSize);
+
+        while (!m_stop) {
+            try {
+                if (selector.select(SELECT_TIMEOUT) == 0) {
+                    continue;
+                }
+                selector.selectedKeys().clear();
+
+                // Another receiver thread may already have taken the datagrams
+                InetSocketAddress source;
+                while (batch.size() < m_batchSize && (source = (InetSocketAddress)m_channel.receive(buffer)) != null) {
+                    buffer.flip();
+                    final byte[] data = new byte[buffer.remaining()];
+                    buffer.get(data);
+                    buffer.clear();
+
+                    batch.add(new DatagramPacket(data, data.length, source.getAddress(), source.getPort()));
+                    m_statistics.messageReceived();
+                }
+
+                if (!batch.isEmpty()) {
+                    dispatch(batch);
+                    batch = new ArrayList<DatagramPacket>(m_batchSize);
+                }
+            } catch (ClosedChannelException e) {
+                log.debug("Datagram channel closed");
+                break;
+            } catch (ClosedSelectorException e) {
+                log.debug("Selector closed");
+                break;
+            } catch (IOException e) {
+                log.error("An I/O exception occured on the datagram receipt port, exiting", e);
+                break;
+            }
+        }
+
+        log.debug("Thread context exiting");
+    }
+
+    private void dispatch(final List<DatagramPacket> batch) {
+        try {
+            m_parsers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    process(batch);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            m_statistics.messagesDropped(batch.size());
+            ThreadCategory log = ThreadCategory.getInstance(getClass());
+            if (log.isDebugEnabled()) {
+                log.debug("Parser queue is full, dropping " + batch.size() + " syslog messages");
+            }
+        }
+    }
+
+    private void process(List<DatagramPacket> batch) {
+        ThreadCategory.setPrefix(m_logPrefix);
+        ThreadCategory log = ThreadCategory.getInstance(getClass());
+
+        for (DatagramPacket packet : batch) {
+            try {
+                SyslogProcessor processor = new SyslogConnection(packet, m_matchPattern, m_hostGroup, m_messageGroup, m_UeiList, m_HideMessages, m_discardUei, m_statistics).call();
+                if (processor != null) {
+                    processor.call();
+                }
+            } catch (Throwable t) {
+                log.error("Unexpected error processing syslog message", t);
+            }
+        }
+    }
+
+    /**
+     * <p>setLogPrefix</p>
+     *
+     * @param prefix a {@link java.lang.String} object.
+     */
+    protected void setLogPrefix(String prefix) {
+        m_logPrefix = prefix;
+    }
+}
@@ -61,6 +61,8 @@ public class SyslogConnection implements WaterfallCallable {
 
     private final HideMessage _hideMessages;
 
+    private final SyslogStatistics _statistics;
+
     /**
      * <p>Constructor for SyslogConnection.</p>
      *
@@ -73,6 +75,15 @@ public class SyslogConnection implements WaterfallCallable {
      * @param discardUei a {@link java.lang.String} object.
      */
     public SyslogConnection(final DatagramPacket packet, final String matchPattern, final int hostGroup, final int messageGroup, final UeiList ueiList, final HideMessage hideMessages, final String discardUei) {
+        this(packet, matchPattern, hostGroup, messageGroup, ueiList, hideMessages, discardUei, null);
+    }
+
+    /**
+     * <p>Constructor for SyslogConnection that counts messages which do not
+     * result in an event.</p>
+     */
+    SyslogConnection(final DatagramPacket packet, final String matchPattern, final int hostGroup, final int messageGroup, final UeiList ueiList, final HideMessage hideMessages, final String discardUei, final SyslogStatistics statistics) {
+        _statistics = statistics;
         _packet = copyPacket(packet);
         _matchPattern = matchPattern;
         _hostGroup = hostGroup;
@@ -102,6 +113,9 @@ public class SyslogConnection implements WaterfallCallable {
         } catch (final MessageDiscardedException e) {
             log.debug("Message discarded, returning without enqueueing event.", e);
         }
+        if (_statistics != null) {
+            _statistics.messageParseFailed();
+        }
         return null;
     }
 
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.frame.CorruptedFrameException;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.jboss.netty.handler.codec.frame.TooLongFrameException;
+
+/**
+ * Splits a TCP stream of syslog messages into single messages as described
+ * in RFC 6587. A frame starting with a digit uses octet counting
+ * ("MSG-LEN SP SYSLOG-MSG"), anything else is taken to be terminated by a
+ * newline. Each decoded message is passed on as a <code>byte[]</code>.
+ */
+class SyslogFrameDecoder extends FrameDecoder {
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final byte NUL = 0;
+    private static final byte SP = ' ';
+
+    private final int m_maxFrameLength;
+
+    /**
+     * <p>Constructor for SyslogFrameDecoder.</p>
+     *
+     * @param maxFrameLength the length of the longest message accepted
+     */
+    SyslogFrameDecoder(final int maxFrameLength) {
+        m_maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    protected Object decode(final ChannelHandlerContext ctx, final Channel channel, final ChannelBuffer buffer) throws Exception {
+        skipTrailers(buffer);
+        if (!buffer.readable()) {
+            return null;
+        }
+
+        final byte first = buffer.getByte(buffer.readerIndex());
+        if (first >= '1' && first <= '9') {
+            return decodeOctetCounted(buffer);
+        } else {
+            return decodeNonTransparent(buffer);
+        }
+    }
+
+    @Override
+    protected Object decodeLast(final ChannelHandlerContext ctx, final Channel channel, final ChannelBuffer buffer) throws Exception {
+        final Object frame = decode(ctx, channel, buffer);
+        if (frame != null || !buffer.readable()) {
+            return frame;
+        }
+
+        // A sender may close the connection without terminating its last message
+        final byte first = buffer.getByte(buffer.readerIndex());
+        if (first >= '1' && first <= '9') {
+            return null;
+        }
+        return readFrame(buffer, buffer.readerIndex(), buffer.readableBytes(), buffer.writerIndex());
+    }
+
+    private Object decodeOctetCounted(final ChannelBuffer buffer) throws TooLongFrameException {
+        final int start = buffer.readerIndex();
+        final int end = buffer.writerIndex();
+
+        int length = 0;
+        int index = start;
+        for (; index < end; index++) {
+            final byte b = buffer.getByte(index);
+            if (b == SP) {
+                break;
+            }
+            if (b < '0' || b > '9') {
+                throw new CorruptedFrameException("Invalid character in syslog message length: " + (b & 0xff));
+            }
+            length = length * 10 + (b - '0');
+            if (length > m_maxFrameLength) {
+                throw new TooLongFrameException("Syslog message length exceeds " + m_maxFrameLength);
+            }
+        }
+
+        if (index == end || end - (index + 1) < length) {
+            // The length or the message itself has not been received completely
+            return null;
+        }
+
+        return readFrame(buffer, index + 1, length, index + 1 + length);
+    }
+
+    private Object decodeNonTransparent(final ChannelBuffer buffer) throws TooLongFrameException {
+        final int start = buffer.readerIndex();
+        final int eol = buffer.indexOf(start, buffer.writerIndex(), LF);
+
+        if (eol < 0) {
+            if (buffer.readableBytes() > m_maxFrameLength) {
+                throw new TooLongFrameException("Syslog message is longer than " + m_maxFrameLength + " bytes without a newline");
+            }
+            return null;
+        }
+
+        int length = eol - start;
+        while (length > 0 && isTrailer(buffer.getByte(start + length - 1))) {
+            length--;
+        }
+        return readFrame(buffer, start, length, eol + 1);
+    }
+
+    private static byte[] readFrame(final ChannelBuffer buffer, final int index, final int length, final int next) {
+        final byte[] frame = new byte[length];
+        buffer.getBytes(index, frame);
+        buffer.readerIndex(next);
+        return frame;
+    }
+
+    private static void skipTrailers(final ChannelBuffer buffer) {
+        while (buffer.readable() && isTrailer(buffer.getByte(buffer.readerIndex()))) {
+            buffer.skipBytes(1);
+        }
+    }
+
+    private static boolean isTrailer(final byte b) {
+        return b == LF || b == CR || b == NUL;
+    }
+}
@@ -30,6 +30,11 @@ package org.opennms.netmgt.syslogd;
 
 import java.io.IOException;
 import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.security.GeneralSecurityException;
+
+import javax.net.ssl.SSLContext;
 
 import org.opennms.core.fiber.Fiber;
 import org.opennms.core.utils.InetAddressUtils;
@@ -56,6 +61,26 @@ public final class SyslogHandler implements Fiber {
      */
     private SyslogReceiver m_receiver;
 
+    /**
+     * The NIO receiver, used instead of m_receiver in "nio" receiver mode.
+     */
+    private SyslogChannelReceiver m_channelReceiver;
+
+    /**
+     * The UDP channel for the NIO receiver.
+     */
+    private DatagramChannel m_dgChannel;
+
+    /**
+     * The TCP listener, started when a TCP port is configured.
+     */
+    private SyslogTcpListener m_tcpListener;
+
+    /**
+     * Counters of the messages handled.
+     */
+    private final SyslogStatistics m_statistics = new SyslogStatistics();
+
     /**
      * The Fiber's status.
      */
@@ -99,6 +124,26 @@ public final class SyslogHandler implements Fiber {
 
     private final String m_DiscardUei;
 
+    private final String m_receiverMode;
+
+    private final int m_receiverThreads;
+
+    private final int m_receiverBatchSize;
+
+    private final int m_parserThreads;
+
+    private final int m_parserQueueSize;
+
+    private final int m_tcpPort;
+
+    private final int m_tcpThreads;
+
+    private final int m_tcpMaxPendingBytes;
+
+    private final String m_tlsKeystore;
+
+    private final String m_tlsKeystorePassword;
+
     /**
      * Set the Trapd configuration
      */
@@ -126,6 +171,17 @@ public final class SyslogHandler implements Fiber {
 
         m_HideMessages = m_syslogdConfig.getHideMessages();
 
+        m_receiverMode = m_syslogdConfig.getReceiverMode();
+        m_receiverThreads = m_syslogdConfig.getReceiverThreads();
+        m_receiverBatchSize = m_syslogdConfig.getReceiverBatchSize();
+        m_parserThreads = m_syslogdConfig.getParserThreads();
+        m_parserQueueSize = m_syslogdConfig.getParserQueueSize();
+        m_tcpPort = m_syslogdConfig.getTcpPort();
+        m_tcpThreads = m_syslogdConfig.getTcpThreads();
+        m_tcpMaxPendingBytes = m_syslogdConfig.getTcpMaxPendingBytes();
+        m_tlsKeystore = m_syslogdConfig.getTlsKeystore();
+        m_tlsKeystorePassword = m_syslogdConfig.getTlsKeystorePassword();
+
         m_status = START_PENDING;
 
         m_dgSock = null;
@@ -152,6 +208,16 @@ public final class SyslogHandler implements Fiber {
 
         m_status = STARTING;
 
+        if (m_tcpPort > 0) {
+            startTcpListener();
+        }
+
+        if ("nio".equals(m_receiverMode)) {
+            startChannelReceiver();
+            m_status = RUNNING;
+            return;
+        }
+
         try {
             if (m_dgIp != null && m_dgIp.length() != 0) {
                 m_dgSock = new DatagramSocket(m_dgPort, InetAddressUtils.addr(m_dgIp));
@@ -164,12 +230,15 @@ public final class SyslogHandler implements Fiber {
                     m_MatchingGroupMessage,
                     m_UeiList,
                     m_HideMessages,
-                    m_DiscardUei);
+                    m_DiscardUei,
+                    m_statistics);
 
             if (m_logPrefix != null) {
                 m_receiver.setLogPrefix(m_logPrefix);
             }
         } catch (IOException e) {
+            stopTcpListener();
+            m_status = STOPPED;
             throw new java.lang.reflect.UndeclaredThrowableException(e);
         }
 
@@ -181,6 +250,7 @@ public final class SyslogHandler implements Fiber {
 
         } catch (RuntimeException e) {
             rThread.interrupt();
+            stopTcpListener();
 
             m_status = STOPPED;
             throw e;
@@ -189,6 +259,101 @@ public final class SyslogHandler implements Fiber {
         m_status = RUNNING;
     }
 
+    private void startChannelReceiver() {
+        try {
+            m_dgChannel = DatagramChannel.open();
+            if (m_dgIp != null && m_dgIp.length() != 0) {
+                m_dgChannel.socket().bind(new InetSocketAddress(InetAddressUtils.addr(m_dgIp), m_dgPort));
+            } else {
+                m_dgChannel.socket().bind(new InetSocketAddress(m_dgPort));
+            }
+
+            m_channelReceiver = new SyslogChannelReceiver(m_dgChannel,
+                    m_receiverThreads,
+                    m_receiverBatchSize,
+                    m_parserThreads,
+                    m_parserQueueSize,
+                    m_ForwardingRegexp,
+                    m_MatchingGroupHost,
+                    m_MatchingGroupMessage,
+                    m_UeiList,
+                    m_HideMessages,
+                    m_DiscardUei,
+                    m_statistics);
+
+            if (m_logPrefix != null) {
+                m_channelReceiver.setLogPrefix(m_logPrefix);
+            }
+
+            m_channelReceiver.start("Syslog Event Receiver[" + getIpAddress() + ":" + m_dgPort + "]");
+        } catch (IOException e) {
+            if (m_dgChannel != null) {
+                try {
+                    m_dgChannel.close();
+                } catch (IOException ce) {
+                    ThreadCategory.getInstance(this.getClass()).debug("Failed to close the datagram channel", ce);
+                }
+            }
+            stopTcpListener();
+            m_status = STOPPED;
+            throw new java.lang.reflect.UndeclaredThrowableException(e);
+        }
+    }
+
+    private void startTcpListener() {
+        try {
+            SSLContext sslContext = null;
+            if (m_tlsKeystore != null && m_tlsKeystore.length() != 0) {
+                sslContext = SyslogTcpListener.createSslContext(m_tlsKeystore, m_tlsKeystorePassword);
+            }
+
+            final InetSocketAddress address;
+            if (m_dgIp != null && m_dgIp.length() != 0) {
+                address = new InetSocketAddress(InetAddressUtils.addr(m_dgIp), m_tcpPort);
+            } else {
+                address = new InetSocketAddress(m_tcpPort);
+            }
+
+            m_tcpListener = new SyslogTcpListener(address,
+                    m_tcpThreads,
+                    m_tcpMaxPendingBytes,
+                    sslContext,
+                    m_ForwardingRegexp,
+                    m_MatchingGroupHost,
+                    m_MatchingGroupMessage,
+                    m_UeiList,
+                    m_HideMessages,
+                    m_DiscardUei,
+                    m_statistics);
+
+            if (m_logPrefix != null) {
+                m_tcpListener.setLogPrefix(m_logPrefix);
+            }
+
+            m_tcpListener.start("Syslog TCP Receiver[" + getIpAddress() + ":" + m_tcpPort + "]");
+        } catch (IOException e) {
+            m_tcpListener = null;
+            m_status = STOPPED;
+            throw new java.lang.reflect.UndeclaredThrowableException(e);
+        } catch (GeneralSecurityException e) {
+            m_tcpListener = null;
+            m_status = STOPPED;
+            throw new java.lang.reflect.UndeclaredThrowableException(e);
+        }
+    }
+
+    private void stopTcpListener() {
+        if (m_tcpListener == null) {
+            return;
+        }
+        try {
+            m_tcpListener.stop();
+        } catch (InterruptedException e) {
+            ThreadCategory.getInstance(this.getClass()).warn("The thread was interrupted while stopping the TCP listener", e);
+        }
+        m_tcpListener = null;
+    }
+
     /**
      * <p>stop</p>
      */
@@ -203,8 +368,14 @@ public final class SyslogHandler implements Fiber {
 
         m_status = STOP_PENDING;
 
+        stopTcpListener();
+
         try {
-            m_receiver.stop();
+            if (m_channelReceiver != null) {
+                m_channelReceiver.stop();
+            } else {
+                m_receiver.stop();
+            }
         } catch (InterruptedException e) {
             ThreadCategory log = ThreadCategory.getInstance(this.getClass());
             log.warn(
@@ -212,7 +383,15 @@ public final class SyslogHandler implements Fiber {
                     e);
         }
 
-        m_dgSock.close();
+        if (m_dgChannel != null) {
+            try {
+                m_dgChannel.close();
+            } catch (IOException e) {
+                ThreadCategory.getInstance(this.getClass()).debug("Failed to close the datagram channel", e);
+            }
+        } else {
+            m_dgSock.close();
+        }
 
         m_status = STOPPED;
     }
@@ -298,6 +477,33 @@ public final class SyslogHandler implements Fiber {
         m_logPrefix = prefix;
     }
 
+    /**
+     * <p>getMessagesReceived</p>
+     *
+     * @return the number of syslog messages received from the network
+     */
+    public long getMessagesReceived() {
+        return m_statistics.getMessagesReceived();
+    }
+
+    /**
+     * <p>getMessagesDropped</p>
+     *
+     * @return the number of syslog messages dropped because the parser threads were busy
+     */
+    public long getMessagesDropped() {
+        return m_statistics.getMessagesDropped();
+    }
+
+    /**
+     * <p>getMessagesParseFailed</p>
+     *
+     * @return the number of syslog messages that could not be parsed or were discarded
+     */
+    public long getMessagesParseFailed() {
+        return m_statistics.getMessagesParseFailed();
+    }
+
     public interface EventHandler {
         public boolean processEvent(Event event);
 
@@ -86,4 +86,19 @@ public interface SyslogHandlerMBean extends BaseOnmsMBean {
      * @param prefix a {@link java.lang.String} object.
      */
     void setLogPrefix(String prefix);
+
+    /**
+     * @return the number of syslog messages received from the network
+     */
+    long getMessagesReceived();
+
+    /**
+     * @return the number of syslog messages dropped because the parser threads could not keep up
+     */
+    long getMessagesDropped();
+
+    /**
+     * @return the number of syslog messages that could not be parsed or were discarded
+     */
+    long getMessagesParseFailed();
 }
@@ -95,6 +95,8 @@ class SyslogReceiver implements Runnable {
 
     private final List<ExecutorService> m_executors = new ArrayList<ExecutorService>();
 
+    private final SyslogStatistics m_statistics;
+
     /**
      * construct a new receiver
      *
@@ -104,8 +106,9 @@ class SyslogReceiver implements Runnable {
      * @param messageGroup
      */
     SyslogReceiver(DatagramSocket sock, String matchPattern, int hostGroup, int messageGroup,
-                   UeiList ueiList, HideMessage hideMessages, String discardUei) {
+                   UeiList ueiList, HideMessage hideMessages, String discardUei, SyslogStatistics statistics) {
         m_stop = false;
+        m_statistics = statistics;
         m_dgSock = sock;
         m_matchPattern = matchPattern;
         m_hostGroup = hostGroup;
@@ -210,9 +213,10 @@ class SyslogReceiver implements Runnable {
 
                 DatagramPacket pkt = new DatagramPacket(buffer, length);
                 m_dgSock.receive(pkt);
+                m_statistics.messageReceived();
 
                 //SyslogConnection *Must* copy packet data and InetAddress as DatagramPacket is a mutable type
-                WaterfallExecutor.waterfall(m_executors, new SyslogConnection(pkt, m_matchPattern, m_hostGroup, m_messageGroup, m_UeiList, m_HideMessages, m_discardUei));
+                WaterfallExecutor.waterfall(m_executors, new SyslogConnection(pkt, m_matchPattern, m_hostGroup, m_messageGroup, m_UeiList, m_HideMessages, m_discardUei, m_statistics));
                 ioInterrupted = false; // reset the flag
             } catch (SocketTimeoutException e) {
                 ioInterrupted = true;
@@ -0,0 +1,382 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.opennms.core.utils.LogUtils;
+import org.opennms.netmgt.config.syslogd.HideMatch;
+import org.opennms.netmgt.config.syslogd.HideMessage;
+import org.opennms.netmgt.config.syslogd.ParameterAssignment;
+import org.opennms.netmgt.config.syslogd.UeiList;
+import org.opennms.netmgt.config.syslogd.UeiMatch;
+import org.opennms.netmgt.model.events.EventBuilder;
+
+/**
+ * The syslogd configuration compiled for matching messages: the parser
+ * factory method is looked up once, every regular expression is compiled
+ * once, and all the substring expressions of the uei-match and hide-match
+ * elements are searched for with a single pass over the message.
+ *
+ * Instances are immutable and are rebuilt by {@link ConvertToEvent} when
+ * the configuration is reloaded.
+ */
+final class SyslogRuleEngine {
+    private final Method m_parserMethod;
+
+    private final UeiList m_ueiList;
+
+    private final HideMessage m_hideMessage;
+
+    private final long m_generation;
+
+    /**
+     * The uei-match elements in configuration order; the first one that
+     * matches wins.
+     */
+    private final CompiledUeiMatch[] m_ueiMatches;
+
+    /**
+     * Finds the substr expressions of the uei-match elements; substring id
+     * <em>n</em> belongs to the uei-match with substringId <em>n</em>.
+     */
+    private final SubstringMatcher m_ueiSubstrings;
+
+    private final SubstringMatcher m_hideSubstrings;
+
+    private final Pattern[] m_hidePatterns;
+
+    /**
+     * <p>Constructor for SyslogRuleEngine.</p>
+     *
+     * @param parser the name of the {@link SyslogParser} class to use
+     * @param ueiList the uei-match elements, may be null
+     * @param hideMessage the hide-match elements, may be null
+     * @param generation the configuration generation this was built from
+     */
+    SyslogRuleEngine(final String parser, final UeiList ueiList, final HideMessage hideMessage, final long generation) {
+        m_parserMethod = getParserMethod(parser);
+        m_ueiList = ueiList;
+        m_hideMessage = hideMessage;
+        m_generation = generation;
+
+        final List<CompiledUeiMatch> ueiMatches = new ArrayList<CompiledUeiMatch>();
+        final List<String> ueiSubstrings = new ArrayList<String>();
+        if (ueiList != null) {
+            for (final UeiMatch uei : ueiList.getUeiMatchCollection()) {
+                final String type = uei.getMatch().getType();
+                if (type.equals("substr")) {
+                    ueiMatches.add(new CompiledUeiMatch(uei, ueiSubstrings.size(), null));
+                    ueiSubstrings.add(uei.getMatch().getExpression());
+                } else if (type.startsWith("regex")) {
+                    ueiMatches.add(new CompiledUeiMatch(uei, -1, compile(uei.getMatch().getExpression())));
+                }
+            }
+        }
+        m_ueiMatches = ueiMatches.toArray(new CompiledUeiMatch[ueiMatches.size()]);
+        m_ueiSubstrings = new SubstringMatcher(ueiSubstrings);
+
+        final List<String> hideSubstrings = new ArrayList<String>();
+        final List<Pattern> hidePatterns = new ArrayList<Pattern>();
+        if (hideMessage != null) {
+            for (final HideMatch hide : hideMessage.getHideMatchCollection()) {
+                if (hide.getMatch().getType().equals("substr")) {
+                    hideSubstrings.add(hide.getMatch().getExpression());
+                } else if (hide.getMatch().getType().equals("regex")) {
+                    final Pattern pattern = compile(hide.getMatch().getExpression());
+                    if (pattern != null) {
+                        hidePatterns.add(pattern);
+                    }
+                }
+            }
+        }
+        m_hideSubstrings = new SubstringMatcher(hideSubstrings);
+        m_hidePatterns = hidePatterns.toArray(new Pattern[hidePatterns.size()]);
+    }
+
+    private static Method getParserMethod(final String parser) {
+        Class<? extends SyslogParser> parserClass;
+        try {
+            parserClass = Class.forName(parser).asSubclass(SyslogParser.class);
+        } catch (final Exception ex) {
+            LogUtils.debugf(SyslogRuleEngine.class, ex, "Unable to instantiate Syslog parser class specified in config: %s", parser);
+            parserClass = CustomSyslogParser.class;
+        }
+
+        try {
+            return parserClass.getDeclaredMethod("getParser", String.class);
+        } catch (final NoSuchMethodException ex) {
+            LogUtils.warnf(SyslogRuleEngine.class, ex, "Syslog parser class '%s' has no getParser(String) method, using %s", parserClass.getName(), CustomSyslogParser.class.getName());
+            try {
+                return CustomSyslogParser.class.getDeclaredMethod("getParser", String.class);
+            } catch (final NoSuchMethodException e) {
+                throw new IllegalStateException("CustomSyslogParser has no getParser(String) method", e);
+            }
+        }
+    }
+
+    private static Pattern compile(final String expression) {
+        if (expression == null) {
+            return null;
+        }
+        try {
+            return Pattern.compile(expression, Pattern.MULTILINE);
+        } catch (final PatternSyntaxException pse) {
+            LogUtils.warnf(SyslogRuleEngine.class, pse, "Failed to compile regex pattern '%s'", expression);
+            return null;
+        }
+    }
+
+    /**
+     * Tells whether this was built from the given configuration.
+     *
+     * @param ueiList the uei-match elements in use
+     * @param hideMessage the hide-match elements in use
+     * @param generation the current configuration generation
+     * @return true if the configuration has not changed since this was built
+     */
+    boolean isCurrent(final UeiList ueiList, final HideMessage hideMessage, final long generation) {
+        return m_generation == generation && m_ueiList == ueiList && m_hideMessage == hideMessage;
+    }
+
+    /**
+     * Creates a parser for a message using the configured parser class.
+     *
+     * @param text the syslog message
+     * @return a parser for the message
+     * @throws MessageDiscardedException if the parser could not be created
+     */
+    SyslogParser getParser(final String text) throws MessageDiscardedException {
+        try {
+            return (SyslogParser)m_parserMethod.invoke(null, text);
+        } catch (final InvocationTargetException ex) {
+            LogUtils.debugf(this, ex.getCause(), "Unable to get parser for class '%s'", m_parserMethod.getDeclaringClass().getName());
+            throw new MessageDiscardedException(ex.getCause());
+        } catch (final Exception ex) {
+            LogUtils.debugf(this, ex, "Unable to get parser for class '%s'", m_parserMethod.getDeclaringClass().getName());
+            throw new MessageDiscardedException(ex);
+        }
+    }
+
+    /**
+     * Applies the first uei-match that matches the message to the event.
+     *
+     * @param message the parsed message
+     * @param facilityTxt the facility of the message
+     * @param priorityTxt the severity of the message
+     * @param bldr the event being built
+     * @param discardUei messages matching a uei-match with this UEI are discarded
+     * @return true if a uei-match matched
+     * @throws MessageDiscardedException if the matching uei-match has the discard UEI
+     */
+    boolean matchUei(final SyslogMessage message, final String facilityTxt, final String priorityTxt, final EventBuilder bldr, final String discardUei) throws MessageDiscardedException {
+        if (m_ueiList == null) {
+            LogUtils.warnf(ConvertToEvent.class, "No ueiList configured.");
+            return false;
+        }
+
+        final String matchedText = message.getMatchedMessage();
+        final BitSet substrings = (m_ueiSubstrings.size() == 0 || matchedText == null) ? new BitSet() : m_ueiSubstrings.findAll(matchedText);
+        final String facility = facilityTxt.toLowerCase();
+        final String priority = priorityTxt.toLowerCase();
+        final boolean traceEnabled = LogUtils.isTraceEnabled(ConvertToEvent.class);
+
+        for (final CompiledUeiMatch uei : m_ueiMatches) {
+            if (!uei.otherStuffMatches(message, facility, priority)) {
+                continue;
+            }
+
+            if (uei.m_substringId >= 0) {
+                if (substrings.get(uei.m_substringId)) {
+                    if (discardUei.equals(uei.m_uei)) {
+                        if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Specified UEI '%s' is same as discard-uei, discarding this message.", uei.m_uei);
+                        throw new MessageDiscardedException();
+                    }
+                    //We can pass a new UEI on this
+                    if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Changed the UEI of a Syslogd event, based on substring match, to : %s", uei.m_uei);
+                    bldr.setUei(uei.m_uei);
+                    // the first ueiMatch wins
+                    return true;
+                } else {
+                    if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "No substring match for text of a Syslogd event to : %s", uei.m_expression);
+                }
+            } else if (matchRegex(message, uei, bldr, discardUei, traceEnabled)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchRegex(final SyslogMessage message, final CompiledUeiMatch uei, final EventBuilder bldr, final String discardUei, final boolean traceEnabled) throws MessageDiscardedException {
+        if (uei.m_pattern == null) {
+            LogUtils.debugf(ConvertToEvent.class, "Unable to create pattern for expression '%s'", uei.m_expression);
+            return false;
+        }
+
+        final String text;
+        if (message.getMatchedMessage() != null) {
+            text = message.getMatchedMessage();
+        } else {
+            text = message.getFullText();
+        }
+
+        final Matcher msgMat = uei.m_pattern.matcher(text);
+        if (!msgMat.find()) {
+            if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Message '%s' did not regex-match pattern '%s'", message.getMessage(), uei.m_expression);
+            return false;
+        }
+
+        if (discardUei.equals(uei.m_uei)) {
+            LogUtils.debugf(ConvertToEvent.class, "Specified UEI '%s' is same as discard-uei, discarding this message.", uei.m_uei);
+            throw new MessageDiscardedException();
+        }
+
+        // We matched a UEI
+        bldr.setUei(uei.m_uei);
+        if (msgMat.groupCount() > 0 && uei.m_defaultParameterMapping) {
+            if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Doing default parameter mappings for this regex match.");
+            for (int groupNum = 1; groupNum <= msgMat.groupCount(); groupNum++) {
+                if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Added parm 'group%d' with value '%s' to Syslogd event based on regex match group", groupNum, msgMat.group(groupNum));
+                bldr.addParam("group"+groupNum, msgMat.group(groupNum));
+            }
+        }
+        if (msgMat.groupCount() > 0 && uei.m_parameterAssignments.length > 0) {
+            if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Doing user-specified parameter assignments for this regex match.");
+            for (final ParameterAssignment assignment : uei.m_parameterAssignments) {
+                String parmName = assignment.getParameterName();
+                String parmValue = msgMat.group(assignment.getMatchingGroup());
+                parmValue = parmValue == null ? "" : parmValue;
+                bldr.addParam(parmName, parmValue);
+                if (traceEnabled) LogUtils.tracef(ConvertToEvent.class, "Added parm '%s' with value '%s' to Syslogd event based on user-specified parameter assignment", parmName, parmValue);
+            }
+        }
+        // the first ueiMatch wins
+        return true;
+    }
+
+    /**
+     * Tells whether a message should be hidden because it matches one of the
+     * hide-match elements.
+     *
+     * @param fullText the full text of the message
+     * @return true if the message should be hidden
+     */
+    boolean shouldHide(final String fullText) {
+        if (m_hideMessage == null) {
+            LogUtils.warnf(ConvertToEvent.class, "No hideMessage configured.");
+            return false;
+        }
+        if (m_hideSubstrings.containsAny(fullText)) {
+            return true;
+        }
+        for (final Pattern pattern : m_hidePatterns) {
+            if (pattern.matcher(fullText).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class CompiledUeiMatch {
+        private final String m_uei;
+        private final String m_expression;
+        private final int m_substringId;
+        private final Pattern m_pattern;
+        private final boolean m_defaultParameterMapping;
+        private final ParameterAssignment[] m_parameterAssignments;
+        private final Set<String> m_facilities;
+        private final Set<String> m_severities;
+        private final boolean m_hasProcessMatch;
+        private final Pattern m_processPattern;
+        private final boolean m_hasHostnameMatch;
+        private final Pattern m_hostnamePattern;
+        private final boolean m_hasHostaddrMatch;
+        private final Pattern m_hostaddrPattern;
+
+        CompiledUeiMatch(final UeiMatch uei, final int substringId, final Pattern pattern) {
+            m_uei = uei.getUei();
+            m_expression = uei.getMatch().getExpression();
+            m_substringId = substringId;
+            m_pattern = pattern;
+            m_defaultParameterMapping = uei.getMatch().isDefaultParameterMapping();
+            final List<ParameterAssignment> assignments = uei.getParameterAssignmentCollection();
+            m_parameterAssignments = assignments.toArray(new ParameterAssignment[assignments.size()]);
+            m_facilities = toLowerCase(uei.getFacilityCollection());
+            m_severities = toLowerCase(uei.getSeverityCollection());
+            m_hasProcessMatch = uei.getProcessMatch() != null;
+            m_processPattern = m_hasProcessMatch ? compile(uei.getProcessMatch().getExpression()) : null;
+            m_hasHostnameMatch = uei.getHostnameMatch() != null;
+            m_hostnamePattern = m_hasHostnameMatch ? compile(uei.getHostnameMatch().getExpression()) : null;
+            m_hasHostaddrMatch = uei.getHostaddrMatch() != null;
+            m_hostaddrPattern = m_hasHostaddrMatch ? compile(uei.getHostaddrMatch().getExpression()) : null;
+        }
+
+        private static Set<String> toLowerCase(final List<String> values) {
+            if (values.isEmpty()) {
+                return null;
+            }
+            final Set<String> result = new HashSet<String>();
+            for (final String value : values) {
+                result.add(value.toLowerCase());
+            }
+            return result;
+        }
+
+        boolean otherStuffMatches(final SyslogMessage message, final String facility, final String priority) {
+            return (m_facilities == null || m_facilities.contains(facility)) &&
+                   (m_severities == null || m_severities.contains(priority)) &&
+                   matchFind(m_hasProcessMatch, m_processPattern, message.getProcessName(), "process-match") &&
+                   matchFind(m_hasHostnameMatch, m_hostnamePattern, message.getHostName(), "hostname-match") &&
+                   matchFind(m_hasHostaddrMatch, m_hostaddrPattern, message.getHostAddress(), "hostaddr-match");
+        }
+
+        private static boolean matchFind(final boolean configured, final Pattern pattern, final String input, final String context) {
+            if (!configured) return true;
+            if (input == null) return false;
+            if (pattern == null) {
+                LogUtils.debugf(ConvertToEvent.class, "Unable to get pattern for %s", context);
+                return false;
+            }
+            if (pattern.matcher(input).find()) {
+                LogUtils.tracef(ConvertToEvent.class, "Successful regex %s for input '%s' against expression '%s'", context, input, pattern.pattern());
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the syslog messages handled by a {@link SyslogHandler}.
+ */
+final class SyslogStatistics {
+    private final AtomicLong m_received = new AtomicLong();
+    private final AtomicLong m_dropped = new AtomicLong();
+    private final AtomicLong m_parseFailed = new AtomicLong();
+
+    /**
+     * A message was received from the network.
+     */
+    void messageReceived() {
+        m_received.incrementAndGet();
+    }
+
+    /**
+     * Messages were thrown away because the parser threads could not keep up.
+     *
+     * @param count the number of messages
+     */
+    void messagesDropped(final int count) {
+        m_dropped.addAndGet(count);
+    }
+
+    /**
+     * A message did not result in an event.
+     */
+    void messageParseFailed() {
+        m_parseFailed.incrementAndGet();
+    }
+
+    long getMessagesReceived() {
+        return m_received.get();
+    }
+
+    long getMessagesDropped() {
+        return m_dropped.get();
+    }
+
+    long getMessagesParseFailed() {
+        return m_parseFailed.get();
+    }
+}
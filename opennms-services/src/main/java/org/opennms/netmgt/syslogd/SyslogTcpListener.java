@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import org.apache.commons.io.IOUtils;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelException;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.frame.CorruptedFrameException;
+import org.jboss.netty.handler.codec.frame.TooLongFrameException;
+import org.jboss.netty.handler.execution.ExecutionHandler;
+import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
+import org.jboss.netty.handler.ssl.SslHandler;
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.utils.ThreadCategory;
+import org.opennms.netmgt.config.syslogd.HideMessage;
+import org.opennms.netmgt.config.syslogd.UeiList;
+
+/**
+ * Accepts syslog messages over TCP, optionally protected by TLS. The stream
+ * of each connection is split into messages by a {@link SyslogFrameDecoder}
+ * and the messages are converted to events by a pool of threads, in order
+ * for each connection.
+ *
+ * Instead of dropping messages when the threads fall behind, the listener
+ * stops reading from a connection once more than maxPendingBytes of its
+ * messages are waiting and resumes when they have been processed, so TCP
+ * flow control slows the sender down.
+ */
+class SyslogTcpListener {
+    private static final String LOG4J_CATEGORY = "OpenNMS.Syslogd";
+
+    /**
+     * The longest message accepted, the same as the largest UDP datagram.
+     */
+    static final int MAX_FRAME_LENGTH = 0xffff;
+
+    private static final long SHUTDOWN_TIMEOUT = 30;
+
+    private final SocketAddress m_address;
+
+    private final int m_threads;
+
+    private final int m_maxPendingBytes;
+
+    private final SSLContext m_sslContext;
+
+    private final ChannelGroup m_channels = new DefaultChannelGroup("syslogd-tcp");
+
+    private ServerBootstrap m_bootstrap;
+
+    private OrderedMemoryAwareThreadPoolExecutor m_executor;
+
+    private Channel m_serverChannel;
+
+    private String m_logPrefix = LOG4J_CATEGORY;
+
+    private final String m_matchPattern;
+
+    private final int m_hostGroup;
+
+    private final int m_messageGroup;
+
+    private final String m_discardUei;
+
+    private final UeiList m_UeiList;
+
+    private final HideMessage m_HideMessages;
+
+    private final SyslogStatistics m_statistics;
+
+    /**
+     * construct a new listener
+     *
+     * @param address the address and port to listen on
+     * @param threads the number of threads converting messages to events
+     * @param maxPendingBytes the number of bytes waiting per connection before reading is suspended
+     * @param sslContext the context used for TLS, or null for plain TCP
+     */
+    SyslogTcpListener(SocketAddress address, int threads, int maxPendingBytes, SSLContext sslContext,
+                      String matchPattern, int hostGroup, int messageGroup,
+                      UeiList ueiList, HideMessage hideMessages, String discardUei, SyslogStatistics statistics) {
+        m_address = address;
+        m_threads = threads;
+        m_maxPendingBytes = maxPendingBytes;
+        m_sslContext = sslContext;
+        m_matchPattern = matchPattern;
+        m_hostGroup = hostGroup;
+        m_messageGroup = messageGroup;
+        m_discardUei = discardUei;
+        m_UeiList = ueiList;
+        m_HideMessages = hideMessages;
+        m_statistics = statistics;
+    }
+
+    /**
+     * Creates the TLS context of a listener from a keystore holding the
+     * server key and certificate.
+     *
+     * @param keystore the path of the keystore
+     * @param password the password of the keystore and the key
+     * @return a {@link javax.net.ssl.SSLContext} object.
+     * @throws java.io.IOException if the keystore cannot be read
+     * @throws java.security.GeneralSecurityException if the keystore cannot be used
+     */
+    static SSLContext createSslContext(String keystore, String password) throws IOException, GeneralSecurityException {
+        final char[] passwordChars = password == null ? null : password.toCharArray();
+        final KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
+        InputStream stream = null;
+        try {
+            stream = new FileInputStream(keystore);
+            ks.load(stream, passwordChars);
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+
+        final KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ks, passwordChars);
+
+        final SSLContext context = SSLContext.getInstance("TLS");
+        context.init(kmf.getKeyManagers(), null, null);
+        return context;
+    }
+
+    /**
+     * Binds the listening socket.
+     *
+     * @param name the name used for the listener threads
+     * @throws java.io.IOException if the socket cannot be bound
+     */
+    synchronized void start(String name) throws IOException {
+        m_executor = new OrderedMemoryAwareThreadPoolExecutor(m_threads, m_maxPendingBytes, 0, SHUTDOWN_TIMEOUT, TimeUnit.SECONDS,
+                new LogPreservingThreadFactory(name, m_threads, true));
+        final ExecutionHandler executionHandler = new ExecutionHandler(m_executor);
+        final SyslogMessageHandler messageHandler = new SyslogMessageHandler();
+
+        m_bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(
+                Executors.newCachedThreadPool(new LogPreservingThreadFactory(name + "-Boss", Integer.MAX_VALUE, true)),
+                Executors.newCachedThreadPool(new LogPreservingThreadFactory(name + "-Worker", Integer.MAX_VALUE, true))));
+        m_bootstrap.setOption("reuseAddress", true);
+        m_bootstrap.setOption("child.keepAlive", true);
+        m_bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() throws Exception {
+                final ChannelPipeline pipeline = Channels.pipeline();
+                if (m_sslContext != null) {
+                    final SSLEngine engine = m_sslContext.createSSLEngine();
+                    engine.setUseClientMode(false);
+                    pipeline.addLast("ssl", new SslHandler(engine));
+                }
+                pipeline.addLast("framer", new SyslogFrameDecoder(MAX_FRAME_LENGTH));
+                pipeline.addLast("executor", executionHandler);
+                pipeline.addLast("handler", messageHandler);
+                return pipeline;
+            }
+        });
+
+        try {
+            m_serverChannel = m_bootstrap.bind(m_address);
+        } catch (ChannelException e) {
+            m_bootstrap.releaseExternalResources();
+            m_executor.shutdownNow();
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw e;
+        }
+        m_channels.add(m_serverChannel);
+    }
+
+    /**
+     * Closes the listening socket and all connections. Messages already
+     * read from the connections are still processed.
+     *
+     * @throws java.lang.InterruptedException if interrupted while waiting
+     */
+    synchronized void stop() throws InterruptedException {
+        ThreadCategory log = ThreadCategory.getInstance(getClass());
+
+        m_channels.close().awaitUninterruptibly();
+
+        m_executor.shutdown();
+        if (!m_executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+            log.warn("Syslog messages received over TCP were still being processed after " + SHUTDOWN_TIMEOUT + " seconds");
+        }
+
+        m_bootstrap.releaseExternalResources();
+        log.debug("TCP listener stopped");
+    }
+
+    /**
+     * <p>getLocalAddress</p>
+     *
+     * @return the address the listener is bound to
+     */
+    synchronized InetSocketAddress getLocalAddress() {
+        return (InetSocketAddress)m_serverChannel.getLocalAddress();
+    }
+
+    /**
+     * <p>setLogPrefix</p>
+     *
+     * @param prefix a {@link java.lang.String} object.
+     */
+    protected void setLogPrefix(String prefix) {
+        m_logPrefix = prefix;
+    }
+
+    @ChannelHandler.Sharable
+    private class SyslogMessageHandler extends SimpleChannelUpstreamHandler {
+        @Override
+        public void channelOpen(final ChannelHandlerContext ctx, final ChannelStateEvent e) {
+            m_channels.add(e.getChannel());
+        }
+
+        @Override
+        public void messageReceived(final ChannelHandlerContext ctx, final MessageEvent e) {
+            ThreadCategory.setPrefix(m_logPrefix);
+            m_statistics.messageReceived();
+
+            final byte[] message = (byte[])e.getMessage();
+            final InetSocketAddress source = (InetSocketAddress)e.getRemoteAddress();
+            final DatagramPacket packet = new DatagramPacket(message, message.length, source.getAddress(), source.getPort());
+            try {
+                SyslogProcessor processor = new SyslogConnection(packet, m_matchPattern, m_hostGroup, m_messageGroup, m_UeiList, m_HideMessages, m_discardUei, m_statistics).call();
+                if (processor != null) {
+                    processor.call();
+                }
+            } catch (Throwable t) {
+                ThreadCategory.getInstance(getClass()).error("Unexpected error processing syslog message", t);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(final ChannelHandlerContext ctx, final ExceptionEvent e) {
+            ThreadCategory.setPrefix(m_logPrefix);
+            ThreadCategory log = ThreadCategory.getInstance(getClass());
+            final Throwable cause = e.getCause();
+            if (cause instanceof TooLongFrameException || cause instanceof CorruptedFrameException) {
+                log.warn("Closing syslog connection from " + e.getChannel().getRemoteAddress() + ": " + cause.getMessage());
+            } else if (cause instanceof IOException) {
+                log.debug("I/O error on syslog connection from " + e.getChannel().getRemoteAddress(), cause);
+            } else {
+                log.warn("Unexpected error on syslog connection from " + e.getChannel().getRemoteAddress(), cause);
+            }
+            e.getChannel().close();
+        }
+    }
+}
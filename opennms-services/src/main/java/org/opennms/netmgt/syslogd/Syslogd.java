@@ -174,6 +174,33 @@ import org.opennms.netmgt.dao.EventDao;
         return m_singleton;
     }
 
+    /**
+     * <p>getMessagesReceived</p>
+     *
+     * @return the number of syslog messages received from the network
+     */
+    public long getMessagesReceived() {
+        return m_udpEventReceiver == null ? 0 : m_udpEventReceiver.getMessagesReceived();
+    }
+
+    /**
+     * <p>getMessagesDropped</p>
+     *
+     * @return the number of syslog messages dropped because the parser threads were busy
+     */
+    public long getMessagesDropped() {
+        return m_udpEventReceiver == null ? 0 : m_udpEventReceiver.getMessagesDropped();
+    }
+
+    /**
+     * <p>getMessagesParseFailed</p>
+     *
+     * @return the number of syslog messages that could not be parsed or were discarded
+     */
+    public long getMessagesParseFailed() {
+        return m_udpEventReceiver == null ? 0 : m_udpEventReceiver.getMessagesParseFailed();
+    }
+
     /*
     * @return EventDao
      */
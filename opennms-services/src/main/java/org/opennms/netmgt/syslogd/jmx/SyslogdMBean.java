@@ -37,4 +37,18 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface SyslogdMBean extends BaseOnmsMBean {
+    /**
+     * @return the number of syslog messages received from the network
+     */
+    public long getMessagesReceived();
+
+    /**
+     * @return the number of syslog messages dropped because the parser threads could not keep up
+     */
+    public long getMessagesDropped();
+
+    /**
+     * @return the number of syslog messages that could not be parsed or were discarded
+     */
+    public long getMessagesParseFailed();
 }
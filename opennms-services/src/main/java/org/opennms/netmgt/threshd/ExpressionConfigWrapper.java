@@ -35,6 +35,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.jexl2.JexlContext;
 import org.apache.commons.jexl2.JexlEngine;
@@ -91,28 +93,120 @@ public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
 		}
 	}
 
+	/**
+	 * Context reused by a single thread for every evaluation. It is cleared and
+	 * repopulated on each call so that no per-evaluation maps are allocated.
+	 */
+	private static class EvaluationContext extends HashMap<String,Object> implements JexlContext {
+
+		private static final long serialVersionUID = -2434532218547734178L;
+		private final Map<String,Double> m_datasources = new HashMap<String,Double>();
+
+		public void reset(Map<String, Double> values) {
+			clear();
+			m_datasources.clear();
+			m_datasources.putAll(values);
+			putAll(values);
+			put("datasources", m_datasources); // To workaround NMS-5019
+			put("math", MATH);
+		}
+
+		public void release() {
+			clear();
+			m_datasources.clear();
+		}
+
+		@Override
+		public Object get(String key) {
+			return super.get(key);
+		}
+
+		@Override
+		public boolean has(String key) {
+			return super.containsKey(key);
+		}
+
+		@Override
+		public void set(String key, Object value) {
+			super.put(key, value);
+		}
+	}
+
+	/**
+	 * A threshold expression parsed once, together with the datasources it references.
+	 */
+	private static class CompiledExpression {
+		private final org.apache.commons.jexl2.Expression m_expression;
+		private final Collection<String> m_datasources;
+
+		public CompiledExpression(org.apache.commons.jexl2.Expression expression, Collection<String> datasources) {
+			m_expression = expression;
+			m_datasources = datasources;
+		}
+	}
+
+	/**
+	 * JEXL engines are thread-safe once configured, so a single instance is
+	 * shared by every wrapper.
+	 */
+	private static final JexlEngine ENGINE = new JexlEngine();
+
+	private static final MathBinding MATH = new MathBinding();
+
+	/**
+	 * Compiled expressions keyed by expression text. Every resource that is
+	 * thresholded against the same definition shares one parsed expression.
+	 */
+	private static final ConcurrentMap<String,CompiledExpression> s_compiledExpressions = new ConcurrentHashMap<String,CompiledExpression>();
+
+	private static final ThreadLocal<EvaluationContext> s_context = new ThreadLocal<EvaluationContext>() {
+		@Override
+		protected EvaluationContext initialValue() {
+			return new EvaluationContext();
+		}
+	};
+
 	private final Expression m_expression;
-	private final Collection<String> m_datasources;
+	private final CompiledExpression m_compiled;
+
 	public ExpressionConfigWrapper(Expression expression) throws ThresholdExpressionException {
 		super(expression);
 		m_expression = expression;
+		m_compiled = compile(m_expression.getExpression());
+	}
 
-		// Fetch an instance of the JEXL script engine
-		JexlEngine expressionParser = new JexlEngine();
+	private static CompiledExpression compile(String expression) throws ThresholdExpressionException {
+		CompiledExpression compiled = s_compiledExpressions.get(expression);
+		if (compiled != null) {
+			return compiled;
+		}
 
 		BindingsSniffer sniffer = new BindingsSniffer();
-		sniffer.put("math", new MathBinding());
+		sniffer.put("math", MATH);
 		sniffer.put("datasources", new HashMap<String,Double>()); // To workaround NMS-5019
 
 		// Test parsing of the expression and collect the variable names by using
 		// a Bindings instance that sniffs all of the variable names
+		org.apache.commons.jexl2.Expression parsed;
 		try {
-			expressionParser.createExpression(m_expression.getExpression()).evaluate(sniffer);
+			parsed = ENGINE.createExpression(expression);
+			parsed.evaluate(sniffer);
 		} catch (Throwable e) {
 			throw new ThresholdExpressionException("Could not parse threshold expression:" + e.getMessage(), e);
 		}
 
-		m_datasources = sniffer.getSniffedKeys();
+		compiled = new CompiledExpression(parsed, sniffer.getSniffedKeys());
+		CompiledExpression existing = s_compiledExpressions.putIfAbsent(expression, compiled);
+		return existing == null ? compiled : existing;
+	}
+
+	/**
+	 * Discards every compiled expression. This should be called whenever the
+	 * thresholding configuration is reloaded so that expressions which are no
+	 * longer configured do not stay cached.
+	 */
+	public static void clearCompiledExpressions() {
+		s_compiledExpressions.clear();
 	}
 
 	@Override
@@ -121,7 +215,7 @@ public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
 	}
 	@Override
 	public Collection<String> getRequiredDatasources() {
-		return m_datasources;
+		return m_compiled.m_datasources;
 	}
 
 	/**
@@ -178,18 +272,17 @@ public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
 
 	@Override
 	public double evaluate(Map<String, Double> values) throws ThresholdExpressionException {
-		// Add all of the variable values to the script context
-		BindingsSniffer context = new BindingsSniffer();
-		context.putAll(values);
-		context.set("datasources",  new HashMap<String, Double>(values)); // To workaround NMS-5019
-		context.put("math", new MathBinding());
+		// Add all of the variable values to this thread's script context
+		EvaluationContext context = s_context.get();
+		context.reset(values);
 		double result = Double.NaN;
 		try {
-		    // Fetch an instance of the JEXL script engine to evaluate the script expression
-		    Object resultObject = new JexlEngine().createExpression(m_expression.getExpression()).evaluate(context);
+		    Object resultObject = m_compiled.m_expression.evaluate(context);
 		    result = Double.parseDouble(resultObject.toString());
 		} catch (Throwable e) {
 			throw new ThresholdExpressionException("Error while evaluating expression "+m_expression.getExpression()+": " + e.getMessage(), e);
+		} finally {
+			context.release();
 		}
 		return result;
 	}
@@ -37,6 +37,8 @@ import org.opennms.netmgt.config.PollOutagesConfigFactory;
 import org.opennms.netmgt.config.ThreshdConfigFactory;
 import org.opennms.netmgt.config.ThresholdingConfigFactory;
 import org.opennms.netmgt.daemon.AbstractServiceDaemon;
+import org.opennms.netmgt.rrd.RrdUtils;
+import org.opennms.netmgt.threshd.ExpressionConfigWrapper;
 
 
 /**
@@ -69,6 +71,7 @@ public class Threshd extends AbstractServiceDaemon implements ThreshdMBean {
         try {
             ThreshdConfigFactory.reload();
             ThresholdingConfigFactory.reload();
+            ExpressionConfigWrapper.clearCompiledExpressions();
         } catch (MarshalException ex) {
             log().fatal("start: Failed to load threshd configuration", ex);
             throw new UndeclaredThrowableException(ex);
@@ -131,4 +134,22 @@ public class Threshd extends AbstractServiceDaemon implements ThreshdMBean {
     public int getStatus() {
         return getInstance().getStatus();
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getLastValueCacheHits() {
+        return RrdUtils.getLastValueCache().getHits();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getLastValueCacheMisses() {
+        return RrdUtils.getLastValueCache().getMisses();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getLastValueCacheHitRatio() {
+        return RrdUtils.getLastValueCache().getHitRatio();
+    }
 }
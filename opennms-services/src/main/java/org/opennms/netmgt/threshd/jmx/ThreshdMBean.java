@@ -37,4 +37,18 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface ThreshdMBean extends BaseOnmsMBean {
+    /**
+     * @return the number of threshold values answered from the last-value cache
+     */
+    public long getLastValueCacheHits();
+
+    /**
+     * @return the number of threshold values that had to be read from RRD files
+     */
+    public long getLastValueCacheMisses();
+
+    /**
+     * @return the fraction of threshold values answered from the last-value cache
+     */
+    public double getLastValueCacheHitRatio();
 }
@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.scheme.SchemeSocketFactory;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.utils.EmptyKeyRelaxedTrustProvider;
+import org.opennms.core.utils.EmptyKeyRelaxedTrustSSLContext;
+import org.opennms.core.utils.LogUtils;
+
+/**
+ * Shares pooled HTTP connections between the HTTP collector, monitors and
+ * notification strategies.
+ *
+ * <p>{@link #createClient(HttpParams, boolean)} returns a new, cheap
+ * {@link DefaultHttpClient} for every request so that credentials, cookies
+ * and retry handlers stay private to the caller, but all clients share one
+ * of two thread-safe connection managers: one that verifies server
+ * certificates and one that trusts any certificate and host name. Open
+ * connections are therefore kept alive between collections and polls, and
+ * each manager's SSL context keeps a TLS session cache so reconnects can
+ * resume sessions instead of doing a full handshake. The verifying manager
+ * uses the JVM's default SSL context, so client certificates configured with
+ * <code>javax.net.ssl.keyStore</code> keep working, and its session cache
+ * settings apply to that context.</p>
+ *
+ * <p>Callers must not shut down the connection manager of the returned
+ * client; they must consume or abort every response so the connection goes
+ * back to the pool. The pool is configured with system properties under
+ * <code>org.opennms.netmgt.http.pool</code>:</p>
+ * <ul>
+ * <li><code>maxPerRoute</code>: connections kept open to one host (20)</li>
+ * <li><code>maxTotal</code>: connections kept open in total (200)</li>
+ * <li><code>keepAlive</code>: longest time an idle connection is reused in milliseconds, unless the server asks for less (30000)</li>
+ * <li><code>idleTimeout</code>: idle connections are closed after this many milliseconds (60000)</li>
+ * <li><code>leaseTimeout</code>: how long a request waits for a free connection in milliseconds, when the caller has not set one (30000)</li>
+ * <li><code>sslSessionCacheSize</code>: TLS sessions cached per SSL context (1000)</li>
+ * <li><code>sslSessionTimeout</code>: how long a TLS session may be resumed in seconds (3600)</li>
+ * </ul>
+ */
+public class HttpClientPool implements HttpClientPoolMBean {
+
+    private static final String OBJECT_NAME = "OpenNMS:Name=HttpClientPool";
+
+    private static HttpClientPool s_instance;
+
+    private final CountingConnectionManager m_strictManager;
+    private final CountingConnectionManager m_relaxedManager;
+    private final ConnectionKeepAliveStrategy m_keepAliveStrategy;
+    private final long m_idleTimeout;
+    private final long m_leaseTimeout;
+
+    private final AtomicLong m_connectionsLeased = new AtomicLong();
+    private final AtomicLong m_connectionsReused = new AtomicLong();
+
+    private ScheduledExecutorService m_evictor;
+
+    /**
+     * <p>getInstance</p>
+     *
+     * @return the pool shared by all daemons in this JVM
+     */
+    public static synchronized HttpClientPool getInstance() {
+        if (s_instance == null) {
+            s_instance = new HttpClientPool(
+                Integer.getInteger("org.opennms.netmgt.http.pool.maxPerRoute", 20),
+                Integer.getInteger("org.opennms.netmgt.http.pool.maxTotal", 200),
+                Long.getLong("org.opennms.netmgt.http.pool.keepAlive", 30000L),
+                Long.getLong("org.opennms.netmgt.http.pool.idleTimeout", 60000L),
+                Long.getLong("org.opennms.netmgt.http.pool.leaseTimeout", 30000L),
+                Integer.getInteger("org.opennms.netmgt.http.pool.sslSessionCacheSize", 1000),
+                Integer.getInteger("org.opennms.netmgt.http.pool.sslSessionTimeout", 3600)
+            );
+            s_instance.start();
+            s_instance.registerMBean();
+        }
+        return s_instance;
+    }
+
+    /**
+     * <p>Constructor for HttpClientPool.</p>
+     *
+     * @param maxPerRoute the number of connections kept open to one host
+     * @param maxTotal the number of connections kept open in total
+     * @param keepAlive the longest time an idle connection is reused in milliseconds
+     * @param idleTimeout idle connections are closed after this many milliseconds
+     * @param leaseTimeout how long a request waits for a free connection in milliseconds
+     * @param sslSessionCacheSize the number of TLS sessions cached per SSL context
+     * @param sslSessionTimeout how long a TLS session may be resumed in seconds
+     */
+    public HttpClientPool(final int maxPerRoute, final int maxTotal, final long keepAlive, final long idleTimeout, final long leaseTimeout, final int sslSessionCacheSize, final int sslSessionTimeout) {
+        this(maxPerRoute, maxTotal, keepAlive, idleTimeout, leaseTimeout, sslSessionCacheSize, sslSessionTimeout, PlainSocketFactory.getSocketFactory());
+    }
+
+    /**
+     * Used by the tests to count the plain HTTP sockets that are opened.
+     */
+    HttpClientPool(final int maxPerRoute, final int maxTotal, final long keepAlive, final long idleTimeout, final long leaseTimeout, final int sslSessionCacheSize, final int sslSessionTimeout, final SchemeSocketFactory plainFactory) {
+        m_idleTimeout = idleTimeout;
+        m_leaseTimeout = leaseTimeout;
+
+        SSLSocketFactory strictFactory;
+        SSLSocketFactory relaxedFactory;
+        try {
+            // the default context has the key managers for javax.net.ssl.keyStore
+            final SSLContext strictContext = SSLContext.getDefault();
+            configureSessionCache(strictContext, sslSessionCacheSize, sslSessionTimeout);
+            strictFactory = new SSLSocketFactory(strictContext, SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
+
+            final SSLContext relaxedContext = SSLContext.getInstance(EmptyKeyRelaxedTrustSSLContext.ALGORITHM, new EmptyKeyRelaxedTrustProvider());
+            configureSessionCache(relaxedContext, sslSessionCacheSize, sslSessionTimeout);
+            relaxedFactory = new SSLSocketFactory(relaxedContext, SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+        } catch (final Exception e) {
+            throw new IllegalStateException("Unable to initialize the SSL contexts for the HTTP client pool: " + e.getMessage(), e);
+        }
+
+        m_strictManager = new CountingConnectionManager(createSchemeRegistry(plainFactory, strictFactory));
+        m_relaxedManager = new CountingConnectionManager(createSchemeRegistry(plainFactory, relaxedFactory));
+        for (final ThreadSafeClientConnManager manager : new ThreadSafeClientConnManager[] { m_strictManager, m_relaxedManager }) {
+            manager.setDefaultMaxPerRoute(maxPerRoute);
+            manager.setMaxTotal(maxTotal);
+        }
+
+        m_keepAliveStrategy = new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
+                final long duration = super.getKeepAliveDuration(response, context);
+                return duration < 0 ? keepAlive : Math.min(duration, keepAlive);
+            }
+        };
+    }
+
+    /**
+     * Creates a client that uses the shared connections.
+     *
+     * @param params the client parameters, may be null
+     * @param relaxedSsl if true, any server certificate and host name is accepted for HTTPS
+     * @return a new client; do not shut down its connection manager
+     */
+    public DefaultHttpClient createClient(final HttpParams params, final boolean relaxedSsl) {
+        final ThreadSafeClientConnManager manager = relaxedSsl ? m_relaxedManager : m_strictManager;
+        // without parameters DefaultHttpClient sets up its usual defaults
+        final DefaultHttpClient client = params == null ? new DefaultHttpClient(manager) : new DefaultHttpClient(manager, params);
+        final HttpParams clientParams = client.getParams();
+        if (clientParams.getParameter(ClientPNames.CONN_MANAGER_TIMEOUT) == null) {
+            // never wait forever for a free connection, use the connect timeout if there is one
+            final int connectTimeout = clientParams.getIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, 0);
+            clientParams.setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT, connectTimeout > 0 ? connectTimeout : m_leaseTimeout);
+        }
+        client.setKeepAliveStrategy(m_keepAliveStrategy);
+        return client;
+    }
+
+    /**
+     * Starts the background thread that closes expired and idle connections.
+     * The thread is a daemon, so it does not keep the JVM running after the
+     * daemons that use the pool have stopped.
+     */
+    public synchronized void start() {
+        if (m_evictor != null) {
+            return;
+        }
+        final long interval = Math.max(1000L, Math.min(m_idleTimeout / 2, 30000L));
+        final ThreadFactory threadFactory = new LogPreservingThreadFactory("HttpClientPool", 1, false);
+        m_evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = threadFactory.newThread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        m_evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                closeIdleConnections();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background thread and closes all connections.
+     */
+    public synchronized void stop() {
+        if (m_evictor != null) {
+            m_evictor.shutdownNow();
+            m_evictor = null;
+        }
+        m_strictManager.shutdown();
+        m_relaxedManager.shutdown();
+    }
+
+    /**
+     * Closes connections that the server no longer keeps alive or that have
+     * been idle for longer than the idle timeout.
+     */
+    public void closeIdleConnections() {
+        for (final ThreadSafeClientConnManager manager : new ThreadSafeClientConnManager[] { m_strictManager, m_relaxedManager }) {
+            try {
+                manager.closeExpiredConnections();
+                manager.closeIdleConnections(m_idleTimeout, TimeUnit.MILLISECONDS);
+            } catch (final Throwable t) {
+                LogUtils.warnf(this, t, "Unexpected error while closing idle HTTP connections");
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getConnectionsLeased() {
+        return m_connectionsLeased.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getConnectionsReused() {
+        return m_connectionsReused.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getConnectionsCreated() {
+        return getConnectionsLeased() - getConnectionsReused();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getConnectionReuseRatio() {
+        final long leased = getConnectionsLeased();
+        return leased == 0 ? 0.0 : (double)getConnectionsReused() / leased;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getConnectionsInPool() {
+        return m_strictManager.getConnectionsInPool() + m_relaxedManager.getConnectionsInPool();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getMaxConnectionsPerRoute() {
+        return m_strictManager.getDefaultMaxPerRoute();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getMaxConnectionsTotal() {
+        return m_strictManager.getMaxTotal();
+    }
+
+    private void registerMBean() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (final Exception e) {
+            LogUtils.warnf(this, e, "Unable to register %s", OBJECT_NAME);
+        }
+    }
+
+    private static void configureSessionCache(final SSLContext context, final int size, final int timeout) {
+        final SSLSessionContext sessions = context.getClientSessionContext();
+        if (sessions != null) {
+            sessions.setSessionCacheSize(size);
+            sessions.setSessionTimeout(timeout);
+        }
+    }
+
+    private static SchemeRegistry createSchemeRegistry(final SchemeSocketFactory plainFactory, final SSLSocketFactory sslFactory) {
+        final SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("http", 80, plainFactory));
+        registry.register(new Scheme("https", 443, sslFactory));
+        return registry;
+    }
+
+    /**
+     * Counts how many leased connections were already open, i.e. reused.
+     */
+    private final class CountingConnectionManager extends ThreadSafeClientConnManager {
+        private CountingConnectionManager(final SchemeRegistry registry) {
+            super(registry);
+        }
+
+        @Override
+        public ClientConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+            final ClientConnectionRequest request = super.requestConnection(route, state);
+            return new ClientConnectionRequest() {
+                @Override
+                public ManagedClientConnection getConnection(final long timeout, final TimeUnit unit) throws InterruptedException, ConnectionPoolTimeoutException {
+                    final ManagedClientConnection connection = request.getConnection(timeout, unit);
+                    m_connectionsLeased.incrementAndGet();
+                    if (connection.isOpen()) {
+                        m_connectionsReused.incrementAndGet();
+                    }
+                    return connection;
+                }
+
+                @Override
+                public void abortRequest() {
+                    request.abortRequest();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.utils;
+
+/**
+ * Connection statistics of the shared {@link HttpClientPool}.
+ */
+public interface HttpClientPoolMBean {
+    /**
+     * @return the number of times a connection was handed to a request
+     */
+    long getConnectionsLeased();
+
+    /**
+     * @return the number of requests that were served with an already open connection
+     */
+    long getConnectionsReused();
+
+    /**
+     * @return the number of requests that had to open a new connection
+     */
+    long getConnectionsCreated();
+
+    /**
+     * @return the fraction of requests that were served with an already open connection
+     */
+    double getConnectionReuseRatio();
+
+    /**
+     * @return the number of connections (open sockets) currently held by the pool
+     */
+    int getConnectionsInPool();
+
+    /**
+     * @return the maximum number of connections the pool keeps open to a single host
+     */
+    int getMaxConnectionsPerRoute();
+
+    /**
+     * @return the maximum number of connections the pool keeps open in total
+     */
+    int getMaxConnectionsTotal();
+}
@@ -323,7 +323,9 @@ public class AutomationProcessor implements ReadyRunnable {
             } else {
                 //Convert the sql to a PreparedStatement
                 PreparedStatement actionStatement = createPreparedStatement();
-                actionStatement.executeUpdate();
+                // execute() rather than executeUpdate() so that an action may
+                // also call a stored procedure, e.g. SELECT events_partition_maintain(...)
+                actionStatement.execute();
                 return true;
             }
         }
@@ -339,7 +341,7 @@ public class AutomationProcessor implements ReadyRunnable {
             while (triggerResultSet.next()) {                        
                 //Convert the sql to a PreparedStatement
                 assignStatementParameters(actionStatement, triggerResultSet);
-                actionStatement.executeUpdate();
+                actionStatement.execute();
             }
 
             return true;
@@ -0,0 +1,669 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.protocols.jmx.connectors;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServerConnection;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.core.utils.LogUtils;
+import org.opennms.core.utils.ParameterMap;
+
+/**
+ * Keeps JMX connections open between collections and polls.
+ *
+ * <p>Connections are keyed by connector type, agent address and the
+ * parameters that affect how the connection is made (port, protocol, url
+ * path, credentials, ...) so the JMX collectors and monitors of a daemon
+ * share a single connection per agent. Since collectd, pollerd and threshd
+ * run in the same JVM they all use the same {@link #getInstance() instance}.
+ * A connection is handed out to any number of callers at the same time;
+ * MBeanServerConnection implementations are thread-safe.</p>
+ *
+ * <p>Connections that have not been used for a while are checked with
+ * <code>getMBeanCount()</code> before being handed out again, idle ones are
+ * closed after <code>org.opennms.protocols.jmx.pool.idleTimeout</code>
+ * milliseconds, and after a failed connect no new attempt is made for the
+ * agent until an exponentially growing backoff has passed.</p>
+ *
+ * <p>Connecting, checking and closing happen without holding any lock of the
+ * pool, so an agent that hangs only holds up the callers that want a
+ * connection to that agent.</p>
+ */
+public class JMXConnectionPool {
+
+    /**
+     * Creates the actual connection when the pool has none for an agent.
+     */
+    public abstract static class Connector {
+        private final String m_name;
+
+        protected Connector(final String name) {
+            m_name = name;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        public abstract ConnectionWrapper connect(Map<String, Object> parameters, InetAddress address);
+    }
+
+    public static final Connector JBOSS = new Connector("jboss") {
+        @Override
+        public ConnectionWrapper connect(final Map<String, Object> parameters, final InetAddress address) {
+            return JBossConnectionFactory.getMBeanServerConnection(parameters, address);
+        }
+    };
+
+    public static final Connector JSR160 = new Connector("jsr160") {
+        @Override
+        public ConnectionWrapper connect(final Map<String, Object> parameters, final InetAddress address) {
+            return Jsr160ConnectionFactory.getMBeanServerConnection(parameters, address);
+        }
+    };
+
+    public static final Connector MX4J = new Connector("mx4j") {
+        @Override
+        public ConnectionWrapper connect(final Map<String, Object> parameters, final InetAddress address) {
+            return MX4JConnectionFactory.getMBeanServerConnection(parameters, address);
+        }
+    };
+
+    public static final Connector JMX_SECURE = new Connector("jmx-secure") {
+        @Override
+        public ConnectionWrapper connect(final Map<String, Object> parameters, final InetAddress address) {
+            return JMXSecureConnectionFactory.getMBeanServerConnection(parameters, address);
+        }
+    };
+
+    /**
+     * The service parameters that change how a connection is made. Two
+     * services only share a connection if all of these match.
+     */
+    private static final String[] KEY_PARAMETERS = { "factory", "port", "protocol", "urlPath", "username", "password", "version", "sunCacao", "timeout" };
+
+    private static final long REAPER_INTERVAL = 30000L;
+
+    private static JMXConnectionPool s_instance;
+
+    private final boolean m_enabled;
+    private final long m_idleTimeout;
+    private final long m_validationInterval;
+    private final long m_initialBackoff;
+    private final long m_maxBackoff;
+
+    private final Map<String, PoolEntry> m_entries = new HashMap<String, PoolEntry>();
+
+    private final AtomicLong m_connectionsOpened = new AtomicLong();
+    private final AtomicLong m_connectionsReused = new AtomicLong();
+    private final AtomicLong m_connectFailures = new AtomicLong();
+    private final AtomicLong m_connectionsInvalidated = new AtomicLong();
+    private final AtomicLong m_connectionsEvicted = new AtomicLong();
+    private final AtomicLong m_connectAttempts = new AtomicLong();
+    private final AtomicLong m_totalConnectNanos = new AtomicLong();
+    private final AtomicLong m_maxConnectNanos = new AtomicLong();
+
+    private ScheduledExecutorService m_reaper;
+
+    /**
+     * <p>getInstance</p>
+     *
+     * @return the pool shared by all JMX collectors and monitors in this JVM
+     */
+    public static synchronized JMXConnectionPool getInstance() {
+        if (s_instance == null) {
+            s_instance = new JMXConnectionPool(
+                Boolean.valueOf(System.getProperty("org.opennms.protocols.jmx.pool.enabled", "true")),
+                Long.getLong("org.opennms.protocols.jmx.pool.idleTimeout", 600000L),
+                Long.getLong("org.opennms.protocols.jmx.pool.validationInterval", 60000L),
+                Long.getLong("org.opennms.protocols.jmx.pool.initialBackoff", 1000L),
+                Long.getLong("org.opennms.protocols.jmx.pool.maxBackoff", 60000L)
+            );
+            s_instance.start();
+        }
+        return s_instance;
+    }
+
+    /**
+     * <p>Constructor for JMXConnectionPool.</p>
+     *
+     * @param enabled if false every call to getConnection creates a new connection
+     * @param idleTimeout how long an unused connection is kept open in milliseconds
+     * @param validationInterval how long a connection may go unused before it is checked again in milliseconds
+     * @param initialBackoff how long to wait before reconnecting after the first failed connect in milliseconds
+     * @param maxBackoff the longest wait between connect attempts in milliseconds
+     */
+    public JMXConnectionPool(final boolean enabled, final long idleTimeout, final long validationInterval, final long initialBackoff, final long maxBackoff) {
+        m_enabled = enabled;
+        m_idleTimeout = idleTimeout;
+        m_validationInterval = validationInterval;
+        m_initialBackoff = initialBackoff;
+        m_maxBackoff = Math.max(initialBackoff, maxBackoff);
+    }
+
+    /**
+     * Starts the background thread that closes idle connections. The thread
+     * is a daemon, so it does not keep the JVM running after the daemons
+     * that use the pool have stopped.
+     */
+    public synchronized void start() {
+        if (m_reaper != null || !m_enabled) {
+            return;
+        }
+        final ThreadFactory threadFactory = new LogPreservingThreadFactory("JMXConnectionPool", 1, false);
+        m_reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = threadFactory.newThread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        m_reaper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    evictIdleConnections();
+                } catch (final Throwable t) {
+                    LogUtils.warnf(JMXConnectionPool.this, t, "Unexpected error while checking idle JMX connections");
+                }
+            }
+        }, REAPER_INTERVAL, REAPER_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background thread and closes all pooled connections.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (m_reaper != null) {
+                m_reaper.shutdownNow();
+                m_reaper = null;
+            }
+        }
+        for (final PoolEntry entry : getEntries()) {
+            final ConnectionWrapper connection;
+            synchronized (entry) {
+                connection = entry.detachConnection();
+                removeEntry(entry);
+            }
+            closeConnection(entry, connection);
+        }
+    }
+
+    /**
+     * Returns a connection to the agent at <code>address</code>, opening one
+     * with <code>connector</code> if none is pooled yet. Callers must call
+     * {@link ConnectionWrapper#close()} when they are done, which hands the
+     * connection back to the pool, or {@link #invalidate(ConnectionWrapper)}
+     * if it failed.
+     *
+     * @param connector the connector used to open a new connection
+     * @param parameters the service parameters
+     * @param address the address of the agent
+     * @return the connection, or null if it could not be opened or the agent is in reconnect backoff
+     */
+    public ConnectionWrapper getConnection(final Connector connector, final Map<String, Object> parameters, final InetAddress address) {
+        return getConnection(connector, parameters, address, true);
+    }
+
+    /**
+     * Same as {@link #getConnection(Connector, Map, InetAddress)}, but a
+     * caller with its own retries, like the JMX monitors, can pass false for
+     * <code>honorBackoff</code> to connect even while the agent is in
+     * reconnect backoff. Otherwise a single failure would fail every retry
+     * of a poll, and the next polls, until the backoff has passed. The
+     * outcome still updates the backoff of the other callers.
+     *
+     * @param connector the connector used to open a new connection
+     * @param parameters the service parameters
+     * @param address the address of the agent
+     * @param honorBackoff false to ignore the reconnect backoff
+     * @return the connection, or null if it could not be opened or the agent is in reconnect backoff
+     */
+    public ConnectionWrapper getConnection(final Connector connector, final Map<String, Object> parameters, final InetAddress address, final boolean honorBackoff) {
+        if (!m_enabled) {
+            return connect(connector, parameters, address);
+        }
+
+        final String key = getKey(connector, parameters, address);
+        while (true) {
+            final PoolEntry entry = getEntry(key, connector, parameters, address);
+            ConnectionWrapper connection;
+            synchronized (entry) {
+                if (entry.m_removed) {
+                    // the reaper dropped this entry while we were waiting for it
+                    continue;
+                }
+                if (entry.m_busy) {
+                    // another caller is connecting to or checking this agent, use its result
+                    if (!awaitEntry(entry)) {
+                        return null;
+                    }
+                    continue;
+                }
+
+                final long now = System.currentTimeMillis();
+                connection = entry.m_connection;
+                if (connection != null && now - entry.m_lastValidated <= m_validationInterval) {
+                    m_connectionsReused.incrementAndGet();
+                    return lease(entry);
+                }
+                if (connection == null && honorBackoff && now < entry.m_nextConnectTime) {
+                    LogUtils.debugf(this, "Not connecting to %s, %d ms left of the reconnect backoff", entry, entry.m_nextConnectTime - now);
+                    return null;
+                }
+                entry.m_busy = true;
+            }
+
+            // talk to the agent without holding the lock on the entry
+            ConnectionWrapper failed = null;
+            boolean opened = false;
+            try {
+                if (connection != null && !validate(entry, connection)) {
+                    failed = connection;
+                    connection = null;
+                }
+                if (connection == null) {
+                    connection = connect(connector, parameters, address);
+                    opened = true;
+                }
+            } finally {
+                synchronized (entry) {
+                    entry.m_busy = false;
+                    entry.notifyAll();
+                }
+            }
+
+            ConnectionWrapper discard = null;
+            ConnectionWrapper unused = null;
+            try {
+                synchronized (entry) {
+                    if (failed != null && entry.m_connection == failed) {
+                        m_connectionsInvalidated.incrementAndGet();
+                        discard = entry.detachConnection();
+                    }
+
+                    if (connection == null) {
+                        entry.m_failures++;
+                        entry.m_nextConnectTime = System.currentTimeMillis() + getBackoff(entry.m_failures);
+                        LogUtils.debugf(this, "Connecting to %s failed %d time(s), backing off until %tT", entry, entry.m_failures, entry.m_nextConnectTime);
+                        return null;
+                    }
+
+                    if (opened) {
+                        if (entry.m_removed) {
+                            // the pool was stopped while we were connecting
+                            unused = connection;
+                            continue;
+                        }
+                        entry.m_connection = connection;
+                        entry.m_failures = 0;
+                        entry.m_nextConnectTime = 0;
+                        m_connectionsOpened.incrementAndGet();
+                    } else if (entry.m_removed || entry.m_connection != connection) {
+                        // invalidated or closed by someone else while we were checking it
+                        continue;
+                    } else {
+                        m_connectionsReused.incrementAndGet();
+                    }
+                    entry.m_lastValidated = System.currentTimeMillis();
+                    return lease(entry);
+                }
+            } finally {
+                closeConnection(entry, discard);
+                closeConnection(entry, unused);
+            }
+        }
+    }
+
+    /**
+     * Closes <code>connection</code> for good instead of handing it back to
+     * the pool. Use this when an operation on the connection failed with an
+     * IOException so the next caller gets a new connection.
+     *
+     * @param connection a connection returned by {@link #getConnection(Connector, Map, InetAddress)}
+     */
+    public static void invalidate(final ConnectionWrapper connection) {
+        if (connection instanceof PooledConnection) {
+            ((PooledConnection)connection).invalidate();
+        } else if (connection != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Closes the connections that have been idle for longer than the idle
+     * timeout. Called periodically by the background thread. Connections
+     * that are in use or being connected are left alone, and the ones that
+     * have not been checked recently are checked when they are handed out
+     * next, so a hung agent can not hold up this thread.
+     */
+    public void evictIdleConnections() {
+        final long now = System.currentTimeMillis();
+        for (final PoolEntry entry : getEntries()) {
+            ConnectionWrapper idle = null;
+            synchronized (entry) {
+                if (entry.m_leases > 0 || entry.m_busy) {
+                    continue;
+                }
+                if (entry.m_connection == null) {
+                    // keep failed agents around long enough for the backoff to grow
+                    if (now >= entry.m_nextConnectTime + m_maxBackoff) {
+                        removeEntry(entry);
+                    }
+                } else if (now - entry.m_lastUsed > m_idleTimeout) {
+                    LogUtils.debugf(this, "Closing JMX connection to %s, idle for %d ms", entry, now - entry.m_lastUsed);
+                    m_connectionsEvicted.incrementAndGet();
+                    idle = entry.detachConnection();
+                    removeEntry(entry);
+                }
+            }
+            closeConnection(entry, idle);
+        }
+    }
+
+    /**
+     * @return the number of open pooled connections
+     */
+    public int getPoolSize() {
+        int size = 0;
+        for (final PoolEntry entry : getEntries()) {
+            synchronized (entry) {
+                if (entry.m_connection != null) {
+                    size++;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of connections currently handed out
+     */
+    public int getActiveConnections() {
+        int active = 0;
+        for (final PoolEntry entry : getEntries()) {
+            synchronized (entry) {
+                active += entry.m_leases;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * @return the number of connections opened
+     */
+    public long getConnectionsOpened() {
+        return m_connectionsOpened.get();
+    }
+
+    /**
+     * @return the number of requests served with an already open connection
+     */
+    public long getConnectionsReused() {
+        return m_connectionsReused.get();
+    }
+
+    /**
+     * @return the number of failed connect attempts
+     */
+    public long getConnectFailures() {
+        return m_connectFailures.get();
+    }
+
+    /**
+     * @return the number of connections closed because they failed
+     */
+    public long getConnectionsInvalidated() {
+        return m_connectionsInvalidated.get();
+    }
+
+    /**
+     * @return the number of connections closed because they were idle
+     */
+    public long getConnectionsEvicted() {
+        return m_connectionsEvicted.get();
+    }
+
+    /**
+     * @return the average time a connect attempt took in milliseconds
+     */
+    public double getAverageConnectTime() {
+        final long attempts = m_connectAttempts.get();
+        return attempts == 0 ? 0.0 : m_totalConnectNanos.get() / (attempts * 1000000.0);
+    }
+
+    /**
+     * @return the longest time a connect attempt took in milliseconds
+     */
+    public double getMaxConnectTime() {
+        return m_maxConnectNanos.get() / 1000000.0;
+    }
+
+    private ConnectionWrapper connect(final Connector connector, final Map<String, Object> parameters, final InetAddress address) {
+        final long start = System.nanoTime();
+        ConnectionWrapper connection = null;
+        try {
+            connection = connector.connect(parameters, address);
+        } catch (final Throwable t) {
+            LogUtils.debugf(this, t, "Unable to connect to %s using %s", InetAddressUtils.str(address), connector.getName());
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        m_connectAttempts.incrementAndGet();
+        m_totalConnectNanos.addAndGet(elapsed);
+        long max = m_maxConnectNanos.get();
+        while (elapsed > max && !m_maxConnectNanos.compareAndSet(max, elapsed)) {
+            max = m_maxConnectNanos.get();
+        }
+        if (connection == null) {
+            m_connectFailures.incrementAndGet();
+        }
+        return connection;
+    }
+
+    /**
+     * Must be called with the lock on <code>entry</code> held.
+     */
+    private PooledConnection lease(final PoolEntry entry) {
+        entry.m_leases++;
+        entry.m_lastUsed = System.currentTimeMillis();
+        return new PooledConnection(entry, entry.m_connection);
+    }
+
+    /**
+     * Waits for the caller that is busy with <code>entry</code>. Must be
+     * called with the lock on <code>entry</code> held.
+     *
+     * @return false if the thread was interrupted
+     */
+    private static boolean awaitEntry(final PoolEntry entry) {
+        try {
+            entry.wait();
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean validate(final PoolEntry entry, final ConnectionWrapper connection) {
+        try {
+            connection.getMBeanServer().getMBeanCount();
+            return true;
+        } catch (final Throwable t) {
+            LogUtils.debugf(JMXConnectionPool.class, t, "Pooled JMX connection to %s failed validation", entry);
+            return false;
+        }
+    }
+
+    private static void closeConnection(final PoolEntry entry, final ConnectionWrapper connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (final Throwable t) {
+                LogUtils.debugf(JMXConnectionPool.class, t, "Error closing JMX connection to %s", entry);
+            }
+        }
+    }
+
+    private long getBackoff(final int failures) {
+        long backoff = m_initialBackoff;
+        for (int i = 1; i < failures && backoff < m_maxBackoff; i++) {
+            backoff *= 2;
+        }
+        return Math.min(backoff, m_maxBackoff);
+    }
+
+    private static String getKey(final Connector connector, final Map<String, Object> parameters, final InetAddress address) {
+        final StringBuilder key = new StringBuilder(connector.getName()).append('|').append(InetAddressUtils.str(address));
+        for (final String parameter : KEY_PARAMETERS) {
+            key.append('|').append(ParameterMap.getKeyedString(parameters, parameter, ""));
+        }
+        return key.toString();
+    }
+
+    private synchronized PoolEntry getEntry(final String key, final Connector connector, final Map<String, Object> parameters, final InetAddress address) {
+        PoolEntry entry = m_entries.get(key);
+        if (entry == null) {
+            entry = new PoolEntry(key, connector.getName() + " " + InetAddressUtils.str(address) + ":" + ParameterMap.getKeyedString(parameters, "port", ""));
+            m_entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private synchronized List<PoolEntry> getEntries() {
+        return new ArrayList<PoolEntry>(m_entries.values());
+    }
+
+    /**
+     * Must be called with the lock on <code>entry</code> held.
+     */
+    private synchronized void removeEntry(final PoolEntry entry) {
+        entry.m_removed = true;
+        if (m_entries.get(entry.m_key) == entry) {
+            m_entries.remove(entry.m_key);
+        }
+    }
+
+    private void release(final PoolEntry entry, final ConnectionWrapper connection, final boolean invalidate) {
+        ConnectionWrapper failed = null;
+        synchronized (entry) {
+            entry.m_leases--;
+            entry.m_lastUsed = System.currentTimeMillis();
+            // only close the connection if no one has replaced it in the meantime
+            if (invalidate && entry.m_connection == connection) {
+                LogUtils.debugf(this, "Closing failed JMX connection to %s", entry);
+                m_connectionsInvalidated.incrementAndGet();
+                failed = entry.detachConnection();
+            }
+        }
+        closeConnection(entry, failed);
+    }
+
+    private static final class PoolEntry {
+        private final String m_key;
+        private final String m_description;
+
+        private ConnectionWrapper m_connection;
+        private int m_leases;
+        private long m_lastUsed;
+        private long m_lastValidated;
+        private int m_failures;
+        private long m_nextConnectTime;
+        private boolean m_removed;
+        private boolean m_busy;
+
+        private PoolEntry(final String key, final String description) {
+            m_key = key;
+            m_description = description;
+        }
+
+        /**
+         * Takes the connection out of the entry so it can be closed after the
+         * lock on the entry has been released.
+         */
+        private ConnectionWrapper detachConnection() {
+            final ConnectionWrapper connection = m_connection;
+            m_connection = null;
+            return connection;
+        }
+
+        @Override
+        public String toString() {
+            return m_description;
+        }
+    }
+
+    private final class PooledConnection implements ConnectionWrapper {
+        private final PoolEntry m_entry;
+        private final ConnectionWrapper m_connection;
+        private final AtomicBoolean m_released = new AtomicBoolean(false);
+
+        private PooledConnection(final PoolEntry entry, final ConnectionWrapper connection) {
+            m_entry = entry;
+            m_connection = connection;
+        }
+
+        @Override
+        public MBeanServerConnection getMBeanServer() {
+            return m_connection.getMBeanServer();
+        }
+
+        /**
+         * Hands the connection back to the pool.
+         */
+        @Override
+        public void close() {
+            if (m_released.compareAndSet(false, true)) {
+                release(m_entry, m_connection, false);
+            }
+        }
+
+        private void invalidate() {
+            if (m_released.compareAndSet(false, true)) {
+                release(m_entry, m_connection, true);
+            }
+        }
+    }
+}
@@ -145,6 +145,7 @@ public class CollectdIntegrationTest extends TestCase {
         m_collectorConfigDao = m_mockUtils.createMock(CollectorConfigDao.class);
         EasyMock.expect(m_collectorConfigDao.getCollectors()).andReturn(Collections.singleton(collector)).anyTimes();
         EasyMock.expect(m_collectorConfigDao.getSchedulerThreads()).andReturn(1).anyTimes();
+        EasyMock.expect(m_collectorConfigDao.getSchedulerType()).andReturn(null).anyTimes();
 
         m_ifaceDao = m_mockUtils.createMock(IpInterfaceDao.class);
         m_nodeDao = m_mockUtils.createMock(NodeDao.class);
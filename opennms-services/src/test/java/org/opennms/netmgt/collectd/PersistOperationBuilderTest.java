@@ -29,6 +29,7 @@
 package org.opennms.netmgt.collectd;
 
 import junit.framework.TestCase;
+import org.apache.log4j.Level;
 import org.easymock.EasyMock;
 import org.opennms.core.test.MockLogAppender;
 import org.opennms.core.test.MockPlatformTransactionManager;
@@ -199,6 +200,50 @@ public class PersistOperationBuilderTest extends TestCase {
         builder.setAttributeValue(attributeType, "6.022E23");
         builder.commit();
     }
+
+    public void testCommitWithValueThatIsNotANumber() throws Exception {
+        File nodeDir = m_fileAnticipator.expecting(getSnmpRrdDirectory(), m_node.getId().toString());
+        m_fileAnticipator.expecting(nodeDir, "rrdName" + RrdUtils.getExtension());
+        m_fileAnticipator.expecting(nodeDir, "rrdName" + ".meta");
+
+        RrdRepository repository = createRrdRepository();
+
+        CollectionAgent agent = getCollectionAgent();
+
+        MockDataCollectionConfig dataCollectionConfig = new MockDataCollectionConfig();
+
+        OnmsSnmpCollection collection = new OnmsSnmpCollection(agent, new ServiceParameters(new HashMap<String, Object>()), dataCollectionConfig);
+
+        NodeResourceType resourceType = new NodeResourceType(agent, collection);
+
+        CollectionResource resource = new NodeInfo(resourceType, agent);
+
+        SnmpAttributeType goodType = createStringAttributeType(resourceType, ".1.1.1.1", "goodAlias");
+        SnmpAttributeType badType = createStringAttributeType(resourceType, ".1.1.1.2", "badAlias");
+
+        PersistOperationBuilder builder = new PersistOperationBuilder(repository, resource, "rrdName");
+        builder.declareAttribute(goodType);
+        builder.declareAttribute(badType);
+        builder.setAttributeValue(goodType, "42");
+        builder.setAttributeValue(badType, "not a number");
+
+        // the bad value is stored as unknown, the update itself still happens
+        builder.commit();
+
+        MockLogAppender.assertLogAtLevel(Level.WARN);
+        MockLogAppender.resetEvents();
+    }
+
+    private SnmpAttributeType createStringAttributeType(NodeResourceType resourceType, String oid, String alias) {
+        MibObject mibObject = new MibObject();
+        mibObject.setOid(oid);
+        mibObject.setAlias(alias);
+        mibObject.setType("string");
+        mibObject.setInstance("0");
+        mibObject.setMaxval(null);
+        mibObject.setMinval(null);
+        return new StringAttributeType(resourceType, "some-collection", mibObject, new AttributeGroupType("mibGroup", "ignore"));
+    }
     
     
     private RrdRepository createRrdRepository() throws IOException {
@@ -48,5 +48,20 @@ public class EventdConfigManagerTest {
 		EventdConfigManager manager = new EventdConfigManager(ConfigurationTestUtils.getInputStreamForConfigFile("eventd-configuration.xml"));
 		assertEquals("Queue length should be Integer.MAX_VALUE", Integer.MAX_VALUE, manager.getQueueLength());
 	}
+
+	@Test
+	public void defaultWriterBatching() throws MarshalException, ValidationException, FileNotFoundException, IOException {
+		EventdConfigManager manager = new EventdConfigManager(ConfigurationTestUtils.getInputStreamForConfigFile("eventd-configuration.xml"));
+		assertEquals("Events should be written one at a time by default", 1, manager.getWriterBatchSize());
+		assertEquals("Batch delay", 10, manager.getWriterBatchDelay());
+		assertEquals("SELECT nextval('eventsNxtId') FROM generate_series(1, ?)", manager.getGetNextEventIDBlock());
+	}
+
+	@Test
+	public void defaultListenerQueue() throws MarshalException, ValidationException, FileNotFoundException, IOException {
+		EventdConfigManager manager = new EventdConfigManager(ConfigurationTestUtils.getInputStreamForConfigFile("eventd-configuration.xml"));
+		assertEquals("Listener queue length should default to the queue length", manager.getQueueLength(), manager.getListenerQueueLength());
+		assertEquals("drop-newest", manager.getListenerOverflowPolicy());
+	}
 	
 }
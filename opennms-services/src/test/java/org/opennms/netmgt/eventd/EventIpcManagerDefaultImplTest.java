@@ -32,7 +32,10 @@ import static org.opennms.core.utils.InetAddressUtils.addr;
 
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 
@@ -454,6 +457,145 @@ public class EventIpcManagerDefaultImplTest extends TestCase {
         m_mocks.verifyAll();
     }
     
+    public void testRemoveEventListenerStopsBroadcasts() throws Exception {
+        EventBuilder bldr = new EventBuilder("uei.opennms.org/foo", "testRemoveEventListenerStopsBroadcasts");
+        Event e = bldr.getEvent();
+
+        m_mocks.replayAll();
+
+        m_manager.addEventListener(m_listener, "uei.opennms.org/");
+        m_manager.removeEventListener(m_listener, "uei.opennms.org/");
+        m_manager.broadcastNow(e);
+        Thread.sleep(100);
+
+        m_mocks.verifyAll();
+    }
+
+    public void testListenerQueueDropNewest() throws Exception {
+        GatedEventListener listener = new GatedEventListener();
+        List<Event> events = fillListenerQueue(EventListenerOverflowPolicy.DROP_NEWEST, listener);
+
+        assertEquals("events received", events.subList(0, 3), listener.getEvents());
+        assertEquals("events dropped", 1, getListenerQueue(listener).getDroppedCount());
+        assertEquals("events delivered", 3, getListenerQueue(listener).getDeliveredCount());
+    }
+
+    public void testListenerQueueDropOldest() throws Exception {
+        GatedEventListener listener = new GatedEventListener();
+        List<Event> events = fillListenerQueue(EventListenerOverflowPolicy.DROP_OLDEST, listener);
+
+        List<Event> expected = new ArrayList<Event>();
+        expected.add(events.get(0));
+        expected.add(events.get(2));
+        expected.add(events.get(3));
+        assertEquals("events received", expected, listener.getEvents());
+        assertEquals("events dropped", 1, getListenerQueue(listener).getDroppedCount());
+    }
+
+    public void testListenerQueueBlock() throws Exception {
+        GatedEventListener listener = new GatedEventListener();
+        List<Event> events = fillListenerQueue(EventListenerOverflowPolicy.BLOCK, listener);
+
+        assertEquals("events received", events, listener.getEvents());
+        assertEquals("events dropped", 0, getListenerQueue(listener).getDroppedCount());
+        assertEquals("queue depth", 0, getListenerQueue(listener).getQueueDepth());
+    }
+
+    /**
+     * Broadcasts four events to a listener with a queue of two while the
+     * listener is stuck handling the first one, then lets the listener go.
+     */
+    private List<Event> fillListenerQueue(EventListenerOverflowPolicy policy, GatedEventListener listener) throws Exception {
+        final EventIpcManagerDefaultImpl manager = new EventIpcManagerDefaultImpl();
+        manager.setEventHandler(m_eventHandler);
+        manager.setHandlerPoolSize(5);
+        manager.setListenerQueueLength(2);
+        manager.setListenerOverflowPolicy(policy);
+        manager.afterPropertiesSet();
+        m_mocks.replayAll();
+
+        manager.addEventListener(listener, "uei.opennms.org/");
+        m_manager = manager;
+
+        final List<Event> events = new ArrayList<Event>();
+        for (int i = 0; i < 4; i++) {
+            events.add(new EventBuilder("uei.opennms.org/foo", "fillListenerQueue" + i).getEvent());
+        }
+
+        manager.broadcastNow(events.get(0));
+        assertTrue("listener never received the first event", listener.awaitFirstEvent());
+
+        Thread broadcaster = new Thread("fillListenerQueue-broadcaster") {
+            @Override
+            public void run() {
+                for (Event event : events.subList(1, events.size())) {
+                    manager.broadcastNow(event);
+                }
+            }
+        };
+        broadcaster.start();
+        broadcaster.join(200);
+
+        assertEquals("broadcaster still blocked", policy == EventListenerOverflowPolicy.BLOCK, broadcaster.isAlive());
+        assertEquals("queue depth", 2, getListenerQueue(listener).getQueueDepth());
+
+        listener.open();
+        broadcaster.join(1000);
+        assertFalse("broadcaster never finished", broadcaster.isAlive());
+        Thread.sleep(100);
+
+        m_mocks.verifyAll();
+        manager.removeEventListener(listener);
+        return events;
+    }
+
+    private EventListenerQueue getListenerQueue(EventListener listener) {
+        for (EventListenerQueue queue : m_manager.getListenerQueues()) {
+            if (queue.getListener() == listener) {
+                return queue;
+            }
+        }
+        fail("no queue for listener " + listener.getName());
+        return null;
+    }
+
+    /**
+     * Holds on to the first event it receives until it is opened.
+     */
+    public static class GatedEventListener implements EventListener {
+        private final List<Event> m_events = Collections.synchronizedList(new ArrayList<Event>());
+        private final CountDownLatch m_firstEvent = new CountDownLatch(1);
+        private final CountDownLatch m_gate = new CountDownLatch(1);
+
+        @Override
+        public String getName() {
+            return "gated listener";
+        }
+
+        @Override
+        public void onEvent(Event e) {
+            m_events.add(e);
+            m_firstEvent.countDown();
+            try {
+                m_gate.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public boolean awaitFirstEvent() throws InterruptedException {
+            return m_firstEvent.await(1, TimeUnit.SECONDS);
+        }
+
+        public void open() {
+            m_gate.countDown();
+        }
+
+        public List<Event> getEvents() {
+            return new ArrayList<Event>(m_events);
+        }
+    }
+
     public class MockEventListener implements EventListener {
         private List<Event> m_events = new ArrayList<Event>();
         
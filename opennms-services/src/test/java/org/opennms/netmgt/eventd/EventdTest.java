@@ -30,6 +30,8 @@ package org.opennms.netmgt.eventd;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.opennms.core.utils.InetAddressUtils.addr;
 import static org.opennms.core.utils.InetAddressUtils.str;
 
 import org.junit.After;
@@ -44,6 +46,7 @@ import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
 import org.opennms.core.utils.BeanUtils;
 import org.opennms.netmgt.EventConstants;
 import org.opennms.netmgt.dao.DatabasePopulator;
+import org.opennms.netmgt.eventd.processor.InterfaceHostnameCache;
 import org.opennms.netmgt.mock.MockEventUtil;
 import org.opennms.netmgt.model.OnmsIpInterface;
 import org.opennms.netmgt.model.OnmsMonitoredService;
@@ -90,6 +93,9 @@ public class EventdTest implements TemporaryDatabaseAware<TemporaryDatabase>, In
     @Autowired
     private DatabasePopulator m_databasePopulator;
 
+    @Autowired
+    private InterfaceHostnameCache m_hostnameCache;
+
     private TemporaryDatabase m_database;
 
     @Override
@@ -162,6 +168,31 @@ public class EventdTest implements TemporaryDatabaseAware<TemporaryDatabase>, In
     }
 
 
+    /**
+     * Test that the hostname cache wired into eventd's writer is subscribed
+     * once eventd has started and drops entries for changed interfaces.
+     */
+    @Test
+    @JUnitTemporaryDatabase
+    public void testHostnameCacheInvalidation() throws Exception {
+        m_hostnameCache.put(1, "192.168.1.1", "node1", m_hostnameCache.getGeneration());
+        m_hostnameCache.put(1, "192.168.1.2", "node1-2", m_hostnameCache.getGeneration());
+        m_hostnameCache.put(2, "192.168.2.1", "node2", m_hostnameCache.getGeneration());
+
+        m_eventdIpcMgr.sendNow(new EventBuilder(EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI, "Test").setNodeid(1).setInterface(addr("192.168.1.1")).getEvent());
+        Thread.sleep(1000);
+
+        assertNull(m_hostnameCache.get(1, "192.168.1.1"));
+        assertEquals("node1-2", m_hostnameCache.get(1, "192.168.1.2"));
+
+        m_eventdIpcMgr.sendNow(new EventBuilder(EventConstants.INTERFACE_IP_HOSTNAME_CHANGED_EVENT_UEI, "Test").setNodeid(1).setInterface(addr("192.168.1.2")).getEvent());
+        Thread.sleep(1000);
+
+        assertNull(m_hostnameCache.get(1, "192.168.1.2"));
+        assertEquals("node2", m_hostnameCache.get(2, "192.168.2.1"));
+        assertEquals(2, m_hostnameCache.getInvalidations());
+    }
+
     /**
      * @param reductionKey
      * @param node
@@ -28,7 +28,9 @@
 
 package org.opennms.netmgt.eventd.datablock;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.opennms.core.utils.InetAddressUtils.addr;
@@ -49,6 +51,8 @@ import org.opennms.netmgt.mock.EventConfWrapper;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xml.eventconf.Logmsg;
+import org.opennms.netmgt.xml.eventconf.Mask;
+import org.opennms.netmgt.xml.eventconf.Maskelement;
 import org.springframework.core.io.FileSystemResource;
 
 public class EventConfDataTest {
@@ -113,6 +117,91 @@ public class EventConfDataTest {
         assertTrue(EventConfData.eventValuePassesMaskValue("Is FooBar On Air", Collections.singletonList("~.*Foo[Bb]ar.*")));
     }
 
+    @Test
+    public void testFirstMatchingKeyWinsAcrossIndexedAndUnindexedKeys() {
+        EventConfData data = new EventConfData();
+        data.put(createConfEvent("uei.opennms.org/test/regexSource", "source", "~^Foo[0-9]+$"));
+        data.put(createConfEvent("uei.opennms.org/test/exactUei", "uei", "uei.opennms.org/test/incoming"));
+        data.put(createConfEvent("uei.opennms.org/test/prefixSource", "source", "Foo%"));
+
+        assertEquals("uei.opennms.org/test/regexSource", data.getEvent(new EventBuilder("uei.opennms.org/test/incoming", "Foo12").getEvent()).getUei());
+        assertEquals("uei.opennms.org/test/exactUei", data.getEvent(new EventBuilder("uei.opennms.org/test/incoming", "FooBar").getEvent()).getUei());
+        assertEquals("uei.opennms.org/test/prefixSource", data.getEvent(new EventBuilder("uei.opennms.org/test/other", "FooBar").getEvent()).getUei());
+        assertNull(data.getEvent(new EventBuilder("uei.opennms.org/test/other", "Bar").getEvent()));
+    }
+
+    @Test
+    public void testVarbindMaskElement() {
+        EventConfData data = new EventConfData();
+        data.put(createConfEvent("uei.opennms.org/test/secondVarbind", "2", "~^up|down$"));
+
+        EventBuilder bldr = new EventBuilder("uei.opennms.org/test/incoming", "EventConfDataTest");
+        bldr.addParam("first", "nothing");
+        assertNull("event without a second varbind should not match", data.getEvent(bldr.getEvent()));
+
+        bldr.addParam("second", "down");
+        assertEquals("uei.opennms.org/test/secondVarbind", data.getEvent(bldr.getEvent()).getUei());
+    }
+
+    @Test
+    public void testMatcherIsRebuiltAfterPut() {
+        EventConfData data = new EventConfData();
+        Event event = new EventBuilder("uei.opennms.org/test/late", "EventConfDataTest").getEvent();
+        assertNull(data.getEvent(event));
+        assertNull(data.getEventByUEI("uei.opennms.org/test/late"));
+
+        data.put(createConfEvent("uei.opennms.org/test/late", null, null));
+        assertEquals("uei.opennms.org/test/late", data.getEvent(event).getUei());
+        assertEquals("uei.opennms.org/test/late", data.getEventByUEI("uei.opennms.org/test/late").getUei());
+
+        data.clear();
+        assertNull(data.getEvent(event));
+    }
+
+    /**
+     * Measures lookup latency against the stock eventconf for an internal
+     * event, a known trap and a trap that matches nothing.
+     */
+    @Test
+    @Ignore("benchmark")
+    public void testLookupLatencyWithStockEventConf() throws Exception {
+        DefaultEventConfDao dao = new DefaultEventConfDao();
+        dao.setConfigResource(new FileSystemResource(ConfigurationTestUtils.getFileForConfigFile("eventconf.xml")));
+        dao.afterPropertiesSet();
+
+        Map<String, Event> events = new LinkedHashMap<String, Event>();
+        events.put("internal", new EventBuilder("uei.opennms.org/nodes/nodeDown", "EventConfDataTest").setNodeid(1).getEvent());
+        events.put("known trap", createEventBuilder("v1", ".1.3.6.1.2.1.15.7", 6, 1).getEvent());
+        events.put("unmatched trap", createEventBuilder("v2c", ".1.3.6.1.4.1.99999.1.2.3", 6, 17).getEvent());
+
+        final int iterations = 100000;
+        for (Map.Entry<String, Event> entry : events.entrySet()) {
+            for (int i = 0; i < iterations / 10; i++) {
+                dao.findByEvent(entry.getValue());
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                dao.findByEvent(entry.getValue());
+            }
+            long elapsed = System.nanoTime() - start;
+            System.err.println(String.format("%-15s %8.2f us/lookup", entry.getKey(), elapsed / 1000.0 / iterations));
+        }
+    }
+
+    private static org.opennms.netmgt.xml.eventconf.Event createConfEvent(String uei, String mename, String mevalue) {
+        org.opennms.netmgt.xml.eventconf.Event event = new org.opennms.netmgt.xml.eventconf.Event();
+        event.setUei(uei);
+        if (mename != null) {
+            Maskelement element = new Maskelement();
+            element.setMename(mename);
+            element.addMevalue(mevalue);
+            Mask mask = new Mask();
+            mask.addMaskelement(element);
+            event.setMask(mask);
+        }
+        return event;
+    }
+
     @Test
     public void testV1TrapNewSuspect() throws Exception {
         anticipateAndSend(null, "v1", null, 6, 1);
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.EventConstants;
+import org.opennms.netmgt.eventd.mock.MockEventIpcManager;
+import org.opennms.netmgt.model.events.EventBuilder;
+
+public class InterfaceHostnameCacheTest {
+    private MockEventIpcManager m_eventIpcManager;
+    private InterfaceHostnameCache m_cache;
+
+    @Before
+    public void setUp() {
+        m_eventIpcManager = new MockEventIpcManager();
+
+        m_cache = new InterfaceHostnameCache();
+        m_cache.setEventSubscriptionService(m_eventIpcManager);
+        m_cache.setMaxSize(3);
+        m_cache.afterPropertiesSet();
+        m_cache.start();
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        assertNull(m_cache.get(1, "192.168.1.1"));
+        m_cache.put(1, "192.168.1.1", "router", m_cache.getGeneration());
+
+        assertEquals("router", m_cache.get(1, "192.168.1.1"));
+        assertNull("different node with the same address should miss", m_cache.get(2, "192.168.1.1"));
+
+        assertEquals(1, m_cache.getHits());
+        assertEquals(2, m_cache.getMisses());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        m_cache.put(1, "10.0.0.1", "one", m_cache.getGeneration());
+        m_cache.put(1, "10.0.0.2", "two", m_cache.getGeneration());
+        m_cache.put(1, "10.0.0.3", "three", m_cache.getGeneration());
+
+        // touch the first entry so the second is the eldest
+        assertEquals("one", m_cache.get(1, "10.0.0.1"));
+        m_cache.put(1, "10.0.0.4", "four", m_cache.getGeneration());
+
+        assertEquals(3, m_cache.getSize());
+        assertEquals(1, m_cache.getEvictions());
+        assertEquals("one", m_cache.get(1, "10.0.0.1"));
+        assertNull(m_cache.get(1, "10.0.0.2"));
+    }
+
+    @Test
+    public void testExpiredEntriesMiss() {
+        m_cache.setTimeToLive(-1);
+        m_cache.put(1, "10.0.0.1", "one", m_cache.getGeneration());
+
+        assertNull(m_cache.get(1, "10.0.0.1"));
+        assertEquals(0, m_cache.getSize());
+    }
+
+    @Test
+    public void testInterfaceEventInvalidatesInterface() {
+        m_cache.put(1, "10.0.0.1", "one", m_cache.getGeneration());
+        m_cache.put(1, "10.0.0.2", "two", m_cache.getGeneration());
+
+        m_eventIpcManager.broadcastNow(new EventBuilder(EventConstants.INTERFACE_IP_HOSTNAME_CHANGED_EVENT_UEI, "test").setNodeid(1).setInterface(addr("10.0.0.1")).getEvent());
+
+        assertNull(m_cache.get(1, "10.0.0.1"));
+        assertEquals("two", m_cache.get(1, "10.0.0.2"));
+        assertEquals(1, m_cache.getInvalidations());
+    }
+
+    @Test
+    public void testNodeDeletedInvalidatesNode() {
+        m_cache.put(1, "10.0.0.1", "one", m_cache.getGeneration());
+        m_cache.put(1, "10.0.0.2", "two", m_cache.getGeneration());
+        m_cache.put(2, "10.0.0.3", "three", m_cache.getGeneration());
+
+        m_eventIpcManager.broadcastNow(new EventBuilder(EventConstants.NODE_DELETED_EVENT_UEI, "test").setNodeid(1).getEvent());
+
+        assertEquals(1, m_cache.getSize());
+        assertEquals("three", m_cache.get(2, "10.0.0.3"));
+    }
+
+    @Test
+    public void testReparentInvalidatesOldAndNewNode() {
+        m_cache.put(1, "10.0.0.1", "one", m_cache.getGeneration());
+        m_cache.put(2, "10.0.0.1", "10.0.0.1", m_cache.getGeneration());
+
+        m_eventIpcManager.broadcastNow(new EventBuilder(EventConstants.INTERFACE_REPARENTED_EVENT_UEI, "test").setNodeid(2).setInterface(addr("10.0.0.1")).addParam(EventConstants.PARM_OLD_NODEID, "1").getEvent());
+
+        assertEquals(0, m_cache.getSize());
+    }
+
+    @Test
+    public void testStaleLookupIsNotCached() {
+        final long generation = m_cache.getGeneration();
+        m_cache.invalidateInterface(1, "10.0.0.1");
+        m_cache.put(1, "10.0.0.1", "stale", generation);
+
+        assertNull(m_cache.get(1, "10.0.0.1"));
+    }
+}
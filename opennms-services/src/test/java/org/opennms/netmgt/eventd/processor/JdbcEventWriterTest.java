@@ -29,14 +29,24 @@
 package org.opennms.netmgt.eventd.processor;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.opennms.core.test.db.PopulatedTemporaryDatabaseTestCase;
 import org.opennms.netmgt.EventConstants;
 import org.opennms.netmgt.eventd.JdbcEventdServiceManager;
+import org.opennms.netmgt.eventd.mock.MockEventIpcManager;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.snmp.SnmpUtils;
 import org.opennms.netmgt.snmp.SnmpValue;
 import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Header;
 
 /**
  * This class tests some of the quirky behaviors of presisting events.
@@ -100,6 +110,24 @@ public class JdbcEventWriterTest extends PopulatedTemporaryDatabaseTestCase {
         assertEquals("test=testVal(string,text);test2=valWith%0Null%0(string,text);test3=" + snmpVal.toString() + "(string,text);test=B9cECgEXBgArAAA%61(string,text)", parms);
     }
 
+    /**
+     * Tests that the distributed poller name of the header wins and is
+     * passed on to the listeners of the event.
+     */
+    public void testDpNameFromHeader() throws Exception {
+        EventBuilder bldr = new EventBuilder("testUei", "testSource");
+        bldr.setLogDest("logndisplay");
+        bldr.setDistPoller("event");
+        Event event = bldr.getEvent();
+
+        Header header = new Header();
+        header.setDpName("header");
+
+        m_jdbcEventWriter.process(header, event);
+        assertEquals("header", jdbcTemplate.queryForObject("SELECT eventDpName FROM events LIMIT 1", String.class));
+        assertEquals("header", event.getDistPoller());
+    }
+
     /**
      * Tests writing nulls to postgres db and the db encoding.
      * @throws SQLException
@@ -194,6 +222,26 @@ public class JdbcEventWriterTest extends PopulatedTemporaryDatabaseTestCase {
         assertEquals("getHostName should return the IP address it was passed", "First Interface", m_jdbcEventWriter.getHostName(nodeId1, "192.168.1.1"));
     }
     
+    public void testGetHostNameUsesCache() throws Exception {
+        jdbcTemplate.update("INSERT INTO node (nodeId, nodeCreateTime) VALUES (nextVal('nodeNxtId'), now())");
+        int nodeId = jdbcTemplate.queryForInt("SELECT nodeId FROM node LIMIT 1");
+        jdbcTemplate.update("INSERT into ipInterface (nodeId, ipAddr, ipHostname) VALUES (?, ?, ?)", nodeId, "192.168.1.1", "First Interface");
+
+        InterfaceHostnameCache cache = new InterfaceHostnameCache();
+        cache.setEventSubscriptionService(new MockEventIpcManager());
+        cache.afterPropertiesSet();
+        m_jdbcEventWriter.setHostnameCache(cache);
+
+        assertEquals("First Interface", m_jdbcEventWriter.getHostName(nodeId, "192.168.1.1"));
+        jdbcTemplate.update("UPDATE ipInterface SET ipHostname = ? WHERE nodeId = ?", "Renamed Interface", nodeId);
+        assertEquals("second lookup should come from the cache", "First Interface", m_jdbcEventWriter.getHostName(nodeId, "192.168.1.1"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.invalidateInterface(nodeId, "192.168.1.1");
+        assertEquals("Renamed Interface", m_jdbcEventWriter.getHostName(nodeId, "192.168.1.1"));
+    }
+
     public void testGetHostNameWithNoHostMatch() throws Exception {
             assertEquals("getHostName should return the IP address it was passed", "192.168.1.1", m_jdbcEventWriter.getHostName(1, "192.168.1.1"));
     }
@@ -214,4 +262,99 @@ public class JdbcEventWriterTest extends PopulatedTemporaryDatabaseTestCase {
         assertEquals("event count", 1, getJdbcTemplate().queryForInt("select count(*) from events"));
         assertEquals("event service ID", serviceId, getJdbcTemplate().queryForInt("select serviceID from events"));
     }
+
+    public void testBatchedWritesSetDbidBeforeReturning() throws Exception {
+        final JdbcEventWriter writer = createBatchingWriter(10, "SELECT nextval('eventsNxtId') FROM generate_series(1, ?)");
+        try {
+            final List<Event> events = writeConcurrently(writer, 8, 25);
+
+            final Set<Integer> dbids = new HashSet<Integer>();
+            for (final Event event : events) {
+                assertTrue("event should have a dbid once process() returns", event.hasDbid());
+                dbids.add(event.getDbid());
+            }
+            assertEquals("every event should get a unique dbid", events.size(), dbids.size());
+            assertEquals("event count", events.size(), getJdbcTemplate().queryForInt("select count(*) from events"));
+        } finally {
+            writer.destroy();
+        }
+    }
+
+    public void testBatchedWritesWithoutBlockQuery() throws Exception {
+        final JdbcEventWriter writer = createBatchingWriter(5, null);
+        try {
+            final List<Event> events = writeConcurrently(writer, 3, 7);
+
+            for (final Event event : events) {
+                assertEquals("event " + event.getDbid() + " should be in the database", 1, getJdbcTemplate().queryForInt("select count(*) from events where eventid = ?", event.getDbid()));
+            }
+        } finally {
+            writer.destroy();
+        }
+    }
+
+    /**
+     * Measures insert throughput at different batch sizes.  This takes a
+     * while, so rename it to run it by hand.
+     */
+    public void xtestBatchedWriteThroughput() throws Exception {
+        final int threads = 20;
+        final int eventsPerThread = 500;
+
+        for (final int batchSize : new int[] { 1, 50, 500 }) {
+            final JdbcEventWriter writer = batchSize == 1 ? m_jdbcEventWriter : createBatchingWriter(batchSize, "SELECT nextval('eventsNxtId') FROM generate_series(1, ?)");
+            try {
+                final long start = System.nanoTime();
+                final List<Event> events = writeConcurrently(writer, threads, eventsPerThread);
+                final double seconds = (System.nanoTime() - start) / 1000000000.0;
+                System.err.println(String.format("batch size %4d: %d events in %.2f s, %.0f events/s", batchSize, events.size(), seconds, events.size() / seconds));
+            } finally {
+                writer.destroy();
+            }
+        }
+    }
+
+    private JdbcEventWriter createBatchingWriter(final int batchSize, final String getNextIdBlockString) throws SQLException {
+        final JdbcEventWriter writer = new JdbcEventWriter();
+        writer.setEventdServiceManager(m_jdbcEventWriter.getEventdServiceManager());
+        writer.setDataSource(getDataSource());
+        writer.setGetNextIdString("SELECT nextval('eventsNxtId')");
+        writer.setGetNextIdBlockString(getNextIdBlockString);
+        writer.setBatchSize(batchSize);
+        writer.setBatchDelay(20);
+        writer.afterPropertiesSet();
+        return writer;
+    }
+
+    private List<Event> writeConcurrently(final JdbcEventWriter writer, final int threads, final int eventsPerThread) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<List<Event>>> futures = new ArrayList<Future<List<Event>>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<List<Event>>() {
+                    @Override
+                    public List<Event> call() throws Exception {
+                        final List<Event> written = new ArrayList<Event>(eventsPerThread);
+                        for (int j = 0; j < eventsPerThread; j++) {
+                            final EventBuilder bldr = new EventBuilder("testUei", "JdbcEventWriterTest");
+                            bldr.setLogDest("logndisplay");
+                            bldr.addParam("count", j);
+                            final Event event = bldr.getEvent();
+                            writer.process(null, event);
+                            written.add(event);
+                        }
+                        return written;
+                    }
+                }));
+            }
+
+            final List<Event> events = new ArrayList<Event>(threads * eventsPerThread);
+            for (final Future<List<Event>> future : futures) {
+                events.addAll(future.get());
+            }
+            return events;
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
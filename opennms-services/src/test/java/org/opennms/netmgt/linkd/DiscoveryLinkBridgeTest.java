@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.linkd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.core.utils.LogUtils;
+import org.opennms.netmgt.linkd.scheduler.Scheduler;
+
+/**
+ * Runs the bridge part of {@link DiscoveryLink} against a synthetic two tier
+ * L2 fabric: a core bridge with one access bridge on each port and hosts on
+ * the access ports. The size of the fabric can be raised with the
+ * <code>org.opennms.linkd.test.accessBridges</code> and
+ * <code>org.opennms.linkd.test.hostsPerBridge</code> system properties to
+ * measure the computation on large forwarding tables. The timed runs only
+ * happen with -DrunLoadTests=true.
+ */
+public class DiscoveryLinkBridgeTest {
+    private static final String PACKAGE_NAME = "example1";
+    private static final int ACCESS_BRIDGES = Integer.getInteger("org.opennms.linkd.test.accessBridges", 16);
+    private static final int HOSTS_PER_BRIDGE = Integer.getInteger("org.opennms.linkd.test.hostsPerBridge", 100);
+    private static final int RUNS = Integer.getInteger("org.opennms.linkd.test.runs", 3);
+
+    private static final int CORE_NODEID = 1;
+    private static final int UPLINK_PORT = 1;
+
+    private List<LinkableNode> m_nodes;
+    private Map<String, List<AtInterface>> m_atInterfaces;
+    private Set<NodeToNodeLink> m_links;
+    private Set<String> m_macLinks;
+    private long m_usedHeap;
+
+    private class TestLinkd extends Linkd {
+        @Override
+        public Collection<LinkableNode> getLinkableNodesOnPackage(final String pkg) {
+            return m_nodes;
+        }
+
+        @Override
+        public Map<String, List<AtInterface>> getAtInterfaces(final String packageName) {
+            return m_atInterfaces;
+        }
+
+        @Override
+        void updateDiscoveryLinkCollection(final DiscoveryLink discover) {
+            final Runtime runtime = Runtime.getRuntime();
+            m_usedHeap = runtime.totalMemory() - runtime.freeMemory();
+            m_links = new HashSet<NodeToNodeLink>(Arrays.asList(discover.getLinks()));
+            m_macLinks = new HashSet<String>();
+            for (final MacToNodeLink link : discover.getMacLinks()) {
+                m_macLinks.add(macLink(link.getMacAddress(), link.getNodeparentid(), link.getParentifindex()));
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        MockLogAppender.setupLogging(true, "ERROR");
+    }
+
+    @Test
+    public void testBridgeTopology() throws Exception {
+        final DiscoveryLink discoveryLink = createDiscoveryLink();
+        buildFabric();
+        discoveryLink.run();
+        assertFabricLinks();
+    }
+
+    @Test
+    public void testBridgeTopologyPerformance() throws Exception {
+        assumeTrue(Boolean.getBoolean("runLoadTests"));
+        MockLogAppender.setupLogging(true, "INFO");
+
+        final DiscoveryLink discoveryLink = createDiscoveryLink();
+        for (int i = 0; i < RUNS; i++) {
+            buildFabric();
+            final long start = System.nanoTime();
+            discoveryLink.run();
+            final long elapsed = System.nanoTime() - start;
+            LogUtils.infof(this, "run %d: %d bridges, %d hosts: %d links and %d MAC links in %d ms, %d KB heap in use",
+                           i, ACCESS_BRIDGES + 1, ACCESS_BRIDGES * HOSTS_PER_BRIDGE,
+                           m_links.size(), m_macLinks.size(), elapsed / 1000000L, m_usedHeap / 1024L);
+            assertFabricLinks();
+        }
+    }
+
+    private void assertFabricLinks() {
+        final Set<NodeToNodeLink> expectedLinks = new HashSet<NodeToNodeLink>();
+        final Set<String> expectedMacLinks = new HashSet<String>();
+        for (int bridge = 1; bridge <= ACCESS_BRIDGES; bridge++) {
+            expectedLinks.add(link(accessNodeId(bridge), UPLINK_PORT, CORE_NODEID, bridge));
+            for (int host = 0; host < HOSTS_PER_BRIDGE; host++) {
+                final int port = hostPort(host);
+                if (hasAtInterface(host)) {
+                    expectedLinks.add(link(hostNodeId(bridge, host), 1, accessNodeId(bridge), port));
+                } else {
+                    expectedMacLinks.add(macLink(hostMac(bridge, host), accessNodeId(bridge), port));
+                }
+            }
+        }
+
+        assertEquals(expectedLinks.size(), m_links.size());
+        assertEquals(expectedLinks, m_links);
+        assertEquals(expectedMacLinks, m_macLinks);
+
+        if (ACCESS_BRIDGES == 16 && HOSTS_PER_BRIDGE == 100) {
+            // worked out by hand for the default fabric: one uplink per access
+            // bridge, and the 50 odd hosts behind each one have an IP address
+            assertEquals(816, m_links.size());
+            assertEquals(800, m_macLinks.size());
+            assertTrue(m_links.contains(link(101, 1, 1, 1)));
+            assertTrue(m_links.contains(link(10101, 1, 101, 3)));
+            assertTrue(m_links.contains(link(11699, 1, 116, 101)));
+            assertTrue(m_macLinks.contains("0000BB010000/101/2"));
+            assertTrue(m_macLinks.contains("0000bb100062/116/100"));
+        }
+    }
+
+    private DiscoveryLink createDiscoveryLink() {
+        final DiscoveryLink discoveryLink = new DiscoveryLink();
+        discoveryLink.setLinkd(new TestLinkd());
+        discoveryLink.setPackageName(PACKAGE_NAME);
+        discoveryLink.setScheduler(new Scheduler("DiscoveryLinkBridgeTest", 1));
+        return discoveryLink;
+    }
+
+    /**
+     * Every access bridge learns the core bridge and everything behind the
+     * other access bridges on its uplink, the core learns each access bridge
+     * and its hosts on the port it is connected to.
+     */
+    private void buildFabric() throws Exception {
+        m_nodes = new ArrayList<LinkableNode>();
+        m_atInterfaces = new HashMap<String, List<AtInterface>>();
+
+        final LinkableNode core = bridge(CORE_NODEID);
+        m_nodes.add(core);
+
+        final List<LinkableNode> accessBridges = new ArrayList<LinkableNode>();
+        for (int bridge = 1; bridge <= ACCESS_BRIDGES; bridge++) {
+            final LinkableNode access = bridge(accessNodeId(bridge));
+            accessBridges.add(access);
+            m_nodes.add(access);
+
+            core.setIfIndexBridgePort(bridge, bridge);
+            core.addMacAddress(bridge, bridgeMac(accessNodeId(bridge)), 1);
+
+            access.setIfIndexBridgePort(UPLINK_PORT, UPLINK_PORT);
+            access.addMacAddress(UPLINK_PORT, bridgeMac(CORE_NODEID), 1);
+
+            for (int host = 0; host < HOSTS_PER_BRIDGE; host++) {
+                final int port = hostPort(host);
+                final String mac = hostMac(bridge, host);
+                access.setIfIndexBridgePort(port, port);
+                access.addMacAddress(port, mac, 1);
+                core.addMacAddress(bridge, mac, 1);
+
+                if (hasAtInterface(host)) {
+                    final InetAddress address = InetAddressUtils.addr("10." + bridge + "." + (host / 250) + "." + (host % 250 + 1));
+                    final AtInterface at = new AtInterface(hostNodeId(bridge, host), mac, address);
+                    at.setIfIndex(1);
+                    final List<AtInterface> ats = new ArrayList<AtInterface>();
+                    ats.add(at);
+                    m_atInterfaces.put(mac, ats);
+                }
+            }
+        }
+
+        for (int bridge = 1; bridge <= ACCESS_BRIDGES; bridge++) {
+            final LinkableNode access = accessBridges.get(bridge - 1);
+            for (int other = 1; other <= ACCESS_BRIDGES; other++) {
+                if (other == bridge) continue;
+                access.addMacAddress(UPLINK_PORT, bridgeMac(accessNodeId(other)), 1);
+                for (int host = 0; host < HOSTS_PER_BRIDGE; host++) {
+                    access.addMacAddress(UPLINK_PORT, hostMac(other, host), 1);
+                }
+            }
+        }
+    }
+
+    private static LinkableNode bridge(final int nodeId) {
+        final LinkableNode node = new LinkableNode(nodeId, InetAddressUtils.addr("192.168." + (nodeId / 250) + "." + (nodeId % 250 + 1)), ".1.3.6.1.4.1.9.1.1");
+        node.addBridgeIdentifier(bridgeMac(nodeId));
+        return node;
+    }
+
+    private static NodeToNodeLink link(final int nodeId, final int ifIndex, final int parentId, final int parentIfIndex) {
+        final NodeToNodeLink link = new NodeToNodeLink(nodeId, ifIndex);
+        link.setNodeparentid(parentId);
+        link.setParentifindex(parentIfIndex);
+        return link;
+    }
+
+    private static String macLink(final String mac, final int parentId, final int parentIfIndex) {
+        return mac + "/" + parentId + "/" + parentIfIndex;
+    }
+
+    private static int accessNodeId(final int bridge) {
+        return 100 + bridge;
+    }
+
+    private static int hostNodeId(final int bridge, final int host) {
+        return 10000 + bridge * HOSTS_PER_BRIDGE + host;
+    }
+
+    private static int hostPort(final int host) {
+        return host + 2;
+    }
+
+    private static boolean hasAtInterface(final int host) {
+        return host % 2 == 1;
+    }
+
+    private static String bridgeMac(final int nodeId) {
+        return String.format("0000aa%06x", nodeId);
+    }
+
+    /**
+     * The first host of every access bridge reports its MAC address in upper
+     * case, which must be matched as a distinct address.
+     */
+    private static String hostMac(final int bridge, final int host) {
+        final String mac = String.format("0000bb%02x%04x", bridge, host);
+        return host == 0 ? mac.toUpperCase() : mac;
+    }
+}
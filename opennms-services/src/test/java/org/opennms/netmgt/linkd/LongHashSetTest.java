@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.linkd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+    @Test
+    public void testZeroKey() {
+        final LongHashSet set = new LongHashSet();
+        assertFalse(set.contains(0L));
+        assertTrue(set.isEmpty());
+
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.contains(0L));
+        assertEquals(1, set.size());
+
+        assertTrue(set.add(1L));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    public void testDuplicates() {
+        final LongHashSet set = new LongHashSet();
+        assertTrue(set.add(0x0000bb010000L));
+        assertFalse(set.add(0x0000bb010000L));
+        assertTrue(set.add(-1L));
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertEquals(3, set.size());
+        assertTrue(set.contains(-1L));
+        assertTrue(set.contains(Long.MIN_VALUE));
+        assertFalse(set.contains(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testGrowth() {
+        // starts with 16 slots, so this rehashes several times
+        final LongHashSet set = new LongHashSet();
+        final int count = 10000;
+        for (long i = 0; i < count; i++) {
+            // keys that differ only in the high bits must not collide
+            assertTrue(set.add(i << 32));
+        }
+        assertEquals(count, set.size());
+        for (long i = 0; i < count; i++) {
+            assertTrue(set.contains(i << 32));
+            assertFalse(set.contains((i << 32) + 1));
+        }
+    }
+
+    @Test
+    public void testCapacityFor() {
+        assertEquals(16, LongHashSet.capacityFor(0));
+        assertEquals(16, LongHashSet.capacityFor(12));
+        assertEquals(32, LongHashSet.capacityFor(13));
+        assertEquals(2048, LongHashSet.capacityFor(1000));
+    }
+
+    @Test
+    public void testClear() {
+        final LongHashSet set = new LongHashSet(1000);
+        set.add(0L);
+        set.add(42L);
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(0L));
+        assertFalse(set.contains(42L));
+
+        assertTrue(set.add(42L));
+        assertEquals(1, set.size());
+    }
+}
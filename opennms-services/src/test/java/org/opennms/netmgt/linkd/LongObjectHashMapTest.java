@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.linkd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class LongObjectHashMapTest {
+
+    @Test
+    public void testZeroKey() {
+        final LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+        assertFalse(map.containsKey(0L));
+        assertNull(map.get(0L));
+
+        assertNull(map.put(0L, "zero"));
+        assertTrue(map.containsKey(0L));
+        assertEquals("zero", map.get(0L));
+        assertEquals(1, map.size());
+
+        assertEquals("zero", map.put(0L, "nil"));
+        assertEquals("nil", map.get(0L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testReplace() {
+        final LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+        assertNull(map.put(42L, "a"));
+        assertEquals("a", map.put(42L, "b"));
+        assertEquals("b", map.get(42L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testGrowth() {
+        // starts with 16 slots, so this rehashes several times
+        final LongObjectHashMap<Long> map = new LongObjectHashMap<Long>();
+        final int count = 10000;
+        for (long i = 1; i <= count; i++) {
+            assertNull(map.put(i << 32, i));
+        }
+        assertEquals(count, map.size());
+        for (long i = 1; i <= count; i++) {
+            assertEquals(Long.valueOf(i), map.get(i << 32));
+            assertFalse(map.containsKey((i << 32) + 1));
+        }
+    }
+
+    @Test
+    public void testContainsKeyMeansNonNullValue() {
+        final LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+        try {
+            map.put(1L, null);
+            fail("Expected null values to be rejected");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+        assertFalse(map.containsKey(1L));
+        assertEquals(0, map.size());
+
+        map.put(1L, "one");
+        assertTrue(map.containsKey(1L));
+        assertFalse(map.containsKey(2L));
+    }
+}
@@ -76,6 +76,8 @@ public class MockPollerConfig extends PollOutagesConfigManager implements Poller
 
     private int m_threads = 1;
 
+    private int m_startupThreads = 1;
+
     private long m_defaultPollInterval = 7654L;
 
     private boolean m_pollAll = true;
@@ -323,6 +325,16 @@ public class MockPollerConfig extends PollOutagesConfigManager implements Poller
         return m_threads;
     }
 
+    @Override
+    public int getStartupThreads() {
+        return m_startupThreads;
+    }
+
+    @Override
+    public String getSchedulerType() {
+        return null;
+    }
+
     @Override
     public boolean shouldNotifyXmlrpc() {
         return false;
@@ -441,6 +453,10 @@ public class MockPollerConfig extends PollOutagesConfigManager implements Poller
         m_threads = threads;
     }
 
+    public void setStartupThreads(final int startupThreads) {
+        m_startupThreads = startupThreads;
+    }
+
     public void setDefaultPollInterval(final long defaultPollInterval) {
         m_defaultPollInterval = defaultPollInterval;
     }
@@ -52,6 +52,7 @@ import org.opennms.core.db.DataSourceFactory;
 import org.opennms.core.test.ConfigurationTestUtils;
 import org.opennms.core.test.MockLogAppender;
 import org.opennms.core.test.db.MockDatabase;
+import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.Querier;
 import org.opennms.netmgt.EventConstants;
 import org.opennms.netmgt.capsd.JdbcCapsdDbSyncer;
@@ -689,6 +690,36 @@ public class PollerTest {
 
 	}
 
+	// test that a parallel startup schedules all the services
+    @Test
+	public void testParallelStartup() throws Exception {
+
+		m_pollerConfig.setNodeOutageProcessingEnabled(true);
+		m_pollerConfig.setStartupThreads(4);
+
+		MockNode node = m_network.getNode(2);
+
+		startDaemons();
+
+		assertEquals(14, m_poller.getStartupServicesScheduled());
+		assertNotNull(m_poller.getNetwork().getService(3, InetAddressUtils.addr("192.168.1.5"), "HTTP"));
+
+		resetAnticipated();
+		anticipateDown(node);
+
+		node.bringDown();
+
+		verifyAnticipated(10000);
+
+		resetAnticipated();
+		anticipateUp(node);
+
+		node.bringUp();
+
+		verifyAnticipated(10000);
+
+	}
+
 	// test whole node down
     @Test
 	public void testNodeOutageProcessingEnabled() throws Exception {
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.handler.codec.frame.DelimiterBasedFrameDecoder;
+import org.jboss.netty.handler.codec.frame.Delimiters;
+import org.jboss.netty.handler.codec.string.StringDecoder;
+import org.jboss.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.core.utils.LogUtils;
+import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollFuture;
+import org.opennms.netmgt.poller.PollFutureListener;
+import org.opennms.netmgt.poller.mock.MockMonitoredService;
+
+/**
+ * Starts 20,000 polls against local stub TCP and HTTP servers without
+ * waiting for any of them, and verifies that they all complete on the small
+ * fixed set of I/O threads shared by the asynchronous monitors.
+ *
+ * This is a load test: it only runs when the system property
+ * <code>runLoadTests</code> is set to true, and it needs a file descriptor
+ * limit of more than 40,000 since every poll holds a client and a server
+ * side socket.
+ */
+public class AsyncMonitorConcurrencyTest {
+    private static final String RUN_TEST_PROPERTY = "runLoadTests";
+    private static final int POLLS = 20000;
+
+    private ChannelFactory m_serverFactory;
+    private Channel m_bannerServer;
+    private Channel m_httpServer;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean(RUN_TEST_PROPERTY));
+        MockLogAppender.setupLogging(false, "WARN");
+
+        m_serverFactory = new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool());
+        m_bannerServer = startServer(new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline(new SimpleChannelUpstreamHandler() {
+                    @Override
+                    public void channelConnected(final ChannelHandlerContext ctx, final ChannelStateEvent e) {
+                        e.getChannel().write(ChannelBuffers.copiedBuffer("stub ready\r\n", CharsetUtil.US_ASCII));
+                    }
+                });
+            }
+        });
+        m_httpServer = startServer(new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline(
+                    new DelimiterBasedFrameDecoder(8192, Delimiters.lineDelimiter()),
+                    new StringDecoder(CharsetUtil.US_ASCII),
+                    new SimpleChannelUpstreamHandler() {
+                        @Override
+                        public void messageReceived(final ChannelHandlerContext ctx, final MessageEvent e) {
+                            if (((String) e.getMessage()).length() == 0) {
+                                e.getChannel().write(ChannelBuffers.copiedBuffer("HTTP/1.0 200 OK\r\nContent-Type: text/plain\r\n\r\nOK\r\n", CharsetUtil.US_ASCII))
+                                    .addListener(ChannelFutureListener.CLOSE);
+                            }
+                        }
+                    }
+                );
+            }
+        });
+    }
+
+    private Channel startServer(final ChannelPipelineFactory pipelineFactory) {
+        final ServerBootstrap bootstrap = new ServerBootstrap(m_serverFactory);
+        bootstrap.setPipelineFactory(pipelineFactory);
+        bootstrap.setOption("backlog", 4096);
+        bootstrap.setOption("reuseAddress", true);
+        bootstrap.setOption("child.tcpNoDelay", true);
+        return bootstrap.bind(new InetSocketAddress(InetAddressUtils.addr("127.0.0.1"), 0));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (m_bannerServer != null) {
+            m_bannerServer.close().awaitUninterruptibly();
+        }
+        if (m_httpServer != null) {
+            m_httpServer.close().awaitUninterruptibly();
+        }
+        if (m_serverFactory != null) {
+            m_serverFactory.releaseExternalResources();
+        }
+    }
+
+    @Test(timeout=300000)
+    public void testConcurrentPolls() throws Exception {
+        final Thread testThread = Thread.currentThread();
+        final CountDownLatch latch = new CountDownLatch(POLLS);
+        final AtomicInteger available = new AtomicInteger();
+        final Set<Thread> completionThreads = Collections.synchronizedSet(new HashSet<Thread>());
+
+        final PollFutureListener listener = new PollFutureListener() {
+            @Override
+            public void pollComplete(final PollFuture future) {
+                if (Thread.currentThread() != testThread) {
+                    completionThreads.add(Thread.currentThread());
+                }
+                try {
+                    final PollStatus status = future.get();
+                    if (status.isAvailable()) {
+                        available.incrementAndGet();
+                    } else {
+                        LogUtils.warnf(this, "Poll failed: %s", status);
+                    }
+                } catch (final Exception e) {
+                    LogUtils.warnf(this, e, "Unable to get the poll status");
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+
+        final InetAddress loopback = InetAddressUtils.addr("127.0.0.1");
+
+        final TcpMonitor tcpMonitor = new TcpMonitor();
+        final MonitoredService tcpService = new MockMonitoredService(1, "Node One", loopback, "TCP");
+        final Map<String, Object> tcpParameters = new HashMap<String, Object>();
+        tcpParameters.put("port", String.valueOf(((InetSocketAddress) m_bannerServer.getLocalAddress()).getPort()));
+        tcpParameters.put("banner", "stub");
+        tcpParameters.put("retry", "0");
+        tcpParameters.put("timeout", "60000");
+
+        final HttpMonitor httpMonitor = new HttpMonitor();
+        final MonitoredService httpService = new MockMonitoredService(1, "Node One", loopback, "HTTP");
+        final Map<String, Object> httpParameters = new HashMap<String, Object>();
+        httpParameters.put("port", String.valueOf(((InetSocketAddress) m_httpServer.getLocalAddress()).getPort()));
+        httpParameters.put("response-text", "OK");
+        httpParameters.put("retry", "0");
+        httpParameters.put("timeout", "60000");
+
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < POLLS; i++) {
+            final PollFuture future = (i % 2 == 0) ? tcpMonitor.pollAsync(tcpService, tcpParameters) : httpMonitor.pollAsync(httpService, httpParameters);
+            future.addListener(listener);
+        }
+
+        assertTrue("Polls did not complete in time, " + latch.getCount() + " outstanding", latch.await(240, TimeUnit.SECONDS));
+        LogUtils.infof(this, "%d polls completed in %dms on %d threads", POLLS, System.currentTimeMillis() - start, completionThreads.size());
+
+        assertEquals(POLLS, available.get());
+        assertTrue("Polls completed on " + completionThreads.size() + " threads, expected at most " + AbstractAsyncTcpMonitor.getWorkerCount(),
+                   completionThreads.size() <= AbstractAsyncTcpMonitor.getWorkerCount());
+    }
+}
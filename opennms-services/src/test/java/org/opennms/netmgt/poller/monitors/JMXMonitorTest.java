@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MBeanServerConnection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.mock.MockMonitoredService;
+import org.opennms.protocols.jmx.connectors.ConnectionWrapper;
+import org.opennms.protocols.jmx.connectors.JMXConnectionPool;
+
+public class JMXMonitorTest {
+
+    /**
+     * Fails the given number of connects, then connects to the platform
+     * MBean server.
+     */
+    private static class FlakyConnector extends JMXConnectionPool.Connector {
+        private final int m_failures;
+        private int m_connects = 0;
+
+        public FlakyConnector(final int failures) {
+            super("test");
+            m_failures = failures;
+        }
+
+        @Override
+        public ConnectionWrapper connect(final Map<String, Object> parameters, final InetAddress address) {
+            m_connects++;
+            if (m_connects <= m_failures) {
+                return null;
+            }
+            return new ConnectionWrapper() {
+                @Override
+                public MBeanServerConnection getMBeanServer() {
+                    return ManagementFactory.getPlatformMBeanServer();
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+
+    private class TestJMXMonitor extends JMXMonitor {
+        @Override
+        public ConnectionWrapper getMBeanServerConnection(final Map<String, Object> parameterMap, final InetAddress address) {
+            return getPooledConnection(m_connector, parameterMap, address);
+        }
+
+        @Override
+        protected JMXConnectionPool getConnectionPool() {
+            return m_pool;
+        }
+    }
+
+    private final Map<String, Object> m_parameters = new HashMap<String, Object>();
+    private JMXConnectionPool m_pool;
+    private FlakyConnector m_connector;
+    private MonitoredService m_svc;
+
+    @Before
+    public void setUp() throws Exception {
+        MockLogAppender.setupLogging();
+        // a backoff far longer than the test
+        m_pool = new JMXConnectionPool(true, 60000L, 60000L, 60000L, 60000L);
+        m_connector = new FlakyConnector(1);
+        m_svc = new MockMonitoredService(1, "Node One", InetAddressUtils.addr("127.0.0.1"), "JMX");
+        m_parameters.put("port", "9004");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        m_pool.stop();
+        MockLogAppender.assertNoWarningsOrGreater();
+    }
+
+    @Test
+    public void testRetryAfterFailedConnect() {
+        m_parameters.put("retry", "1");
+
+        assertTrue(new TestJMXMonitor().poll(m_svc, m_parameters).isAvailable());
+        assertEquals(2, m_connector.m_connects);
+    }
+
+    @Test
+    public void testNextPollAfterFailedConnect() {
+        m_parameters.put("retry", "0");
+        final TestJMXMonitor monitor = new TestJMXMonitor();
+
+        assertTrue(monitor.poll(m_svc, m_parameters).isUnavailable());
+        assertTrue(monitor.poll(m_svc, m_parameters).isAvailable());
+        assertEquals(2, m_connector.m_connects);
+    }
+
+    @Test
+    public void testCollectorsStillBackOff() {
+        m_parameters.put("retry", "0");
+
+        assertTrue(new TestJMXMonitor().poll(m_svc, m_parameters).isUnavailable());
+        assertNull(m_pool.getConnection(m_connector, m_parameters, InetAddressUtils.addr("127.0.0.1")));
+        assertEquals(1, m_connector.m_connects);
+    }
+}
@@ -28,15 +28,30 @@
 
 package org.opennms.netmgt.poller.monitors;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.net.InetAddress;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import javax.net.ssl.SSLException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.client.params.CookiePolicy;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.util.EntityUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -47,6 +62,9 @@ import org.opennms.core.test.http.annotations.JUnitHttpServer;
 import org.opennms.core.test.http.annotations.Webapp;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.monitors.PageSequenceMonitor.PageSequenceHttpClient;
+import org.opennms.netmgt.poller.monitors.PageSequenceMonitor.PageSequenceHttpGet;
+import org.opennms.netmgt.poller.monitors.PageSequenceMonitor.PageSequenceHttpPost;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.mock.MockMonitoredService;
 import org.opennms.test.JUnitConfigurationEnvironment;
@@ -414,4 +432,55 @@ public class PageSequenceMonitorTest {
         PollStatus status = m_monitor.poll(getHttpService("localhost"), m_params);
         assertTrue("Expected available but was "+status+": reason = "+status.getReason(), status.isAvailable());
     }
+
+    @Test
+    @JUnitHttpServer(port=10342, https=true)
+    public void testSslVerificationIsChosenPerPage() throws Exception {
+        final PageSequenceHttpClient client = new PageSequenceHttpClient(createClientParams(), 0);
+        final URI uri = new URI("https://localhost:10342/index.html");
+
+        // the test server's certificate is self-signed
+        assertEquals(200, consume(client.execute(new PageSequenceHttpGet(uri), true)));
+        try {
+            client.execute(new PageSequenceHttpGet(uri), false);
+            fail("Expected the self-signed certificate to be rejected");
+        } catch (final SSLException e) {
+            // expected
+        }
+        assertEquals(200, consume(client.execute(new PageSequenceHttpGet(uri), true)));
+    }
+
+    @Test
+    @JUnitHttpServer(port=10342, webapps=@Webapp(context="/opennms", path="src/test/resources/loginTestWar"))
+    public void testCookiesCarryOverBetweenClients() throws Exception {
+        final PageSequenceHttpClient client = new PageSequenceHttpClient(createClientParams(), 0);
+
+        assertEquals(200, consume(client.execute(new PageSequenceHttpGet(new URI("http://localhost:10342/opennms/")), true)));
+
+        final PageSequenceHttpPost login = new PageSequenceHttpPost(new URI("http://localhost:10342/opennms/j_spring_security_check"));
+        final List<NameValuePair> parms = new ArrayList<NameValuePair>();
+        parms.add(new BasicNameValuePair("j_username", "demo"));
+        parms.add(new BasicNameValuePair("j_password", "demo"));
+        login.setQueryParameters(parms);
+        final int status = consume(client.execute(login, false));
+        assertTrue("Expected a redirect but got " + status, status >= 300 && status < 400);
+
+        // the session cookie set for the strict client's page is sent by the relaxed one
+        final HttpResponse response = client.execute(new PageSequenceHttpGet(new URI("http://localhost:10342/opennms/events.html")), true);
+        final String body = EntityUtils.toString(response.getEntity());
+        assertTrue("Expected to be logged in but got: " + body, body.contains("Event Queries"));
+    }
+
+    private static HttpParams createClientParams() {
+        final HttpParams params = new BasicHttpParams();
+        params.setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, 8000);
+        params.setIntParameter(CoreConnectionPNames.SO_TIMEOUT, 8000);
+        params.setParameter(ClientPNames.COOKIE_POLICY, CookiePolicy.BROWSER_COMPATIBILITY);
+        return params;
+    }
+
+    private static int consume(final HttpResponse response) throws Exception {
+        EntityUtils.consume(response.getEntity());
+        return response.getStatusLine().getStatusCode();
+    }
 }
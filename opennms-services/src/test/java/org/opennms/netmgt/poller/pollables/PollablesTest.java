@@ -44,7 +44,11 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 
 import javax.sql.DataSource;
 
@@ -64,6 +68,7 @@ import org.opennms.netmgt.eventd.mock.MockEventIpcManager;
 import org.opennms.netmgt.mock.MockElement;
 import org.opennms.netmgt.mock.MockEventUtil;
 import org.opennms.netmgt.mock.MockInterface;
+import org.opennms.netmgt.mock.MockMonitor;
 import org.opennms.netmgt.mock.MockNetwork;
 import org.opennms.netmgt.mock.MockNode;
 import org.opennms.netmgt.mock.MockPollerConfig;
@@ -72,6 +77,10 @@ import org.opennms.netmgt.mock.MockVisitor;
 import org.opennms.netmgt.mock.MockVisitorAdapter;
 import org.opennms.netmgt.mock.OutageAnticipator;
 import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
+import org.opennms.netmgt.poller.DefaultPollFuture;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollFuture;
 import org.opennms.netmgt.poller.mock.MockPollContext;
 import org.opennms.netmgt.poller.mock.MockScheduler;
 import org.opennms.netmgt.poller.mock.MockTimer;
@@ -1676,6 +1685,158 @@ public class PollablesTest {
         
     }
     
+    @Test
+    public void testAsyncPoll() {
+        AsyncMockMonitor monitor = useAsyncMonitor("SMTP");
+        pDot1Smtp.getSchedule().schedule();
+
+        // the scheduled run only starts the poll
+        m_scheduler.next();
+        assertTime(0);
+        assertEquals(1, monitor.getPendingCount());
+        assertNoPoll(mDot1Smtp);
+
+        mDot1Smtp.bringDown();
+        anticipateDown(mDot1Smtp);
+
+        // the completion is handed back to the scheduler and processed there
+        monitor.completeNext();
+        assertPoll(mDot1Smtp);
+        assertUp(pDot1Smtp);
+
+        m_scheduler.next();
+        assertTime(0);
+        assertDown(pDot1Smtp);
+        verifyAnticipated();
+
+        // the schedule was adjusted to the downtime model
+        m_scheduler.next();
+        assertTime(100);
+        assertEquals(1, monitor.getPendingCount());
+
+        mDot1Smtp.bringUp();
+        anticipateUp(mDot1Smtp);
+        monitor.completeNext();
+        m_scheduler.next();
+        assertUp(pDot1Smtp);
+        verifyAnticipated();
+    }
+
+    @Test
+    public void testAsyncPollSkippedWhileOutstanding() {
+        AsyncMockMonitor monitor = useAsyncMonitor("SMTP");
+        pDot1Smtp.getSchedule().schedule();
+
+        m_scheduler.next();
+        assertTime(0);
+        assertEquals(1, monitor.getPendingCount());
+
+        // the next scheduled poll is skipped, but stays on the schedule
+        m_scheduler.next();
+        assertTime(1000);
+        assertEquals(1, monitor.getPendingCount());
+
+        monitor.completeNext();
+        m_scheduler.next();
+        assertTime(1000);
+        assertPoll(mDot1Smtp);
+
+        m_scheduler.next();
+        assertTime(2000);
+        assertEquals(1, monitor.getPendingCount());
+    }
+
+    @Test
+    public void testAsyncPollCompletesAfterDelete() {
+        AsyncMockMonitor monitor = useAsyncMonitor("SMTP");
+        pDot1Smtp.getSchedule().schedule();
+
+        m_scheduler.next();
+        assertEquals(1, monitor.getPendingCount());
+
+        pDot1Smtp.delete();
+
+        // the result is dropped: no outage and no event for the service
+        mDot1Smtp.bringDown();
+        monitor.completeNext();
+        m_scheduler.next();
+        assertUp(pDot1Smtp);
+        verifyAnticipated();
+    }
+
+    @Test
+    public void testAsyncPollCompletesAfterUnschedule() {
+        AsyncMockMonitor monitor = useAsyncMonitor("SMTP");
+        pDot1Smtp.getSchedule().schedule();
+
+        m_scheduler.next();
+        assertEquals(1, monitor.getPendingCount());
+
+        pDot1Smtp.getSchedule().unschedule();
+
+        mDot1Smtp.bringDown();
+        monitor.completeNext();
+        m_scheduler.next();
+        assertUp(pDot1Smtp);
+        verifyAnticipated();
+
+        // once it is scheduled again the service is polled as usual
+        pDot1Smtp.getSchedule().schedule();
+        m_scheduler.next();
+        assertEquals(1, monitor.getPendingCount());
+    }
+
+    @Test
+    public void testAsyncPollPostponed() throws Exception {
+        AsyncMockMonitor monitor = useAsyncMonitor("SMTP");
+        pDot1Smtp.getSchedule().schedule();
+
+        m_scheduler.next();
+        mDot1Smtp.bringDown();
+        anticipateDown(mDot1Smtp);
+        monitor.completeNext();
+
+        // hold the tree lock so processing the result has to be postponed
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread locker = new Thread() {
+            @Override
+            public void run() {
+                pNode1.withTreeLock(new Runnable() {
+                    @Override
+                    public void run() {
+                        locked.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+        };
+        locker.start();
+        locked.await();
+        try {
+            m_scheduler.next();
+        } finally {
+            release.countDown();
+            locker.join();
+        }
+        assertTime(0);
+        assertUp(pDot1Smtp);
+
+        // the result is processed 5 to 14 seconds later, the scheduled polls
+        // in between are skipped
+        while (pDot1Smtp.getStatus().isUp()) {
+            m_scheduler.next();
+            assertEquals(0, monitor.getPendingCount());
+        }
+        assertTrue("Unexpected time " + m_scheduler.getCurrentTime(), m_scheduler.getCurrentTime() >= 5000 && m_scheduler.getCurrentTime() < 15000);
+        assertDown(pDot1Smtp);
+        verifyAnticipated();
+    }
+
     @Test
     public void testComputeScheduledOutageTime() {
         Package pkg = m_pollerConfig.getPackage("TestPackage");
@@ -2461,6 +2622,12 @@ public class PollablesTest {
     }
 
 
+    private AsyncMockMonitor useAsyncMonitor(String svcName) {
+        AsyncMockMonitor monitor = new AsyncMockMonitor(m_mockNetwork, svcName);
+        m_pollerConfig.getServiceMonitors().put(svcName, monitor);
+        return monitor;
+    }
+
     private void assertPoll(MockService svc) {
         assertEquals(1, svc.getPollCount());
         svc.resetPollCount();
@@ -2583,4 +2750,46 @@ public class PollablesTest {
     }
 
 
+    /**
+     * Polls the mock network like {@link MockMonitor}, but only when the test
+     * completes the pending asynchronous polls.
+     */
+    private static class AsyncMockMonitor extends MockMonitor implements AsyncServiceMonitor {
+        private final List<PendingPoll> m_pending = new LinkedList<PendingPoll>();
+
+        private static class PendingPoll {
+            private final MonitoredService m_svc;
+            private final Map<String, Object> m_parameters;
+            private final DefaultPollFuture m_future = new DefaultPollFuture();
+
+            PendingPoll(MonitoredService svc, Map<String, Object> parameters) {
+                m_svc = svc;
+                m_parameters = parameters;
+            }
+        }
+
+        AsyncMockMonitor(MockNetwork network, String svcName) {
+            super(network, svcName);
+        }
+
+        @Override
+        public synchronized PollFuture pollAsync(MonitoredService svc, Map<String, Object> parameters) {
+            PendingPoll poll = new PendingPoll(svc, parameters);
+            m_pending.add(poll);
+            return poll.m_future;
+        }
+
+        public synchronized int getPendingCount() {
+            return m_pending.size();
+        }
+
+        public void completeNext() {
+            PendingPoll poll;
+            synchronized (this) {
+                poll = m_pending.remove(0);
+            }
+            poll.m_future.setStatus(poll(poll.m_svc, poll.m_parameters));
+        }
+    }
+
 }
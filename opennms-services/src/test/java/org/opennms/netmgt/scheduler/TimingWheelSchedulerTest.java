@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+import org.opennms.core.fiber.PausableFiber;
+import org.opennms.core.test.MockLogAppender;
+
+public class TimingWheelSchedulerTest extends TestCase {
+
+    private Scheduler m_scheduler;
+
+    private static class TimedRunnable implements ReadyRunnable {
+        private final long m_due;
+        private final CountDownLatch m_latch;
+        private volatile long m_ranAt = -1;
+
+        public TimedRunnable(final long interval, final CountDownLatch latch) {
+            m_due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(interval);
+            m_latch = latch;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void run() {
+            m_ranAt = System.nanoTime();
+            m_latch.countDown();
+        }
+
+        public long getLateness() {
+            return TimeUnit.NANOSECONDS.toMillis(m_ranAt - m_due);
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        MockLogAppender.setupLogging(false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (m_scheduler != null) {
+            m_scheduler.stop();
+        }
+        MockLogAppender.assertNoWarningsOrGreater();
+        super.tearDown();
+    }
+
+    public void testRunsWhenDue() throws Exception {
+        m_scheduler = new TimingWheelScheduler("Test", 2);
+        m_scheduler.start();
+
+        final CountDownLatch latch = new CountDownLatch(4);
+        final TimedRunnable[] runnables = new TimedRunnable[] {
+            new TimedRunnable(0, latch),
+            new TimedRunnable(50, latch),
+            new TimedRunnable(200, latch),
+            new TimedRunnable(20, latch),
+        };
+        m_scheduler.schedule(0, runnables[0]);
+        m_scheduler.schedule(50, runnables[1]);
+        m_scheduler.schedule(200, runnables[2]);
+        m_scheduler.schedule(20, runnables[3]);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (final TimedRunnable runnable : runnables) {
+            assertTrue("ran " + runnable.getLateness() + "ms early", runnable.getLateness() >= 0);
+        }
+    }
+
+    public void testOuterWheels() throws Exception {
+        // with a 1ms tick, 300ms and 70s go through the second and third wheel
+        m_scheduler = new TimingWheelScheduler("Test", 2, 1);
+        m_scheduler.start();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final TimedRunnable runnable = new TimedRunnable(300, latch);
+        m_scheduler.schedule(300, runnable);
+        final CountDownLatch neverLatch = new CountDownLatch(1);
+        m_scheduler.schedule(70000, new TimedRunnable(70000, neverLatch));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue("ran " + runnable.getLateness() + "ms early", runnable.getLateness() >= 0);
+        assertFalse(neverLatch.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, ((TimingWheelScheduler)m_scheduler).getScheduled());
+    }
+
+    public void testNotReadyIsRetried() throws Exception {
+        m_scheduler = new TimingWheelScheduler("Test", 2);
+        m_scheduler.start();
+
+        final AtomicBoolean ready = new AtomicBoolean(false);
+        final AtomicInteger checks = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(1);
+        m_scheduler.schedule(0, new ReadyRunnable() {
+            @Override
+            public boolean isReady() {
+                checks.incrementAndGet();
+                return ready.get();
+            }
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+
+        assertFalse(latch.await(3 * TimingWheelScheduler.NOT_READY_DELAY, TimeUnit.MILLISECONDS));
+        assertTrue("expected the runnable to be checked again, checks = " + checks.get(), checks.get() > 1);
+
+        ready.set(true);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    public void testPauseAndResume() throws Exception {
+        m_scheduler = new TimingWheelScheduler("Test", 2);
+        m_scheduler.start();
+        while (m_scheduler.getStatus() != PausableFiber.RUNNING) {
+            Thread.sleep(10);
+        }
+        m_scheduler.pause();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        m_scheduler.schedule(10, new TimedRunnable(10, latch));
+        assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+
+        m_scheduler.resume();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Measures how late runnables are dispatched and the dispatch rate for
+     * 10k, 100k and 1M runnables spread over 10 seconds, for the timing wheel
+     * and the legacy scheduler. Rename to testDispatchBenchmark to run it.
+     */
+    public void xtestDispatchBenchmark() throws Exception {
+        for (final int count : new int[] { 10000, 100000, 1000000 }) {
+            benchmark(new TimingWheelScheduler("Bench", 8), count);
+            if (count <= 100000) {
+                // the legacy scheduler takes too long to sweep 1M runnables
+                benchmark(new LegacyScheduler("Bench", 8), count);
+            }
+        }
+    }
+
+    private static void benchmark(final Scheduler scheduler, final int count) throws InterruptedException {
+        final long spread = 10000;
+        final Random random = new Random(count);
+        final CountDownLatch latch = new CountDownLatch(count);
+        final AtomicLong totalLateness = new AtomicLong();
+        final AtomicLong maxLateness = new AtomicLong();
+
+        scheduler.start();
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            final long interval = (long) (random.nextDouble() * spread);
+            final long due = System.currentTimeMillis() + interval;
+            scheduler.schedule(interval, new ReadyRunnable() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void run() {
+                    final long lateness = Math.max(0, System.currentTimeMillis() - due);
+                    totalLateness.addAndGet(lateness);
+                    long max;
+                    while (lateness > (max = maxLateness.get()) && !maxLateness.compareAndSet(max, lateness));
+                    latch.countDown();
+                }
+            });
+        }
+        final long scheduled = System.currentTimeMillis() - start;
+
+        latch.await(5, TimeUnit.MINUTES);
+        final long elapsed = System.currentTimeMillis() - start;
+        scheduler.stop();
+
+        final long ran = count - latch.getCount();
+        System.err.println(String.format("%s: %d runnables, scheduled in %dms, %d ran in %dms (%.0f/s), mean lateness %.1fms, max lateness %dms",
+            scheduler.getClass().getSimpleName(), count, scheduled, ran, elapsed,
+            ran * 1000.0 / elapsed, ran == 0 ? 0.0 : (double) totalLateness.get() / ran, maxLateness.get()));
+    }
+}
@@ -31,6 +31,7 @@ package org.opennms.netmgt.statsd;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -167,6 +168,40 @@ public class ReportDefinitionTest extends TestCase {
         m_mocks.replayAll();
     }
 
+    public void testUnfilteredResourceAttributeFilteringWithParallelism() throws Exception {
+        ExternalValueAttribute externalValueAttribute = new ExternalValueAttribute("ifSpeed", "100000000");
+        MockResourceType resourceType = new MockResourceType();
+        resourceType.setName("interfaceSnmp");
+
+        ReportDefinition def = createReportDefinition();
+        def.setResourceAttributeKey(externalValueAttribute.getName());
+        def.setResourceAttributeValueMatch(externalValueAttribute.getValue());
+        def.setParallelism(4);
+        ReportInstance report = def.createReport(m_nodeDao, m_resourceDao, m_rrdDao, m_filterDao);
+        assertEquals("parallelism", 4, report.getParallelism());
+
+        List<OnmsResource> resources = new ArrayList<OnmsResource>();
+        for (int i = 0; i < 50; i++) {
+            OnmsAttribute rrdAttribute = new RrdGraphAttribute("IfInOctets", "something" + i, "something else");
+            Set<OnmsAttribute> attributes = new HashSet<OnmsAttribute>();
+            attributes.add(rrdAttribute);
+            attributes.add(externalValueAttribute);
+            resources.add(new OnmsResource(Integer.toString(i), "Interface " + i, resourceType, attributes));
+            EasyMock.expect(m_rrdDao.getPrintValue(rrdAttribute, def.getConsolidationFunction(), report.getStartTime(), report.getEndTime())).andReturn(Double.valueOf(i));
+        }
+        EasyMock.expect(m_resourceDao.findTopLevelResources()).andReturn(resources);
+
+        m_mocks.replayAll();
+        
+        report.walk();
+        
+        m_mocks.verifyAll();
+
+        assertEquals("fetch count", 50, report.getFetchCount());
+        assertEquals("results size", 10, report.getResults().size());
+        assertEquals("first result", 0.0, report.getResults().first().getStatistic());
+    }
+
     public void testFilteredResourceAttributeFilteringWithNoMatch() throws Exception {
         final OnmsNode node = new OnmsNode();
         node.setId(1);
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SubstringMatcherTest {
+
+    @Test
+    public void testOverlappingSubstrings() {
+        final SubstringMatcher matcher = new SubstringMatcher(Arrays.asList("he", "she", "his", "hers"));
+
+        assertEquals(bits(0, 1, 3), matcher.findAll("ushers"));
+        assertEquals(bits(2), matcher.findAll("this"));
+        assertEquals(bits(), matcher.findAll("nothing to see"));
+        assertTrue(matcher.containsAny("ushers"));
+        assertFalse(matcher.containsAny("nothing to sea"));
+    }
+
+    @Test
+    public void testSubstringsThatEndInsideOthers() {
+        final SubstringMatcher matcher = new SubstringMatcher(Arrays.asList("CRISCO", "ISC", "password", "word"));
+
+        assertEquals(bits(0, 1), matcher.findAll("A CRISCO message"));
+        assertEquals(bits(1), matcher.findAll("A CRISC message"));
+        assertEquals(bits(2, 3), matcher.findAll("bad password"));
+        assertEquals(bits(3), matcher.findAll("passwor word"));
+    }
+
+    @Test
+    public void testDuplicateAndEmptySubstrings() {
+        final SubstringMatcher matcher = new SubstringMatcher(Arrays.asList("TEST", "", "TEST"));
+
+        assertEquals(bits(1), matcher.findAll("no match"));
+        assertEquals(bits(0, 1, 2), matcher.findAll("a TEST message"));
+        assertTrue(matcher.containsAny(""));
+    }
+
+    @Test
+    public void testNoSubstrings() {
+        final SubstringMatcher matcher = new SubstringMatcher(Collections.<String>emptyList());
+
+        assertEquals(0, matcher.size());
+        assertEquals(bits(), matcher.findAll("anything"));
+        assertFalse(matcher.containsAny("anything"));
+    }
+
+    @Test
+    public void testAgreesWithStringContains() {
+        final List<String> substrings = new ArrayList<String>();
+        for (final String s : new String[] { "a", "ab", "abc", "bca", "cab", "bb", "cc", "abcabc", "acb" }) {
+            substrings.add(s);
+        }
+        final SubstringMatcher matcher = new SubstringMatcher(substrings);
+
+        final String[] texts = { "", "a", "abcab", "bbcca", "cabcabcabc", "acbacb", "ccccbbbb" };
+        for (final String text : texts) {
+            final BitSet expected = new BitSet();
+            for (int i = 0; i < substrings.size(); i++) {
+                if (text.contains(substrings.get(i))) {
+                    expected.set(i);
+                }
+            }
+            assertEquals("matches in '" + text + "'", expected, matcher.findAll(text));
+            assertEquals("any match in '" + text + "'", !expected.isEmpty(), matcher.containsAny(text));
+        }
+    }
+
+    private static BitSet bits(final int... ids) {
+        final BitSet bits = new BitSet();
+        for (final int id : ids) {
+            bits.set(id);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.UnsupportedEncodingException;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.CodecEmbedderException;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.frame.TooLongFrameException;
+import org.junit.Test;
+
+public class SyslogFrameDecoderTest {
+
+    @Test
+    public void testOctetCounting() throws Exception {
+        final DecoderEmbedder<byte[]> decoder = new DecoderEmbedder<byte[]>(new SyslogFrameDecoder(1024));
+
+        decoder.offer(buffer("11 <34>message12 <34>message\n"));
+
+        assertEquals("<34>message", poll(decoder));
+        assertEquals("<34>message\n", poll(decoder));
+        assertNull(decoder.poll());
+    }
+
+    @Test
+    public void testNewlineFraming() throws Exception {
+        final DecoderEmbedder<byte[]> decoder = new DecoderEmbedder<byte[]>(new SyslogFrameDecoder(1024));
+
+        decoder.offer(buffer("<34>first\n<34>second\r\n\n<34>third\0\n"));
+
+        assertEquals("<34>first", poll(decoder));
+        assertEquals("<34>second", poll(decoder));
+        assertEquals("<34>third", poll(decoder));
+        assertNull(decoder.poll());
+    }
+
+    @Test
+    public void testFramesSplitAcrossReads() throws Exception {
+        final DecoderEmbedder<byte[]> decoder = new DecoderEmbedder<byte[]>(new SyslogFrameDecoder(1024));
+
+        decoder.offer(buffer("1"));
+        decoder.offer(buffer("3 <34>a CRISCO"));
+        assertNull(decoder.poll());
+        decoder.offer(buffer(" <34>unterminated"));
+
+        assertEquals("<34>a CRISCO ", poll(decoder));
+        assertNull(decoder.poll());
+
+        // the last message is delivered when the connection is closed
+        assertTrue(decoder.finish());
+        assertEquals("<34>unterminated", poll(decoder));
+    }
+
+    @Test
+    public void testTooLong() throws Exception {
+        final DecoderEmbedder<byte[]> decoder = new DecoderEmbedder<byte[]>(new SyslogFrameDecoder(16));
+
+        try {
+            decoder.offer(buffer("1000 <34>message"));
+            fail("expected a TooLongFrameException");
+        } catch (final CodecEmbedderException e) {
+            assertTrue(e.getCause() instanceof TooLongFrameException);
+        }
+    }
+
+    private static String poll(final DecoderEmbedder<byte[]> decoder) throws UnsupportedEncodingException {
+        final byte[] frame = decoder.poll();
+        return frame == null ? null : new String(frame, "US-ASCII");
+    }
+
+    private static Object buffer(final String data) throws UnsupportedEncodingException {
+        return ChannelBuffers.wrappedBuffer(data.getBytes("US-ASCII"));
+    }
+}
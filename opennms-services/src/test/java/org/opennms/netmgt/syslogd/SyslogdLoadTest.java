@@ -31,19 +31,24 @@ package org.opennms.netmgt.syslogd;
 import static org.junit.Assert.assertEquals;
 import static org.opennms.core.utils.InetAddressUtils.addr;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.net.BindException;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
@@ -223,6 +228,79 @@ public class SyslogdLoadTest implements InitializingBean {
         System.err.println(String.format("total time: %d, wait time: %d, events per second: %8.4f", total, (end - mid), eventsPerSecond));
     }
 
+    @Test
+    @Transactional
+    public void testTcpSyslog() throws Exception {
+        final int connections = 2;
+        final int messagesPerConnection = 50000;
+        final int eventCount = connections * messagesPerConnection;
+
+        final SyslogStatistics statistics = new SyslogStatistics();
+        final SyslogTcpListener listener = new SyslogTcpListener(new InetSocketAddress(addr("127.0.0.1"), 0), 4, 64 * 1024, null,
+                MATCH_PATTERN, HOST_GROUP, MESSAGE_GROUP, new UeiList(), new HideMessage(), DISCARD_UEI, statistics);
+        listener.start("testTcpSyslog");
+
+        m_eventCounter.setAnticipated(eventCount);
+
+        final ExecutorService senders = Executors.newFixedThreadPool(connections);
+        final long start = System.currentTimeMillis();
+        try {
+            final List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int i = 0; i < connections; i++) {
+                // alternate between octet counting and newline framing
+                final boolean octetCounting = (i % 2 == 0);
+                results.add(senders.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        sendOverTcp(listener.getLocalAddress(), messagesPerConnection, octetCounting);
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> result : results) {
+                result.get();
+            }
+
+            m_eventCounter.waitForFinish(120000);
+        } finally {
+            senders.shutdown();
+            listener.stop();
+        }
+        final long end = System.currentTimeMillis();
+
+        final long total = (end - start);
+        final double eventsPerSecond = (eventCount * 1000.0 / total);
+        System.err.println(String.format("total time: %d, events per second: %8.4f", total, eventsPerSecond));
+
+        assertEquals("messages received", eventCount, statistics.getMessagesReceived());
+        assertEquals("messages dropped", 0, statistics.getMessagesDropped());
+        assertEquals("messages not converted", 0, statistics.getMessagesParseFailed());
+        assertEquals("events sent", eventCount, m_eventCounter.getCount());
+    }
+
+    private static void sendOverTcp(final InetSocketAddress address, final int count, final boolean octetCounting) throws IOException {
+        final SyslogClient sc = new SyslogClient(null, 10, SyslogClient.LOG_DEBUG);
+        final Socket socket = new Socket(address.getAddress(), address.getPort());
+        try {
+            final OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            for (int i = 0; i < count; i++) {
+                final DatagramPacket pkt = sc.getPacket(SyslogClient.LOG_DEBUG, String.format("2010-08-19 localhost foo%d: load test %d on tty1", i, i));
+                // leave out the trailing NUL of the datagram
+                final int length = pkt.getLength() - 1;
+                if (octetCounting) {
+                    out.write((length + " ").getBytes("US-ASCII"));
+                    out.write(pkt.getData(), 0, length);
+                } else {
+                    out.write(pkt.getData(), 0, length);
+                    out.write('\n');
+                }
+            }
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
     @Test
     @Transactional
     public void testRfcSyslog() throws Exception {
@@ -36,7 +36,10 @@ import java.io.InputStream;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.net.BindException;
 import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.channels.DatagramChannel;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -60,6 +63,7 @@ import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
 import org.opennms.core.utils.BeanUtils;
 import org.opennms.netmgt.config.SyslogdConfig;
 import org.opennms.netmgt.config.SyslogdConfigFactory;
+import org.opennms.netmgt.config.syslogd.Match;
 import org.opennms.netmgt.config.syslogd.UeiMatch;
 import org.opennms.netmgt.eventd.mock.EventAnticipator;
 import org.opennms.netmgt.eventd.mock.MockEventIpcManager;
@@ -426,6 +430,83 @@ public class SyslogdTest implements InitializingBean {
                       "100 out of 666 tests failed for bar");
     }
     
+    @Test
+    public void testSubstrUEIRewriteAfterReload() throws Exception {
+        doMessageTest("2007-01-01 localhost A CRISCO BEVERAGE message",
+                      m_localhost, "uei.opennms.org/tests/syslogd/substrUeiRewriteTest",
+                      "A CRISCO BEVERAGE message");
+
+        InputStream stream = null;
+        try {
+            stream = ConfigurationTestUtils.getInputStreamForResource(this, "/etc/syslogd-configuration.xml");
+            final SyslogdConfigFactory config = new SyslogdConfigFactory(stream);
+            final Match match = new Match();
+            match.setType("substr");
+            match.setExpression("BEVERAGE");
+            final UeiMatch ueiMatch = new UeiMatch();
+            ueiMatch.setMatch(match);
+            ueiMatch.setUei("uei.opennms.org/tests/syslogd/substrUeiReloadTest");
+            config.getUeiList().addUeiMatch(0, ueiMatch);
+            SyslogdConfigFactory.setInstance(config);
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+
+        doMessageTest("2007-01-01 localhost A CRISCO BEVERAGE message",
+                      m_localhost, "uei.opennms.org/tests/syslogd/substrUeiReloadTest",
+                      "A CRISCO BEVERAGE message");
+    }
+
+    @Test
+    public void testChannelReceiver() throws Exception {
+        final SyslogdConfig config = SyslogdConfigFactory.getInstance();
+        final DatagramChannel channel = DatagramChannel.open();
+        channel.socket().bind(new InetSocketAddress(addr(m_localhost), 0));
+        final SyslogStatistics statistics = new SyslogStatistics();
+        final SyslogChannelReceiver receiver = new SyslogChannelReceiver(channel, 2, 4, 2, 100,
+                config.getForwardingRegexp(), config.getMatchingGroupHost(), config.getMatchingGroupMessage(),
+                config.getUeiList(), config.getHideMessages(), config.getDiscardUei(), statistics);
+
+        final EventBuilder expectedEventBldr = new EventBuilder("uei.opennms.org/tests/syslogd/substrUeiRewriteTest", "syslogd");
+        expectedEventBldr.setInterface(addr(m_localhost));
+        expectedEventBldr.setLogDest("logndisplay");
+        expectedEventBldr.setLogMessage("A CRISCO message");
+
+        final EventAnticipator ea = new EventAnticipator();
+        m_eventIpcManager.addEventListener(ea);
+        final int count = 10;
+        for (int i = 0; i < count; i++) {
+            ea.anticipateEvent(expectedEventBldr.getEvent());
+        }
+
+        receiver.start("testChannelReceiver");
+        final DatagramSocket socket = new DatagramSocket();
+        try {
+            final SyslogClient sc = new SyslogClient(null, 10, SyslogClient.LOG_DAEMON);
+            for (int i = 0; i < count; i++) {
+                final DatagramPacket pkt = sc.getPacket(SyslogClient.LOG_DEBUG, "2007-01-01 localhost A CRISCO message");
+                pkt.setSocketAddress(channel.socket().getLocalSocketAddress());
+                socket.send(pkt);
+            }
+            final DatagramPacket junk = sc.getPacket(SyslogClient.LOG_DEBUG, "2007-01-01 127.0.0.1 A JUNK message");
+            junk.setSocketAddress(channel.socket().getLocalSocketAddress());
+            socket.send(junk);
+
+            ea.verifyAnticipated(5000, 0, 0, 0, 0);
+            for (int i = 0; i < 50 && statistics.getMessagesParseFailed() == 0; i++) {
+                Thread.sleep(100);
+            }
+        } finally {
+            socket.close();
+            receiver.stop();
+            channel.close();
+        }
+
+        assertEquals("messages received", count + 1, statistics.getMessagesReceived());
+        assertEquals("messages dropped", 0, statistics.getMessagesDropped());
+        assertEquals("discarded messages", 1, statistics.getMessagesParseFailed());
+    }
+
     @Test
     public void testSubstrTESTTestThatRemovesATESTString() throws Exception {
         doMessageTest("2007-01-01 localhost A CRISCO message that is also a TESTHIDING message -- hide me!",
@@ -33,6 +33,9 @@ import java.util.Map;
 
 import junit.framework.Assert;
 
+import org.apache.commons.jexl2.JexlEngine;
+import org.apache.commons.jexl2.MapContext;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.opennms.netmgt.config.threshd.Expression;
 
@@ -79,4 +82,64 @@ public class ExpressionConfigWrapperTest {
         Assert.assertEquals(60.0, wrapper.evaluate(values));
     }
 
+    @Test
+    public void testCompiledExpressionIsShared() throws Exception {
+        Expression exp = new Expression();
+        exp.setExpression("ifInOctets * 8 / ifSpeed");
+        ExpressionConfigWrapper first = new ExpressionConfigWrapper(exp);
+        ExpressionConfigWrapper second = new ExpressionConfigWrapper(exp);
+        Assert.assertSame(first.getRequiredDatasources(), second.getRequiredDatasources());
+        Assert.assertEquals(2, first.getRequiredDatasources().size());
+
+        Map<String, Double> values = new HashMap<String,Double>();
+        values.put("ifInOctets", 125.0);
+        values.put("ifSpeed", 1000.0);
+        Assert.assertEquals(1.0, first.evaluate(values));
+        values.put("ifInOctets", 250.0);
+        Assert.assertEquals(2.0, second.evaluate(values));
+
+        ExpressionConfigWrapper.clearCompiledExpressions();
+        ExpressionConfigWrapper third = new ExpressionConfigWrapper(exp);
+        Assert.assertNotSame(first.getRequiredDatasources(), third.getRequiredDatasources());
+        Assert.assertEquals(2.0, third.evaluate(values));
+    }
+
+    /**
+     * Compares evaluating a typical bandwidth expression by parsing it on every
+     * call (the previous behaviour) against the cached, compiled expression.
+     */
+    @Test
+    @Ignore("benchmark")
+    public void testEvaluationBenchmark() throws Exception {
+        final int iterations = 1000000;
+        final String text = "ifInOctets * 8 / ifSpeed";
+        Map<String, Double> values = new HashMap<String,Double>();
+        values.put("ifInOctets", 125.0);
+        values.put("ifSpeed", 1000.0);
+
+        Expression exp = new Expression();
+        exp.setExpression(text);
+        ExpressionConfigWrapper wrapper = new ExpressionConfigWrapper(exp);
+
+        for (int i = 0; i < iterations / 10; i++) {
+            wrapper.evaluate(values);
+            new JexlEngine().createExpression(text).evaluate(new MapContext(new HashMap<String,Object>(values)));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            MapContext context = new MapContext(new HashMap<String,Object>(values));
+            new JexlEngine().createExpression(text).evaluate(context);
+        }
+        long uncached = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            wrapper.evaluate(values);
+        }
+        long cached = System.nanoTime() - start;
+
+        System.err.println(String.format("%d evaluations of '%s': parsed per call %.1f ns/op, compiled %.1f ns/op", iterations, text, (double)uncached / iterations, (double)cached / iterations));
+    }
+
 }
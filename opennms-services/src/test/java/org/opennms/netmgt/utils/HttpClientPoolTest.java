@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.scheme.SchemeSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.SingleClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
+import org.opennms.core.test.http.annotations.JUnitHttpServer;
+import org.opennms.core.utils.LogUtils;
+import org.opennms.test.JUnitConfigurationEnvironment;
+import org.springframework.test.context.ContextConfiguration;
+
+/**
+ * Compares a client per request with clients that share the pooled
+ * connections against a local Jetty server. The 2000 request load runs
+ * only happen with -DrunLoadTests=true.
+ */
+@RunWith(OpenNMSJUnit4ClassRunner.class)
+@ContextConfiguration(locations="classpath:META-INF/opennms/emptyContext.xml")
+@JUnitConfigurationEnvironment
+@JUnitHttpServer(port=10342)
+public class HttpClientPoolTest {
+
+    private static final String URL = "http://localhost:10342/index.html";
+    private static final int MAX_PER_ROUTE = 4;
+    private static final int THREADS = 8;
+    private static final int REQUESTS = 100;
+    private static final int LOAD_REQUESTS = 2000;
+
+    private HttpClientPool m_pool;
+    private final AtomicInteger m_socketsOpened = new AtomicInteger();
+    private final AtomicInteger m_pooledSocketsOpened = new AtomicInteger();
+    private SchemeRegistry m_countingRegistry;
+
+    @Before
+    public void setUp() {
+        MockLogAppender.setupLogging();
+        m_pool = new HttpClientPool(MAX_PER_ROUTE, 20, 30000L, 60000L, 10000L, 100, 3600, new CountingSocketFactory(m_pooledSocketsOpened));
+        m_countingRegistry = new SchemeRegistry();
+        m_countingRegistry.register(new Scheme("http", 80, new CountingSocketFactory(m_socketsOpened)));
+    }
+
+    @After
+    public void tearDown() {
+        m_pool.stop();
+    }
+
+    @Test
+    public void testPooledConnectionsAreReused() throws Exception {
+        runRequests(true, REQUESTS);
+
+        assertEquals(REQUESTS, m_pool.getConnectionsLeased());
+        assertTrue("opened " + m_pool.getConnectionsCreated() + " connections", m_pool.getConnectionsCreated() <= MAX_PER_ROUTE);
+        assertTrue("pool holds " + m_pool.getConnectionsInPool() + " sockets", m_pool.getConnectionsInPool() <= MAX_PER_ROUTE);
+    }
+
+    @Test
+    public void testClientPerRequestOpensASocketPerRequest() throws Exception {
+        runRequests(false, REQUESTS);
+
+        assertEquals(REQUESTS, m_socketsOpened.get());
+    }
+
+    @Test
+    public void testPooledRunOpensFewerSockets() throws Exception {
+        runRequests(false, REQUESTS);
+        runRequests(true, REQUESTS);
+
+        final int perRequest = m_socketsOpened.get();
+        final int pooled = m_pooledSocketsOpened.get();
+        assertEquals(m_pool.getConnectionsCreated(), pooled);
+        assertTrue("pooled run opened " + pooled + " sockets, client per request opened " + perRequest, pooled * 10 <= perRequest);
+    }
+
+    @Test
+    public void testLoadComparison() throws Exception {
+        assumeTrue(Boolean.getBoolean("runLoadTests"));
+
+        final List<Long> perRequest = runRequests(false, LOAD_REQUESTS);
+        LogUtils.infof(this, "client per request: %d requests, %d sockets opened, %s",
+                       LOAD_REQUESTS, m_socketsOpened.get(), summarize(perRequest));
+
+        final List<Long> pooled = runRequests(true, LOAD_REQUESTS);
+        LogUtils.infof(this, "pooled: %d requests, %d sockets opened, reuse ratio %.3f, %s",
+                       LOAD_REQUESTS, m_pooledSocketsOpened.get(), m_pool.getConnectionReuseRatio(), summarize(pooled));
+
+        assertEquals(LOAD_REQUESTS, m_socketsOpened.get());
+        assertTrue("opened " + m_pooledSocketsOpened.get() + " sockets", m_pooledSocketsOpened.get() <= MAX_PER_ROUTE);
+    }
+
+    @Test
+    public void testIdleConnectionsAreClosed() throws Exception {
+        m_pool.stop();
+        m_pool = new HttpClientPool(MAX_PER_ROUTE, 20, 30000L, 0L, 10000L, 100, 3600);
+
+        final DefaultHttpClient client = m_pool.createClient(createParams(), false);
+        EntityUtils.consume(client.execute(new HttpGet(URL)).getEntity());
+        assertEquals(1, m_pool.getConnectionsInPool());
+
+        Thread.sleep(10);
+        m_pool.closeIdleConnections();
+        assertEquals(0, m_pool.getConnectionsInPool());
+    }
+
+    @Test
+    public void testEvictorIsDaemon() {
+        m_pool.start();
+        int evictors = 0;
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("HttpClientPool-Thread".equals(thread.getName())) {
+                assertTrue(thread.isDaemon());
+                evictors++;
+            }
+        }
+        assertTrue(evictors > 0);
+    }
+
+    private List<Long> runRequests(final boolean pooled, final int requests) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<Long>> futures = new ArrayList<Future<Long>>(requests);
+        for (int i = 0; i < requests; i++) {
+            futures.add(executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    final DefaultHttpClient client = pooled ? m_pool.createClient(createParams(), false) : new DefaultHttpClient(new SingleClientConnManager(m_countingRegistry), createParams());
+                    final long start = System.nanoTime();
+                    try {
+                        final HttpResponse response = client.execute(new HttpGet(URL));
+                        assertEquals(200, response.getStatusLine().getStatusCode());
+                        EntityUtils.consume(response.getEntity());
+                        return System.nanoTime() - start;
+                    } finally {
+                        if (!pooled) {
+                            client.getConnectionManager().shutdown();
+                        }
+                    }
+                }
+            }));
+        }
+
+        final List<Long> latencies = new ArrayList<Long>(requests);
+        for (final Future<Long> future : futures) {
+            latencies.add(future.get());
+        }
+        executor.shutdown();
+        return latencies;
+    }
+
+    /**
+     * Plain socket factory that counts the sockets it connects.
+     */
+    private static class CountingSocketFactory implements SchemeSocketFactory {
+        private final SchemeSocketFactory m_delegate = PlainSocketFactory.getSocketFactory();
+        private final AtomicInteger m_count;
+
+        public CountingSocketFactory(final AtomicInteger count) {
+            m_count = count;
+        }
+
+        @Override
+        public Socket createSocket(final HttpParams params) throws IOException {
+            return m_delegate.createSocket(params);
+        }
+
+        @Override
+        public Socket connectSocket(final Socket sock, final InetSocketAddress remoteAddress, final InetSocketAddress localAddress, final HttpParams params) throws IOException {
+            final Socket socket = m_delegate.connectSocket(sock, remoteAddress, localAddress, params);
+            m_count.incrementAndGet();
+            return socket;
+        }
+
+        @Override
+        public boolean isSecure(final Socket sock) {
+            return m_delegate.isSecure(sock);
+        }
+    }
+
+    private static HttpParams createParams() {
+        final HttpParams params = new BasicHttpParams();
+        params.setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, 5000);
+        params.setIntParameter(CoreConnectionPNames.SO_TIMEOUT, 5000);
+        return params;
+    }
+
+    private static String summarize(final List<Long> latencies) {
+        Collections.sort(latencies);
+        long total = 0;
+        for (final Long latency : latencies) {
+            total += latency;
+        }
+        return String.format("latency avg %.3fms, p50 %.3fms, p99 %.3fms",
+                             total / (latencies.size() * 1000000.0),
+                             latencies.get(latencies.size() / 2) / 1000000.0,
+                             latencies.get(latencies.size() * 99 / 100) / 1000000.0);
+    }
+}
@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.protocols.jmx.connectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.MBeanServerConnection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.core.utils.InetAddressUtils;
+
+public class JMXConnectionPoolTest {
+
+    private static class TestConnection implements ConnectionWrapper {
+        private boolean m_closed = false;
+
+        @Override
+        public MBeanServerConnection getMBeanServer() {
+            return ManagementFactory.getPlatformMBeanServer();
+        }
+
+        @Override
+        public void close() {
+            m_closed = true;
+        }
+    }
+
+    private static class TestConnector extends JMXConnectionPool.Connector {
+        private int m_connects = 0;
+        private boolean m_fail = false;
+        private TestConnection m_last;
+
+        public TestConnector() {
+            super("test");
+        }
+
+        @Override
+        public ConnectionWrapper connect(final Map<String, Object> parameters, final InetAddress address) {
+            m_connects++;
+            if (m_fail) {
+                return null;
+            }
+            m_last = new TestConnection();
+            return m_last;
+        }
+    }
+
+    /**
+     * Blocks in connect() until released, like an agent that accepts the
+     * connection but never answers.
+     */
+    private static class HangingConnector extends TestConnector {
+        private final CountDownLatch m_connecting = new CountDownLatch(1);
+        private final CountDownLatch m_release = new CountDownLatch(1);
+
+        @Override
+        public ConnectionWrapper connect(final Map<String, Object> parameters, final InetAddress address) {
+            m_connecting.countDown();
+            try {
+                m_release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.connect(parameters, address);
+        }
+    }
+
+    private final InetAddress m_address = InetAddressUtils.addr("127.0.0.1");
+    private final Map<String, Object> m_parameters = new HashMap<String, Object>();
+    private TestConnector m_connector;
+    private JMXConnectionPool m_pool;
+
+    @Before
+    public void setUp() {
+        MockLogAppender.setupLogging();
+        m_parameters.put("port", "1099");
+        m_connector = new TestConnector();
+        m_pool = new JMXConnectionPool(true, 60000L, 60000L, 60000L, 60000L);
+    }
+
+    @After
+    public void tearDown() {
+        m_pool.stop();
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        ConnectionWrapper first = m_pool.getConnection(m_connector, m_parameters, m_address);
+        assertNotNull(first);
+        first.getMBeanServer().getMBeanCount();
+        first.close();
+
+        ConnectionWrapper second = m_pool.getConnection(m_connector, m_parameters, m_address);
+        assertNotNull(second);
+        second.close();
+
+        assertEquals(1, m_connector.m_connects);
+        assertFalse(m_connector.m_last.m_closed);
+        assertEquals(1, m_pool.getPoolSize());
+        assertEquals(0, m_pool.getActiveConnections());
+        assertEquals(1, m_pool.getConnectionsOpened());
+        assertEquals(1, m_pool.getConnectionsReused());
+    }
+
+    @Test
+    public void testDifferentCredentialsAreNotShared() {
+        m_pool.getConnection(m_connector, m_parameters, m_address).close();
+
+        final Map<String, Object> other = new HashMap<String, Object>(m_parameters);
+        other.put("username", "admin");
+        other.put("password", "admin");
+        m_pool.getConnection(m_connector, other, m_address).close();
+
+        assertEquals(2, m_connector.m_connects);
+        assertEquals(2, m_pool.getPoolSize());
+    }
+
+    @Test
+    public void testInvalidateClosesConnection() {
+        ConnectionWrapper connection = m_pool.getConnection(m_connector, m_parameters, m_address);
+        final TestConnection underlying = m_connector.m_last;
+        JMXConnectionPool.invalidate(connection);
+
+        assertTrue(underlying.m_closed);
+        assertEquals(0, m_pool.getPoolSize());
+
+        connection = m_pool.getConnection(m_connector, m_parameters, m_address);
+        assertNotNull(connection);
+        connection.close();
+        assertEquals(2, m_connector.m_connects);
+        assertEquals(1, m_pool.getConnectionsInvalidated());
+    }
+
+    @Test
+    public void testReconnectBackoff() {
+        m_connector.m_fail = true;
+        assertNull(m_pool.getConnection(m_connector, m_parameters, m_address));
+        assertEquals(1, m_connector.m_connects);
+        assertEquals(1, m_pool.getConnectFailures());
+
+        // the agent is in backoff, so no new connect is attempted
+        m_connector.m_fail = false;
+        assertNull(m_pool.getConnection(m_connector, m_parameters, m_address));
+        assertEquals(1, m_connector.m_connects);
+
+        // unless the caller asks to ignore it, which also ends the backoff
+        final ConnectionWrapper connection = m_pool.getConnection(m_connector, m_parameters, m_address, false);
+        assertNotNull(connection);
+        connection.close();
+        assertEquals(2, m_connector.m_connects);
+        m_pool.getConnection(m_connector, m_parameters, m_address).close();
+        assertEquals(2, m_connector.m_connects);
+    }
+
+    @Test
+    public void testIdleConnectionsAreEvicted() throws Exception {
+        m_pool = new JMXConnectionPool(true, 0L, 60000L, 1000L, 1000L);
+        m_pool.getConnection(m_connector, m_parameters, m_address).close();
+        final TestConnection underlying = m_connector.m_last;
+
+        Thread.sleep(10);
+        m_pool.evictIdleConnections();
+
+        assertTrue(underlying.m_closed);
+        assertEquals(0, m_pool.getPoolSize());
+        assertEquals(1, m_pool.getConnectionsEvicted());
+    }
+
+    @Test
+    public void testLeasedConnectionsAreNotEvicted() throws Exception {
+        m_pool = new JMXConnectionPool(true, 0L, 60000L, 1000L, 1000L);
+        final ConnectionWrapper connection = m_pool.getConnection(m_connector, m_parameters, m_address);
+
+        Thread.sleep(10);
+        m_pool.evictIdleConnections();
+        assertFalse(m_connector.m_last.m_closed);
+        assertEquals(1, m_pool.getActiveConnections());
+
+        connection.close();
+        connection.close();
+        assertEquals(0, m_pool.getActiveConnections());
+    }
+
+    @Test
+    public void testDisabledPoolConnectsEveryTime() {
+        m_pool = new JMXConnectionPool(false, 60000L, 60000L, 1000L, 1000L);
+        final ConnectionWrapper connection = m_pool.getConnection(m_connector, m_parameters, m_address);
+        assertSame(m_connector.m_last, connection);
+        connection.close();
+        m_pool.getConnection(m_connector, m_parameters, m_address).close();
+        assertEquals(2, m_connector.m_connects);
+        assertEquals(0, m_pool.getPoolSize());
+    }
+
+    @Test(timeout=30000)
+    public void testHangingConnectDoesNotBlockPool() throws Exception {
+        m_pool = new JMXConnectionPool(true, 0L, 60000L, 1000L, 1000L);
+        m_pool.getConnection(m_connector, m_parameters, m_address).close();
+
+        final HangingConnector hanging = new HangingConnector();
+        final Map<String, Object> other = new HashMap<String, Object>(m_parameters);
+        other.put("port", "1100");
+        final AtomicReference<ConnectionWrapper> result = new AtomicReference<ConnectionWrapper>();
+        final Thread caller = new Thread("JMXConnectionPoolTest-caller") {
+            @Override
+            public void run() {
+                result.set(m_pool.getConnection(hanging, other, m_address));
+            }
+        };
+        caller.start();
+        assertTrue(hanging.m_connecting.await(10, TimeUnit.SECONDS));
+
+        // the getters and the reaper return while the connect is still hanging
+        assertEquals(2, m_pool.getPoolSize());
+        assertEquals(0, m_pool.getActiveConnections());
+        Thread.sleep(10);
+        m_pool.evictIdleConnections();
+        assertEquals(1, m_pool.getConnectionsEvicted());
+        assertEquals(1, m_pool.getPoolSize());
+
+        hanging.m_release.countDown();
+        caller.join(10000);
+        assertNotNull(result.get());
+        assertEquals(1, m_pool.getActiveConnections());
+        result.get().close();
+    }
+
+    @Test
+    public void testReaperIsDaemon() {
+        m_pool.start();
+        int reapers = 0;
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("JMXConnectionPool-Thread".equals(thread.getName())) {
+                assertTrue(thread.isDaemon());
+                reapers++;
+            }
+        }
+        assertTrue(reapers > 0);
+    }
+}
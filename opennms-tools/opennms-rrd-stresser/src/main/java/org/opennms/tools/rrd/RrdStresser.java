@@ -37,10 +37,16 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Properties;
 
+import org.jrobin.core.RrdBackendFactory;
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.jrobin.core.RrdException;
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdStrategy;
 import org.opennms.netmgt.rrd.RrdUtils;
+import org.opennms.netmgt.rrd.jrobin.MappedRrdBackendFactory;
 
 public class RrdStresser {
 	
@@ -102,6 +108,15 @@ public class RrdStresser {
 
     static final String EXTENSION = ".jrb";
 
+    //Set to 'pool' to compare JRobin updates/sec with and without the pool of open files,
+    //or to 'backends' to compare the JRobin backends listed in 'stresstest.backends'
+    static final String SCENARIO = System.getProperty("stresstest.scenario", "");
+
+    //Number of open files kept by the pooled strategy in the 'pool' scenario
+    static final int POOL_SIZE = Integer.getInteger("stresstest.poolsize", FILE_COUNT).intValue();
+
+    static final String[] BACKENDS = System.getProperty("stresstest.backends", "FILE,NIO," + MappedRrdBackendFactory.NAME).split(",");
+
     static long filesPerZero = FILE_COUNT / ZERO_FILES;
 
     static RrdStrategy<Object,Object> rrd = null;
@@ -197,6 +212,14 @@ public class RrdStresser {
 
         dataPosition = new int[FILE_COUNT];
 
+        if ("pool".equals(SCENARIO)) {
+            runPoolScenario();
+            return;
+        } else if ("backends".equals(SCENARIO)) {
+            runBackendScenario();
+            return;
+        }
+
         Date createStart = new Date();
 
         print("Creating " + FILE_COUNT + " RRD files");
@@ -234,6 +257,108 @@ public class RrdStresser {
         }
     }
 
+    /**
+     * Performs MAX_UPDATES sequential updates, round-robin over the files, once
+     * with a strategy that opens and closes every file and once with a strategy
+     * that keeps up to POOL_SIZE files open, and prints the rate of each.
+     */
+    private static void runPoolScenario() throws Exception {
+        RrdStrategy<Object,Object> unpooled = createStrategy(0);
+        RrdStrategy<Object,Object> pooled = createStrategy(POOL_SIZE);
+
+        rrd = unpooled;
+        print("Creating " + FILE_COUNT + " RRD files");
+        for (int i = 0; i < FILE_COUNT; i++) {
+            if (!new File(getFileName(i)).exists()) {
+                rrdCreateFile(rrdCreateDefinition(i));
+            }
+        }
+
+        print("Without pool: " + timeUpdates(unpooled) + " updates/sec");
+        print("With pool of " + POOL_SIZE + " files: " + timeUpdates(pooled) + " updates/sec (" + pooled.getStats() + ")");
+    }
+
+    /**
+     * Creates FILE_COUNT files for each backend and performs MAX_UPDATES
+     * updates on them, opening each file for UPDATES_PER_OPEN updates at a
+     * time, and prints the rate for each backend.
+     */
+    private static void runBackendScenario() throws Exception {
+        for (String name : BACKENDS) {
+            RrdBackendFactory factory = getBackendFactory(name.trim());
+            for (int i = 0; i < FILE_COUNT; i++) {
+                String fileName = getBackendFileName(factory, i);
+                if (!new File(fileName).exists()) {
+                    new File(fileName).getParentFile().mkdirs();
+                    RrdDef def = new RrdDef(fileName);
+                    def.setStartTime(1000);
+                    def.setStep(RRD_STEP);
+                    def.addDatasource(RRD_DATASOURCE_NAME, "GAUGE", 600, Double.NaN, Double.NaN);
+                    for (String rra : RRA_LIST) {
+                        def.addArchive(rra);
+                    }
+                    new RrdDb(def, factory).close();
+                }
+            }
+
+            Arrays.fill(dataPosition, 0);
+            long start = System.currentTimeMillis();
+            int updates = 0;
+            for (int fileNum = 0; updates < MAX_UPDATES; fileNum = (fileNum + 1) % FILE_COUNT) {
+                RrdDb rrdDb = new RrdDb(getBackendFileName(factory, fileNum), factory);
+                try {
+                    for (int i = 0; i < UPDATES_PER_OPEN && updates < MAX_UPDATES; i++, updates++) {
+                        rrdDb.createSample().setAndUpdate(getNextLine(fileNum));
+                    }
+                } finally {
+                    rrdDb.close();
+                }
+            }
+            long elapsed = Math.max(1L, System.currentTimeMillis() - start);
+            print(factory.getFactoryName() + ": " + (long) (updates * 1000.0 / elapsed) + " updates/sec");
+        }
+    }
+
+    private static RrdBackendFactory getBackendFactory(String name) throws Exception {
+        if (MappedRrdBackendFactory.NAME.equals(name)) {
+            try {
+                return RrdBackendFactory.getFactory(name);
+            } catch (RrdException e) {
+                RrdBackendFactory.registerFactory(new MappedRrdBackendFactory());
+            }
+        }
+        return RrdBackendFactory.getFactory(name);
+    }
+
+    private static String getBackendFileName(RrdBackendFactory factory, int fileNum) {
+        return getFileName(fileNum) + "." + factory.getFactoryName().toLowerCase();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RrdStrategy<Object,Object> createStrategy(int maxOpenFiles) throws Exception {
+        RrdStrategy<Object,Object> strategy = (RrdStrategy<Object,Object>) Class.forName(System.getProperty("org.opennms.rrd.strategyClass")).newInstance();
+        Properties properties = new Properties();
+        properties.setProperty("org.jrobin.core.RrdBackendFactory", FACTORY_NAME);
+        properties.setProperty("org.opennms.rrd.jrobin.maxOpenFiles", Integer.toString(maxOpenFiles));
+        strategy.setConfigurationProperties(properties);
+        return strategy;
+    }
+
+    private static long timeUpdates(RrdStrategy<Object,Object> strategy) throws Exception {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < MAX_UPDATES; i++) {
+            int fileNum = i % FILE_COUNT;
+            Object rrdFile = strategy.openFile(getFileName(fileNum));
+            try {
+                strategy.updateFile(rrdFile, "stressTest", getNextLine(fileNum));
+            } finally {
+                strategy.closeFile(rrdFile);
+            }
+        }
+        long elapsed = Math.max(1L, System.currentTimeMillis() - start);
+        return (long) (MAX_UPDATES * 1000.0 / elapsed);
+    }
+
     private static synchronized boolean moreUpdates() {
         return updateCount < MAX_UPDATES;
     }
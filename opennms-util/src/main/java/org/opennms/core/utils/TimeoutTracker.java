@@ -132,6 +132,21 @@ public class TimeoutTracker {
         return m_attempt;
     }
 
+    /**
+     * Returns how long {@link #startAttempt()} would sleep before starting the
+     * next attempt when strict timeouts are enabled. Callers that can not
+     * block use this to delay the attempt themselves.
+     *
+     * @return the remaining delay in nanoseconds, 0 if the next attempt can
+     *         start immediately
+     */
+    public long getNextAttemptDelayNanos() {
+        if (!m_strictTimeouts || m_nextRetryTimeNanos < 0) {
+            return 0L;
+        }
+        return Math.max(0L, m_nextRetryTimeNanos - System.nanoTime());
+    }
+
     /**
      * <p>startAttempt</p>
      */
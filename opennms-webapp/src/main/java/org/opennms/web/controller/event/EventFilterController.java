@@ -37,11 +37,14 @@ import javax.servlet.http.HttpServletResponse;
 import org.opennms.core.utils.WebSecurityUtils;
 import org.opennms.web.event.AcknowledgeType;
 import org.opennms.web.event.Event;
+import org.opennms.web.event.EventFactory;
 import org.opennms.web.event.EventQueryParms;
 import org.opennms.web.event.EventUtil;
 import org.opennms.web.event.SortStyle;
 import org.opennms.web.event.WebEventRepository;
 import org.opennms.web.event.filter.EventCriteria;
+import org.opennms.web.event.filter.EventIdAboveFilter;
+import org.opennms.web.event.filter.EventIdBelowFilter;
 import org.opennms.web.event.filter.EventIdFilter;
 import org.opennms.web.filter.Filter;
 import org.springframework.beans.factory.InitializingBean;
@@ -78,12 +81,15 @@ public class EventFilterController extends AbstractController implements Initial
     
     private boolean m_showEventCount = false;
 
+    private boolean m_estimateEventCount = false;
+
     /**
      * <p>Constructor for EventFilterController.</p>
      */
     public EventFilterController() {
         super();
         m_showEventCount = Boolean.getBoolean("opennms.eventlist.showCount");
+        m_estimateEventCount = Boolean.getBoolean("opennms.eventlist.estimateCount");
     }
 
     /**
@@ -175,7 +181,22 @@ public class EventFilterController extends AbstractController implements Initial
         parms.multiple =  multiple;
         parms.sortStyle = sortStyle;
         
-        EventCriteria queryCriteria = new EventCriteria(filters, sortStyle, ackType, limit, limit * multiple);
+        // The "Next" link carries the ID of the last event shown. When sorting by ID the
+        // query then starts right after it instead of skipping limit * multiple rows.
+        List<Filter> queryFilters = new ArrayList<Filter>(filterList);
+        int offset = limit * multiple;
+        String afterIdString = request.getParameter("afterid");
+        if (afterIdString != null && idString == null && (sortStyle == SortStyle.ID || sortStyle == SortStyle.REVERSE_ID)) {
+            try {
+                int afterId = WebSecurityUtils.safeParseInt(afterIdString);
+                queryFilters.add(sortStyle == SortStyle.ID ? new EventIdBelowFilter(afterId) : new EventIdAboveFilter(afterId));
+                offset = 0;
+            } catch (NumberFormatException e) {
+                // page with the offset instead
+            }
+        }
+
+        EventCriteria queryCriteria = new EventCriteria(queryFilters.toArray(new Filter[0]), sortStyle, ackType, limit, offset);
 
         Event[] events = m_webEventRepository.getMatchingEvents(queryCriteria);
         
@@ -183,7 +204,9 @@ public class EventFilterController extends AbstractController implements Initial
         modelAndView.addObject("events", events);
         modelAndView.addObject("parms", parms);
         
-        if (m_showEventCount) {
+        if (m_showEventCount && m_estimateEventCount && ackType != null) {
+            modelAndView.addObject("eventCount", Integer.valueOf(EventFactory.getEventCountEstimate(ackType, filters)));
+        } else if (m_showEventCount) {
             EventCriteria countCriteria = new EventCriteria(ackType, filters);
             modelAndView.addObject("eventCount", m_webEventRepository.countMatchingEvents(countCriteria));
         } else {
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.event.filter;
+
+import org.opennms.web.filter.GreaterThanFilter;
+import org.opennms.web.filter.SQLType;
+
+/**
+ * Matches the events with an ID above the given one. The event list uses it
+ * to page through events sorted by ascending ID from the last event shown.
+ */
+public class EventIdAboveFilter extends GreaterThanFilter<Integer> {
+    /** Constant <code>TYPE="eventIdAbove"</code> */
+    public static final String TYPE = "eventIdAbove";
+
+    /**
+     * <p>Constructor for EventIdAboveFilter.</p>
+     *
+     * @param eventId a int.
+     */
+    public EventIdAboveFilter(int eventId) {
+        super(TYPE, SQLType.INT, "EVENTID", "id", eventId);
+    }
+
+    /**
+     * <p>getTextDescription</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    @Override
+    public String getTextDescription() {
+        return ("event ID above " + getValue());
+    }
+}
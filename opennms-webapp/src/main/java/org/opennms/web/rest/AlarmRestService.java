@@ -36,24 +36,34 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.netmgt.dao.AcknowledgmentDao;
 import org.opennms.netmgt.dao.AlarmDao;
+import org.opennms.netmgt.dao.ResultHandler;
 import org.opennms.netmgt.model.AckAction;
 import org.opennms.netmgt.model.OnmsAcknowledgment;
 import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.OnmsAlarmCollection;
+import org.opennms.web.rest.support.XmlStreamingOutput;
 import org.opennms.web.springframework.security.Authentication;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.sun.jersey.spi.resource.PerRequest;
 
@@ -69,6 +79,9 @@ public class AlarmRestService extends AlarmRestServiceBase {
     @Autowired
     private AcknowledgmentDao m_ackDao;
 
+    @Autowired
+    private TransactionTemplate m_transactionTemplate;
+
     @Context
     UriInfo m_uriInfo;
 
@@ -103,16 +116,18 @@ public class AlarmRestService extends AlarmRestServiceBase {
      * getCount
      * </p>
      * 
+     * @param approximate
+     *            if true, return the planner's estimate instead of counting
      * @return a {@link java.lang.String} object.
      */
     @GET
     @Produces(MediaType.TEXT_PLAIN)
     @Path("count")
     @Transactional
-    public String getCount() {
+    public String getCount(@QueryParam("approximate") final Boolean approximate) {
         readLock();
         try {
-            return Integer.toString(m_alarmDao.countAll());
+            return Integer.toString(Boolean.TRUE.equals(approximate) ? m_alarmDao.estimateCountAll() : m_alarmDao.countAll());
         } finally {
             readUnlock();
         }
@@ -122,6 +137,14 @@ public class AlarmRestService extends AlarmRestServiceBase {
      * <p>
      * getAlarms
      * </p>
+     * <p>
+     * Pass the ID of the last alarm of a page as <code>afterId</code> to get
+     * the next page without an offset. Alarms are paged by last event time,
+     * so an alarm that is reduced again between two requests moves to the
+     * top and is not returned again further down. Pass
+     * <code>approximateCount=true</code> to take the total count of an
+     * unfiltered query from the planner statistics.
+     * </p>
      * 
      * @return a {@link org.opennms.netmgt.model.OnmsAlarmCollection} object.
      */
@@ -132,12 +155,22 @@ public class AlarmRestService extends AlarmRestServiceBase {
         readLock();
 
         try {
-            final CriteriaBuilder builder = getCriteriaBuilder(m_uriInfo.getQueryParameters(), false);
-            builder.distinct();
-            final OnmsAlarmCollection coll = new OnmsAlarmCollection(m_alarmDao.findMatching(builder.toCriteria()));
+            final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+            final String afterId = removeParameter(params, AFTER_ID_PARAMETER);
+            final boolean approximate = Boolean.valueOf(removeParameter(params, APPROXIMATE_COUNT_PARAMETER, "false"));
+
+            final CriteriaBuilder builder = getAlarmCriteriaBuilder(params, afterId);
+            final Criteria criteria = builder.toCriteria();
+            applyAlarmKeyset(criteria, afterId);
+            final OnmsAlarmCollection coll = new OnmsAlarmCollection(m_alarmDao.findMatching(criteria));
 
             // For getting totalCount
-            coll.setTotalCount(m_alarmDao.countMatching(builder.clearOrder().limit(0).offset(0).toCriteria()));
+            final Criteria countCriteria = builder.clearOrder().limit(0).offset(0).toCriteria();
+            if (approximate && countCriteria.getRestrictions().isEmpty()) {
+                coll.setTotalCount(m_alarmDao.estimateCountAll());
+            } else {
+                coll.setTotalCount(m_alarmDao.countMatching(countCriteria));
+            }
 
             return coll;
         } finally {
@@ -145,6 +178,79 @@ public class AlarmRestService extends AlarmRestServiceBase {
         }
     }
 
+    /**
+     * Streams all the alarms which match the filter/query in the query
+     * parameters, in the same order and with the same <code>afterId</code>
+     * support as {@link #getAlarms()}. No limit is applied unless one is
+     * given, and the alarms are written as they are read from a database
+     * cursor instead of being collected first.
+     * 
+     * @return the alarms as an XML document
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_XML)
+    @Path("stream")
+    @Transactional
+    public StreamingOutput streamAlarms() {
+        readLock();
+
+        try {
+            final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+            final String afterId = removeParameter(params, AFTER_ID_PARAMETER);
+            final boolean limited = params.containsKey("limit");
+
+            final CriteriaBuilder builder = getAlarmCriteriaBuilder(params, afterId);
+            if (!limited) {
+                builder.limit(0);
+            }
+            final Criteria criteria = builder.toCriteria();
+            applyAlarmKeyset(criteria, afterId);
+
+            // the entity is written after this method returns, so the cursor
+            // gets its own transaction
+            return new XmlStreamingOutput<OnmsAlarm>(OnmsAlarm.class, "alarms") {
+                @Override
+                protected void scroll(final ResultHandler<OnmsAlarm> handler) {
+                    readLock();
+                    try {
+                        m_transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                            @Override
+                            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                                m_alarmDao.scrollMatching(criteria, STREAM_FETCH_SIZE, handler);
+                            }
+                        });
+                    } finally {
+                        readUnlock();
+                    }
+                }
+            };
+        } finally {
+            readUnlock();
+        }
+    }
+
+    private CriteriaBuilder getAlarmCriteriaBuilder(final MultivaluedMap<String, String> params, final String afterId) {
+        if (afterId != null && params.containsKey("orderBy")) {
+            throw getException(Status.BAD_REQUEST, "The " + AFTER_ID_PARAMETER + " parameter can not be combined with orderBy");
+        }
+
+        final CriteriaBuilder builder = getCriteriaBuilder(params, false);
+        builder.orderBy("id").desc();
+        builder.distinct();
+        return builder;
+    }
+
+    private void applyAlarmKeyset(final Criteria criteria, final String afterId) {
+        if (afterId == null) {
+            return;
+        }
+        final OnmsAlarm lastAlarm = m_alarmDao.get(parseAfterId(afterId));
+        if (lastAlarm == null) {
+            throw getException(Status.BAD_REQUEST, "Alarm " + afterId + " does not exist");
+        }
+        applyKeyset(criteria, "lastEventTime", lastAlarm.getLastEventTime(), lastAlarm.getId(), false);
+    }
+
     /**
      * <p>
      * updateAlarm
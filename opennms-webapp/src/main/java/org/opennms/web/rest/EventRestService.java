@@ -38,24 +38,33 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
+import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.netmgt.dao.EventDao;
+import org.opennms.netmgt.dao.ResultHandler;
 import org.opennms.netmgt.model.OnmsEvent;
 import org.opennms.netmgt.model.OnmsEventCollection;
+import org.opennms.web.rest.support.XmlStreamingOutput;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.sun.jersey.spi.resource.PerRequest;
 
@@ -70,6 +79,9 @@ public class EventRestService extends OnmsRestService {
     @Autowired
     private EventDao m_eventDao;
 
+    @Autowired
+    private TransactionTemplate m_transactionTemplate;
+
     @Context
     UriInfo m_uriInfo;
 
@@ -104,16 +116,18 @@ public class EventRestService extends OnmsRestService {
     /**
      * returns a plaintext string being the number of events
      * 
+     * @param approximate
+     *            if true, return the planner's estimate instead of counting
      * @return a {@link java.lang.String} object.
      */
     @GET
     @Produces(MediaType.TEXT_PLAIN)
     @Path("count")
     @Transactional
-    public String getCount() {
+    public String getCount(@QueryParam("approximate") final Boolean approximate) {
         readLock();
         try {
-            return Integer.toString(m_eventDao.countAll());
+            return Integer.toString(Boolean.TRUE.equals(approximate) ? m_eventDao.estimateCountAll() : m_eventDao.countAll());
         } finally {
             readUnlock();
         }
@@ -122,6 +136,13 @@ public class EventRestService extends OnmsRestService {
     /**
      * Returns all the events which match the filter/query in the query
      * parameters
+     * <p>
+     * Pass the ID of the last event of a page as <code>afterId</code> to
+     * get the next page; unlike <code>offset</code> this does not get
+     * slower the deeper the page. Pass <code>approximateCount=true</code>
+     * to take the total count of an unfiltered query from the planner
+     * statistics instead of counting every row.
+     * </p>
      * 
      * @return Collection of OnmsEvents (ready to be XML-ified)
      * @throws java.text.ParseException
@@ -134,12 +155,21 @@ public class EventRestService extends OnmsRestService {
         readLock();
 
         try {
-            final CriteriaBuilder builder = new CriteriaBuilder(OnmsEvent.class);
-            applyQueryFilters(m_uriInfo.getQueryParameters(), builder);
-            builder.orderBy("eventTime").asc();
+            final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+            final String afterId = removeParameter(params, AFTER_ID_PARAMETER);
+            final boolean approximate = Boolean.valueOf(removeParameter(params, APPROXIMATE_COUNT_PARAMETER, "false"));
 
-            final OnmsEventCollection coll = new OnmsEventCollection(m_eventDao.findMatching(builder.toCriteria()));
-            coll.setTotalCount(m_eventDao.countMatching(builder.clearOrder().toCriteria()));
+            final CriteriaBuilder builder = getEventCriteriaBuilder(params, afterId);
+            final Criteria criteria = builder.toCriteria();
+            applyEventKeyset(criteria, afterId);
+
+            final OnmsEventCollection coll = new OnmsEventCollection(m_eventDao.findMatching(criteria));
+            final Criteria countCriteria = builder.clearOrder().toCriteria();
+            if (approximate && countCriteria.getRestrictions().isEmpty()) {
+                coll.setTotalCount(m_eventDao.estimateCountAll());
+            } else {
+                coll.setTotalCount(m_eventDao.countMatching(countCriteria));
+            }
 
             return coll;
         } finally {
@@ -147,6 +177,80 @@ public class EventRestService extends OnmsRestService {
         }
     }
 
+    /**
+     * Streams all the events which match the filter/query in the query
+     * parameters, in the same order and with the same <code>afterId</code>
+     * support as {@link #getEvents()}. No limit is applied unless one is
+     * given, and the events are written as they are read from a database
+     * cursor instead of being collected first.
+     * 
+     * @return the events as an XML document
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_XML)
+    @Path("stream")
+    @Transactional
+    public StreamingOutput streamEvents() {
+        readLock();
+
+        try {
+            final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+            final String afterId = removeParameter(params, AFTER_ID_PARAMETER);
+            final boolean limited = params.containsKey("limit");
+
+            final CriteriaBuilder builder = getEventCriteriaBuilder(params, afterId);
+            if (!limited) {
+                builder.limit(0);
+            }
+            final Criteria criteria = builder.toCriteria();
+            applyEventKeyset(criteria, afterId);
+
+            // the entity is written after this method returns, so the cursor
+            // gets its own transaction
+            return new XmlStreamingOutput<OnmsEvent>(OnmsEvent.class, "events") {
+                @Override
+                protected void scroll(final ResultHandler<OnmsEvent> handler) {
+                    readLock();
+                    try {
+                        m_transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                            @Override
+                            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                                m_eventDao.scrollMatching(criteria, STREAM_FETCH_SIZE, handler);
+                            }
+                        });
+                    } finally {
+                        readUnlock();
+                    }
+                }
+            };
+        } finally {
+            readUnlock();
+        }
+    }
+
+    private CriteriaBuilder getEventCriteriaBuilder(final MultivaluedMap<String, String> params, final String afterId) {
+        if (afterId != null && params.containsKey("orderBy")) {
+            throw getException(Status.BAD_REQUEST, "The " + AFTER_ID_PARAMETER + " parameter can not be combined with orderBy");
+        }
+
+        final CriteriaBuilder builder = new CriteriaBuilder(OnmsEvent.class);
+        applyQueryFilters(params, builder);
+        builder.orderBy("eventTime").asc();
+        builder.orderBy("id").asc();
+        return builder;
+    }
+
+    private void applyEventKeyset(final Criteria criteria, final String afterId) {
+        if (afterId == null) {
+            return;
+        }
+        final OnmsEvent lastEvent = m_eventDao.get(parseAfterId(afterId));
+        if (lastEvent == null) {
+            throw getException(Status.BAD_REQUEST, "Event " + afterId + " does not exist");
+        }
+        applyKeyset(criteria, "eventTime", lastEvent.getEventTime(), lastEvent.getId(), true);
+    }
+
     /**
      * Returns all the events which match the filter/query in the query
      * parameters
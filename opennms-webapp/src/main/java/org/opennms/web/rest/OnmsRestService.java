@@ -47,6 +47,8 @@ import javax.xml.datatype.XMLGregorianCalendar;
 
 import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.Restrictions;
 import org.opennms.core.utils.LogUtils;
 import org.opennms.core.utils.ThreadCategory;
 import org.opennms.netmgt.model.OnmsArpInterface.StatusType;
@@ -76,6 +78,15 @@ public class OnmsRestService {
 
 	protected static final int DEFAULT_LIMIT = 10;
 
+	/** Query parameter carrying the ID of the last entity of the previous page, for keyset paging. */
+	protected static final String AFTER_ID_PARAMETER = "afterId";
+
+	/** Query parameter asking for the total count to come from the planner statistics. */
+	protected static final String APPROXIMATE_COUNT_PARAMETER = "approximateCount";
+
+	/** Number of rows to read from the database cursor at a time when streaming. */
+	protected static final int STREAM_FETCH_SIZE = 500;
+
 	protected enum ComparisonOperation { EQ, NE, ILIKE, LIKE, IPLIKE, GT, LT, GE, LE, CONTAINS }
 
 	/**
@@ -210,6 +221,45 @@ public class OnmsRestService {
 		}
     }
 
+	/**
+	 * Parses the value of the <code>afterId</code> parameter.
+	 *
+	 * @param afterId the parameter value
+	 * @return the entity ID
+	 * @throws WebApplicationException with status 400 if the value is not an ID
+	 */
+	protected Integer parseAfterId(final String afterId) throws WebApplicationException {
+	    try {
+	        return Integer.valueOf(afterId);
+	    } catch (final NumberFormatException e) {
+	        throw getException(Status.BAD_REQUEST, "The " + AFTER_ID_PARAMETER + " parameter must be an ID, not " + afterId);
+	    }
+	}
+
+	/**
+	 * Restricts the criteria to the entities that sort after the given one
+	 * on (property, id), for keyset paging. Unlike an offset, the database
+	 * can start reading at the cursor position using an index, so a deep
+	 * page costs the same as the first one. The criteria must be ordered
+	 * by the same property and then by id.
+	 *
+	 * @param criteria the criteria to restrict
+	 * @param property the property the results are sorted by
+	 * @param value the value of that property for the last entity seen
+	 * @param id the ID of the last entity seen
+	 * @param ascending whether the results are sorted in ascending order
+	 */
+	protected static void applyKeyset(final Criteria criteria, final String property, final Object value, final Integer id, final boolean ascending) {
+	    final Restriction keyset;
+	    if (ascending) {
+	        keyset = Restrictions.or(Restrictions.gt(property, value), Restrictions.and(Restrictions.eq(property, value), Restrictions.gt("id", id)));
+	    } else {
+	        keyset = Restrictions.or(Restrictions.lt(property, value), Restrictions.and(Restrictions.eq(property, value), Restrictions.lt("id", id)));
+	    }
+	    criteria.addRestriction(keyset);
+	    criteria.setOffset(null);
+	}
+
 	protected BeanWrapper getBeanWrapperForClass(final Class<?> criteriaClass) {
 		final BeanWrapper wrapper = new BeanWrapperImpl(criteriaClass);
 		wrapper.registerCustomEditor(XMLGregorianCalendar.class, new StringXmlCalendarPropertyEditor());
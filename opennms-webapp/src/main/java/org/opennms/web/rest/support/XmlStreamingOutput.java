@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.web.rest.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import org.opennms.netmgt.dao.ResultHandler;
+
+/**
+ * Writes a query result as an XML collection element, marshalling each
+ * entity as it comes off the database cursor rather than building the
+ * whole collection in memory first.
+ *
+ * @param <T> the entity type, which must be a JAXB root element
+ */
+public abstract class XmlStreamingOutput<T> implements StreamingOutput {
+    private final Class<T> m_entityClass;
+    private final String m_collectionElement;
+
+    /**
+     * <p>Constructor for XmlStreamingOutput.</p>
+     *
+     * @param entityClass the entity type
+     * @param collectionElement the name of the element wrapping the entities
+     */
+    public XmlStreamingOutput(final Class<T> entityClass, final String collectionElement) {
+        m_entityClass = entityClass;
+        m_collectionElement = collectionElement;
+    }
+
+    /**
+     * Runs the query, handing each entity to the handler.
+     *
+     * @param handler the handler that marshals each entity
+     */
+    protected abstract void scroll(ResultHandler<T> handler);
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        final Writer writer = new OutputStreamWriter(output, "UTF-8");
+        final Marshaller marshaller;
+        try {
+            marshaller = JAXBContext.newInstance(m_entityClass).createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+            marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+        } catch (final JAXBException e) {
+            throw new IOException("Unable to create a marshaller for " + m_entityClass.getName() + ": " + e.getMessage());
+        }
+
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+        writer.write("<" + m_collectionElement + ">");
+        scroll(new ResultHandler<T>() {
+            @Override
+            public void handleResult(final T result) {
+                try {
+                    marshaller.marshal(result, writer);
+                } catch (final JAXBException e) {
+                    throw new IllegalStateException("Unable to marshal " + result + ": " + e.getMessage(), e);
+                }
+            }
+        });
+        // only close the collection once the cursor is exhausted, so that a
+        // failed query leaves the client with a document it cannot parse
+        writer.write("</" + m_collectionElement + ">");
+        writer.flush();
+    }
+}
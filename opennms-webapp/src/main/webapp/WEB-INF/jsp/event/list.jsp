@@ -228,12 +228,14 @@
           
             <% if( events.length > 0 ) { %>
               <% String baseUrl = this.makeLink(parms); %>
+              <% String nextParams = this.makeNextParams(parms, events); %>
               <% if ( eventCount == -1 ) { %>
                 <jsp:include page="/includes/resultsIndexNoCount.jsp" flush="false" >
                   <jsp:param name="itemCount"    value="<%=events.length%>" />
                   <jsp:param name="baseurl"  value="<%=baseUrl%>"    />
                   <jsp:param name="limit"    value="<%=parms.limit%>"      />
                   <jsp:param name="multiple" value="<%=parms.multiple%>"   />
+                  <jsp:param name="nextparams" value="<%=nextParams%>"   />
                 </jsp:include>
               <% } else { %>
                 <jsp:include page="/includes/resultsIndex.jsp" flush="false" >
@@ -241,6 +243,7 @@
                   <jsp:param name="baseurl"  value="<%=baseUrl%>"    />
                   <jsp:param name="limit"    value="<%=parms.limit%>"      />
                   <jsp:param name="multiple" value="<%=parms.multiple%>"   />
+                  <jsp:param name="nextparams" value="<%=nextParams%>"   />
                 </jsp:include>
               <% } %>
             <% } %>          
@@ -438,12 +441,14 @@
 
             <% if( events.length > 0 ) { %>
               <% String baseUrl = this.makeLink(parms); %>
+              <% String nextParams = this.makeNextParams(parms, events); %>
               <% if ( eventCount == -1 ) { %>
                 <jsp:include page="/includes/resultsIndexNoCount.jsp" flush="false" >
                   <jsp:param name="itemCount"    value="<%=events.length%>" />
                   <jsp:param name="baseurl"  value="<%=baseUrl%>"    />
                   <jsp:param name="limit"    value="<%=parms.limit%>"      />
                   <jsp:param name="multiple" value="<%=parms.multiple%>"   />
+                  <jsp:param name="nextparams" value="<%=nextParams%>"   />
                 </jsp:include>
               <% } else { %>
                 <jsp:include page="/includes/resultsIndex.jsp" flush="false" >
@@ -451,6 +456,7 @@
                   <jsp:param name="baseurl"  value="<%=baseUrl%>"    />
                   <jsp:param name="limit"    value="<%=parms.limit%>"      />
                   <jsp:param name="multiple" value="<%=parms.multiple%>"   />
+                  <jsp:param name="nextparams" value="<%=nextParams%>"   />
                 </jsp:include>
               <% } %>
             <% } %>          
@@ -528,6 +534,19 @@
     }
 
 
+    /**
+     * When the events are sorted by ID the "Next" link passes the ID of the
+     * last event shown, so the next page is read from there instead of
+     * skipping all the events before it.
+     */
+    public String makeNextParams( EventQueryParms parms, Event[] events ) {
+      if( events.length == 0 || (parms.sortStyle != SortStyle.ID && parms.sortStyle != SortStyle.REVERSE_ID) ) {
+          return( "" );
+      }
+      return( "&amp;afterid=" + events[events.length - 1].getId() );
+    }
+
+
     public String makeLink( EventQueryParms parms ) {
       return( this.makeLink( parms.sortStyle, parms.ackType, parms.filters, parms.limit) );
     }
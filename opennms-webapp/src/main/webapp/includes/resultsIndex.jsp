@@ -73,6 +73,13 @@
         multipleName = DEFAULT_MULTIPLE_PARAM_NAME;
     }
 
+    //optional parameter, nextparams: extra parameters for the "Next" link only,
+    //for example the key of the last item shown for keyset paging
+    String nextParams = request.getParameter("nextparams");
+    if(nextParams == null) {
+        nextParams = "";
+    }
+
     //get the count    
     long count = WebSecurityUtils.safeParseLong(countString);
     
@@ -132,7 +139,7 @@
     <% } %>
       
     <% if( multiple < highestPossibleIndex ) { %>
-      <a href="<%=baseUrl%>&amp;<%=multipleName%>=<%=multiple+1%>&amp;<%=limitName%>=<%=limit%>">Next</a>&nbsp;
+      <a href="<%=baseUrl%>&amp;<%=multipleName%>=<%=multiple+1%>&amp;<%=limitName%>=<%=limit%><%=nextParams%>">Next</a>&nbsp;
       <a href="<%=baseUrl%>&amp;<%=multipleName%>=<%=highestPossibleIndex%>&amp;<%=limitName%>=<%=limit%>">Last</a>
     <% } %>
 		</span>
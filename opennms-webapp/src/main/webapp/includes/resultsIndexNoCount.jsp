@@ -73,6 +73,13 @@
         multipleName = DEFAULT_MULTIPLE_PARAM_NAME;
     }
 
+    //optional parameter, nextparams: extra parameters for the "Next" link only,
+    //for example the key of the last item shown for keyset paging
+    String nextParams = request.getParameter("nextparams");
+    if(nextParams == null) {
+        nextParams = "";
+    }
+
     //get the count    
     long itemCount = WebSecurityUtils.safeParseLong(itemCountString);
     
@@ -116,7 +123,7 @@
     <% } %>
     
     <% if( itemCount >= limit  ) { %>
-      <a href="<%=baseUrl%>&amp;<%=multipleName%>=<%=multiple+1%>">Next</a>&nbsp;
+      <a href="<%=baseUrl%>&amp;<%=multipleName%>=<%=multiple+1%><%=nextParams%>">Next</a>&nbsp;
     <% } %>
 		</span>
    <% } %>      
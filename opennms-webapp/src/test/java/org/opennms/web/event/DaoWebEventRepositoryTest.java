@@ -47,6 +47,8 @@ import org.opennms.netmgt.model.OnmsSeverity;
 import org.opennms.test.JUnitConfigurationEnvironment;
 import org.opennms.web.event.filter.AcknowledgedByFilter;
 import org.opennms.web.event.filter.EventCriteria;
+import org.opennms.web.event.filter.EventIdAboveFilter;
+import org.opennms.web.event.filter.EventIdBelowFilter;
 import org.opennms.web.event.filter.EventIdFilter;
 import org.opennms.web.event.filter.NegativeSeverityFilter;
 import org.opennms.web.event.filter.SeverityFilter;
@@ -208,5 +210,25 @@ public class DaoWebEventRepositoryTest implements InitializingBean {
         assertTrue(sortedEvents.length > 0);        
         
     }
+
+    @Test
+    @Transactional
+    public void testKeysetPaging() {
+        Event[] first = m_daoEventRepo.getMatchingEvents(new EventCriteria(new Filter[0], SortStyle.ID, AcknowledgeType.BOTH, 1, 0));
+        assertEquals(1, first.length);
+
+        // starting below the last event shown gives the same page as the offset
+        Event[] second = m_daoEventRepo.getMatchingEvents(new EventCriteria(new Filter[] { new EventIdBelowFilter(first[0].getId()) }, SortStyle.ID, AcknowledgeType.BOTH, 1, 0));
+        Event[] secondByOffset = m_daoEventRepo.getMatchingEvents(new EventCriteria(new Filter[0], SortStyle.ID, AcknowledgeType.BOTH, 1, 1));
+        assertEquals(1, second.length);
+        assertEquals(secondByOffset[0].getId(), second[0].getId());
+
+        // only two events are displayed
+        assertEquals(0, m_daoEventRepo.getMatchingEvents(new EventCriteria(new Filter[] { new EventIdBelowFilter(second[0].getId()) }, SortStyle.ID, AcknowledgeType.BOTH, 1, 0)).length);
+
+        Event[] reverse = m_daoEventRepo.getMatchingEvents(new EventCriteria(new Filter[] { new EventIdAboveFilter(second[0].getId()) }, SortStyle.REVERSE_ID, AcknowledgeType.BOTH, 1, 0));
+        assertEquals(1, reverse.length);
+        assertEquals(first[0].getId(), reverse[0].getId());
+    }
     
 }
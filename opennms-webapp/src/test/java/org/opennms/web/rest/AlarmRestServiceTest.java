@@ -75,6 +75,20 @@ public class AlarmRestServiceTest extends AbstractSpringJerseyRestTestCase {
         assertTrue(xml.contains("<nodeLabel>node1</nodeLabel>"));
     }
 
+    @Test
+    public void testAlarmKeysetPagingAndStream() throws Exception {
+        String xml = sendRequest(GET, "/alarms/stream", 200);
+        assertTrue(xml.contains("This is a test alarm"));
+        assertTrue(xml.endsWith("</alarms>"));
+
+        xml = sendRequest(GET, "/alarms", parseParamData("afterId=1&limit=10"), 200);
+        assertFalse(xml.contains("This is a test alarm"));
+
+        sendRequest(GET, "/alarms", parseParamData("afterId=99999"), 400);
+        sendRequest(GET, "/alarms", parseParamData("afterId=abc"), 400);
+        sendRequest(GET, "/alarms/stream", parseParamData("afterId=abc"), 400);
+    }
+
     @Test
     public void testAlarmQueryByNode() throws Exception {
         String xml = sendRequest(GET, "/alarms", parseParamData("nodeId=6&limit=1"), 200);
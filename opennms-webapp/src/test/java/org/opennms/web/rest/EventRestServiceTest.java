@@ -28,22 +28,32 @@
 
 package org.opennms.web.rest;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
 import org.junit.Test;
 import org.opennms.core.test.MockLogAppender;
 import org.opennms.netmgt.dao.DatabasePopulator;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 
 public class EventRestServiceTest extends AbstractSpringJerseyRestTestCase {
     private DatabasePopulator m_databasePopulator;
+    private DataSource m_dataSource;
 
     @Override
     protected void afterServletStart() {
         MockLogAppender.setupLogging(true, "DEBUG");
         final WebApplicationContext context = WebApplicationContextUtils.getWebApplicationContext(getServletContext());
         m_databasePopulator = context.getBean("databasePopulator", DatabasePopulator.class);
+        m_dataSource = context.getBean("dataSource", DataSource.class);
         m_databasePopulator.populateDatabase();
     }
 
@@ -57,4 +67,53 @@ public class EventRestServiceTest extends AbstractSpringJerseyRestTestCase {
         xml = sendRequest(GET, "/events/between", parseParamData("end=2010-01-01T01:00:00Z"), 200);
         assertTrue(xml.contains("totalCount=\"0\""));
     }
+
+    @Test
+    public void testKeysetPaging() throws Exception {
+        String xml = sendRequest(GET, "/events", parseParamData("limit=1"), 200);
+        final Matcher m = Pattern.compile("<event\\b[^>]*\\bid=\"(\\d+)\"").matcher(xml);
+        assertTrue(m.find());
+        final String eventId = m.group(1);
+
+        xml = sendRequest(GET, "/events", parseParamData("limit=1&afterId=" + eventId), 200);
+        assertTrue(xml.contains("count=\"0\""));
+        assertFalse(xml.contains("id=\"" + eventId + "\""));
+
+        sendRequest(GET, "/events", parseParamData("afterId=" + eventId + "&orderBy=eventSeverity"), 400);
+        sendRequest(GET, "/events", parseParamData("afterId=abc"), 400);
+        sendRequest(GET, "/events/stream", parseParamData("afterId=abc"), 400);
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        final String xml = sendRequest(GET, "/events/stream", 200);
+        assertTrue(xml.startsWith("<?xml"));
+        assertTrue(xml.contains("<createTime>"));
+        assertTrue(xml.endsWith("</events>"));
+    }
+
+    @Test
+    public void testApproximateCount() throws Exception {
+        // never analyzed, so the exact count is used
+        final String count = sendRequest(GET, "/events/count", 200);
+        assertEquals(count, sendRequest(GET, "/events/count", parseParamData("approximate=true"), 200));
+
+        String xml = sendRequest(GET, "/events", parseParamData("approximateCount=true"), 200);
+        assertTrue(xml.contains("totalCount=\"" + count + "\""));
+
+        // once analyzed, the statistics are used even when they are out of date
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(m_dataSource);
+        jdbcTemplate.execute("ANALYZE events");
+        jdbcTemplate.update("INSERT INTO events (eventID, eventUei, eventTime, eventSource, eventDpName, eventCreateTime, eventSeverity, eventLog, eventDisplay) " +
+                "VALUES (nextval('eventsNxtId'), 'uei.opennms.org/test', now(), 'test', 'localhost', now(), 1, 'Y', 'Y')");
+
+        final int exactCount = Integer.parseInt(count) + 1;
+        assertEquals(Integer.toString(exactCount), sendRequest(GET, "/events/count", 200));
+        assertEquals(count, sendRequest(GET, "/events/count", parseParamData("approximate=true"), 200));
+
+        xml = sendRequest(GET, "/events", parseParamData("approximateCount=true"), 200);
+        assertTrue(xml.contains("totalCount=\"" + count + "\""));
+        xml = sendRequest(GET, "/events", 200);
+        assertTrue(xml.contains("totalCount=\"" + exactCount + "\""));
+    }
 }